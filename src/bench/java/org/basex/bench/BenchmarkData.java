@@ -0,0 +1,246 @@
+package org.basex.bench;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.io.*;
+import org.basex.util.*;
+
+/**
+ * This class generates XMark-like documents and creates sandboxed database
+ * contexts for the benchmarks. Documents are generated with a fixed seed, so
+ * all benchmark runs operate on the same data.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class BenchmarkData {
+  /** Name of the benchmark databases. */
+  public static final String NAME = Util.name(BenchmarkData.class);
+  /** Regions. */
+  private static final String[] REGIONS = {
+    "africa", "asia", "australia", "europe", "namerica", "samerica"
+  };
+  /** Syllables of the generated words. */
+  private static final String[] SYLLABLES = {
+    "an", "be", "cor", "de", "el", "for", "gra", "hon", "is", "ki", "lo", "mer",
+    "no", "or", "pro", "qua", "re", "sta", "thou", "un", "ver", "wi", "ya", "zo"
+  };
+  /** Number of distinct words. */
+  private static final int WORDS = 4096;
+
+  /** Random generator. */
+  private final Random rnd = new Random(0);
+  /** Vocabulary. */
+  private final String[] words = new String[WORDS];
+  /** Output. */
+  private final TokenBuilder tb = new TokenBuilder();
+
+  /** Private constructor. */
+  private BenchmarkData() {
+    for(int w = 0; w < WORDS; w++) {
+      final StringBuilder sb = new StringBuilder();
+      for(int s = 0, n = 1 + w % 3; s < n; s++) {
+        sb.append(SYLLABLES[rnd.nextInt(SYLLABLES.length)]);
+      }
+      words[w] = sb.toString();
+    }
+  }
+
+  /**
+   * Creates a new sandboxed database context.
+   * @return context
+   */
+  public static Context context() {
+    final IOFile sb = sandbox();
+    sb.delete();
+    sb.md();
+    final Context ctx = new Context();
+    ctx.mprop.set(MainProp.DBPATH, sb.path() + "/data");
+    ctx.mprop.set(MainProp.REPOPATH, sb.path() + "/repo");
+    return ctx;
+  }
+
+  /**
+   * Closes the specified context and deletes the sandbox.
+   * @param ctx context
+   */
+  public static void close(final Context ctx) {
+    ctx.close();
+    sandbox().delete();
+  }
+
+  /**
+   * Creates and opens the benchmark database with all value indexes.
+   * @param ctx context
+   * @param scale scale factor
+   * @throws IOException I/O exception
+   */
+  public static void create(final Context ctx, final int scale) throws IOException {
+    ctx.prop.set(Prop.TEXTINDEX, true);
+    ctx.prop.set(Prop.ATTRINDEX, true);
+    ctx.prop.set(Prop.FTINDEX, true);
+    new CreateDB(NAME, new String(xmark(scale), Token.UTF8)).execute(ctx);
+  }
+
+  /**
+   * Generates an XMark-like document. A scale factor of {@code 1} yields
+   * around 1 MB of data.
+   * @param scale scale factor
+   * @return document
+   */
+  public static byte[] xmark(final int scale) {
+    return new BenchmarkData().site(Math.max(1, scale));
+  }
+
+  /**
+   * Returns a word from the vocabulary. Words are skewed towards the beginning
+   * of the vocabulary, as in natural language texts.
+   * @return word
+   */
+  private String word() {
+    final int r = rnd.nextInt(WORDS);
+    return words[rnd.nextInt(r + 1)];
+  }
+
+  /**
+   * Generates the document.
+   * @param scale scale factor
+   * @return document
+   */
+  private byte[] site(final int scale) {
+    final int items = 600 * scale, people = 750 * scale;
+    final int open = 360 * scale, closed = 300 * scale, cats = 30 * scale;
+
+    tb.add("<site><regions>");
+    int id = 0;
+    for(int r = 0; r < REGIONS.length; r++) {
+      tb.add('<').add(REGIONS[r]).add('>');
+      final int end = items * (r + 1) / REGIONS.length;
+      for(; id < end; id++) {
+        tb.add("<item id=\"item").addLong(id).add("\">");
+        elem("location", word()).elem("quantity", 1 + rnd.nextInt(5));
+        elem("name", text(3)).elem("payment", "Creditcard");
+        tb.add("<description>");
+        elem("text", text(20 + rnd.nextInt(80)));
+        tb.add("</description>");
+        elem("shipping", text(4));
+        tb.add("<incategory category=\"category").addLong(rnd.nextInt(cats));
+        tb.add("\"/><mailbox>");
+        for(int m = rnd.nextInt(3); m > 0; m--) {
+          tb.add("<mail>");
+          elem("from", text(2)).elem("to", text(2)).elem("date", date());
+          elem("text", text(10 + rnd.nextInt(40)));
+          tb.add("</mail>");
+        }
+        tb.add("</mailbox></item>");
+      }
+      tb.add("</").add(REGIONS[r]).add('>');
+    }
+    tb.add("</regions><categories>");
+    for(int c = 0; c < cats; c++) {
+      tb.add("<category id=\"category").addLong(c).add("\">");
+      elem("name", text(2));
+      tb.add("<description>");
+      elem("text", text(30));
+      tb.add("</description></category>");
+    }
+    tb.add("</categories><people>");
+    for(int p = 0; p < people; p++) {
+      tb.add("<person id=\"person").addLong(p).add("\">");
+      elem("name", text(2)).elem("emailaddress", "mailto:" + word() + "@" + word());
+      tb.add("<address>");
+      elem("street", rnd.nextInt(100) + " " + word() + " St");
+      elem("city", word()).elem("country", word());
+      tb.add("</address><profile income=\"");
+      tb.add(String.valueOf(10000 + rnd.nextInt(9000000) / 100d)).add("\">");
+      tb.add("<interest category=\"category").addLong(rnd.nextInt(cats));
+      tb.add("\"/>");
+      elem("age", 18 + rnd.nextInt(60));
+      tb.add("</profile></person>");
+    }
+    tb.add("</people><open_auctions>");
+    for(int o = 0; o < open; o++) {
+      tb.add("<open_auction id=\"open_auction").addLong(o).add("\">");
+      elem("initial", price());
+      for(int b = rnd.nextInt(6); b > 0; b--) {
+        tb.add("<bidder>");
+        elem("date", date()).elem("time", "12:00:00");
+        tb.add("<personref person=\"person").addLong(rnd.nextInt(people));
+        tb.add("\"/>");
+        elem("increase", price());
+        tb.add("</bidder>");
+      }
+      elem("current", price());
+      tb.add("<itemref item=\"item").addLong(rnd.nextInt(items)).add("\"/>");
+      tb.add("<seller person=\"person").addLong(rnd.nextInt(people)).add("\"/>");
+      elem("quantity", 1);
+      tb.add("</open_auction>");
+    }
+    tb.add("</open_auctions><closed_auctions>");
+    for(int c = 0; c < closed; c++) {
+      tb.add("<closed_auction>");
+      tb.add("<seller person=\"person").addLong(rnd.nextInt(people)).add("\"/>");
+      tb.add("<buyer person=\"person").addLong(rnd.nextInt(people)).add("\"/>");
+      tb.add("<itemref item=\"item").addLong(rnd.nextInt(items)).add("\"/>");
+      elem("price", price()).elem("date", date()).elem("quantity", 1);
+      tb.add("<annotation><description>");
+      elem("text", text(20));
+      tb.add("</description></annotation></closed_auction>");
+    }
+    return tb.add("</closed_auctions></site>").finish();
+  }
+
+  /**
+   * Adds an element with a text node.
+   * @param name element name
+   * @param value text value
+   * @return self reference
+   */
+  private BenchmarkData elem(final String name, final Object value) {
+    tb.add('<').add(name).add('>').add(value.toString());
+    tb.add("</").add(name).add('>');
+    return this;
+  }
+
+  /**
+   * Returns a text with the specified number of words.
+   * @param n number of words
+   * @return text
+   */
+  private String text(final int n) {
+    final StringBuilder sb = new StringBuilder();
+    for(int w = 0; w < n; w++) {
+      if(w != 0) sb.append(' ');
+      sb.append(word());
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns a random price.
+   * @return price
+   */
+  private String price() {
+    return String.valueOf(rnd.nextInt(30000) / 100d);
+  }
+
+  /**
+   * Returns a random date.
+   * @return date
+   */
+  private String date() {
+    return String.format("%02d/%02d/%d", 1 + rnd.nextInt(12), 1 + rnd.nextInt(28),
+        1998 + rnd.nextInt(4));
+  }
+
+  /**
+   * Returns the sandbox directory.
+   * @return directory
+   */
+  private static IOFile sandbox() {
+    return new IOFile(Prop.TMP, NAME);
+  }
+}
@@ -0,0 +1,78 @@
+package org.basex.bench;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import org.basex.build.*;
+import org.basex.build.xml.*;
+import org.basex.core.*;
+import org.basex.data.*;
+import org.basex.io.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks for parsing documents and building databases.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BuildBenchmark {
+  /** Scale factor of the document. */
+  @Param("10")
+  public int scale;
+
+  /** Database context. */
+  private Context context;
+  /** Document. */
+  private IOContent doc;
+
+  /**
+   * Generates the document.
+   */
+  @Setup
+  public void setup() {
+    context = BenchmarkData.context();
+    doc = new IOContent(BenchmarkData.xmark(scale));
+  }
+
+  /**
+   * Closes the context.
+   */
+  @TearDown
+  public void tearDown() {
+    BenchmarkData.close(context);
+  }
+
+  /**
+   * Parses the document with the internal parser and builds a main-memory
+   * database instance.
+   * @return number of nodes
+   * @throws IOException I/O exception
+   */
+  @Benchmark
+  public int memory() throws IOException {
+    final Data data = new MemBuilder(BenchmarkData.NAME,
+        new XMLParser(doc, context.prop)).build();
+    data.close();
+    return data.meta.size;
+  }
+
+  /**
+   * Parses the document with the internal parser and builds a database on disk.
+   * @return number of nodes
+   * @throws IOException I/O exception
+   */
+  @Benchmark
+  public int disk() throws IOException {
+    final Data data = new DiskBuilder(BenchmarkData.NAME,
+        new XMLParser(doc, context.prop), context).build();
+    data.close();
+    return data.meta.size;
+  }
+}
@@ -0,0 +1,114 @@
+package org.basex.bench;
+
+import static org.basex.data.DataText.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.basex.core.*;
+import org.basex.data.*;
+import org.basex.util.*;
+import org.basex.util.list.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares texts that are compressed one by one with texts that are stored in
+ * compressed blocks (see {@link Prop#COMPRESSION}). The sizes of the text
+ * stores are printed when the database is created.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CompressionBenchmark {
+  /** Number of random accesses per invocation. */
+  private static final int ACCESSES = 1 << 12;
+
+  /** Scale factor of the document. */
+  @Param("10")
+  public int scale;
+  /** Block compression. */
+  @Param({ "false", "true" })
+  public boolean compression;
+
+  /** Database context. */
+  private Context context;
+  /** Data reference. */
+  private Data data;
+  /** Pre values of all texts. */
+  private int[] texts;
+  /** Random pre values of texts. */
+  private int[] random;
+  /** Offset of the next text to be read sequentially. */
+  private int next;
+
+  /**
+   * Creates the database and chooses the texts to be read.
+   * @throws IOException I/O exception
+   */
+  @Setup
+  public void setup() throws IOException {
+    context = BenchmarkData.context();
+    context.prop.set(Prop.COMPRESSION, compression);
+    BenchmarkData.create(context, scale);
+    data = context.data();
+
+    final IntList il = new IntList();
+    for(int pre = 0; pre < data.meta.size; pre++) {
+      if(data.kind(pre) == Data.TEXT) il.add(pre);
+    }
+    texts = il.toArray();
+    final Random rnd = new Random(0);
+    random = new int[ACCESSES];
+    for(int a = 0; a < ACCESSES; a++) random[a] = texts[rnd.nextInt(texts.length)];
+
+    final String[] files = compression ? new String[] { DATATXB, DATAATB } :
+      new String[] { DATATXT, DATAATV };
+    long size = 0;
+    for(final String f : files) size += data.meta.dbfile(f).length();
+    Util.outln("Compression: %, text stores: %", compression,
+        Performance.format(size));
+  }
+
+  /**
+   * Drops the database.
+   */
+  @TearDown
+  public void tearDown() {
+    BenchmarkData.close(context);
+  }
+
+  /**
+   * Reads texts at random positions.
+   * @return checksum
+   */
+  @Benchmark
+  @OperationsPerInvocation(ACCESSES)
+  public long random() {
+    long s = 0;
+    for(final int pre : random) s += data.text(pre, true).length;
+    return s;
+  }
+
+  /**
+   * Reads texts in document order, continuing with the text following the
+   * last text of the previous invocation.
+   * @return checksum
+   */
+  @Benchmark
+  @OperationsPerInvocation(ACCESSES)
+  public long sequential() {
+    long s = 0;
+    for(int a = 0; a < ACCESSES; a++) {
+      s += data.text(texts[next], true).length;
+      if(++next == texts.length) next = 0;
+    }
+    return s;
+  }
+}
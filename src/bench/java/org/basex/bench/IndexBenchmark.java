@@ -0,0 +1,148 @@
+package org.basex.bench;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.basex.core.*;
+import org.basex.data.*;
+import org.basex.index.*;
+import org.basex.index.query.*;
+import org.basex.util.ft.*;
+import org.basex.util.list.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks for the value and full-text index lookups.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IndexBenchmark {
+  /** Number of lookups per invocation. */
+  private static final int LOOKUPS = 1 << 10;
+
+  /** Scale factor of the document. */
+  @Param("10")
+  public int scale;
+
+  /** Database context. */
+  private Context context;
+  /** Data reference. */
+  private Data data;
+  /** Texts to be looked up. */
+  private byte[][] texts;
+  /** Attribute values to be looked up. */
+  private byte[][] attributes;
+  /** Full-text tokens to be looked up. */
+  private byte[][] words;
+
+  /**
+   * Creates the database and chooses the lookup terms.
+   * @throws IOException I/O exception
+   */
+  @Setup
+  public void setup() throws IOException {
+    context = BenchmarkData.context();
+    BenchmarkData.create(context, scale);
+    data = context.data();
+
+    // choose short texts, attribute values and single words of long texts
+    final TokenList tl = new TokenList(), al = new TokenList(), wl = new TokenList();
+    for(int pre = 0; pre < data.meta.size; pre++) {
+      final int k = data.kind(pre);
+      if(k == Data.ATTR) {
+        al.add(data.text(pre, false));
+      } else if(k == Data.TEXT) {
+        final byte[] t = data.text(pre, true);
+        if(t.length < 16) tl.add(t);
+        else wl.add(new FTLexer().init(t).nextToken());
+      }
+    }
+    final Random rnd = new Random(0);
+    texts = choose(tl, rnd);
+    attributes = choose(al, rnd);
+    words = choose(wl, rnd);
+  }
+
+  /**
+   * Drops the database.
+   */
+  @TearDown
+  public void tearDown() {
+    BenchmarkData.close(context);
+  }
+
+  /**
+   * Iterates over the results of text index lookups.
+   * @return checksum
+   */
+  @Benchmark
+  @OperationsPerInvocation(LOOKUPS)
+  public long text() {
+    long s = 0;
+    for(final byte[] t : texts) s += iterate(new StringToken(IndexType.TEXT, t));
+    return s;
+  }
+
+  /**
+   * Iterates over the results of attribute index lookups.
+   * @return checksum
+   */
+  @Benchmark
+  @OperationsPerInvocation(LOOKUPS)
+  public long attribute() {
+    long s = 0;
+    for(final byte[] t : attributes) {
+      s += iterate(new StringToken(IndexType.ATTRIBUTE, t));
+    }
+    return s;
+  }
+
+  /**
+   * Iterates over the results of full-text index lookups.
+   * @return checksum
+   */
+  @Benchmark
+  @OperationsPerInvocation(LOOKUPS)
+  public long fulltext() {
+    long s = 0;
+    final FTLexer lex = new FTLexer(new FTOpt().copy(data.meta));
+    for(final byte[] t : words) {
+      lex.init(t);
+      lex.nextToken();
+      s += iterate(lex);
+    }
+    return s;
+  }
+
+  /**
+   * Iterates over all results of an index lookup.
+   * @param token index token
+   * @return checksum
+   */
+  private long iterate(final IndexToken token) {
+    long s = 0;
+    final IndexIterator ii = data.iter(token);
+    while(ii.more()) s += ii.next();
+    return s;
+  }
+
+  /**
+   * Randomly chooses lookup terms.
+   * @param tl terms
+   * @param rnd random generator
+   * @return chosen terms
+   */
+  private static byte[][] choose(final TokenList tl, final Random rnd) {
+    final byte[][] terms = new byte[LOOKUPS][];
+    for(int t = 0; t < LOOKUPS; t++) terms[t] = tl.get(rnd.nextInt(tl.size()));
+    return terms;
+  }
+}
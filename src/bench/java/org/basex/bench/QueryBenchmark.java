@@ -0,0 +1,142 @@
+package org.basex.bench;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.io.serial.*;
+import org.basex.query.value.node.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks for the serialization of documents and the end-to-end evaluation
+ * of queries, including parsing, compilation and serialization.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class QueryBenchmark {
+  /** Scale factor of the document. */
+  @Param("10")
+  public int scale;
+
+  /** Database context. */
+  private Context context;
+
+  /**
+   * Creates the database.
+   * @throws IOException I/O exception
+   */
+  @Setup
+  public void setup() throws IOException {
+    context = BenchmarkData.context();
+    BenchmarkData.create(context, scale);
+  }
+
+  /**
+   * Drops the database.
+   */
+  @TearDown
+  public void tearDown() {
+    BenchmarkData.close(context);
+  }
+
+  /**
+   * Serializes the complete document.
+   * @return number of bytes
+   * @throws IOException I/O exception
+   */
+  @Benchmark
+  public long serialize() throws IOException {
+    final Counter out = new Counter();
+    final Serializer ser = Serializer.get(out);
+    ser.serialize(new DBNode(context.data(), 0));
+    ser.close();
+    return out.size;
+  }
+
+  /**
+   * Evaluates a descendant path.
+   * @return number of bytes
+   * @throws IOException I/O exception
+   */
+  @Benchmark
+  public long descendant() throws IOException {
+    return query("//item/location");
+  }
+
+  /**
+   * Evaluates a child path with a numeric predicate.
+   * @return number of bytes
+   * @throws IOException I/O exception
+   */
+  @Benchmark
+  public long predicate() throws IOException {
+    return query("/site/people/person[profile/@income > 50000]/name/text()");
+  }
+
+  /**
+   * Evaluates a path that can be rewritten for index access.
+   * @return number of bytes
+   * @throws IOException I/O exception
+   */
+  @Benchmark
+  public long index() throws IOException {
+    return query("/site/people/person[@id = 'person0']/name/text()");
+  }
+
+  /**
+   * Evaluates a FLWOR expression with an aggregation.
+   * @return number of bytes
+   * @throws IOException I/O exception
+   */
+  @Benchmark
+  public long flwor() throws IOException {
+    return query("for $i in /site/regions/*/item " +
+        "let $m := count($i/mailbox/mail) " +
+        "where $m > 0 order by $m descending, $i/name " +
+        "return <item name='{ $i/name }'>{ $m }</item>");
+  }
+
+  /**
+   * Evaluates a FLWOR expression with a value-based join.
+   * @return number of bytes
+   * @throws IOException I/O exception
+   */
+  @Benchmark
+  public long join() throws IOException {
+    return query("for $p in /site/people/person " +
+        "let $a := /site/closed_auctions/closed_auction[buyer/@person = $p/@id] " +
+        "return <item person='{ $p/name }'>{ count($a) }</item>");
+  }
+
+  /**
+   * Evaluates a query and serializes its result.
+   * @param query query
+   * @return number of bytes
+   * @throws IOException I/O exception
+   */
+  private long query(final String query) throws IOException {
+    final Counter out = new Counter();
+    new XQuery(query).execute(context, out);
+    return out.size;
+  }
+
+  /** Output stream that counts the written bytes. */
+  private static final class Counter extends OutputStream {
+    /** Number of bytes. */
+    long size;
+
+    @Override
+    public void write(final int b) {
+      size++;
+    }
+  }
+}
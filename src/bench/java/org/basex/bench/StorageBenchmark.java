@@ -0,0 +1,137 @@
+package org.basex.bench;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.data.*;
+import org.basex.io.random.*;
+import org.basex.util.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks for the table storage and the compression of texts.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class StorageBenchmark {
+  /** Number of random accesses per invocation. */
+  private static final int ACCESSES = 1 << 12;
+
+  /** Scale factor of the document. */
+  @Param("10")
+  public int scale;
+
+  /** Database context. */
+  private Context context;
+  /** Table access. */
+  private TableDiskAccess table;
+  /** Number of table entries. */
+  private int size;
+  /** Random pre values. */
+  private int[] pres;
+  /** Texts to be compressed. */
+  private byte[][] texts;
+  /** Compressed texts. */
+  private byte[][] packed;
+
+  /**
+   * Creates the database and collects the input data.
+   * @throws IOException I/O exception
+   */
+  @Setup
+  public void setup() throws IOException {
+    context = BenchmarkData.context();
+    BenchmarkData.create(context, scale);
+    final Data data = context.data();
+    size = data.meta.size;
+
+    final Random rnd = new Random(0);
+    pres = new int[ACCESSES];
+    for(int p = 0; p < ACCESSES; p++) pres[p] = rnd.nextInt(size);
+
+    final Compress comp = new Compress();
+    final ArrayList<byte[]> tl = new ArrayList<byte[]>();
+    for(int pre = 0; pre < size; pre++) {
+      if(data.kind(pre) == Data.TEXT) tl.add(data.text(pre, true));
+    }
+    texts = tl.toArray(new byte[tl.size()][]);
+    // texts will only be returned in compressed form if they get shorter
+    final ArrayList<byte[]> pl = new ArrayList<byte[]>();
+    for(final byte[] t : texts) {
+      final byte[] p = comp.pack(t);
+      if(p != t) pl.add(p);
+    }
+    packed = pl.toArray(new byte[pl.size()][]);
+
+    // the table is opened separately, as it can only be opened once
+    new Close().execute(context);
+    table = new TableDiskAccess(data.meta, false);
+  }
+
+  /**
+   * Closes the table and drops the database.
+   * @throws IOException I/O exception
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    table.close();
+    BenchmarkData.close(context);
+  }
+
+  /**
+   * Reads table entries in document order.
+   * @return checksum
+   */
+  @Benchmark
+  public long tableSequential() {
+    long s = 0;
+    for(int pre = 0; pre < size; pre++) s += table.read1(pre, 0) + table.read4(pre, 4);
+    return s;
+  }
+
+  /**
+   * Reads table entries at random positions.
+   * @return checksum
+   */
+  @Benchmark
+  @OperationsPerInvocation(ACCESSES)
+  public long tableRandom() {
+    long s = 0;
+    for(final int pre : pres) s += table.read1(pre, 0) + table.read4(pre, 4);
+    return s;
+  }
+
+  /**
+   * Compresses all texts.
+   * @return checksum
+   */
+  @Benchmark
+  public long pack() {
+    final Compress comp = new Compress();
+    long s = 0;
+    for(final byte[] t : texts) s += comp.pack(t).length;
+    return s;
+  }
+
+  /**
+   * Decompresses all texts.
+   * @return checksum
+   */
+  @Benchmark
+  public long unpack() {
+    final Compress comp = new Compress();
+    long s = 0;
+    for(final byte[] p : packed) s += comp.unpack(p).length;
+    return s;
+  }
+}
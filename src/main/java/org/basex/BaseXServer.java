@@ -4,7 +4,9 @@ import static org.basex.core.Text.*;
 
 import java.io.*;
 import java.net.*;
+import java.nio.channels.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.basex.core.*;
 import org.basex.io.*;
@@ -18,6 +20,13 @@ import org.basex.util.list.*;
  * This is the starter class for running the database server. It handles
  * concurrent requests from multiple users.
  *
+ * Client connections are managed by a single selector thread. Whenever new
+ * input arrives, the corresponding session is processed by a fixed number of
+ * worker threads (see {@link MainProp#WORKERS}). Idle sessions do not occupy
+ * any threads. Query cursors, which fetch results in batches, are run by the
+ * same workers; they may occupy at most half of them, so that workers remain
+ * available for the requests that wait for the cursors.
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  * @author Andreas Weiler
@@ -36,6 +45,10 @@ public final class BaseXServer extends Main implements Runnable {
   private final TokenIntMap blocked = new TokenIntMap();
   /** New sessions. */
   private final HashSet<ClientListener> auth = new HashSet<ClientListener>();
+  /** Timer for authentication time outs. */
+  private final Timer timer = new Timer(true);
+  /** Sessions that wait for further input. */
+  private final Queue<SelectionKey> resumed = new ConcurrentLinkedQueue<SelectionKey>();
   /** Initial commands. */
   private StringList commands;
 
@@ -45,7 +58,13 @@ public final class BaseXServer extends Main implements Runnable {
   private volatile boolean stopped;
 
   /** Server socket. */
-  private ServerSocket socket;
+  private ServerSocketChannel socket;
+  /** Selector for client connections. */
+  private Selector selector;
+  /** Worker threads. */
+  private ExecutorService workers;
+  /** Permits for running query cursors. */
+  private Semaphore cursors;
 
   /**
    * Main method, launching the server process.
@@ -108,8 +127,14 @@ public final class BaseXServer extends Main implements Runnable {
       // execute command-line arguments
       for(final String c : commands) execute(c);
 
-      socket = new ServerSocket();
-      socket.bind(new InetSocketAddress(addr, port));
+      socket = ServerSocketChannel.open();
+      socket.socket().bind(new InetSocketAddress(addr, port));
+      socket.configureBlocking(false);
+      selector = Selector.open();
+      socket.register(selector, SelectionKey.OP_ACCEPT);
+      final int threads = Math.max(2, mprop.num(MainProp.WORKERS));
+      workers = Executors.newFixedThreadPool(threads);
+      cursors = new Semaphore(threads / 2);
       esocket = new ServerSocket();
       esocket.bind(new InetSocketAddress(addr, eport));
       stop = stopFile(port);
@@ -144,34 +169,27 @@ public final class BaseXServer extends Main implements Runnable {
     running = true;
     while(running) {
       try {
-        final Socket s = socket.accept();
-        if(stop.exists()) {
-          if(!stop.delete()) context.log.write(Util.info(FILE_NOT_DELETED_X, stop));
-          quit();
-        } else {
-          // drop inactive connections
-          final long ka = context.mprop.num(MainProp.KEEPALIVE) * 1000L;
-          if(ka > 0) {
-            final long ms = System.currentTimeMillis();
-            for(final ClientListener cs : context.sessions) {
-              if(ms - cs.last > ka) cs.quit();
-            }
+        // wait for input of sessions that have been processed
+        for(SelectionKey key; (key = resumed.poll()) != null;) {
+          try {
+            key.interestOps(SelectionKey.OP_READ);
+          } catch(final CancelledKeyException ex) {
+            // session has been closed
           }
-          final ClientListener cl = new ClientListener(s, context, context.log, this);
-          // start authentication timeout
-          final long to = context.mprop.num(MainProp.KEEPALIVE) * 1000L;
-          if(to > 0) {
-            cl.auth.schedule(new TimerTask() {
-              @Override
-              public void run() {
-                cl.quitAuth();
-              }
-            }, to);
-            auth.add(cl);
+        }
+        selector.select();
+        final Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while(running && it.hasNext()) {
+          final SelectionKey key = it.next();
+          it.remove();
+          try {
+            if(key.isAcceptable()) accept();
+            else dispatch(key);
+          } catch(final CancelledKeyException ex) {
+            // session has been closed
           }
-          cl.start();
         }
-      } catch(final SocketException ex) {
+      } catch(final ClosedSelectorException ex) {
         break;
       } catch(final Throwable ex) {
         // socket may have been unexpectedly closed
@@ -181,6 +199,88 @@ public final class BaseXServer extends Main implements Runnable {
     }
   }
 
+  /**
+   * Accepts a new client connection.
+   * @throws IOException I/O exception
+   */
+  private void accept() throws IOException {
+    final SocketChannel ch = socket.accept();
+    if(ch == null) return;
+    if(stop.exists()) {
+      if(!stop.delete()) context.log.write(Util.info(FILE_NOT_DELETED_X, stop));
+      ch.close();
+      quit();
+      return;
+    }
+
+    // drop inactive connections
+    final long ka = context.mprop.num(MainProp.KEEPALIVE) * 1000L;
+    if(ka > 0) {
+      final long ms = System.currentTimeMillis();
+      for(final ClientListener cs : context.sessions) {
+        if(ms - cs.last > ka) {
+          workers.execute(new Runnable() {
+            @Override
+            public void run() {
+              cs.quit();
+            }
+          });
+        }
+      }
+    }
+    ch.configureBlocking(false);
+    final ClientListener cl = new ClientListener(ch, context, context.log, this);
+    // start authentication timeout
+    final long to = context.mprop.num(MainProp.KEEPALIVE) * 1000L;
+    if(to > 0) {
+      synchronized(auth) {
+        auth.add(cl);
+      }
+      timer.schedule(cl.auth, to);
+    }
+    // send timestamp to the client
+    dispatch(ch.register(selector, 0, cl));
+  }
+
+  /**
+   * Passes a session to a worker thread. No further input of the session will
+   * be signaled until the worker has finished.
+   * @param key selection key of the session
+   */
+  private void dispatch(final SelectionKey key) {
+    key.interestOps(0);
+    final ClientListener cl = (ClientListener) key.attachment();
+    workers.execute(new Runnable() {
+      @Override
+      public void run() {
+        if(cl.handle()) {
+          resumed.add(key);
+          selector.wakeup();
+        }
+      }
+    });
+  }
+
+  /**
+   * Runs a query cursor on a worker thread.
+   * @param cursor query cursor
+   * @return {@code false} if the maximum number of cursors is already running
+   */
+  public boolean cursor(final Runnable cursor) {
+    if(!cursors.tryAcquire()) return false;
+    workers.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          cursor.run();
+        } finally {
+          cursors.release();
+        }
+      }
+    });
+    return true;
+  }
+
   /**
    * Generates a stop file for the specified port.
    * @param port server port
@@ -195,7 +295,7 @@ public final class BaseXServer extends Main implements Runnable {
     if(!running) return;
     running = false;
 
-    for(final ClientListener cs : auth) {
+    for(final ClientListener cs : auth.toArray(new ClientListener[auth.size()])) {
       remove(cs);
       cs.quitAuth();
     }
@@ -209,10 +309,13 @@ public final class BaseXServer extends Main implements Runnable {
       // close interactive input if server was stopped by another process
       if(console) System.in.close();
       esocket.close();
+      selector.close();
       socket.close();
     } catch(final IOException ex) {
       context.log.error(ex);
     }
+    timer.cancel();
+    workers.shutdown();
     console = false;
   }
 
@@ -5,6 +5,7 @@ import static org.basex.data.DataText.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.regex.*;
 import java.util.zip.*;
 
@@ -12,6 +13,8 @@ import org.basex.core.*;
 import org.basex.core.cmd.*;
 import org.basex.data.*;
 import org.basex.io.*;
+import org.basex.io.serial.*;
+import org.basex.query.value.node.*;
 import org.basex.util.*;
 import org.basex.util.list.*;
 
@@ -19,12 +22,22 @@ import org.basex.util.list.*;
  * This class recursively scans files and directories and parses all
  * relevant files.
  *
+ * If {@link Prop#PARSETHREADS} is larger than {@code 1} and if more than one
+ * processor is available, small files are parsed in parallel into main memory
+ * instances, which are added to the builder in their original order. Large
+ * files and archive entries are streamed to the builder, as are all inputs
+ * in sequential mode.
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
 public final class DirParser extends Parser {
   /** Number of skipped files to log. */
   private static final int SKIPLOG = 10;
+  /** Maximum size of a file that is parsed in parallel. */
+  private static final long PIPEFILE = 1 << 20;
+  /** Maximum number of input bytes of pending documents. */
+  private static final long PIPEBYTES = 1 << 24;
   /** Skipped files. */
   private final StringList skipped = new StringList();
   /** File pattern. */
@@ -47,6 +60,8 @@ public final class DirParser extends Parser {
   private IO lastSrc;
   /** Parser reference. */
   private Parser parser;
+  /** Parallel parsing pipeline (can be {@code null}). */
+  private Pipeline pipeline;
   /** Element counter. */
   private int c;
 
@@ -76,7 +91,21 @@ public final class DirParser extends Parser {
   public void parse(final Builder build) throws IOException {
     build.meta.filesize = 0;
     build.meta.original = src.path();
-    parse(build, src);
+
+    // parallel parsing is slower if documents cannot be parsed simultaneously
+    final int threads = Math.min(prop.num(Prop.PARSETHREADS),
+        Runtime.getRuntime().availableProcessors());
+    if(threads < 2 || rawParser) {
+      parse(build, src);
+      return;
+    }
+    pipeline = new Pipeline(build, threads);
+    try {
+      parse(build, src);
+      pipeline.finish();
+    } finally {
+      pipeline.close();
+    }
   }
 
   /**
@@ -154,7 +183,12 @@ public final class DirParser extends Parser {
         if(rawPath != null) {
           Store.store(src.inputSource(), new IOFile(rawPath, targ + name));
         }
+      } else if(pipeline != null && pipeline.accepts(src)) {
+        // parse input in parallel
+        pipeline.add(src, targ);
       } else {
+        // preserve document order: add pending documents before streaming input
+        if(pipeline != null) pipeline.finish();
         // store input as XML
         boolean ok = true;
         IO in = src;
@@ -205,7 +239,8 @@ public final class DirParser extends Parser {
 
   @Override
   public String det() {
-    return parser != null ? parser.detail() : src.path();
+    if(parser != null) return parser.detail();
+    return pipeline != null ? src.path() + " (" + pipeline + ')' : src.path();
   }
 
   @Override
@@ -220,4 +255,148 @@ public final class DirParser extends Parser {
   public void close() throws IOException {
     if(parser != null) parser.close();
   }
+
+  /**
+   * Parses files in parallel and adds them to the builder in their original order.
+   */
+  private final class Pipeline {
+    /** Builder. */
+    private final Builder builder;
+    /** Serializer, which passes on the parsed documents to the builder. */
+    private final Serializer ser;
+    /** Thread pool. */
+    private final ExecutorService pool;
+    /** Maximum number of pending documents. */
+    private final int max;
+    /** Pending documents. */
+    private final ArrayDeque<Doc> pending = new ArrayDeque<Doc>();
+    /** Number of input bytes of the pending documents. */
+    private long size;
+    /** Start time. */
+    private final long start = System.nanoTime();
+    /** Number of added documents. */
+    private long docs;
+    /** Number of bytes of the added documents. */
+    private long bytes;
+
+    /**
+     * Constructor.
+     * @param b builder
+     * @param threads number of threads
+     */
+    Pipeline(final Builder b, final int threads) {
+      builder = b;
+      ser = new BuilderSerializer(b);
+      pool = Executors.newFixedThreadPool(threads);
+      max = threads << 1;
+    }
+
+    /**
+     * Checks if the specified input can be parsed in parallel. Only files are
+     * accepted: the contents of archive entries would first need to be read
+     * into main memory. Large files are rejected, as their main memory
+     * instances would take much more space than the files themselves.
+     * @param io input
+     * @return result of check
+     */
+    boolean accepts(final IO io) {
+      return io instanceof IOFile && io.length() <= PIPEFILE;
+    }
+
+    /**
+     * Schedules the specified input for parsing. If the maximum number of pending
+     * documents or input bytes is exceeded, the oldest documents are added to
+     * the builder.
+     * @param input input
+     * @param targ target path
+     * @throws IOException I/O exception
+     */
+    void add(final IO input, final String targ) throws IOException {
+      pending.add(new Doc(input, pool.submit(new Callable<MemData>() {
+        @Override
+        public MemData call() throws IOException {
+          return MemBuilder.build("", Parser.singleParser(input, prop, targ));
+        }
+      })));
+      size += Math.max(0, input.length());
+      while(pending.size() > max || size > PIPEBYTES) write();
+    }
+
+    /**
+     * Adds all pending documents to the builder.
+     * @throws IOException I/O exception
+     */
+    void finish() throws IOException {
+      while(!pending.isEmpty()) write();
+    }
+
+    /**
+     * Stops all pending parsers.
+     */
+    void close() {
+      pool.shutdownNow();
+    }
+
+    /**
+     * Waits for the oldest pending document and adds it to the builder.
+     * @throws IOException I/O exception
+     */
+    private void write() throws IOException {
+      final Doc doc = pending.poll();
+      final long len = Math.max(0, doc.input.length());
+      size -= len;
+      final MemData md;
+      try {
+        md = doc.data.get();
+      } catch(final InterruptedException ex) {
+        throw new BaseXException(ex);
+      } catch(final ExecutionException ex) {
+        final Throwable th = ex.getCause();
+        if(th instanceof IOException) {
+          // skip corrupt file
+          if(!skipCorrupt) throw (IOException) th;
+          Util.debug(th.getMessage());
+          skipped.add(doc.input.path());
+          return;
+        }
+        if(th instanceof RuntimeException) throw (RuntimeException) th;
+        if(th instanceof Error) throw (Error) th;
+        throw new BaseXException(ex);
+      }
+      builder.checkStop();
+      ser.serialize(new DBNode(md, 0));
+      builder.encoding(md.meta.encoding);
+      docs++;
+      bytes += len;
+    }
+
+    /**
+     * Returns the throughput (documents and bytes per second).
+     * @return info string
+     */
+    @Override
+    public String toString() {
+      final double sec = Math.max(1, System.nanoTime() - start) / 1000000000d;
+      final long bps = (long) (bytes / sec);
+      return (long) (docs / sec) + " docs/s, " + Performance.format(bps) + "/s";
+    }
+  }
+
+  /** Document that is parsed by the pipeline. */
+  private static final class Doc {
+    /** Input. */
+    final IO input;
+    /** Parsed document. */
+    final Future<MemData> data;
+
+    /**
+     * Constructor.
+     * @param in input
+     * @param d parsed document
+     */
+    Doc(final IO in, final Future<MemData> d) {
+      input = in;
+      data = d;
+    }
+  }
 }
@@ -40,6 +40,10 @@ public final class DiskBuilder extends Builder {
   private DataOutput vout;
   /** Output stream for temporary values. */
   private DataOutput sout;
+  /** Compressed text blocks ({@code null} if block compression is disabled). */
+  private BlockOutput xblocks;
+  /** Compressed value blocks ({@code null} if block compression is disabled). */
+  private BlockOutput vblocks;
 
   /** Database context. */
   final Context context;
@@ -84,6 +88,10 @@ public final class DiskBuilder extends Builder {
       xout = new DataOutput(md.dbfile(DATATXT), bs);
       vout = new DataOutput(md.dbfile(DATAATV), bs);
       sout = new DataOutput(md.dbfile(DATATMP), bs);
+      if(md.compress) {
+        xblocks = new BlockOutput(md.dbfile(DATATXB), bs);
+        vblocks = new BlockOutput(md.dbfile(DATAATB), bs);
+      }
 
       final Performance perf = Prop.debug ? new Performance() : null;
       Util.debug(tit() + DOTS);
@@ -124,11 +132,15 @@ public final class DiskBuilder extends Builder {
     if(xout != null) xout.close();
     if(vout != null) vout.close();
     if(sout != null) sout.close();
+    if(xblocks != null) xblocks.close();
+    if(vblocks != null) vblocks.close();
     parser.close();
     tout = null;
     xout = null;
     vout = null;
     sout = null;
+    xblocks = null;
+    vblocks = null;
   }
 
   @Override
@@ -195,6 +207,9 @@ public final class DiskBuilder extends Builder {
     final long v = Token.toSimpleInt(value);
     if(v != Integer.MIN_VALUE) return v | IO.OFFNUM;
 
+    // store text in compressed block
+    if(meta.compress) return (text ? xblocks : vblocks).write(value) | IO.OFFBLOCK;
+
     // store text
     final DataOutput store = text ? xout : vout;
     final long off = store.size();
@@ -51,6 +51,7 @@ public final class MemBuilder extends Builder {
     init();
     try {
       parse();
+      data.trim();
     } finally {
       close();
     }
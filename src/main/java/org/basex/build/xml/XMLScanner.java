@@ -33,6 +33,21 @@ final class XMLScanner extends Progress {
   private static final byte[] QUESTION = { '?' };
   /** Ampersand entity. */
   private static final byte[] AMPER = { '&' };
+  /** ASCII characters of text content that need no further processing. */
+  private static final boolean[] TEXTCHARS = new boolean[0x80];
+  /** ASCII characters of attribute values that need no further processing. */
+  private static final boolean[] ATTCHARS = new boolean[0x80];
+  /** ASCII name characters. */
+  private static final boolean[] NAMECHARS = new boolean[0x80];
+
+  static {
+    for(int c = 0; c < 0x80; c++) {
+      final boolean plain = c >= ' ' || c == '\t';
+      TEXTCHARS[c] = plain && c != '<' && c != '&' && c != ']';
+      ATTCHARS[c] = plain && c != '<' && c != '&' && c != '\'' && c != '"';
+      NAMECHARS[c] = isChar(c);
+    }
+  }
 
   /** Scanning states. */
   private enum State {
@@ -233,7 +248,10 @@ final class XMLScanner extends Progress {
     } else if(isStartChar(c)) {
       // scan tag name...
       type = state == State.ATT ? Type.ATTNAME : Type.TAGNAME;
-      do token.add(c); while(isChar(c = nextChar()));
+      do {
+        token.add(c);
+        input.read(token, NAMECHARS);
+      } while(isChar(c = nextChar()));
       prev(1);
       state = State.ATT;
     } else {
@@ -278,6 +296,7 @@ final class XMLScanner extends Progress {
         else if(!input.add(r, false)) error(RECENT);
       } else {
         token.add(c);
+        input.read(token, ATTCHARS);
       }
     } while((c = consume()) != quote);
   }
@@ -319,6 +338,8 @@ final class XMLScanner extends Progress {
         }
         cDATA();
       }
+      // plain characters are added in bulk
+      input.read(token, TEXTCHARS);
       c = consume();
       f = false;
     }
@@ -630,7 +651,10 @@ final class XMLScanner extends Progress {
       prev(1);
       return null;
     }
-    do name.add(c); while(isChar(c = nextChar()));
+    do {
+      name.add(c);
+      input.read(name, NAMECHARS);
+    } while(isChar(c = nextChar()));
     prev(1);
     return name.finish();
   }
@@ -341,6 +341,8 @@ public abstract class Command extends Progress {
       // run command and return success flag
       return run(ctx, os);
     } finally {
+      // user permissions may have changed
+      if(perm == Perm.ADMIN) ctx.queries.invalidate();
       // guarantee that process will be unregistered
       ctx.unregister(this);
     }
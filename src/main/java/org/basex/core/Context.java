@@ -7,6 +7,7 @@ import java.util.*;
 import org.basex.data.*;
 import org.basex.index.resource.*;
 import org.basex.io.random.*;
+import org.basex.query.*;
 import org.basex.query.util.pkg.*;
 import org.basex.server.*;
 import org.basex.util.list.*;
@@ -38,6 +39,8 @@ public final class Context {
   public final Users users;
   /** Package repository. */
   public final Repo repo;
+  /** Cached queries. */
+  public final QueryCache queries;
 
   /** User reference. */
   public User user;
@@ -92,6 +95,7 @@ public final class Context {
     locks = ctx.locks;
     users = ctx.users;
     repo = ctx.repo;
+    queries = ctx.queries;
     databases = ctx.databases;
     listener = cl;
   }
@@ -108,6 +112,7 @@ public final class Context {
     locks = mp.is(MainProp.DBLOCKING) ? new DBLocking(mp) : new ProcessLocking(this);
     users = new Users(true);
     repo = new Repo(this);
+    queries = new QueryCache(mp.num(MainProp.QUERYCACHE));
     user = users.get(ADMIN);
     databases = databases();
     listener = null;
@@ -118,6 +123,7 @@ public final class Context {
    */
   public synchronized void close() {
     while(!sessions.isEmpty()) sessions.get(0).quit();
+    queries.invalidate();
     datas.close();
   }
 
@@ -271,6 +277,8 @@ public final class Context {
         if(data != null && sl.get(d).isEmpty()) sl.set(d, data.meta.name);
       }
     }
+    // close cached queries that access the databases to be updated
+    if(pr.updating) queries.invalidate(sl);
     locks.acquire(pr, sl);
   }
 
@@ -1,9 +1,7 @@
 package org.basex.core;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
 import java.util.concurrent.locks.*;
 
@@ -13,6 +11,11 @@ import org.basex.util.list.*;
  * Manage read and write locks on arbitrary objects. Maximum of {@link MainProp#PARALLEL}
  * concurrent transactions are allowed, further will be queued.
  *
+ * The number of parallel transactions is limited by a fair semaphore, which is
+ * initialized with the value that is assigned when the instance is created.
+ * Locks on objects are stored in a concurrent map; they are reference-counted
+ * and discarded as soon as they are not used anymore.
+ *
  * This class prevents locking deadlocks by sorting all Objects to put locks on what
  * requires them to have be {@link Comparable}.
  *
@@ -25,34 +28,24 @@ import org.basex.util.list.*;
  * @author Jens Erat
  */
 public final class DBLocking implements ILocking {
-  /** Stores one lock for each object ever used for locking. */
-  private final Map<String, ReentrantReadWriteLock> locks =
-      new HashMap<String, ReentrantReadWriteLock>();
-  /**
-   * Currently running transactions.
-   *
-   * Used as monitor for atomizing access to
-   * {@link DBLocking#transactions} and {@link DBLocking#queue}
-   */
-  private final AtomicInteger transactions = new AtomicInteger(0);
-  /**
-   * Queue for transactions waiting.
-   *
-   * Used as monitor for waiting threads in queue.
-   */
-  private final ConcurrentLinkedQueue<Thread> queue = new ConcurrentLinkedQueue<Thread>();
-  /** Stores a list of objects each transaction has locked. */
-  private final ConcurrentMap<Thread, Object[]> locked
-      = new ConcurrentHashMap<Thread, Object[]>();
-  /** BaseX database context. */
-  private final MainProp mprop;
+  /** Stores one lock for each object that is currently used for locking. */
+  private final ConcurrentMap<String, RefLock> locks =
+      new ConcurrentHashMap<String, RefLock>();
+  /** Stores the locks each transaction has acquired. */
+  private final ConcurrentMap<Thread, Transaction> locked =
+      new ConcurrentHashMap<Thread, Transaction>();
+  /** Permits for running transactions (fair, so waiting transactions are queued). */
+  private final Semaphore transactions;
+  /** Maximum number of parallel transactions. */
+  private final int parallel;
 
   /**
    * Initialize new Locking instance.
    * @param mp Main properties, used to read parallel transactions limit.
    */
   public DBLocking(final MainProp mp) {
-    mprop = mp;
+    parallel = Math.max(mp.num(MainProp.PARALLEL), 1);
+    transactions = new Semaphore(parallel, true);
   }
 
   @Override
@@ -62,70 +55,72 @@ public final class DBLocking implements ILocking {
       throw new IllegalMonitorStateException("Thread already holds one or more locks.");
 
     // Wait in queue if necessary
-    synchronized(queue) {
-      queue.add(thread);
-      boolean result;
-      synchronized(transactions) {
-        result = transactions.get() >= Math.max(mprop.num(MainProp.PARALLEL), 1)
-            || queue.peek() != thread;
-      }
-      while(result) {
-        try {
-          queue.wait();
-        } catch(final InterruptedException e) {
-          Thread.currentThread().interrupt();
-        }
-        synchronized(transactions) {
-          result = transactions.get() >= Math.max(mprop.num(MainProp.PARALLEL), 1)
-              || queue.peek() != thread;
-        }
-      }
-      synchronized(transactions) {
-        final int t = transactions.incrementAndGet();
-        assert t <= Math.max(mprop.num(MainProp.PARALLEL), 1);
-        queue.remove(thread);
-      }
-    }
+    transactions.acquireUninterruptibly();
 
     // Sort entries and remove duplicates to prevent deadlocks
     final String[] objects = db.sort(true, true).unique().toArray();
+    final Transaction tr = new Transaction(objects, pr.updating);
 
     // Store for unlocking later
-    locked.put(thread, objects);
+    locked.put(thread, tr);
 
     // Finally lock objects
-    for(final String object : objects) {
-      ReentrantReadWriteLock lock = locks.get(object);
-      if(null == lock) {
-        lock = new ReentrantReadWriteLock();
-        locks.put(object, lock);
-      }
-      (pr.updating ? lock.writeLock() : lock.readLock()).lock();
+    for(int o = 0; o < objects.length; o++) {
+      final RefLock lock = reference(objects[o]);
+      (tr.write ? lock.writeLock() : lock.readLock()).lock();
+      tr.locks[o] = lock;
     }
   }
 
   @Override
   public void release(final Progress pr) {
-    final Object[] objects = locked.remove(Thread.currentThread());
-    if(null == objects)
+    final Transaction tr = locked.remove(Thread.currentThread());
+    if(null == tr)
       throw new IllegalMonitorStateException("No locks held by current thread");
 
-    // Unlock all locks, no matter if read or write lock
-    for(final Object object : objects) {
-      final ReentrantReadWriteLock lock = locks.get(object);
-      if(lock.isWriteLockedByCurrentThread())
-        lock.writeLock().unlock();
-      else
-        lock.readLock().unlock();
+    // Unlock all locks in reverse order
+    for(int o = tr.objects.length - 1; o >= 0; o--) {
+      final RefLock lock = tr.locks[o];
+      (tr.write ? lock.writeLock() : lock.readLock()).unlock();
+      unreference(tr.objects[o], lock);
     }
 
     // Allow another transaction to run
-    transactions.decrementAndGet();
-    synchronized(queue) {
-      queue.notifyAll();
+    transactions.release();
+  }
+
+  /**
+   * Returns the lock for the specified object and increases its reference counter.
+   * @param object object
+   * @return lock
+   */
+  private RefLock reference(final String object) {
+    while(true) {
+      RefLock lock = locks.get(object);
+      if(lock == null) {
+        lock = new RefLock();
+        final RefLock old = locks.putIfAbsent(object, lock);
+        if(old == null) return lock;
+        lock = old;
+      }
+      // increase counter, unless the lock is currently being discarded
+      for(int r = lock.refs.get(); r > 0; r = lock.refs.get()) {
+        if(lock.refs.compareAndSet(r, r + 1)) return lock;
+      }
+      Thread.yield();
     }
   }
 
+  /**
+   * Decreases the reference counter of the specified lock and discards it
+   * if it is not referenced anymore.
+   * @param object object
+   * @param lock lock
+   */
+  private void unreference(final String object, final RefLock lock) {
+    if(lock.refs.decrementAndGet() == 0) locks.remove(object, lock);
+  }
+
   /**
    * Present current locking status. Not to be seen as a programming API but only for
    * debugging purposes.
@@ -136,10 +131,11 @@ public final class DBLocking implements ILocking {
     final String ind = "| ";
     final StringBuilder sb = new StringBuilder(nl);
     sb.append("Locking" + nl);
-    sb.append(ind + "Transactions running: " + transactions.get() + nl);
-    sb.append(ind + "Transaction queue: " + queue + nl);
+    sb.append(ind + "Transactions running: " +
+        (parallel - transactions.availablePermits()) + nl);
+    sb.append(ind + "Transactions queued: " + transactions.getQueueLength() + nl);
     sb.append(ind + "Held locks by object:" + nl);
-    for(final Object object : locks.keySet())
+    for(final String object : locks.keySet())
       sb.append(ind + ind + object + " -> " + locks.get(object) + nl);
     sb.append(ind + "Held locks by transaction:" + nl);
     for(final Thread thread : locked.keySet())
@@ -147,4 +143,35 @@ public final class DBLocking implements ILocking {
     return sb.toString();
   }
 
+  /** Reference-counted lock. */
+  private static final class RefLock extends ReentrantReadWriteLock {
+    /** Number of references; {@code 0} if the lock has been discarded. */
+    final AtomicInteger refs = new AtomicInteger(1);
+  }
+
+  /** Locks of a single transaction. */
+  private static final class Transaction {
+    /** Sorted objects. */
+    final String[] objects;
+    /** Locks, in the order of the objects. */
+    final RefLock[] locks;
+    /** Write flag. */
+    final boolean write;
+
+    /**
+     * Constructor.
+     * @param o objects
+     * @param w write flag
+     */
+    Transaction(final String[] o, final boolean w) {
+      objects = o;
+      locks = new RefLock[o.length];
+      write = w;
+    }
+
+    @Override
+    public String toString() {
+      return (write ? "write " : "read ") + Arrays.toString(objects);
+    }
+  }
 }
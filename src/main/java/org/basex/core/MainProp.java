@@ -57,10 +57,20 @@ public final class MainProp extends AProp {
   public static final Object[] TIMEOUT = { "TIMEOUT", 30 };
   /** Keep alive time of clients; deactivated if set to 0. */
   public static final Object[] KEEPALIVE = { "KEEPALIVE", 600 };
+  /** Time (seconds) after which idle query cursors are closed;
+   *  deactivated if set to 0. */
+  public static final Object[] CURSORTIMEOUT = { "CURSORTIMEOUT", 30 };
+  /** Maximum size (kilobytes) of client uploads that are buffered in main memory;
+   *  larger uploads are written to temporary files. */
+  public static final Object[] UPLOADBUFFER = { "UPLOADBUFFER", 1024 };
   /** Debug mode. */
   public static final Object[] DEBUG = { "DEBUG", false };
   /** Defines the number of parallel readers. */
   public static final Object[] PARALLEL = { "PARALLEL", 8 };
+  /** Server: number of threads for processing client requests. */
+  public static final Object[] WORKERS = { "WORKERS", 64 };
+  /** Number of cached compiled queries; deactivated if set to 0. */
+  public static final Object[] QUERYCACHE = { "QUERYCACHE", 0 };
   /** Logging flag. */
   public static final Object[] LOG = { "LOG", true };
   /** Log message cut-off. */
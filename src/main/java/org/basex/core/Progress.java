@@ -70,6 +70,14 @@ public abstract class Progress {
     stopTimeout();
   }
 
+  /**
+   * Indicates if the process has been stopped.
+   * @return result of check
+   */
+  public final boolean stopped() {
+    return stopped;
+  }
+
   /**
    * Checks if the progress was interrupted; if yes, sends a runtime exception.
    */
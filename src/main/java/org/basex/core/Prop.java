@@ -80,6 +80,8 @@ public final class Prop extends AProp {
   public static final Object[] ADDRAW = { "ADDRAW", false };
   /** Flag for skipping corrupt files. */
   public static final Object[] SKIPCORRUPT = { "SKIPCORRUPT", false };
+  /** Number of threads for parsing the files of directories. */
+  public static final Object[] PARSETHREADS = { "PARSETHREADS", 1 };
   /** Strips namespaces. */
   public static final Object[] STRIPNS = { "STRIPNS", false };
   /** Define import parser. */
@@ -107,10 +109,16 @@ public final class Prop extends AProp {
   public static final Object[] MAXCATS = { "MAXCATS", 100 };
   /** Flag for automatic index update. */
   public static final Object[] UPDINDEX = { "UPDINDEX", false };
+  /** Flag for storing texts and attribute values in compressed blocks. */
+  public static final Object[] COMPRESSION = { "COMPRESSION", false };
+  /** Size of the cache for decompressed blocks of each text store (megabytes). */
+  public static final Object[] BLOCKCACHE = { "BLOCKCACHE", 8 };
   /** Flag for opening a database after creating it. */
   public static final Object[] CREATEONLY = { "CREATEONLY", false };
   /** Garbage collecting mode. */
   public static final Object[] SINGLEGC = { "SINGLEGC", false };
+  /** Number of threads for building and merging index structures. */
+  public static final Object[] INDEXTHREADS = { "INDEXTHREADS", 1 };
 
   /** Writes original files back after updates. */
   public static final Object[] WRITEBACK = { "WRITEBACK", false };
@@ -120,6 +128,16 @@ public final class Prop extends AProp {
   public static final Object[] FORCECREATE = { "FORCECREATE", false };
   /** Flushes the database after each update. */
   public static final Object[] AUTOFLUSH = { "AUTOFLUSH", true };
+  /** Number of buffered pages per database file. */
+  public static final Object[] BUFFERS = { "BUFFERS", 256 };
+  /** Flag for memory-mapped read access to the table and text files. */
+  public static final Object[] MMAP = { "MMAP", false };
+  /** Flag for creating incremental backups. */
+  public static final Object[] INCBACKUP = { "INCBACKUP", false };
+  /** Maximum number of incremental backups that are based on a full backup. */
+  public static final Object[] BACKUPCHAIN = { "BACKUPCHAIN", 8 };
+  /** Number of threads for compressing backups. */
+  public static final Object[] BACKUPTHREADS = { "BACKUPTHREADS", 1 };
 
   /** Maximum number of index occurrences to print. */
   public static final Object[] MAXSTAT = { "MAXSTAT", 30 };
@@ -149,12 +167,19 @@ public final class Prop extends AProp {
   public static final Object[] BINDINGS = { "BINDINGS", "" };
   /** Serialization parameters, separated by commas. */
   public static final Object[] SERIALIZER = { "SERIALIZER", "" };
+  /** Maximum size of cached serialized documents in megabytes (0: disabled). */
+  public static final Object[] SERIALCACHE = { "SERIALCACHE", 0 };
   /** Exporter serialization parameters. */
   public static final Object[] EXPORTER = { "EXPORTER", "" };
   /** Path to current query. */
   public static final Object[] QUERYPATH = { "QUERYPATH", "" };
   /** Caches the query results. */
   public static final Object[] CACHEQUERY = { "CACHEQUERY", false };
+  /** Number of threads for evaluating the iterations of FLWOR expressions. */
+  public static final Object[] FLWORTHREADS = { "FLWORTHREADS", 1 };
+  /** Maximum number of tuples that are sorted or grouped in memory (0: no limit). */
+  public static final Object[] MAXTUPLES = { "MAXTUPLES", 0 };
+
   /** Number of query executions. */
   public static final Object[] RUNS = { "RUNS", 1 };
 
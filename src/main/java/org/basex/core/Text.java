@@ -561,6 +561,8 @@ public interface Text {
   String DB_EXISTS_X = lang("db_exists_%");
   /** Database was dropped. */
   String BACKUP_DROPPED_X = lang("backup_dropped_%");
+  /** Backup is needed by other backups. */
+  String BACKUP_NEEDED_X = lang("backup_needed_%");
   /** Backup was not found. */
   String BACKUP_NOT_FOUND_X = lang("backup_not_found_%");
   /** File not stored. */
@@ -784,6 +786,12 @@ public interface Text {
   String GENERAL_INFO = lang("general_info");
   /** "Main Options". */
   String MAIN_OPTIONS = lang("main_options");
+  /** "Query Cache". */
+  String QUERY_CACHE = lang("query_cache");
+  /** "Hit(s)". */
+  String HITS = lang("hit_s");
+  /** "Hit Rate". */
+  String HIT_RATE = lang("hit_rate");
 
   /** "(chopped)". */
   String CHOPPED = " (" + lang("chopped") + ')';
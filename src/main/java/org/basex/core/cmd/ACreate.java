@@ -3,6 +3,8 @@ package org.basex.core.cmd;
 import static org.basex.data.DataText.*;
 
 import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
 
 import org.basex.core.*;
 import org.basex.data.*;
@@ -111,15 +113,69 @@ public abstract class ACreate extends Command {
 
     if(data.inMemory()) return;
 
-    final IndexBuilder ib;
+    final IndexBuilder ib = builder(index, data);
+    data.closeIndex(index);
+    data.setIndex(index, (cmd == null ? ib : cmd.progress(ib)).build());
+  }
+
+  /**
+   * Builds the specified indexes. If {@link Prop#INDEXTHREADS} is larger than
+   * {@code 1}, the indexes will be built in parallel.
+   * @param data data reference
+   * @param cmd calling command (can be {@code null})
+   * @param indexes indexes to be built
+   * @throws IOException I/O exception
+   */
+  protected static void create(final Data data, final ACreate cmd,
+      final IndexType... indexes) throws IOException {
+
+    if(data.inMemory()) return;
+
+    final int il = indexes.length;
+    final int threads = Math.min(il, data.meta.prop.num(Prop.INDEXTHREADS));
+    if(threads < 2) {
+      for(final IndexType index : indexes) create(index, data, cmd);
+      return;
+    }
+
+    final IndexBuilder[] ib = new IndexBuilder[il];
+    for(int i = 0; i < il; i++) {
+      ib[i] = builder(indexes[i], data);
+      data.closeIndex(indexes[i]);
+    }
+    final Builders b = new Builders(ib);
+    final Index[] index = (cmd == null ? b : cmd.progress(b)).build(threads);
+    for(int i = 0; i < il; i++) data.setIndex(indexes[i], index[i]);
+  }
+
+  /**
+   * Returns the indexes that are to be created for a database.
+   * @param meta meta data
+   * @return index types
+   */
+  protected static IndexType[] indexes(final MetaData meta) {
+    final ArrayList<IndexType> il = new ArrayList<IndexType>();
+    if(meta.createtext) il.add(IndexType.TEXT);
+    if(meta.createattr) il.add(IndexType.ATTRIBUTE);
+    if(meta.createftxt) il.add(IndexType.FULLTEXT);
+    return il.toArray(new IndexType[il.size()]);
+  }
+
+  /**
+   * Returns a builder for the specified index.
+   * @param index index to be built
+   * @param data data reference
+   * @return index builder
+   * @throws IOException I/O exception
+   */
+  private static IndexBuilder builder(final IndexType index, final Data data)
+      throws IOException {
     switch(index) {
-      case TEXT:      ib = new ValueBuilder(data, true); break;
-      case ATTRIBUTE: ib = new ValueBuilder(data, false); break;
-      case FULLTEXT:  ib = new FTBuilder(data); break;
+      case TEXT:      return new ValueBuilder(data, true);
+      case ATTRIBUTE: return new ValueBuilder(data, false);
+      case FULLTEXT:  return new FTBuilder(data);
       default:        throw Util.notexpected();
     }
-    data.closeIndex(index);
-    data.setIndex(index, (cmd == null ? ib : cmd.progress(ib)).build());
   }
 
   /**
@@ -149,4 +205,134 @@ public abstract class ACreate extends Command {
     data.meta.dirty = true;
     return pat == null || data.meta.drop(pat + '.');
   }
+
+  /**
+   * Builds several indexes in parallel.
+   */
+  private static final class Builders extends Progress {
+    /** Index builders. */
+    private final IndexBuilder[] builders;
+
+    /**
+     * Constructor.
+     * @param ib index builders
+     */
+    Builders(final IndexBuilder[] ib) {
+      builders = ib;
+    }
+
+    /**
+     * Builds the indexes.
+     * @param threads maximum number of threads
+     * @return indexes
+     * @throws IOException I/O exception
+     */
+    Index[] build(final int threads) throws IOException {
+      final ExecutorService pool = Executors.newFixedThreadPool(threads);
+      final ArrayList<Future<Index>> futures = new ArrayList<Future<Index>>();
+      for(final IndexBuilder ib : builders) {
+        futures.add(pool.submit(new Callable<Index>() {
+          @Override
+          public Index call() throws IOException {
+            return ib.build();
+          }
+        }));
+      }
+      pool.shutdown();
+
+      // wait for all builders; stop them if the process was interrupted or has failed
+      boolean stopped = false;
+      try {
+        while(!pool.awaitTermination(100, TimeUnit.MILLISECONDS)) {
+          if(stopped) continue;
+          try {
+            checkStop();
+            stopped = failed(futures);
+          } catch(final ProgressException ex) {
+            stopped = true;
+          }
+          if(stopped) for(final IndexBuilder ib : builders) ib.stop();
+        }
+      } catch(final InterruptedException ex) {
+        for(final IndexBuilder ib : builders) ib.stop();
+        close(futures);
+        throw new BaseXException(ex);
+      }
+
+      final int il = builders.length;
+      final Index[] index = new Index[il];
+      for(int i = 0; i < il; i++) {
+        try {
+          index[i] = futures.get(i).get();
+        } catch(final Exception ex) {
+          // close the indexes that have been built by the other builders
+          close(futures);
+          final Throwable th = ex instanceof ExecutionException ? ex.getCause() : ex;
+          if(th instanceof IOException) throw (IOException) th;
+          if(th instanceof RuntimeException) throw (RuntimeException) th;
+          if(th instanceof Error) throw (Error) th;
+          throw new BaseXException(ex);
+        }
+      }
+      return index;
+    }
+
+    /**
+     * Closes all indexes that have been successfully built.
+     * @param futures results of the builders
+     */
+    private static void close(final ArrayList<Future<Index>> futures) {
+      for(final Future<Index> f : futures) {
+        if(!f.isDone()) continue;
+        try {
+          f.get().close();
+        } catch(final Exception ex) {
+          // builder has failed: no index needs to be closed
+          Util.debug(ex);
+        }
+      }
+    }
+
+    /**
+     * Checks if one of the builders has failed.
+     * @param futures results of the builders
+     * @return result of check
+     */
+    private static boolean failed(final ArrayList<Future<Index>> futures) {
+      for(final Future<Index> f : futures) {
+        if(!f.isDone()) continue;
+        try {
+          f.get();
+        } catch(final Exception ex) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    protected void abort() {
+      for(final IndexBuilder ib : builders) ib.abort();
+    }
+
+    @Override
+    protected String tit() {
+      return builders[0].title();
+    }
+
+    @Override
+    protected String det() {
+      // show the builder with the smallest progress
+      IndexBuilder ib = builders[0];
+      for(final IndexBuilder b : builders) if(b.progress() < ib.progress()) ib = b;
+      return ib.detail();
+    }
+
+    @Override
+    protected double prog() {
+      double p = 0;
+      for(final IndexBuilder ib : builders) p += ib.progress();
+      return p / builders.length;
+    }
+  }
 }
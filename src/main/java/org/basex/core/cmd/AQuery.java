@@ -29,6 +29,12 @@ abstract class AQuery extends Command {
 
   /** Query processor. */
   private QueryProcessor qp;
+  /** Key of the query in the query cache ({@code null} if it cannot be cached). */
+  private String key;
+  /** Version of the query cache when the query processor was created. */
+  private long version;
+  /** Indicates if the query processor has been passed on to the query cache. */
+  private boolean cached;
   /** Query exception. */
   private QueryException qe;
   /** Initial parsing time. */
@@ -73,9 +79,16 @@ abstract class AQuery extends Command {
           // reuse existing processor instance
           if(r != 0) qp = null;
           qp = queryProcessor(query, context);
+          // databases may have been updated after the query has been checked out
+          if(qp.ctx.cached && version != context.queries.version()) {
+            qp.close();
+            qp = null;
+            qp = queryProcessor(query, context);
+          }
           qp.parse();
           pars += init + p.time();
           init = 0;
+
           if(r == 0) plan(false);
           qp.compile();
           comp += p.time();
@@ -105,7 +118,8 @@ abstract class AQuery extends Command {
           }
           updates = qp.updates();
           ser.close();
-          qp.close();
+          // cache or close the compiled query
+          cached = context.queries.put(key, qp, version);
           prnt += p.time();
         }
         // dump some query info
@@ -131,7 +145,7 @@ abstract class AQuery extends Command {
         err = XPSTACK.desc;
       } finally {
         // close processor after exceptions
-        if(qp != null) qp.close();
+        if(qp != null && !cached) qp.close();
       }
     }
 
@@ -155,7 +169,7 @@ abstract class AQuery extends Command {
     // keyword found; parse query to get sure
     try {
       final Performance p = new Performance();
-      qp = progress(new QueryProcessor(qu, ctx));
+      qp = queryProcessor(qu, ctx);
       qp.parse();
       init = p.time();
       return qp.updating;
@@ -187,7 +201,12 @@ abstract class AQuery extends Command {
    */
   final void queryNodes() {
     try {
-      result = queryProcessor(args[0], context).queryNodes();
+      // no cached queries are used, as the nodes may reference the opened databases
+      if(qp == null || qp.ctx.cached) {
+        if(qp != null) qp.close();
+        qp = progress(new QueryProcessor(args[0], context));
+      }
+      result = qp.queryNodes();
     } catch(final QueryException ex) {
       Util.debug(ex);
       qp = null;
@@ -202,7 +221,19 @@ abstract class AQuery extends Command {
    * @return query processor
    */
   private QueryProcessor queryProcessor(final String query, final Context ctx) {
-    if(qp == null) qp = progress(new QueryProcessor(query, ctx));
+    if(qp == null) {
+      // check out compiled query from the cache, or create a new processor
+      final QueryCache qc = ctx.queries;
+      key = qc.key(query, ctx);
+      version = qc.version();
+      qp = qc.get(key, ctx);
+      if(qp == null) {
+        qp = new QueryProcessor(query, ctx);
+        qp.ctx.cached = key != null;
+      }
+      cached = false;
+      progress(qp);
+    }
     return qp;
   }
 
@@ -61,10 +61,22 @@ public final class CreateBackup extends Command {
     final String backup = db + '-' + DateTime.format(new Date(), DateTime.DATETIME) +
         IO.ZIPSUFFIX;
     final IOFile zf = mprop.dbpath(backup);
-    final Zip zip = progress(new Zip(zf));
 
     try {
-      zip.zip(mprop.dbpath(db), Databases.FILES);
+      // choose latest backup as base of an incremental backup. A full backup is
+      // created if the chain is incomplete or has reached its maximum length
+      IOFile base = null;
+      if(prop.is(Prop.INCBACKUP)) {
+        final StringList list = Databases.backupPaths(db, context);
+        if(!list.isEmpty()) {
+          final IOFile latest = new IOFile(list.get(0));
+          final StringList bases = Backup.bases(latest);
+          if(!latest.eq(zf) && bases != null &&
+              bases.size() < prop.num(Prop.BACKUPCHAIN)) base = latest;
+        }
+      }
+      progress(new Backup(zf)).create(mprop.dbpath(db), base,
+          prop.num(Prop.BACKUPTHREADS));
       context.databases().add(db, true);
       return true;
     } catch(final IOException ex) {
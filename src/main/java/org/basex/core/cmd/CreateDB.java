@@ -9,9 +9,6 @@ import org.basex.core.*;
 import org.basex.core.parse.*;
 import org.basex.core.parse.Commands.*;
 import org.basex.data.*;
-import org.basex.index.*;
-import org.basex.index.ft.*;
-import org.basex.index.value.*;
 import org.basex.io.*;
 import org.basex.io.in.*;
 import org.basex.util.*;
@@ -100,9 +97,7 @@ public final class CreateDB extends ACreate {
         if(!open.run(context)) return error(open.info());
         final Data data = context.data();
         try {
-          if(data.meta.createtext) create(IndexType.TEXT,      data, this);
-          if(data.meta.createattr) create(IndexType.ATTRIBUTE, data, this);
-          if(data.meta.createftxt) create(IndexType.FULLTEXT,  data, this);
+          create(data, this, indexes(data.meta));
         } finally {
           data.finishUpdate();
         }
@@ -160,12 +155,7 @@ public final class CreateDB extends ACreate {
     // build database and index structures
     try {
       final Data data = builder.build();
-      if(data.meta.createtext) data.setIndex(IndexType.TEXT,
-        new ValueBuilder(data, true).build());
-      if(data.meta.createattr) data.setIndex(IndexType.ATTRIBUTE,
-        new ValueBuilder(data, false).build());
-      if(data.meta.createftxt) data.setIndex(IndexType.FULLTEXT,
-        new FTBuilder(data).build());
+      create(data, null, indexes(data.meta));
       data.close();
     } finally {
       builder.close();
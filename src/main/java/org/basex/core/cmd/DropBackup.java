@@ -2,11 +2,15 @@ package org.basex.core.cmd;
 
 import static org.basex.core.Text.*;
 
+import java.io.*;
+import java.util.*;
+
 import org.basex.core.*;
 import org.basex.core.parse.*;
 import org.basex.core.parse.Commands.*;
 import org.basex.data.*;
 import org.basex.io.*;
+import org.basex.util.*;
 import org.basex.util.list.*;
 
 /**
@@ -31,13 +35,37 @@ public final class DropBackup extends Command {
 
     // retrieve all databases
     final StringList dbs = context.databases().listDBs(name);
-    // loop through all databases and drop backups
-    for(final String db : dbs) drop(db.contains("-") ? db : db + '-', context);
-
+    // collect backups of all databases
+    final ArrayList<IOFile> files = new ArrayList<IOFile>();
+    final StringList keys = new StringList();
+    for(final String db : dbs) {
+      backups(db.contains("-") ? db : db + '-', files, keys);
+    }
     // if the given argument is not a database name, it could be the name
     // of a backup file
-    if(dbs.size() == 0) drop(name, context);
+    if(dbs.size() == 0) backups(name, files, keys);
+
+    // reject backups that are needed to restore the remaining backups
+    final StringList drop = new StringList();
+    for(final IOFile f : files) drop.add(f.name());
+    for(final IOFile f : context.mprop.dbpath().children()) {
+      final String n = f.name();
+      if(!n.endsWith(IO.ZIPSUFFIX) || drop.contains(n)) continue;
+      try {
+        final StringList bases = Backup.bases(f);
+        if(bases == null) continue;
+        for(final String b : bases) {
+          if(drop.contains(b)) return error(BACKUP_NEEDED_X, b);
+        }
+      } catch(final IOException ex) {
+        Util.debug(ex);
+      }
+    }
 
+    final int fs = files.size();
+    for(int f = 0; f < fs; f++) {
+      if(files.get(f).delete()) context.databases().delete(keys.get(f), true);
+    }
     return info(BACKUP_DROPPED_X, name + '*' + IO.ZIPSUFFIX);
   }
 
@@ -47,23 +75,22 @@ public final class DropBackup extends Command {
   }
 
   /**
-   * Drops one or more backups of the specified database.
-   * @param db database
-   * @param ctx database context
-   * @return number of dropped backups
+   * Collects the backups of the specified database.
+   * @param db database, or prefix of the backup names
+   * @param files list of backups
+   * @param keys names of the databases
    */
-  private static int drop(final String db, final Context ctx) {
-    final IOFile dir = ctx.mprop.dbpath();
-    int c = 0;
-    for(final IOFile f : dir.children()) {
+  private void backups(final String db, final ArrayList<IOFile> files,
+      final StringList keys) {
+    final int dl = db.length() - 1;
+    final String key = db.charAt(dl) == '-' ? db.substring(0, dl) : db;
+    for(final IOFile f : context.mprop.dbpath().children()) {
       final String n = f.name();
-      if(n.startsWith(db) && n.endsWith(IO.ZIPSUFFIX) && f.delete()) {
-        c++;
-        final int dl = db.length() - 1;
-        ctx.databases().delete(db.charAt(dl) == '-' ? db.substring(0, dl) : db, true);
+      if(n.startsWith(db) && n.endsWith(IO.ZIPSUFFIX)) {
+        files.add(f);
+        keys.add(key);
       }
     }
-    return c;
   }
 
   @Override
@@ -5,6 +5,7 @@ import static org.basex.core.Text.*;
 import java.io.*;
 
 import org.basex.core.*;
+import org.basex.query.*;
 import org.basex.util.*;
 import org.basex.util.list.*;
 
@@ -51,6 +52,13 @@ public final class Info extends AInfo {
       tb.add(NL + MAIN_OPTIONS + NL);
       for(final String s : prop) info(tb, s, prop.get(s).toString());
     }
+    final QueryCache qc = context.queries;
+    if(qc.enabled()) {
+      tb.add(NL + QUERY_CACHE + NL);
+      info(tb, SIZE, Integer.toString(qc.size()));
+      info(tb, HITS, Long.toString(qc.hits()));
+      info(tb, HIT_RATE, qc.rate() + "%");
+    }
     final AProp prop = context.prop;
     tb.add(NL + OPTIONS + NL);
     for(final String s : prop) info(tb, s, prop.get(s).toString());
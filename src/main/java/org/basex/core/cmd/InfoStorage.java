@@ -62,6 +62,13 @@ public final class InfoStorage extends AQuery {
         }
       }
       out.print(table(data, ps, pe));
+      // print buffer and space statistics if no arguments were specified
+      if(start == null && data instanceof DiskData) {
+        out.print(NL);
+        out.print(((DiskData) data).bufferInfo().finish());
+        out.print(NL);
+        out.print(((DiskData) data).spaceInfo().finish());
+      }
     }
     return true;
   }
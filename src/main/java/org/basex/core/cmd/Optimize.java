@@ -3,6 +3,7 @@ package org.basex.core.cmd;
 import static org.basex.core.Text.*;
 
 import java.io.*;
+import java.util.*;
 
 import org.basex.core.*;
 import org.basex.data.*;
@@ -13,7 +14,8 @@ import org.basex.util.list.*;
 /**
  * Evaluates the 'optimize' command and optimizes the data structures of
  * the currently opened database. Indexes and statistics are refreshed,
- * which is especially helpful after updates.
+ * and the free space in the text stores is reclaimed, which is especially
+ * helpful after updates.
  *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
@@ -70,6 +72,9 @@ public final class Optimize extends ACreate {
    * @throws IOException I/O Exception during index rebuild
    */
   public static void optimize(final Data data, final Optimize c) throws IOException {
+    // reclaim free space in the text stores
+    if(data instanceof DiskData) ((DiskData) data).compact();
+
     // initialize structural indexes
     final MetaData md = data.meta;
     if(!md.uptodate) {
@@ -119,9 +124,11 @@ public final class Optimize extends ACreate {
     }
 
     // rebuild value indexes
-    optimize(IndexType.ATTRIBUTE, data, md.createattr, md.attrindex, c);
-    optimize(IndexType.TEXT,      data, md.createtext, md.textindex, c);
-    optimize(IndexType.FULLTEXT,  data, md.createftxt, md.ftxtindex, c);
+    final ArrayList<IndexType> il = new ArrayList<IndexType>();
+    optimize(IndexType.ATTRIBUTE, data, md.createattr, md.attrindex, il);
+    optimize(IndexType.TEXT,      data, md.createtext, md.textindex, il);
+    optimize(IndexType.FULLTEXT,  data, md.createftxt, md.ftxtindex, il);
+    create(data, c, il.toArray(new IndexType[il.size()]));
   }
 
   /**
@@ -130,18 +137,16 @@ public final class Optimize extends ACreate {
    * @param d data reference
    * @param create create flag
    * @param old old flag
-   * @param c calling command
-   * @throws IOException I/O exception
-   *
+   * @param il indexes to be created
    */
   private static void optimize(final IndexType type, final Data d,
-      final boolean create, final boolean old, final Optimize c) throws IOException {
+      final boolean create, final boolean old, final ArrayList<IndexType> il) {
 
     // check if flags are nothing has changed
     if(create == old) return;
 
     // create or drop index
-    if(create) create(type, d, c);
+    if(create) il.add(type);
     else drop(type, d);
   }
 }
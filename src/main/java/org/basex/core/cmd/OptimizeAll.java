@@ -9,7 +9,6 @@ import org.basex.core.*;
 import org.basex.core.parse.*;
 import org.basex.core.parse.Commands.*;
 import org.basex.data.*;
-import org.basex.index.*;
 import org.basex.io.*;
 import org.basex.io.serial.*;
 import org.basex.query.value.node.*;
@@ -111,6 +110,7 @@ public final class OptimizeAll extends ACreate {
     // adopt original meta data
     ctx.prop.set(Prop.CHOP, m.chop);
     ctx.prop.set(Prop.UPDINDEX, m.updindex);
+    ctx.prop.set(Prop.COMPRESSION, m.compress);
     ctx.prop.set(Prop.STEMMING, m.stemming);
     ctx.prop.set(Prop.CASESENS, m.casesens);
     ctx.prop.set(Prop.DIACRITICS, m.diacritics);
@@ -122,9 +122,7 @@ public final class OptimizeAll extends ACreate {
     final DiskBuilder builder = new DiskBuilder(tname, new DBParser(old, cmd), ctx);
     try {
       final DiskData d = builder.build();
-      if(m.createtext) create(IndexType.TEXT, d, cmd);
-      if(m.createattr) create(IndexType.ATTRIBUTE, d, cmd);
-      if(m.createftxt) create(IndexType.FULLTEXT, d, cmd);
+      create(d, cmd, indexes(m));
       // adopt original meta data
       d.meta.createtext = m.createtext;
       d.meta.createattr =  m.createattr;
@@ -136,8 +134,6 @@ public final class OptimizeAll extends ACreate {
       // move binary files
       final IOFile bin = data.meta.binaries();
       if(bin.exists()) bin.rename(d.meta.binaries());
-      final IOFile upd = old.updateFile();
-      if(upd.exists()) upd.copyTo(d.updateFile());
       d.close();
     } finally {
       try {
@@ -69,7 +69,7 @@ public final class Restore extends Command {
    */
   private boolean restore(final IOFile file, final String db) {
     try {
-      progress(new Zip(file)).unzip(mprop.dbpath());
+      progress(new Backup(file)).restore(mprop.dbpath());
       context.databases().add(db);
       return true;
     } catch(final IOException ex) {
@@ -53,6 +53,11 @@ import org.basex.util.list.*;
  * - Byte  1- 2:  NAME: Namespace Flag (bit: 15), Name (bits: 14-0)
  * - Byte  3- 7:  TEXT: Attribute value reference
  * - Byte    11:  NURI: Namespace (bits: 7-3)
+ * TEXT REFERENCES (bits 39-38):
+ * - 00: offset in the text store
+ * - 01: offset of a compressed text in the text store
+ * - 10: inlined integer value (bits: 31-0)
+ * - 11: reference to a text in a compressed block (bits: 37-0)
  * </pre>
  *
  * As all methods of this class are optimized for performance, no checks are
@@ -60,7 +65,9 @@ import org.basex.util.list.*;
  * requested, the specified pre value must point to a text node).
  *
  * NOTE: the class is not thread-safe. It is imperative that all read/write accesses
- * are synchronized over a single context's read/write lock.
+ * are synchronized over a single context's read/write lock. Concurrent read
+ * accesses to the table and text stores of a {@link DiskData} instance will not
+ * be serialized.
  *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
@@ -81,6 +88,8 @@ public abstract class Data {
 
   /** Resource index. */
   public final Resources resources = new Resources(this);
+  /** Cache for serialized documents. */
+  public final SerialCache serial = new SerialCache(this);
   /** Meta data. */
   public MetaData meta;
   /** Tag index. */
@@ -260,6 +269,16 @@ public abstract class Data {
     return p.sort().toArray();
   }
 
+  /**
+   * Checks if the unique node ids are identical to the pre values.
+   * This is the case if no nodes have been inserted or deleted since the
+   * id/pre mapping was created or the database was optimized.
+   * @return result of check
+   */
+  public final boolean preEqualsId() {
+    return meta.updindex && idmap.size() == 0;
+  }
+
   /**
    * Returns a unique node id.
    * @param pre pre value
@@ -40,6 +40,8 @@ public interface DataText {
   String DBPTHIDX = "PTHINDEX";
   /** Automatic index update. */
   String DBUPDIDX = "UPDINDEX";
+  /** Block compression. */
+  String DBCOMPR = "COMPRESSION";
   /** Text indexing. */
   String DBTXTIDX = "TXTINDEX";
   /** Attribute indexing. */
@@ -66,6 +68,8 @@ public interface DataText {
   String DBPERM = "PERM";
   /** Documents. */
   String DBDOCS = "DOCS";
+  /** Document path order. */
+  String DBDOCORD = "DOCORDER";
   /** Text indexing. */
   String DBCRTTXT = "CRTTXT";
   /** Attribute indexing. */
@@ -103,8 +107,14 @@ public interface DataText {
   String DATAFTX = "ftx";
   /** Database - Stopword list. */
   String DATASWL = "swl";
-  /** Database - Updating flag. */
+  /** Database - Journal of the original pages of updated files. */
   String DATAUPD = "upd";
+  /** Database - Free space of the text and attribute value stores. */
+  String DATAFSM = "fsm";
+  /** Database - Compressed text blocks. */
+  String DATATXB = "txb";
+  /** Database - Compressed attribute value blocks. */
+  String DATAATB = "atb";
 
   // XML SERIALIZATION ========================================================
 
@@ -290,6 +300,23 @@ public interface DataText {
   /** Sixth table Header. */
   byte[] TABLECON = token("CONTENT");
 
+  /** Buffer statistics: file header. */
+  byte[] TABLEFILE = token("FILE");
+  /** Buffer statistics: buffers header. */
+  byte[] TABLEBUFS = token("BUFFERS");
+  /** Buffer statistics: hits header. */
+  byte[] TABLEHITS = token("HITS");
+  /** Buffer statistics: misses header. */
+  byte[] TABLEMISSES = token("MISSES");
+  /** Buffer statistics: evictions header. */
+  byte[] TABLEEVICT = token("EVICTIONS");
+  /** Storage statistics: length header. */
+  byte[] TABLELENGTH = token("LENGTH");
+  /** Storage statistics: free space header. */
+  byte[] TABLEFREE = token("FREE");
+  /** Storage statistics: reclaimed space header. */
+  byte[] TABLERECLAIMED = token("RECLAIMED");
+
   /** Namespace header. */
   byte[] TABLENS = token("NS");
   /** Prefix header. */
@@ -4,6 +4,7 @@ import static org.basex.data.DataText.*;
 import static org.basex.util.Token.*;
 
 import java.io.*;
+import java.util.*;
 
 import org.basex.build.*;
 import org.basex.core.*;
@@ -43,10 +44,18 @@ public final class DiskData extends Data {
   private DataAccess texts;
   /** Values access file. */
   private DataAccess values;
+  /** Free space of the texts and values access files. */
+  private FreeSpace[] free;
+  /** Compressed text blocks ({@code null} if block compression is disabled). */
+  private BlockAccess tblocks;
+  /** Compressed value blocks ({@code null} if block compression is disabled). */
+  private BlockAccess vblocks;
   /** Texts buffered for subsequent index updates. */
   private TokenObjMap<IntList> txts;
   /** Attribute values buffered for subsequent index updates. */
   private TokenObjMap<IntList> atvs;
+  /** Journal of the database files. */
+  private Journal journal;
   /** Closed flag. */
   private boolean closed;
 
@@ -59,8 +68,14 @@ public final class DiskData extends Data {
   public DiskData(final String db, final Context ctx) throws IOException {
     meta = new MetaData(db, ctx);
 
-    // don't open databases marked as updating
-    if(updateFile().exists()) throw new BaseXException(Text.DB_UPDATED_X, meta.name);
+    // roll back databases that have not been properly closed,
+    // and reject databases that are being updated by another process
+    final IOFile uf = updateFile();
+    StringList notes = new StringList();
+    if(uf.exists() && (TableDiskAccess.locked(db, ctx) ||
+        (notes = Journal.rollback(uf)) == null)) {
+      throw new BaseXException(Text.DB_UPDATED_X, meta.name);
+    }
 
     final DataInput in = new DataInput(meta.dbfile(DATAINF));
     try {
@@ -74,11 +89,23 @@ public final class DiskData extends Data {
         else if(k.equals(DBPATH)) paths = new PathSummary(this, in);
         else if(k.equals(DBNS))   nspaces = new Namespaces(in);
         else if(k.equals(DBDOCS)) resources.read(in);
+        else if(k.equals(DBDOCORD)) resources.readOrder(in);
       }
     } finally {
       in.close();
     }
 
+    // drop indexes that have been rebuilt or dropped when the database was closed
+    for(final String n : notes) {
+      switch(IndexType.valueOf(n)) {
+        case TEXT:      meta.textindex = false; break;
+        case ATTRIBUTE: meta.attrindex = false; break;
+        case FULLTEXT:  meta.ftxtindex = false; break;
+        default:        break;
+      }
+      meta.dirty = true;
+    }
+
     // open data and indexes
     if(meta.updindex) {
       idmap = new IdPreMap(meta.dbfile(DATAIDP));
@@ -90,6 +117,8 @@ public final class DiskData extends Data {
     }
     if(meta.ftxtindex) ftxindex = new FTIndex(this);
     init();
+    journal(txtindex);
+    journal(atvindex);
   }
 
   /**
@@ -119,9 +148,33 @@ public final class DiskData extends Data {
    * @throws IOException I/O exception
    */
   public void init() throws IOException {
-    table = new TableDiskAccess(meta, false);
-    texts = new DataAccess(meta.dbfile(DATATXT));
-    values = new DataAccess(meta.dbfile(DATAATV));
+    journal = new Journal(updateFile());
+    final TableDiskAccess tda = new TableDiskAccess(meta, false);
+    tda.journal(journal);
+    table = tda;
+    final int bs = meta.prop.num(Prop.BUFFERS);
+    final boolean mm = meta.prop.is(Prop.MMAP);
+    texts = new DataAccess(meta.dbfile(DATATXT), bs, mm);
+    texts.journal(journal);
+    values = new DataAccess(meta.dbfile(DATAATV), bs, mm);
+    values.journal(journal);
+    if(meta.compress) {
+      final long cs = (long) meta.prop.num(Prop.BLOCKCACHE) << 20;
+      tblocks = new BlockAccess(meta.dbfile(DATATXB), bs, mm, cs);
+      vblocks = new BlockAccess(meta.dbfile(DATAATB), bs, mm, cs);
+    }
+
+    final IOFile fsm = meta.dbfile(DATAFSM);
+    if(fsm.exists()) {
+      final DataInput in = new DataInput(fsm);
+      try {
+        free = new FreeSpace[] { new FreeSpace(in), new FreeSpace(in) };
+      } finally {
+        in.close();
+      }
+    } else {
+      free = new FreeSpace[] { new FreeSpace(), new FreeSpace() };
+    }
   }
 
   /**
@@ -130,6 +183,9 @@ public final class DiskData extends Data {
    */
   private void write() throws IOException {
     if(meta.dirty) {
+      journal.save(meta.dbfile(DATAINF));
+      journal.save(meta.dbfile(DATAIDP));
+      journal.save(meta.dbfile(DATAFSM));
       final DataOutput out = new DataOutput(meta.dbfile(DATAINF));
       meta.write(out);
       out.writeToken(token(DBTAGS));
@@ -142,13 +198,19 @@ public final class DiskData extends Data {
       nspaces.write(out);
       out.writeToken(token(DBDOCS));
       resources.write(out);
+      out.writeToken(token(DBDOCORD));
+      resources.writeOrder(out);
       out.write(0);
       out.close();
       if(idmap != null) idmap.write(meta.dbfile(DATAIDP));
+      final DataOutput fsm = new DataOutput(meta.dbfile(DATAFSM));
+      try {
+        for(final FreeSpace fs : free) fs.write(fsm);
+      } finally {
+        fsm.close();
+      }
       meta.dirty = false;
     }
-    // in all cases, remove updating file
-    updateFile().delete();
   }
 
   @Override
@@ -160,9 +222,12 @@ public final class DiskData extends Data {
       table.close();
       texts.close();
       values.close();
+      if(tblocks != null) tblocks.close();
+      if(vblocks != null) vblocks.close();
       closeIndex(IndexType.TEXT);
       closeIndex(IndexType.ATTRIBUTE);
       closeIndex(IndexType.FULLTEXT);
+      journal.finish();
     } catch(final IOException ex) {
       Util.stack(ex);
     }
@@ -173,6 +238,14 @@ public final class DiskData extends Data {
     // close existing index
     final Index index = index(type);
     if(index == null) return;
+    // indexes will be rebuilt or dropped: invalidate them if the update is rolled back
+    if(!closed) {
+      try {
+        journal.note(type.name());
+      } catch(final IOException ex) {
+        Util.stack(ex);
+      }
+    }
     index.close();
 
     // invalidate index reference
@@ -187,6 +260,7 @@ public final class DiskData extends Data {
 
   @Override
   public void setIndex(final IndexType type, final Index index) {
+    journal(index);
     meta.dirty = true;
     switch(type) {
       case TEXT:      txtindex = index; break;
@@ -198,8 +272,11 @@ public final class DiskData extends Data {
 
   @Override
   public boolean startUpdate() {
-    final IOFile uf = updateFile();
-    return (uf.exists() || uf.touch()) && table.lock(true);
+    // the journal may only be reset if no other process updates the database
+    if(!table.lock(true)) return false;
+    if(journal.start()) return true;
+    table.lock(false);
+    return false;
   }
 
   @Override
@@ -214,6 +291,7 @@ public final class DiskData extends Data {
       values.flush();
       if(txtindex != null) ((DiskValues) txtindex).flush();
       if(atvindex != null) ((DiskValues) atvindex).flush();
+      journal.finish();
     } catch(final IOException ex) {
       Util.stack(ex);
     } finally {
@@ -221,6 +299,183 @@ public final class DiskData extends Data {
     }
   }
 
+  /**
+   * Assigns the journal to the specified value index.
+   * @param index index (can be {@code null})
+   */
+  private void journal(final Index index) {
+    if(index instanceof DiskValues) ((DiskValues) index).journal(journal);
+  }
+
+  /**
+   * Returns the buffer statistics of the table and the text stores.
+   * @return table
+   */
+  public synchronized Table bufferInfo() {
+    final Table t = new Table();
+    t.header.add(TABLEFILE);
+    t.header.add(TABLEBUFS);
+    t.header.add(TABLEHITS);
+    t.header.add(TABLEMISSES);
+    t.header.add(TABLEEVICT);
+    t.align.add(false);
+    for(int i = 0; i < 4; ++i) t.align.add(true);
+    TokenList tl = new TokenList();
+    tl.add(DATATBL);
+    table.info(tl);
+    t.contents.add(tl);
+    tl = new TokenList();
+    tl.add(DATATXT);
+    texts.info(tl);
+    t.contents.add(tl);
+    tl = new TokenList();
+    tl.add(DATAATV);
+    values.info(tl);
+    t.contents.add(tl);
+    if(tblocks != null) {
+      tl = new TokenList();
+      tl.add(DATATXB);
+      tblocks.info(tl);
+      t.contents.add(tl);
+      tl = new TokenList();
+      tl.add(DATAATB);
+      vblocks.info(tl);
+      t.contents.add(tl);
+    }
+    return t;
+  }
+
+  /**
+   * Returns the free and reclaimed space of the text stores.
+   * @return table
+   */
+  public synchronized Table spaceInfo() {
+    final Table t = new Table();
+    t.header.add(TABLEFILE);
+    t.header.add(TABLELENGTH);
+    t.header.add(TABLEFREE);
+    t.header.add(TABLERECLAIMED);
+    t.align.add(false);
+    for(int i = 0; i < 3; ++i) t.align.add(true);
+    for(final boolean text : new boolean[] { true, false }) {
+      final FreeSpace fs = free(text);
+      final TokenList tl = new TokenList();
+      tl.add(text ? DATATXT : DATAATV);
+      tl.add((text ? texts : values).length());
+      tl.add(fs.free());
+      tl.add(fs.reclaimed());
+      t.contents.add(tl);
+    }
+    return t;
+  }
+
+  /**
+   * Compacts the text stores by moving all entries to the beginning of the
+   * files and truncating the remaining space. As freed space is merged with
+   * adjacent free slots and reused by later updates, a store is only compacted
+   * if at least half of it is free.
+   * @return number of reclaimed bytes
+   */
+  public synchronized long compact() {
+    return compact(true) + compact(false);
+  }
+
+  /**
+   * Compacts the specified text store.
+   * @param text text or attribute store
+   * @return number of reclaimed bytes
+   */
+  private long compact(final boolean text) {
+    final FreeSpace fs = free(text);
+    final DataAccess store = text ? texts : values;
+    if(fs.free() == 0 || fs.free() << 1 < store.length()) return 0;
+
+    // collect all entries of the store
+    final IntList pres = new IntList();
+    double[] offs = new double[ElementList.CAP];
+    for(int pre = 0; pre < meta.size; ++pre) {
+      final int k = kind(pre);
+      if(text ? k == ELEM || k == ATTR : k != ATTR) continue;
+      final long o = textOff(pre);
+      if(num(o) || block(o)) continue;
+      final int s = pres.size();
+      if(s == offs.length) offs = Arrays.copyOf(offs, Array.newSize(s));
+      // 5-byte offsets are exactly represented by doubles
+      offs[s] = o & IO.OFFCOMP - 1;
+      pres.add(pre);
+    }
+    // sort entries by their offsets and move them to the first free position
+    pres.sort(offs, true);
+    long pos = 0;
+    for(int i = 0, s = pres.size(); i < s; ++i) {
+      final long o = (long) offs[i];
+      final int l = store.readNum(o);
+      if(o != pos) {
+        final int pre = pres.get(i);
+        store.writeToken(pos, store.readToken(o));
+        textOff(pre, pos | textOff(pre) & IO.OFFCOMP);
+      }
+      pos += l + Num.length(l);
+    }
+    final long r = store.length() - pos;
+    store.length(pos);
+    fs.clear();
+    fs.reclaimed(r);
+    meta.dirty = true;
+    return r;
+  }
+
+  /**
+   * Returns the free space of the specified text store.
+   * @param text text or attribute store
+   * @return free space
+   */
+  private FreeSpace free(final boolean text) {
+    return free[text ? 0 : 1];
+  }
+
+  /**
+   * Releases the space of a text store entry. If the entry is placed last,
+   * the store is truncated, including the free space that precedes the entry.
+   * @param store text store
+   * @param fs free space
+   * @param pos offset of the entry
+   * @param size size of the entry
+   */
+  private static void free(final DataAccess store, final FreeSpace fs, final long pos,
+      final int size) {
+    if(store.free(pos, size)) {
+      fs.reclaimed(size);
+      final long len = store.length(), trim = fs.trim(len);
+      if(trim != len) store.length(trim);
+    } else {
+      fs.add(pos, size);
+    }
+  }
+
+  /**
+   * Returns the offset of a free slot for storing an entry of the specified size.
+   * @param store text store
+   * @param fs free space
+   * @param size size of the entry
+   * @return offset
+   */
+  private static long slot(final DataAccess store, final FreeSpace fs, final int size) {
+    final long off = fs.take(size);
+    return off == -1 ? store.length() : off;
+  }
+
+  /**
+   * Returns the size of a text store entry.
+   * @param store text store
+   * @param pos offset of the entry
+   * @return size
+   */
+  private static int size(final DataAccess store, final long pos) {
+    final int l = store.readNum(pos);
+    return l + Num.length(l);
+  }
+
   /**
    * Returns a file that indicates ongoing updates.
    * @return updating file
@@ -251,10 +506,12 @@ public final class DiskData extends Data {
   public int textLen(final int pre, final boolean text) {
     final long o = textOff(pre);
     if(num(o)) return numDigits((int) o);
+    if(block(o)) return txt(o, text).length;
     final DataAccess da = text ? texts : values;
-    final int l = da.readNum(o & IO.OFFCOMP - 1);
+    final long p = o & IO.OFFCOMP - 1;
+    final int l = da.readNum(p);
     // compressed: next number contains number of compressed bytes
-    return cpr(o) ? da.readNum() : l;
+    return cpr(o) ? da.readNum(p + Num.length(l)) : l;
   }
 
   /**
@@ -264,6 +521,7 @@ public final class DiskData extends Data {
    * @return text
    */
   private byte[] txt(final long o, final boolean text) {
+    if(block(o)) return (text ? tblocks : vblocks).read(o & IO.OFFCOMP - 1);
     final byte[] txt = (text ? texts : values).readToken(o & IO.OFFCOMP - 1);
     return cpr(o) ? COMP.get().unpack(txt) : txt;
   }
@@ -274,7 +532,7 @@ public final class DiskData extends Data {
    * @return result of check
    */
   private static boolean num(final long o) {
-    return (o & IO.OFFNUM) != 0;
+    return (o & IO.OFFBLOCK) == IO.OFFNUM;
   }
 
   /**
@@ -283,7 +541,16 @@ public final class DiskData extends Data {
    * @return result of check
    */
   private static boolean cpr(final long o) {
-    return (o & IO.OFFCOMP) != 0;
+    return (o & IO.OFFBLOCK) == IO.OFFCOMP;
+  }
+
+  /**
+   * Returns true if the specified value references a token in a compressed block.
+   * @param o offset
+   * @return result of check
+   */
+  private static boolean block(final long o) {
+    return (o & IO.OFFBLOCK) == IO.OFFBLOCK;
   }
 
   // UPDATE OPERATIONS ========================================================
@@ -292,8 +559,12 @@ public final class DiskData extends Data {
   protected void delete(final int pre, final boolean text) {
     // old entry (offset or value)
     final long old = textOff(pre);
-    // fill unused space with zero-bytes
-    if(!num(old)) (text ? texts : values).free(old & IO.OFFCOMP - 1, 0);
+    // entries in compressed blocks are not released
+    if(num(old) || block(old)) return;
+    // release space of the entry
+    final DataAccess store = text ? texts : values;
+    final long pos = old & IO.OFFCOMP - 1;
+    free(store, free(text), pos, size(store, pos));
   }
 
   @Override
@@ -309,10 +580,9 @@ public final class DiskData extends Data {
       if(index != null && kind != DOC) index.replace(oldval, value, id);
     }
 
-    // reference to text store
+    // reference to text store and its free space
     final DataAccess store = text ? texts : values;
-    // file length
-    final long len = store.length();
+    final FreeSpace fs = free(text);
 
     // new entry (offset or value)
     final long v = toSimpleInt(value);
@@ -323,16 +593,22 @@ public final class DiskData extends Data {
 
     // old entry (offset or value)
     final long old = textOff(pre);
+    // text size (0 if value will be inlined)
+    final int l = vn ? 0 : vl.length + Num.length(vl.length);
     // find text store offset
-    final long off;
-    if(num(old)) {
-      // numeric entry: append new entry at the end
-      off = len;
-    } else {
-      // text size (0 if value will be inlined)
-      final int l = vn ? 0 : vl.length + Num.length(vl.length);
-      off = store.free(old & IO.OFFCOMP - 1, l);
+    long off = -1;
+    if(!num(old) && !block(old)) {
+      final long pos = old & IO.OFFCOMP - 1;
+      final int s = size(store, pos);
+      if(l != 0 && l <= s) {
+        // new entry fits into the old slot: release remaining space
+        off = pos;
+        free(store, fs, pos + l, s - l);
+      } else {
+        free(store, fs, pos, s);
+      }
     }
+    if(off == -1 && !vn) off = slot(store, fs, l);
 
     // store new entry
     if(vn) {
@@ -389,8 +665,8 @@ public final class DiskData extends Data {
     if(v != Integer.MIN_VALUE) return v | IO.OFFNUM;
 
     // store text
-    final long off = store.length();
     final byte[] val = COMP.get().pack(value);
+    final long off = slot(store, free(kind != ATTR), val.length + Num.length(val.length));
     store.writeToken(off, val);
     return val == value ? off : off | IO.OFFCOMP;
   }
@@ -0,0 +1,183 @@
+package org.basex.data;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+
+/**
+ * This class organizes the free slots of a text or attribute value store.
+ * Adjacent slots are merged when they are added, so that freed space is not
+ * fragmented. In addition, slots are assigned to size classes (powers of two).
+ * A slot of the requested size is searched in its own class first; if none is
+ * found, a slot from a larger class is split.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+final class FreeSpace {
+  /** Number of size classes. */
+  private static final int CLASSES = 32;
+
+  /** Free slots, sorted by their offsets (offset, size). */
+  private final TreeMap<Long, Integer> slots = new TreeMap<Long, Integer>();
+  /** Offsets of the free slots, grouped by size classes. */
+  private final ArrayList<TreeSet<Long>> classes = new ArrayList<TreeSet<Long>>(CLASSES);
+  /** Number of free bytes. */
+  private long free;
+  /** Number of bytes that have been reclaimed by reusing or truncating free space. */
+  private long reclaimed;
+
+  /**
+   * Constructor, creating an empty instance.
+   */
+  FreeSpace() {
+    for(int c = 0; c < CLASSES; c++) classes.add(new TreeSet<Long>());
+  }
+
+  /**
+   * Constructor, reading the free slots from the specified input.
+   * @param in input stream
+   * @throws IOException I/O exception
+   */
+  FreeSpace(final DataInput in) throws IOException {
+    this();
+    reclaimed = in.readLongs(in.readNum())[0];
+    final long[] offs = in.readLongs(in.readNum());
+    final int[] szs = in.readNums();
+    for(int i = 0; i < offs.length; i++) add(offs[i], szs[i]);
+  }
+
+  /**
+   * Writes the free slots to the specified output.
+   * @param out output stream
+   * @throws IOException I/O exception
+   */
+  void write(final DataOutput out) throws IOException {
+    final int s = slots.size();
+    final long[] offs = new long[s];
+    final int[] szs = new int[s];
+    int i = 0;
+    for(final Map.Entry<Long, Integer> slot : slots.entrySet()) {
+      offs[i] = slot.getKey();
+      szs[i++] = slot.getValue();
+    }
+    out.writeLongs(new long[] { reclaimed });
+    out.writeLongs(offs);
+    out.writeNums(szs);
+  }
+
+  /**
+   * Adds a free slot. The slot is merged with adjacent free slots.
+   * @param off offset
+   * @param size size of the slot
+   */
+  void add(final long off, final int size) {
+    if(size <= 0) return;
+    long o = off;
+    long s = size;
+    // merge with preceding slot
+    final Map.Entry<Long, Integer> prev = slots.floorEntry(o);
+    if(prev != null && prev.getKey() + prev.getValue() == o &&
+        s + prev.getValue() <= Integer.MAX_VALUE) {
+      o = prev.getKey();
+      s += remove(o);
+    }
+    // merge with following slot
+    final Integer next = slots.get(off + size);
+    if(next != null && s + next <= Integer.MAX_VALUE) s += remove(off + size);
+    insert(o, (int) s);
+    free += size;
+  }
+
+  /**
+   * Returns the offset of a free slot with the specified size. The remaining
+   * space of a larger slot is added to the free lists again.
+   * @param size requested size
+   * @return offset, or {@code -1} if no slot was found
+   */
+  long take(final int size) {
+    for(int c = 31 - Integer.numberOfLeadingZeros(size); c < CLASSES; c++) {
+      // the slots in larger classes are always big enough
+      for(final long off : classes.get(c)) {
+        final int s = slots.get(off);
+        if(s < size) continue;
+        remove(off);
+        if(s > size) insert(off + size, s - size);
+        free -= size;
+        reclaimed += size;
+        return off;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Removes a free slot that ends at the specified file length.
+   * @param length file length
+   * @return new file length
+   */
+  long trim(final long length) {
+    final Map.Entry<Long, Integer> last = slots.lastEntry();
+    if(last == null || last.getKey() + last.getValue() != length) return length;
+    final int s = remove(last.getKey());
+    free -= s;
+    reclaimed += s;
+    return last.getKey();
+  }
+
+  /**
+   * Removes all free slots.
+   */
+  void clear() {
+    slots.clear();
+    for(final TreeSet<Long> cl : classes) cl.clear();
+    free = 0;
+  }
+
+  /**
+   * Inserts a slot.
+   * @param off offset
+   * @param size size of the slot
+   */
+  private void insert(final long off, final int size) {
+    slots.put(off, size);
+    classes.get(31 - Integer.numberOfLeadingZeros(size)).add(off);
+  }
+
+  /**
+   * Removes a slot.
+   * @param off offset
+   * @return size of the slot
+   */
+  private int remove(final long off) {
+    final int size = slots.remove(off);
+    classes.get(31 - Integer.numberOfLeadingZeros(size)).remove(off);
+    return size;
+  }
+
+  /**
+   * Returns the number of free bytes.
+   * @return number of bytes
+   */
+  long free() {
+    return free;
+  }
+
+  /**
+   * Returns the number of reclaimed bytes.
+   * @return number of bytes
+   */
+  long reclaimed() {
+    return reclaimed;
+  }
+
+  /**
+   * Adds to the number of reclaimed bytes.
+   * @param bytes number of bytes
+   */
+  void reclaimed(final long bytes) {
+    reclaimed += bytes;
+  }
+}
@@ -75,6 +75,16 @@ public final class MemData extends Data {
   @Override
   public void finishUpdate() { }
 
+  /**
+   * Releases the memory that has been reserved for nodes to be added.
+   * Should be called after the database has been built.
+   */
+  public void trim() {
+    ((TableMemAccess) table).trim();
+    ((MemValues) txtindex).trim();
+    ((MemValues) atvindex).trim();
+  }
+
   @Override
   public byte[] text(final int pre, final boolean text) {
     return ((MemValues) (text ? txtindex : atvindex)).key((int) textOff(pre));
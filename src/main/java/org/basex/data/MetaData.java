@@ -47,6 +47,8 @@ public final class MetaData {
   public volatile boolean chop;
   /** Flag for activated automatic index update. */
   public volatile boolean updindex;
+  /** Flag for texts and attribute values stored in compressed blocks. */
+  public volatile boolean compress;
   /** Indicates if a text index exists. */
   public volatile boolean textindex;
   /** Indicates if a attribute index exists. */
@@ -82,6 +84,8 @@ public final class MetaData {
   public volatile boolean corrupt;
   /** Dirty flag. */
   public volatile boolean dirty;
+  /** Number of updates since the database has been opened (not stored on disk). */
+  public volatile int updates;
 
   /** Table size. */
   public volatile int size;
@@ -130,6 +134,7 @@ public final class MetaData {
     stemming = prop.is(Prop.STEMMING);
     casesens = prop.is(Prop.CASESENS);
     updindex = prop.is(Prop.UPDINDEX);
+    compress = prop.is(Prop.COMPRESSION);
     maxlen = prop.num(Prop.MAXLEN);
     maxcats = prop.num(Prop.MAXCATS);
     language = Language.get(prop);
@@ -302,6 +307,7 @@ public final class MetaData {
         else if(k.equals(DBFTDC))     diacritics = toBool(v);
         else if(k.equals(DBCHOP))     chop       = toBool(v);
         else if(k.equals(DBUPDIDX))   updindex   = toBool(v);
+        else if(k.equals(DBCOMPR))    compress   = toBool(v);
         else if(k.equals(DBTXTIDX))   textindex  = toBool(v);
         else if(k.equals(DBATVIDX))   attrindex  = toBool(v);
         else if(k.equals(DBFTXIDX))   ftxtindex  = toBool(v);
@@ -346,6 +352,7 @@ public final class MetaData {
     writeInfo(out, DBSIZE,     size);
     writeInfo(out, DBCHOP,     chop);
     writeInfo(out, DBUPDIDX,   updindex);
+    writeInfo(out, DBCOMPR,    compress);
     writeInfo(out, DBTXTIDX,   textindex);
     writeInfo(out, DBATVIDX,   attrindex);
     writeInfo(out, DBFTXIDX,   ftxtindex);
@@ -371,6 +378,7 @@ public final class MetaData {
   void update() {
     // update database timestamp
     time = System.currentTimeMillis();
+    updates++;
     uptodate = false;
     dirty = true;
     if(!updindex) {
@@ -0,0 +1,110 @@
+package org.basex.data;
+
+import java.util.*;
+
+import org.basex.core.*;
+
+/**
+ * This class caches the serialized representations of the documents of a
+ * database. An entry is stored for the pre value of a document and the string
+ * representation of the serialization parameters. All entries are discarded
+ * as soon as the database is updated. If the size of the cache exceeds the
+ * limit that is specified via {@link Prop#SERIALCACHE}, the least recently used
+ * entries are removed.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class SerialCache {
+  /** Data reference. */
+  private final Data data;
+  /** Cached entries, ordered by their last access ({@code null} if not used yet). */
+  private LinkedHashMap<Integer, Entry> entries;
+  /** Number of cached bytes. */
+  private long size;
+  /** Update counter of the cached entries. */
+  private int updates;
+
+  /**
+   * Constructor.
+   * @param d data reference
+   */
+  SerialCache(final Data d) {
+    data = d;
+  }
+
+  /**
+   * Returns the maximum size of the cache.
+   * @return size in bytes ({@code 0} if caching is disabled)
+   */
+  public long max() {
+    return (long) data.meta.prop.num(Prop.SERIALCACHE) << 20;
+  }
+
+  /**
+   * Returns the cached serialization of a document.
+   * @param pre pre value of the document
+   * @param params serialization parameters
+   * @return bytes, or {@code null} if no valid entry exists
+   */
+  public synchronized byte[] get(final int pre, final String params) {
+    if(entries == null || !valid()) return null;
+    final Entry e = entries.get(pre);
+    return e != null && e.params.equals(params) ? e.bytes : null;
+  }
+
+  /**
+   * Caches the serialization of a document.
+   * @param pre pre value of the document
+   * @param params serialization parameters
+   * @param bytes serialized bytes
+   */
+  public synchronized void add(final int pre, final String params, final byte[] bytes) {
+    final long max = max();
+    if(bytes.length > max) return;
+    if(entries == null) entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true);
+    valid();
+
+    final Entry old = entries.put(pre, new Entry(params, bytes));
+    if(old != null) size -= old.bytes.length;
+    size += bytes.length;
+    // remove least recently used entries
+    final Iterator<Entry> it = entries.values().iterator();
+    while(size > max) {
+      size -= it.next().bytes.length;
+      it.remove();
+    }
+  }
+
+  /**
+   * Checks if the database has been updated since the entries were cached.
+   * If yes, all entries are discarded.
+   * @return {@code true} if the cached entries are still valid
+   */
+  private boolean valid() {
+    final int u = data.meta.updates;
+    if(u == updates) return true;
+    entries.clear();
+    size = 0;
+    updates = u;
+    return false;
+  }
+
+  /** Cache entry. */
+  private static final class Entry {
+    /** Serialization parameters. */
+    final String params;
+    /** Serialized bytes. */
+    final byte[] bytes;
+
+    /**
+     * Constructor.
+     * @param p serialization parameters
+     * @param b serialized bytes
+     */
+    Entry(final String p, final byte[] b) {
+      params = p;
+      bytes = b;
+    }
+  }
+}
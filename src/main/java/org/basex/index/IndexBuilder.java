@@ -44,6 +44,12 @@ public abstract class IndexBuilder extends Progress {
    */
   public abstract Index build() throws IOException;
 
+  /**
+   * Aborts index creation and drops the index files.
+   */
+  @Override
+  public abstract void abort();
+
   /**
    * Checks if the command was interrupted, and prints some debug output.
    */
@@ -2,26 +2,44 @@ package org.basex.index;
 
 import static org.basex.util.Token.*;
 
-import java.lang.ref.*;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.*;
 
 import org.basex.util.list.*;
 
 /**
  * This class caches sizes and pointers from index results.
  *
+ * The number of cached entries is limited. Entries are stored in primitive arrays,
+ * which are distributed over several segments with separate locks. If a segment
+ * is full, an entry is evicted by a clock algorithm: entries that have been
+ * requested again since the last pass of the clock hand are skipped once.
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Dimitar Popov
  */
 public final class IndexCache {
-  /** Queue used to collect unused keys. */
-  private final ReferenceQueue<IndexEntry> queue = new ReferenceQueue<IndexEntry>();
-  /** Read-write lock. */
-  private final ReentrantReadWriteLock rwl = new ReentrantReadWriteLock(true);
-  /** Hash table buckets. */
-  private BucketEntry[] buckets = new BucketEntry[ElementList.CAP];
-  /** Number of entries in the cache. */
-  private int size;
+  /** Default maximum number of entries. */
+  public static final int MAX = 1 << 16;
+  /** Number of segments (must be a power of two). */
+  private static final int SEGMENTS = 16;
+  /** Segments. */
+  private final Segment[] segments = new Segment[SEGMENTS];
+
+  /**
+   * Constructor, using the default maximum number of entries.
+   */
+  public IndexCache() {
+    this(MAX);
+  }
+
+  /**
+   * Constructor.
+   * @param max maximum number of entries
+   */
+  public IndexCache(final int max) {
+    final int m = Integer.highestOneBit(Math.max(1, max / SEGMENTS - 1)) << 1;
+    for(int s = 0; s < SEGMENTS; s++) segments[s] = new Segment(m);
+  }
 
   /**
    * Gets cached entry for the specified key.
@@ -29,22 +47,8 @@ public final class IndexCache {
    * @return cached entry or {@code null} if the entry is stale
    */
   public IndexEntry get(final byte[] key) {
-    final int hash = hash(key);
-    rwl.readLock().lock();
-
-    try {
-      final int i = indexFor(hash, buckets.length);
-      BucketEntry e = buckets[i];
-      while(e != null) {
-        final IndexEntry entry = e.get();
-        if(entry != null && e.hash == hash && eq(entry.key, key)) return entry;
-        e = e.next;
-      }
-    } finally {
-      rwl.readLock().unlock();
-    }
-
-    return null;
+    final int hash = spread(hash(key));
+    return segment(hash).get(key, hash);
   }
 
   /**
@@ -56,35 +60,9 @@ public final class IndexCache {
    * @return cache entry
    */
   public IndexEntry add(final byte[] key, final int s, final long p) {
-    final int hash = hash(key);
-    rwl.writeLock().lock();
-
-    try {
-      purge();
-
-      final int i = indexFor(hash, buckets.length);
-
-      BucketEntry current = buckets[i];
-      BucketEntry prev = current;
-      while(current != null) {
-        final BucketEntry next = current.next;
-        final IndexEntry entry = current.get();
-        if(entry == null) {
-          delete(i, current, prev, next);
-        } else if(current.hash == hash && eq(entry.key, key)) {
-          update(entry, s, p);
-          return entry;
-        }
-        prev = current;
-        current = next;
-      }
-
-      final IndexEntry entry = new IndexEntry(key, s, p);
-      add(i, hash, entry);
-      return entry;
-    } finally {
-      rwl.writeLock().unlock();
-    }
+    final int hash = spread(hash(key));
+    segment(hash).add(key, hash, s, p);
+    return new IndexEntry(key, s, p);
   }
 
   /**
@@ -92,151 +70,214 @@ public final class IndexCache {
    * @param key key
    */
   public void delete(final byte[] key) {
-    final int hash = hash(key);
-    rwl.writeLock().lock();
-
-    try {
-      purge();
-
-      final int i = indexFor(hash, buckets.length);
-
-      BucketEntry e = buckets[i];
-      BucketEntry prev = e;
-      while(e != null) {
-        final BucketEntry next = e.next;
-        final IndexEntry entry = e.get();
-        if(entry == null) {
-          delete(i, e, prev, next);
-        } else if(e.hash == hash && eq(entry.key, key)) {
-          delete(i, e, prev, next);
-          break;
-        }
-        prev = e;
-        e = next;
-      }
-    } finally {
-      rwl.writeLock().unlock();
-    }
+    final int hash = spread(hash(key));
+    segment(hash).delete(key, hash);
   }
 
   /**
-   * Purges stale entries from the cache.
-   * [DP] add a minimal load, after which the buckets array should be shrunk
+   * Returns the number of cached entries.
+   * @return number of entries
    */
-  private void purge() {
-    for(Object x; (x = queue.poll()) != null;) {
-      final BucketEntry e = (BucketEntry) x;
-      final int i = indexFor(e.hash, buckets.length);
-
-      BucketEntry prev = buckets[i];
-      BucketEntry p = prev;
-      while(p != null) {
-        final BucketEntry next = p.next;
-        if(p == e) {
-          delete(i, e, prev, next);
-          break;
-        }
-        prev = p;
-        p = next;
-      }
-    }
+  public int size() {
+    int s = 0;
+    for(final Segment seg : segments) s += seg.size();
+    return s;
   }
 
   /**
-   * Add a new index entry to the bucket with the specified index.
-   * @param i bucket index
-   * @param hash hash of the new index key
-   * @param entry index entry
+   * Returns the segment for the specified hash value.
+   * @param hash hash value
+   * @return segment
    */
-  private void add(final int i, final int hash, final IndexEntry entry) {
-    buckets[i] = new BucketEntry(hash, buckets[i], entry, queue);
-    if(++size == buckets.length) rehash();
+  private Segment segment(final int hash) {
+    return segments[hash >>> 28 & SEGMENTS - 1];
   }
 
   /**
-   * Update an existing index entry.
-   * @param entry index entry to update
-   * @param sz new size
-   * @param poi new pointer
+   * Spreads the bits of a hash value.
+   * @param h hash value
+   * @return spread hash value
    */
-  private void update(final IndexEntry entry, final int sz, final long poi) {
-    entry.size = sz;
-    entry.pointer = poi;
+  private static int spread(final int h) {
+    final int s = h * 0x9E3779B9;
+    return s ^ s >>> 16;
   }
 
   /**
-   * Deletes a cached entry from the buckets with the specified index.
-   * [DP] add a minimal load, after which the buckets array should be shrunk
-   * @param i buckets index
-   * @param e cached entry to delete
-   * @param p previous cache entry
-   * @param n next cache entry
+   * Cache segment. Entries are referenced by slot numbers; colliding slots of
+   * a hash bucket are chained via the {@link #next} array.
    */
-  private void delete(final int i, final BucketEntry e, final BucketEntry p,
-      final BucketEntry n) {
-    if(p == e) buckets[i] = n;
-    else p.next = n;
-    e.next = null;
-    --size;
-  }
+  private static final class Segment {
+    /** Maximum number of entries. */
+    private final int max;
+    /** Keys ({@code null} for free slots). */
+    private byte[][] keys = new byte[ElementList.CAP][];
+    /** Hash values of the keys. */
+    private int[] hashes = new int[ElementList.CAP];
+    /** Number of index hits. */
+    private int[] sizes = new int[ElementList.CAP];
+    /** Pointers to the id lists. */
+    private long[] pointers = new long[ElementList.CAP];
+    /** Next slot in the bucket chain, or the next free slot ({@code -1}: none). */
+    private int[] next = new int[ElementList.CAP];
+    /** Access flags. */
+    private boolean[] used = new boolean[ElementList.CAP];
+    /** First slots of the hash buckets ({@code -1}: empty). */
+    private int[] buckets;
+    /** Number of assigned slots. */
+    private int slots;
+    /** First free slot ({@code -1}: none). */
+    private int free = -1;
+    /** Number of entries. */
+    private int size;
+    /** Position of the clock hand. */
+    private int hand;
 
-  /**
-   * Resizes the hash table.
-   */
-  private void rehash() {
-    purge();
-
-    final int s = size << 1;
-    final BucketEntry[] tmp = new BucketEntry[s];
-
-    final int l = buckets.length;
-    for(int i = 0; i < l; ++i) {
-      BucketEntry e = buckets[i];
-      buckets[i] = null;
-      while(e != null) {
-        final BucketEntry next = e.next;
-        final int p = indexFor(e.hash, tmp.length);
-        e.next = tmp[p];
-        tmp[p] = e;
-        e = next;
+    /**
+     * Constructor.
+     * @param m maximum number of entries (must be a power of two)
+     */
+    Segment(final int m) {
+      max = m;
+      buckets = new int[ElementList.CAP];
+      Arrays.fill(buckets, -1);
+    }
+
+    /**
+     * Returns the entry for the specified key.
+     * @param key key
+     * @param hash hash value
+     * @return entry or {@code null}
+     */
+    synchronized IndexEntry get(final byte[] key, final int hash) {
+      final int s = find(key, hash);
+      if(s == -1) return null;
+      used[s] = true;
+      return new IndexEntry(keys[s], sizes[s], pointers[s]);
+    }
+
+    /**
+     * Adds or updates an entry.
+     * @param key key
+     * @param hash hash value
+     * @param sz number of index hits
+     * @param ptr pointer to id list
+     */
+    synchronized void add(final byte[] key, final int hash, final int sz,
+        final long ptr) {
+      int s = find(key, hash);
+      if(s == -1) {
+        if(free != -1) {
+          s = free;
+          free = next[s];
+        } else if(slots < max) {
+          if(slots == keys.length) grow();
+          s = slots++;
+        } else {
+          s = evict();
+        }
+        final int b = hash & buckets.length - 1;
+        keys[s] = key;
+        hashes[s] = hash;
+        next[s] = buckets[b];
+        buckets[b] = s;
+        size++;
+      } else {
+        used[s] = true;
       }
+      sizes[s] = sz;
+      pointers[s] = ptr;
     }
-    buckets = tmp;
-  }
 
-  /**
-   * Returns buckets index for a hash code.
-   * @param h hash code
-   * @param n number of available buckets
-   * @return index of a buckets
-   */
-  private static int indexFor(final int h, final int n) {
-    return h & n - 1;
-  }
+    /**
+     * Deletes an entry.
+     * @param key key
+     * @param hash hash value
+     */
+    synchronized void delete(final byte[] key, final int hash) {
+      final int s = find(key, hash);
+      if(s == -1) return;
+      unlink(s);
+      next[s] = free;
+      free = s;
+    }
 
-  /**
-   * Cache buckets entry. Used to implement a linked list of cache entries for
-   * each buckets. It also stores the hash of the current entry for better
-   * performance.
-   */
-  private static class BucketEntry extends SoftReference<IndexEntry> {
-    /** Hash code of the stored cache entry key. */
-    final int hash;
-    /** Next buckets entry or {@code null} if the last one for this buckets. */
-    BucketEntry next;
+    /**
+     * Returns the number of entries.
+     * @return number of entries
+     */
+    synchronized int size() {
+      return size;
+    }
 
     /**
-     * Constructor.
-     * @param h hash code of the cache entry key
-     * @param n next buckets entry or {@code null} if the last one
-     * @param v stored cache entry
-     * @param rq reference queue
+     * Returns the slot of the specified key.
+     * @param key key
+     * @param hash hash value
+     * @return slot or {@code -1}
+     */
+    private int find(final byte[] key, final int hash) {
+      for(int s = buckets[hash & buckets.length - 1]; s != -1; s = next[s]) {
+        if(hashes[s] == hash && eq(keys[s], key)) return s;
+      }
+      return -1;
+    }
+
+    /**
+     * Evicts an entry and returns its slot.
+     * @return slot
      */
-    public BucketEntry(final int h, final BucketEntry n, final IndexEntry v,
-        final ReferenceQueue<IndexEntry> rq) {
-      super(v, rq);
-      hash = h;
-      next = n;
+    private int evict() {
+      while(true) {
+        final int s = hand;
+        hand = hand + 1 & max - 1;
+        if(used[s]) {
+          used[s] = false;
+        } else if(keys[s] != null) {
+          unlink(s);
+          return s;
+        }
+      }
+    }
+
+    /**
+     * Removes the entry in the specified slot from its bucket chain.
+     * @param s slot
+     */
+    private void unlink(final int s) {
+      final int b = hashes[s] & buckets.length - 1;
+      if(buckets[b] == s) {
+        buckets[b] = next[s];
+      } else {
+        int p = buckets[b];
+        while(next[p] != s) p = next[p];
+        next[p] = next[s];
+      }
+      keys[s] = null;
+      used[s] = false;
+      size--;
+    }
+
+    /**
+     * Doubles the capacity of the arrays and rebuilds the hash buckets.
+     */
+    private void grow() {
+      final int c = Math.min(keys.length << 1, max);
+      keys = Arrays.copyOf(keys, c);
+      hashes = Arrays.copyOf(hashes, c);
+      sizes = Arrays.copyOf(sizes, c);
+      pointers = Arrays.copyOf(pointers, c);
+      next = Arrays.copyOf(next, c);
+      used = Arrays.copyOf(used, c);
+
+      buckets = new int[c];
+      Arrays.fill(buckets, -1);
+      for(int s = 0; s < slots; s++) {
+        if(keys[s] == null) continue;
+        final int b = hashes[s] & c - 1;
+        next[s] = buckets[b];
+        buckets[b] = s;
+      }
     }
   }
 }
@@ -1,6 +1,7 @@
 package org.basex.index.query;
 
 import org.basex.index.*;
+import org.basex.query.value.item.*;
 import org.basex.util.*;
 
 /**
@@ -16,6 +17,12 @@ public final class NumericRange implements IndexToken {
   public final double min;
   /** Maximum value. */
   public final double max;
+  /** Date flag: the limits are given by {@link #dmin} and {@link #dmax}. */
+  public final boolean date;
+  /** Minimum key of dates and dateTimes without timezone (see {@link ADate#key()}). */
+  public final long dmin;
+  /** Maximum key of dates and dateTimes without timezone. */
+  public final long dmax;
 
   /**
    * Constructor.
@@ -27,6 +34,24 @@ public final class NumericRange implements IndexToken {
     type = it;
     min = mn;
     max = mx;
+    date = false;
+    dmin = 0;
+    dmax = 0;
+  }
+
+  /**
+   * Constructor for dates and dateTimes without timezone.
+   * @param it index type
+   * @param mn minimum key
+   * @param mx maximum key
+   */
+  public NumericRange(final IndexType it, final long mn, final long mx) {
+    type = it;
+    min = Double.NEGATIVE_INFINITY;
+    max = Double.POSITIVE_INFINITY;
+    date = true;
+    dmin = mn;
+    dmax = mx;
   }
 
   @Override
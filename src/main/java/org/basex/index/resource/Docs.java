@@ -3,6 +3,7 @@ package org.basex.index.resource;
 import static org.basex.util.Token.*;
 
 import java.io.*;
+import java.util.*;
 
 import org.basex.core.*;
 import org.basex.data.*;
@@ -16,10 +17,10 @@ import org.basex.util.list.*;
  * <p>This data structure contains references to all document nodes in a
  * database. The document nodes are incrementally updated.</p>
  *
- * <p>If updates are performed, the path order is discarded, as its continuous
- * update would be more expensive in some cases (e.g. when bulk insertions of
- * new documents are performed). A tree structure could be introduced to
- * offer better general performance.</p>
+ * <p>The path order contains the positions of all document nodes, sorted by
+ * their paths and positions. It is stored on disk and incrementally updated,
+ * and it is used to find documents and directories via binary search.
+ * The paths are not cached: they are requested from the database.</p>
  *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
@@ -31,10 +32,7 @@ final class Docs {
   /** Pre values of document nodes (can be {@code null}).
    * This variable should always be requested via {@link #docs()}. */
   private IntList docList;
-  /** Sorted document paths (can be {@code null}).
-   * This variable should always be requested via {@link #paths()}. */
-  private TokenList pathList;
-  /** Ordered path indexes (can be {@code null}).
+  /** Ordered positions of document nodes (can be {@code null}).
    * This variable should always be requested via {@link #order()}. */
   private int[] pathOrder;
 
@@ -55,6 +53,15 @@ final class Docs {
     docList = in.readDiffs();
   }
 
+  /**
+   * Reads the path order.
+   * @param in input stream
+   * @throws IOException I/O exception
+   */
+  synchronized void readOrder(final DataInput in) throws IOException {
+    pathOrder = in.readNums();
+  }
+
   /**
    * Writes the document index.
    * @param out output stream
@@ -64,13 +71,22 @@ final class Docs {
     out.writeDiffs(docs());
   }
 
+  /**
+   * Writes the path order.
+   * @param out output stream
+   * @throws IOException I/O exception
+   */
+  void writeOrder(final DataOutput out) throws IOException {
+    out.writeNums(order());
+  }
+
   /**
    * Initializes the document index. Currently, will only be called if the database is
    * optimized, and the resource index will be rebuilt.
    */
   synchronized void init() {
     docList = null;
-    pathList = null;
+    pathOrder = null;
     docs();
   }
 
@@ -94,29 +110,24 @@ final class Docs {
   }
 
   /**
-   * Returns the document paths, and initializes them if necessary.
-   * @return document paths
-   */
-  private synchronized TokenList paths() {
-    if(pathList == null) {
-      final IntList docs = docs();
-      final int ds = docs.size();
-      final TokenList paths = new TokenList(ds);
-      for(int d = 0; d < ds; d++) {
-        paths.add(normalize(data.text(docs.get(d), true)));
-      }
-      pathList = paths;
-    }
-    return pathList;
-  }
-
-  /**
-   * Returns the document path order, and initialize the array if necessary.
+   * Returns the path order, and initializes it if necessary.
    * @return path order
    */
   private synchronized int[] order() {
-    if(pathOrder == null) {
-      pathOrder = Array.createOrder(paths().toArray(), false, true);
+    final IntList docs = docs();
+    final int ds = docs.size();
+    if(pathOrder == null || pathOrder.length != ds) {
+      final byte[][] paths = new byte[ds][];
+      for(int d = 0; d < ds; d++) paths[d] = normalize(data.text(docs.get(d), true));
+      // the paths will be sorted as well
+      final int[] order = Array.createOrder(paths, false, true);
+      // sort documents with identical paths by their positions
+      for(int s = 0, e; s < ds; s = e) {
+        for(e = s + 1; e < ds && eq(paths[s], paths[e]); e++);
+        if(e - s > 1) Arrays.sort(order, s, e);
+      }
+      // the order will be written with the next update of the database
+      pathOrder = order;
     }
     return pathOrder;
   }
@@ -127,32 +138,8 @@ final class Docs {
    * @param d data reference to be inserted
    */
   void insert(final int pre, final Data d) {
-    // find all document nodes in the given data instance
-    final int dsize = d.meta.size;
-    final IntList pres = new IntList();
-    for(int dpre = 0; dpre < dsize;) {
-      final int k = d.kind(dpre);
-      if(k == Data.DOC) pres.add(pre + dpre);
-      dpre += d.size(dpre, k);
-    }
-
-    // insert DOC nodes and move pre values of following DOC nodes
-    final int[] presA = pres.toArray();
-    final IntList docs = docs();
-    final TokenList paths = paths();
-
-    int i = docs.sortedIndexOf(pre);
-    if(i < 0) i = -i - 1;
-    docs.insert(i, presA);
-    docs.move(dsize, i + pres.size());
-
-    final byte[][] t = new byte[presA.length][];
-    for(int j = 0; j < t.length; j++) {
-      // subtract pre to retrieve paths from given data instance
-      t[j] = normalize(d.text(presA[j] - pre, true));
-    }
-    paths.insert(i, t);
-    pathOrder = null;
+    final int[] pres = pres(pre, d);
+    insert(pre, d.meta.size, pres, ranks(pre, d, pres));
   }
 
   /**
@@ -161,18 +148,7 @@ final class Docs {
    * @param size number of deleted nodes
    */
   void delete(final int pre, final int size) {
-    final IntList docs = docs();
-    final TokenList paths = paths();
-
-    int i = docs.sortedIndexOf(pre);
-    final boolean found = i >= 0;
-    if(i < 0) i = -i - 1;
-    else docs.deleteAt(i);
-    docs.move(-size, i);
-
-    if(!found) return;
-    paths.delete(i);
-    pathOrder = null;
+    remove(pre, size);
   }
 
   /**
@@ -181,10 +157,17 @@ final class Docs {
    * @param value new name
    */
   void rename(final int pre, final byte[] value) {
-    final IntList docs = docs();
-    final TokenList paths = paths();
-    paths.set(docs.sortedIndexOf(pre), normalize(value));
-    pathOrder = null;
+    final int i = docs().sortedIndexOf(pre);
+    if(pathOrder == null) return;
+
+    unorder(i, false);
+    final int[] po = pathOrder;
+    final int r = rank(normalize(value), i, po);
+    final int[] order = new int[po.length + 1];
+    System.arraycopy(po, 0, order, 0, r);
+    order[r] = i;
+    System.arraycopy(po, r, order, r + 1, po.length - r);
+    pathOrder = order;
   }
 
   /**
@@ -194,8 +177,15 @@ final class Docs {
    * @param d data reference to be copied
    */
   void replace(final int pre, final int size, final Data d) {
-    delete(pre, size);
-    insert(pre, d);
+    // compute the ranks of the new documents before the old nodes are removed
+    final int[] pres = pres(pre, d);
+    final int[] ranks = ranks(pre, d, pres);
+    final int o = remove(pre, size);
+    if(ranks != null && o != -1) {
+      final int rs = ranks.length >>> 1;
+      for(int r = 0; r < rs; r++) if(ranks[r] > o) ranks[r]--;
+    }
+    insert(pre, d.meta.size, pres, ranks);
   }
 
   /**
@@ -224,21 +214,23 @@ final class Docs {
 
     // relevant paths: exact hits and prefixes
     final IntList il = new IntList();
-    /* could be optimized for future access by sorting the paths first
-     * and then accessing only the relevant paths. Sorting might slow down
-     * bulk operations like insert/delete/replace though. */
-    final TokenList paths = paths();
-    for(int p = 0; p < paths.size(); p++) {
-      final byte[] b = paths.get(p);
-      if(eq(b, exct) || !exact && startsWith(b, pref)) il.add(docs.get(p));
+    final int[] po = order();
+    final int ps = po.length;
+    if(exct.length != 0) {
+      for(int p = find(exct); p < ps && eq(path(p), exct); p++) il.add(docs.get(po[p]));
+    }
+    if(!exact) {
+      for(int p = find(pref); p < ps && startsWith(path(p), pref); p++) {
+        il.add(docs.get(po[p]));
+      }
     }
     return il.sort();
   }
 
   /**
    * Returns the pre value of the document node matching the specified path.
-   * Exact match! Document paths can be sorted for faster future access or
-   * sorting can be disabled as it slows down bulk inserts/deletes/replaces.
+   * Exact match! If sorting is disabled, and if the paths have not been sorted
+   * yet, all paths will be sequentially parsed.
    * @param path input path
    * @param sort sort paths before access
    * @return root nodes
@@ -253,16 +245,15 @@ final class Docs {
 
     // relevant paths: exact match
     final IntList docs = docs();
-    final TokenList paths = paths();
-    final int ts = paths.size();
-
-    if(sort) {
-      final int[] order = order();
+    if(sort || pathOrder != null) {
+      final int[] po = order();
       final int p = find(exct);
-      return p > -1 && p < ts && eq(paths.get(order[p]), exct) ? docs.get(order[p]) : -1;
+      return p < po.length && eq(path(p), exct) ? docs.get(po[p]) : -1;
     }
-    for(int t = 0; t < ts; t++) {
-      if(eq(paths.get(t), exct)) return docs.get(t);
+    final int ds = docs.size();
+    for(int d = 0; d < ds; d++) {
+      final int pre = docs.get(d);
+      if(eq(normalize(data.text(pre, true)), exct)) return pre;
     }
     return -1;
   }
@@ -274,8 +265,8 @@ final class Docs {
    */
   synchronized boolean isDir(final byte[] path) {
     final byte[] pa = concat(path, SLASH);
-    for(final byte[] b : paths()) if(startsWith(b, pa)) return true;
-    return false;
+    final int p = find(pa);
+    return p < order().length && startsWith(path(p), pa);
   }
 
   /**
@@ -295,42 +286,183 @@ final class Docs {
     byte[] tp = concat(SLASH, token(pth));
     // if the given path is the root, don't add a trailing slash
     if(!pth.isEmpty()) tp = concat(tp, SLASH);
-    for(final byte[] to : paths()) {
-      if(startsWith(to, tp)) {
-        final byte[] toAdd = substring(to, tp.length, to.length);
-        final int i = indexOf(toAdd, SLASH);
-        // no more slashes means this must be a leaf
-        if(!dir && i == -1) tbm.add(toAdd, false);
-        else if(dir && i >= 0) tbm.add(substring(toAdd, 0, i), false);
+    final int ps = order().length;
+    for(int p = find(tp); p < ps; p++) {
+      final byte[] to = path(p);
+      if(!startsWith(to, tp)) break;
+      final byte[] toAdd = substring(to, tp.length, to.length);
+      final int i = indexOf(toAdd, SLASH);
+      // no more slashes means this must be a leaf
+      if(!dir && i == -1) tbm.add(toAdd, false);
+      else if(dir && i >= 0) tbm.add(substring(toAdd, 0, i), false);
+    }
+  }
+
+  // PRIVATE METHODS ==========================================================
+
+  /**
+   * Returns the pre values of the document nodes of the specified data instance.
+   * @param pre insertion position
+   * @param d data reference to be inserted
+   * @return pre values of the document nodes after the insertion
+   */
+  private static int[] pres(final int pre, final Data d) {
+    final int dsize = d.meta.size;
+    final IntList pres = new IntList();
+    for(int dpre = 0; dpre < dsize;) {
+      final int k = d.kind(dpre);
+      if(k == Data.DOC) pres.add(pre + dpre);
+      dpre += d.size(dpre, k);
+    }
+    return pres.toArray();
+  }
+
+  /**
+   * Computes the positions of new document nodes in the current path order.
+   * Must be called before the database is updated.
+   * @param pre insertion position
+   * @param d data reference to be inserted
+   * @param pres pre values of the new document nodes
+   * @return ranks, followed by the sorted document offsets, or {@code null}
+   *   if no path order exists
+   */
+  private int[] ranks(final int pre, final Data d, final int[] pres) {
+    if(pathOrder == null) return null;
+
+    final int ps = pres.length;
+    final byte[][] paths = new byte[ps][];
+    for(int p = 0; p < ps; p++) {
+      // subtract pre to retrieve paths from given data instance
+      paths[p] = normalize(d.text(pres[p] - pre, true));
+    }
+    final int[] order = Array.createOrder(paths, false, true);
+    for(int s = 0, e; s < ps; s = e) {
+      for(e = s + 1; e < ps && eq(paths[s], paths[e]); e++);
+      if(e - s > 1) Arrays.sort(order, s, e);
+    }
+
+    int i = docs().sortedIndexOf(pre);
+    if(i < 0) i = -i - 1;
+    final int[] ranks = new int[ps << 1];
+    for(int p = 0; p < ps; p++) {
+      ranks[p] = rank(paths[p], i, pathOrder);
+      ranks[ps + p] = order[p];
+    }
+    return ranks;
+  }
+
+  /**
+   * Inserts document nodes into the index.
+   * @param pre insertion position
+   * @param size number of inserted nodes
+   * @param pres pre values of the new document nodes
+   * @param ranks ranks, or {@code null}
+   */
+  private void insert(final int pre, final int size, final int[] pres,
+      final int[] ranks) {
+
+    // insert DOC nodes and move pre values of following DOC nodes
+    final IntList docs = docs();
+    int i = docs.sortedIndexOf(pre);
+    if(i < 0) i = -i - 1;
+    docs.insert(i, pres);
+    docs.move(size, i + pres.length);
+
+    if(ranks != null && pres.length != 0) {
+      // merge new documents and existing entries; shift subsequent positions
+      final int ps = pres.length;
+      final int[] po = pathOrder;
+      final int ol = po.length;
+      final int[] order = new int[ol + ps];
+      for(int o = 0, n = 0, c = 0; o <= ol; o++) {
+        while(n < ps && ranks[n] == o) order[c++] = i + ranks[ps + n++];
+        if(o < ol) order[c++] = po[o] < i ? po[o] : po[o] + ps;
       }
+      pathOrder = order;
     }
   }
 
   /**
-   * Returns the first position matching the specified path
-   * (might equal the array size).
-   * @param v value to be found
-   * @return position
+   * Deletes the specified entry and updates subsequent nodes.
+   * @param pre pre value
+   * @param size number of deleted nodes
+   * @return former offset of the document in the path order, or {@code -1}
+   */
+  private int remove(final int pre, final int size) {
+    final IntList docs = docs();
+
+    int i = docs.sortedIndexOf(pre);
+    final boolean found = i >= 0;
+    if(i < 0) i = -i - 1;
+    else docs.deleteAt(i);
+    docs.move(-size, i);
+
+    return found ? unorder(i, true) : -1;
+  }
+
+  /**
+   * Removes a document from the path order.
+   * @param i position of the document
+   * @param shift shift the positions of subsequent documents
+   * @return former offset of the document in the path order, or {@code -1}
    */
-  private int find(final byte[] v) {
-    // binary search
-    final TokenList paths = paths();
+  private int unorder(final int i, final boolean shift) {
     final int[] po = pathOrder;
-    int l = 0, h = po.length - 1;
-    while(l <= h) {
-      int m = l + h >>> 1;
-      final int c = diff(paths.get(po[m]), v);
-      if(c == 0) {
-        // find first entry
-        while(m > 0 && eq(paths.get(po[m - 1]), v)) --m;
-        return m;
-      }
-      if(c < 0) l = m + 1;
-      else h = m - 1;
+    if(po == null) return -1;
+
+    final int ol = po.length;
+    final int[] order = new int[ol - 1];
+    int r = -1;
+    for(int o = 0, c = 0; o < ol; o++) {
+      final int p = po[o];
+      if(p == i) r = o;
+      else order[c++] = shift && p > i ? p - 1 : p;
+    }
+    pathOrder = order;
+    return r;
+  }
+
+  /**
+   * Returns the offset at which a document with the specified path and
+   * position will be found in the path order.
+   * @param path normalized path
+   * @param i position of the document
+   * @param order path order
+   * @return offset
+   */
+  private int rank(final byte[] path, final int i, final int[] order) {
+    final IntList docs = docs();
+    int l = 0, h = order.length;
+    while(l < h) {
+      final int m = l + h >>> 1;
+      final int p = order[m];
+      final int c = diff(normalize(data.text(docs.get(p), true)), path);
+      if(c < 0 || c == 0 && p < i) l = m + 1;
+      else h = m;
     }
     return l;
   }
 
+  /**
+   * Returns the first offset in the path order whose path is equal to or
+   * greater than the specified path (might equal the array size).
+   * @param path normalized path to be found
+   * @return offset
+   */
+  private int find(final byte[] path) {
+    return rank(path, 0, order());
+  }
+
+  /**
+   * Returns the normalized path of the document at the specified offset
+   * in the path order.
+   * @param o offset
+   * @return path
+   */
+  private byte[] path(final int o) {
+    return normalize(data.text(docs().get(pathOrder[o]), true));
+  }
+
   /**
    * Returns the normalized index path representation for the specified path.
    * @param path input path (without leading slash)
@@ -50,6 +50,24 @@ public final class Resources implements Index {
     docs.write(out);
   }
 
+  /**
+   * Reads the order of the document paths from disk.
+   * @param in input stream
+   * @throws IOException I/O exception
+   */
+  public synchronized void readOrder(final DataInput in) throws IOException {
+    docs.readOrder(in);
+  }
+
+  /**
+   * Writes the order of the document paths to disk.
+   * @param out output stream
+   * @throws IOException I/O exception
+   */
+  public void writeOrder(final DataOutput out) throws IOException {
+    docs.writeOrder(out);
+  }
+
   /**
    * Returns the {@code pre} values of all document nodes.
    * @return document nodes
@@ -130,8 +148,8 @@ public final class Resources implements Index {
 
   /**
    * Returns the pre value of the document node matching the specified path.
-   * Exact match! Document paths can be sorted for faster future access or
-   * sorting can be disabled as it slows down bulk inserts/deletes/replaces.
+   * Exact match! If sorting is disabled, and if the paths have not been sorted
+   * yet, all paths will be sequentially parsed.
    * @param path input path
    * @param sort sort paths before access
    * @return root nodes
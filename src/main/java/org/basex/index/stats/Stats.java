@@ -7,6 +7,7 @@ import java.io.*;
 import org.basex.data.*;
 import org.basex.io.in.DataInput;
 import org.basex.io.out.DataOutput;
+import org.basex.query.value.item.*;
 import org.basex.util.hash.*;
 
 /**
@@ -26,6 +27,14 @@ public final class Stats {
   public double max;
   /** Number of occurrences. */
   public int count;
+  /** Type of all values: {@link StatsType#DATE} or {@link StatsType#DATETIME} if
+   * all values are dates or dateTimes without timezone, {@link StatsType#NONE}
+   * if no values have been added, {@link StatsType#TEXT} otherwise. */
+  public StatsType date = StatsType.NONE;
+  /** Minimum date key (see {@link ADate#key()}). */
+  public long dmin = Long.MAX_VALUE;
+  /** Maximum date key. */
+  public long dmax = Long.MIN_VALUE;
   /** Leaf node flag. This flag indicates if a node has children other than
    * texts and attributes. */
   private boolean leaf;
@@ -55,7 +64,10 @@ public final class Stats {
    */
   public void setLeaf(final boolean l) {
     leaf = l;
-    if(!l) type = StatsType.TEXT;
+    if(!l) {
+      type = StatsType.TEXT;
+      date = StatsType.TEXT;
+    }
   }
 
   /**
@@ -64,7 +76,7 @@ public final class Stats {
    * @throws IOException I/O exception
    */
   public Stats(final DataInput in) throws IOException {
-    // 0x10 indicates format introduced with Version 7.1
+    // 0x10 indicates format introduced with Version 7.1, 0x20 date statistics
     final int k = in.readNum();
     type = StatsType.values()[k & 0xF];
 
@@ -83,6 +95,16 @@ public final class Stats {
     count = in.readNum();
     leaf = in.readBool();
     in.readDouble();
+    if((k & 0x20) != 0) {
+      date = StatsType.values()[in.readNum()];
+      if(date == StatsType.DATE || date == StatsType.DATETIME) {
+        dmin = in.read8();
+        dmax = in.read8();
+      }
+    } else {
+      // date statistics are not available
+      date = StatsType.TEXT;
+    }
   }
 
   /**
@@ -91,8 +113,8 @@ public final class Stats {
    * @throws IOException I/O exception
    */
   public void write(final DataOutput out) throws IOException {
-    // 0x10 indicates format introduced with Version 7.1
-    out.writeNum(type.ordinal() | 0x10);
+    // 0x10 indicates format introduced with Version 7.1, 0x20 date statistics
+    out.writeNum(type.ordinal() | 0x30);
     if(type == StatsType.INTEGER || type == StatsType.DOUBLE) {
       out.writeDouble(min);
       out.writeDouble(max);
@@ -103,6 +125,11 @@ public final class Stats {
     out.writeBool(leaf);
     // legacy since version 7.1
     out.writeDouble(0);
+    out.writeNum(date.ordinal());
+    if(date == StatsType.DATE || date == StatsType.DATETIME) {
+      out.write8(dmin);
+      out.write8(dmax);
+    }
   }
 
   /**
@@ -111,10 +138,13 @@ public final class Stats {
    * conversion fails again, it is handled as string category. Next, all values
    * are cached. As soon as their number exceeds a maximum, the cached
    * values are skipped, and contents are treated as arbitrary strings.
+   * Independently, the minimum and maximum of all values are recorded if they
+   * are all dates, or all dateTimes, without timezone.
    * @param val value to be added
    * @param meta meta data
    */
   public void add(final byte[] val, final MetaData meta) {
+    if(date != StatsType.TEXT) date(val);
     final int vl = val.length;
     if(vl == 0 || type == StatsType.TEXT || ws(val)) return;
 
@@ -155,6 +185,23 @@ public final class Stats {
     type = t;
   }
 
+  /**
+   * Adds a value to the date statistics.
+   * @param val value to be added
+   */
+  private void date(final byte[] val) {
+    final long k = ADate.key(val);
+    final StatsType t = k == Long.MIN_VALUE ? StatsType.TEXT :
+      val.length == 10 ? StatsType.DATE : StatsType.DATETIME;
+    if(date != StatsType.NONE && date != t || t == StatsType.TEXT) {
+      date = StatsType.TEXT;
+    } else {
+      date = t;
+      if(dmin > k) dmin = k;
+      if(dmax < k) dmax = k;
+    }
+  }
+
   @Override
   public String toString() {
     final StringBuilder sb = new StringBuilder(count + "x");
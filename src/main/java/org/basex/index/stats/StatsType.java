@@ -18,5 +18,9 @@ public enum StatsType {
   /** Numeric.  */
   DOUBLE,
   /** No values. */
-  NONE
+  NONE,
+  /** Dates without timezone. */
+  DATE,
+  /** DateTimes without timezone. */
+  DATETIME
 }
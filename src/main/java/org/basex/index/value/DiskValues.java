@@ -11,7 +11,9 @@ import org.basex.data.*;
 import org.basex.index.*;
 import org.basex.index.query.*;
 import org.basex.index.stats.*;
+import org.basex.io.*;
 import org.basex.io.random.*;
+import org.basex.query.value.item.*;
 import org.basex.util.*;
 import org.basex.util.hash.*;
 import org.basex.util.list.*;
@@ -24,6 +26,9 @@ import org.basex.util.list.*;
  * @author Christian Gruen
  */
 public class DiskValues implements Index {
+  /** Number of ids that are decoded at once by lazy iterators. */
+  private static final int BATCH = 1 << 8;
+
   /** ID references. */
   protected final DataAccess idxr;
   /** ID lists. */
@@ -41,6 +46,12 @@ public class DiskValues implements Index {
   protected final Object monitor = new Object();
   /** Number of current index entries. */
   protected volatile int size;
+  /** File with the numeric and date values of the keys. */
+  private final IOFile numfile;
+  /** Numeric and date values of the keys ({@code null}: not available). */
+  private NumericIndex[] nums;
+  /** Indicates if the numeric values have been requested. */
+  private boolean numinit;
 
   /**
    * Constructor, initializing the index structure.
@@ -63,8 +74,10 @@ public class DiskValues implements Index {
       throws IOException {
     data = d;
     text = txt;
-    idxl = new DataAccess(d.meta.dbfile(pref + "l"));
-    idxr = new DataAccess(d.meta.dbfile(pref + "r"));
+    final int bs = d.meta.prop.num(Prop.BUFFERS);
+    idxl = new DataAccess(d.meta.dbfile(pref + "l"), bs);
+    idxr = new DataAccess(d.meta.dbfile(pref + "r"), bs);
+    numfile = d.meta.dbfile(pref + "n");
     size = idxl.read4();
   }
 
@@ -284,13 +297,57 @@ public class DiskValues implements Index {
   }
 
   /**
-   * Iterator method.
+   * Iterator method. If the pre values of the ids are ordered, the id list
+   * will be lazily decoded; otherwise, all pre values will be sorted first.
    * <p><em>Important:</em> This method is thread-safe.</p>
    * @param s number of values
    * @param ps offset
    * @return iterator
    */
   private IndexIterator iter(final int s, final long ps) {
+    if(ordered()) return new IndexIterator() {
+      /** Decoded pre values. */
+      final int[] pres = new int[Math.min(s, BATCH)];
+      /** Position of the next id in the heap file. */
+      long p = ps;
+      /** Number of decoded ids. */
+      int c;
+      /** Last decoded id. */
+      int id;
+      /** Current and total number of buffered pre values. */
+      int b, bs;
+
+      @Override
+      public boolean more() {
+        if(++b < bs) return true;
+        if(c == s) return false;
+        // decode next ids
+        bs = Math.min(s - c, BATCH);
+        synchronized(monitor) {
+          id += idxl.readNum(p);
+          pres[0] = pre(id);
+          for(int i = 1; i < bs; i++) {
+            id += idxl.readNum();
+            pres[i] = pre(id);
+          }
+          p = idxl.cursor();
+        }
+        c += bs;
+        b = 0;
+        return true;
+      }
+
+      @Override
+      public int next() {
+        return pres[b];
+      }
+
+      @Override
+      public int size() {
+        return s;
+      }
+    };
+
     final IntList pres = new IntList(s);
     long p = ps;
     synchronized(monitor) {
@@ -333,7 +390,9 @@ public class DiskValues implements Index {
   }
 
   /**
-   * Performs a range query. All index values must be numeric.
+   * Performs a range query. All index values must be numeric, or dates.
+   * If the numeric values of the keys are available, the first key in the
+   * range is found via binary search; otherwise, all keys are parsed.
    * <p><em>Important:</em> This method is thread-safe.</p>
    * @param tok index term
    * @return results
@@ -342,36 +401,91 @@ public class DiskValues implements Index {
     final double min = tok.min;
     final double max = tok.max;
 
-    // check if min and max are positive integers with the same number of digits
-    final int len = max > 0 && (long) max == max ? token(max).length : 0;
-    final boolean simple = len != 0 && min > 0 && (long) min == min &&
-        token(min).length == len;
-
     final IntList pres = new IntList();
     synchronized(monitor) {
-      for(int l = 0; l < size; ++l) {
-        final int ds = idxl.readNum(idxr.read5(l * 5L));
-        int id = idxl.readNum();
-        final int pre = pre(id);
-
-        final double v = data.textDbl(pre, text);
-        if(v >= min && v <= max) {
-          // value is in range
-          for(int d = 0; d < ds; ++d) {
-            pres.add(pre(id));
+      final NumericIndex[] ni = numeric();
+      if(ni != null) {
+        final NumericIndex n = ni[tok.date ? 1 : 0];
+        final long mn = tok.date ? tok.dmin : NumericIndex.number(min);
+        final long mx = tok.date ? tok.dmax : NumericIndex.number(max);
+        for(int i = n.first(mn), ns = n.size(); i < ns && n.value(i) <= mx; ++i) {
+          final int ds = idxl.readNum(idxr.read5(n.key(i) * 5L));
+          for(int d = 0, id = 0; d < ds; ++d) {
             id += idxl.readNum();
+            pres.add(pre(id));
+          }
+        }
+      } else if(tok.date) {
+        for(int l = 0; l < size; ++l) {
+          final int ds = idxl.readNum(idxr.read5(l * 5L));
+          int id = idxl.readNum();
+          final long v = ADate.key(data.text(pre(id), text));
+          if(v != Long.MIN_VALUE && v >= tok.dmin && v <= tok.dmax) {
+            for(int d = 0; d < ds; ++d) {
+              pres.add(pre(id));
+              id += idxl.readNum();
+            }
+          }
+        }
+      } else {
+        // check if min and max are positive integers with the same number of digits
+        final int len = max > 0 && (long) max == max ? token(max).length : 0;
+        final boolean simple = len != 0 && min > 0 && (long) min == min &&
+            token(min).length == len;
+
+        for(int l = 0; l < size; ++l) {
+          final int ds = idxl.readNum(idxr.read5(l * 5L));
+          int id = idxl.readNum();
+          final int pre = pre(id);
+
+          final double v = data.textDbl(pre, text);
+          if(v >= min && v <= max) {
+            // value is in range
+            for(int d = 0; d < ds; ++d) {
+              pres.add(pre(id));
+              id += idxl.readNum();
+            }
+          } else if(simple && v > max && data.textLen(pre, text) == len) {
+            // if limits are integers, if min, max and current value have the same
+            // string length, and if current value is larger than max, test can be
+            // skipped, as all remaining values will be bigger
+            break;
           }
-        } else if(simple && v > max && data.textLen(pre, text) == len) {
-          // if limits are integers, if min, max and current value have the same
-          // string length, and if current value is larger than max, test can be
-          // skipped, as all remaining values will be bigger
-          break;
         }
       }
     }
     return iter(pres.sort());
   }
 
+  /**
+   * Returns the numeric and date values of the keys.
+   * <p><em>Important:</em> This method is NOT thread-safe.</p>
+   * @return values, or {@code null} if they are not available
+   */
+  private NumericIndex[] numeric() {
+    if(!numinit) {
+      numinit = true;
+      try {
+        nums = NumericIndex.read(numfile);
+      } catch(final IOException ex) {
+        Util.debug(ex);
+      }
+    }
+    return nums;
+  }
+
+  /**
+   * Drops the numeric and date values of the keys. Must be called if the keys
+   * are modified. Range queries will then be answered by parsing all keys.
+   * <p><em>Important:</em> This method is NOT thread-safe.</p>
+   */
+  protected final void dropNumeric() {
+    if(numinit && nums == null) return;
+    numinit = true;
+    nums = null;
+    numfile.delete();
+  }
+
   /**
    * Returns an iterator for the specified id list.
    * @param ids id list
@@ -399,6 +513,15 @@ public class DiskValues implements Index {
     };
   }
 
+  /**
+   * Indicates if the pre values of the ids are in ascending order. If this is
+   * the case, the ids of an index entry need not be sorted after the lookup.
+   * @return result of check
+   */
+  protected boolean ordered() {
+    return true;
+  }
+
   /**
    * Returns the {@code pre} value for the specified id.
    * @param id id value
@@ -449,6 +572,15 @@ public class DiskValues implements Index {
     idxr.flush();
   }
 
+  /**
+   * Assigns a journal to the index files.
+   * @param journal journal
+   */
+  public void journal(final Journal journal) {
+    idxl.journal(journal);
+    idxr.journal(journal);
+  }
+
   @Override
   public void close() {
     synchronized(monitor) {
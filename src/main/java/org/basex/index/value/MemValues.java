@@ -15,16 +15,27 @@ import org.basex.util.hash.*;
 
 /**
  * This class provides a main memory access to attribute values and
- * text contents.
+ * text contents. The ids of all occurrences of a value are chained in flat
+ * integer arrays, which are shared by all values.
  *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
 public class MemValues extends TokenSet implements Index {
-  /** IDs. */
-  int[][] ids = new int[CAP][];
-  /** ID array lengths. */
+  /** Number of ids per value. */
   int[] len = new int[CAP];
+  /** Offsets of the first id of each value. */
+  private int[] first = new int[CAP];
+  /** Offsets of the last id of each value. */
+  private int[] last = new int[CAP];
+  /** IDs. Offset {@code 0} is not assigned. */
+  private int[] ids = new int[CAP];
+  /** Offsets of the next ids of the same value ({@code 0}: last id). */
+  private int[] link = new int[CAP];
+  /** Number of assigned id offsets. */
+  private int occs = 1;
+  /** Offset of the first deleted id, which will be reused ({@code 0}: none). */
+  private int free;
   /** Data instance. */
   final Data data;
 
@@ -43,21 +54,20 @@ public class MemValues extends TokenSet implements Index {
   public IndexIterator iter(final IndexToken tok) {
     final byte k = tok.type() == IndexType.TEXT ? Data.TEXT : Data.ATTR;
     final int i = id(tok.get());
-    if(i > 0) {
-      final int[] pres = ids[i];
-      final int s = len[i];
-      if(s > 0) {
-        return new IndexIterator() {
-          int p;
-          @Override
-          public boolean more() { return p < s; }
-          @Override
-          public int next() {
-            while(more() && data.kind(pres[p++]) != k);
-            return pres[p - 1];
-          }
-        };
-      }
+    if(i > 0 && len[i] > 0) {
+      return new IndexIterator() {
+        int o = first[i], pre;
+        @Override
+        public boolean more() { return o != 0; }
+        @Override
+        public int next() {
+          do {
+            pre = ids[o];
+            o = link[o];
+          } while(o != 0 && data.kind(pre) != k);
+          return pre;
+        }
+      };
     }
     return IndexIterator.EMPTY;
   }
@@ -106,8 +116,9 @@ public class MemValues extends TokenSet implements Index {
   public void rehash() {
     super.rehash();
     final int s = size << 1;
-    ids = Array.copyOf(ids, s);
     len = Arrays.copyOf(len, s);
+    first = Arrays.copyOf(first, s);
+    last = Arrays.copyOf(last, s);
   }
 
   /**
@@ -117,19 +128,67 @@ public class MemValues extends TokenSet implements Index {
    * @return index position
    */
   public int index(final byte[] key, final int id) {
-    int i = add(key);
-    if(i > 0) {
-      ids[i] = new int[] { id };
+    final int i = Math.abs(add(key));
+    // choose offset for the new id
+    int o = free;
+    if(o != 0) {
+      free = link[o];
     } else {
-      i = -i;
-      final int l = len[i];
-      if(l == ids[i].length) ids[i] = Arrays.copyOf(ids[i], l << 1);
-      ids[i][l] = id;
+      o = occs++;
+      if(o == ids.length) {
+        final int s = Array.newSize(o);
+        ids = Arrays.copyOf(ids, s);
+        link = Arrays.copyOf(link, s);
+      }
     }
+    ids[o] = id;
+    link[o] = 0;
+    if(len[i] == 0) first[i] = o;
+    else link[last[i]] = o;
+    last[i] = o;
     len[i]++;
     return i;
   }
 
+  /**
+   * Releases the memory that has been reserved for ids to be added.
+   */
+  public void trim() {
+    if(free != 0 || occs == ids.length) return;
+    ids = Arrays.copyOf(ids, occs);
+    link = Arrays.copyOf(link, occs);
+  }
+
+  /**
+   * Returns the ids of the specified value.
+   * @param i index of the value
+   * @return ids
+   */
+  final int[] ids(final int i) {
+    final int[] tmp = new int[len[i]];
+    for(int o = first[i], c = 0; o != 0; o = link[o]) tmp[c++] = ids[o];
+    return tmp;
+  }
+
+  /**
+   * Removes an id from the ids of the specified value.
+   * @param i index of the value
+   * @param id id to be removed
+   */
+  final void remove(final int i, final int id) {
+    for(int o = first[i], p = 0; o != 0; p = o, o = link[o]) {
+      if(ids[o] != id) continue;
+      // unlink offset and add it to the list of free offsets
+      if(p == 0) first[i] = link[o];
+      else link[p] = link[o];
+      if(last[i] == o) last[i] = p;
+      link[o] = free;
+      free = o;
+      len[i]--;
+      return;
+    }
+  }
+
   /**
    * Removes a record from the index.
    * @param key record key
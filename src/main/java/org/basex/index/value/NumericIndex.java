@@ -0,0 +1,179 @@
+package org.basex.index.value;
+
+import static org.basex.util.Token.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.query.value.item.*;
+import org.basex.util.*;
+import org.basex.util.list.*;
+
+/**
+ * This class contains the numeric values of index keys in ascending order,
+ * along with the positions of the keys in the value index. It is used to
+ * answer range queries with a binary search and a subsequent linear scan.
+ * All values are represented by long values, which preserve their order.
+ *
+ * <p>Two instances are stored in the {@code DATATXT/ATV + 'n'} file: one for
+ * keys that can be converted to numbers (see {@link #number(double)}), and one
+ * for keys that represent dates or dateTimes without timezone
+ * (see {@link ADate#key()}). The file has the following format:</p>
+ * <ul>
+ * <li> number of values, followed by their 8-byte representations</li>
+ * <li> {@link Num}-compressed key positions</li>
+ * <li> the same structure for dates</li>
+ * </ul>
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+final class NumericIndex {
+  /** Values. */
+  private long[] values;
+  /** Key positions. */
+  private final IntList keys;
+
+  /**
+   * Constructor, creating an empty instance.
+   */
+  NumericIndex() {
+    values = new long[ElementList.CAP];
+    keys = new IntList();
+  }
+
+  /**
+   * Constructor, reading the index from the specified input.
+   * @param in input stream
+   * @throws IOException I/O exception
+   */
+  private NumericIndex(final DataInput in) throws IOException {
+    values = in.readLongs(in.readNum());
+    keys = new IntList(in.readNums());
+  }
+
+  /**
+   * Returns the value of a number. The bits of negative numbers are inverted,
+   * and negative zero is treated as zero.
+   * @param number number (must not be {@code NaN})
+   * @return value
+   */
+  static long number(final double number) {
+    final long bits = Double.doubleToLongBits(number + 0d);
+    return bits < 0 ? bits ^ Long.MAX_VALUE : bits;
+  }
+
+  /**
+   * Adds the values of the specified key.
+   * @param nums numeric values
+   * @param dates date values
+   * @param key key
+   * @param pos key position
+   */
+  static void add(final NumericIndex nums, final NumericIndex dates, final byte[] key,
+      final int pos) {
+    final double n = toDouble(key);
+    if(!Double.isNaN(n)) {
+      nums.add(number(n), pos);
+    } else {
+      final long d = ADate.key(key);
+      if(d != Long.MIN_VALUE) dates.add(d, pos);
+    }
+  }
+
+  /**
+   * Adds a value.
+   * @param value value
+   * @param pos key position
+   */
+  private void add(final long value, final int pos) {
+    final int s = keys.size();
+    if(s == values.length) values = Arrays.copyOf(values, Array.newSize(s));
+    values[s] = value;
+    keys.add(pos);
+  }
+
+  /**
+   * Sorts the values and writes the numeric and date values to disk.
+   * @param file file
+   * @param nums numeric values
+   * @param dates date values
+   * @throws IOException I/O exception
+   */
+  static void write(final IOFile file, final NumericIndex nums,
+      final NumericIndex dates) throws IOException {
+    final DataOutput out = new DataOutput(file);
+    try {
+      for(final NumericIndex ni : new NumericIndex[] { nums, dates }) {
+        final int s = ni.keys.size();
+        ni.values = Arrays.copyOf(ni.values, s);
+        ni.keys.sort(ni.values, true);
+        out.writeLongs(ni.values);
+        out.writeNums(ni.keys.toArray());
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Reads the numeric and date values from disk.
+   * @param file file
+   * @return numeric and date values, or {@code null} if the file does not exist
+   * @throws IOException I/O exception
+   */
+  static NumericIndex[] read(final IOFile file) throws IOException {
+    if(!file.exists()) return null;
+    final DataInput in = new DataInput(file);
+    try {
+      return new NumericIndex[] { new NumericIndex(in), new NumericIndex(in) };
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Returns the offset of the first value that is equal to or greater than
+   * the specified value.
+   * @param value value
+   * @return offset
+   */
+  int first(final long value) {
+    int l = 0, h = keys.size() - 1;
+    while(l <= h) {
+      final int m = l + h >>> 1;
+      if(values[m] < value) l = m + 1;
+      else h = m - 1;
+    }
+    return l;
+  }
+
+  /**
+   * Returns the number of values.
+   * @return number of values
+   */
+  int size() {
+    return keys.size();
+  }
+
+  /**
+   * Returns the value at the specified offset.
+   * @param i offset
+   * @return value
+   */
+  long value(final int i) {
+    return values[i];
+  }
+
+  /**
+   * Returns the key position at the specified offset.
+   * @param i offset
+   * @return key position
+   */
+  int key(final int i) {
+    return keys.get(i);
+  }
+}
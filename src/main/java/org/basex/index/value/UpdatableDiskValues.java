@@ -44,6 +44,11 @@ public final class UpdatableDiskValues extends DiskValues {
     return data.pre(id);
   }
 
+  @Override
+  protected boolean ordered() {
+    return data.preEqualsId();
+  }
+
   @Override
   public synchronized void flush() {
     idxl.write4(0, size);
@@ -71,6 +76,7 @@ public final class UpdatableDiskValues extends DiskValues {
     }
 
     // insert new keys, starting from the biggest one
+    if(!nkeys.isEmpty()) dropNumeric();
     for(int j = nkeys.size() - 1, i = last, pos = size + j; j >= 0; --j) {
       final byte[] key = nkeys.get(j);
 
@@ -181,6 +187,7 @@ public final class UpdatableDiskValues extends DiskValues {
    * @param keys list of key positions to delete
    */
   private void deleteKeys(final int[] keys) {
+    dropNumeric();
     // shift all keys to the left, skipping the ones which have to be deleted
     int j = 0;
     for(int pos = keys[j++], i = pos + 1; i < size; ++i) {
@@ -221,6 +228,7 @@ public final class UpdatableDiskValues extends DiskValues {
     int ix = get(key);
     if(ix < 0) {
       ix = -(ix + 1);
+      dropNumeric();
 
       // shift all entries with bigger keys to the right
       for(int i = size; i > ix; --i)
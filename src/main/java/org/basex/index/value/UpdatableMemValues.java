@@ -30,7 +30,7 @@ public final class UpdatableMemValues extends MemValues {
     final byte k = tok.type() == IndexType.TEXT ? Data.TEXT : Data.ATTR;
     final int i = id(tok.get());
     if(i > 0) {
-      final int[] pres = data.pre(ids[i], 0, len[i]);
+      final int[] pres = data.pre(ids(i), 0, len[i]);
       final int s = pres.length;
       if(s > 0) {
         return new IndexIterator() {
@@ -63,14 +63,6 @@ public final class UpdatableMemValues extends MemValues {
   @Override
   public void delete(final byte[] key, final int id) {
     final int i = id(key);
-    if(i == 0 || len[i] == 0) return;
-
-    // find the position where the id is stored
-    int p = -1;
-    while(++p < len[i]) if(ids[i][p] == id) break;
-
-    // if not the last element, we need to shift forwards
-    if(p < len[i] - 1) Array.move(ids[i], p + 1, -1, len[i] - (p + 1));
-    len[i]--;
+    if(i != 0) remove(i, id);
   }
 }
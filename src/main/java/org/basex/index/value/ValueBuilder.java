@@ -5,6 +5,8 @@ import static org.basex.data.DataText.*;
 import static org.basex.util.Token.*;
 
 import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
 
 import org.basex.core.*;
 import org.basex.data.*;
@@ -29,16 +31,25 @@ import org.basex.util.list.*;
  *   structure. Instead, they can be found by following the id references to
  *   the main table.
  * </li>
+ * <li> {@code DATATXT/ATV + 'n'}: contains the sorted numeric and date values
+ *   of the keys, along with the key positions. The structure is described in
+ *   the {@link NumericIndex} class.</li>
  * </ul>
  *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
 public final class ValueBuilder extends IndexBuilder {
+  /** Number of keys whose id lists are sorted in parallel while merging. */
+  private static final int BATCH = 1 << 12;
   /** Temporary value tree. */
   private IndexTree index = new IndexTree();
   /** Index type (attributes/texts). */
   private final boolean text;
+  /** Numeric values of the keys. */
+  private final NumericIndex nums = new NumericIndex();
+  /** Date values of the keys. */
+  private final NumericIndex dates = new NumericIndex();
 
   /**
    * Constructor.
@@ -84,6 +95,7 @@ public final class ValueBuilder extends IndexBuilder {
     } else {
       write(f, true);
     }
+    NumericIndex.write(data.meta.dbfile(f + 'n'), nums, dates);
 
     if(text) data.meta.textindex = true;
     else data.meta.attrindex = true;
@@ -105,47 +117,65 @@ public final class ValueBuilder extends IndexBuilder {
 
     // initialize cached index iterators
     final IntList ml = new IntList();
-    final IntList il = new IntList();
     final ValueMerger[] vm = new ValueMerger[csize];
     for(int i = 0; i < csize; ++i) vm[i] = new ValueMerger(data, text, i);
     int sz = 0;
 
-    // parse through all values
-    while(true) {
-      checkStop();
-
-      // find first index which is not completely parsed yet
-      int min = -1;
-      while(++min < csize && vm[min].values.length == 0);
-      if(min == csize) break;
-
-      // find index entry with smallest key
-      ml.reset();
-      for(int i = min; i < csize; ++i) {
-        if(vm[i].values.length == 0) continue;
-        final int d = diff(vm[min].key, vm[i].key);
-        if(d < 0) continue;
-        if(d > 0) {
-          min = i;
-          ml.reset();
+    // id lists will be sorted in parallel if more than one thread is available
+    final int threads = data.meta.prop.num(Prop.INDEXTHREADS);
+    final ExecutorService pool = threads > 1 ?
+        Executors.newFixedThreadPool(threads) : null;
+    final IntList[] ids = new IntList[pool == null ? 1 : BATCH];
+    ids[0] = new IntList();
+    int b = 0;
+
+    try {
+      // parse through all values
+      while(true) {
+        checkStop();
+
+        // find first index which is not completely parsed yet
+        int min = -1;
+        while(++min < csize && vm[min].values.length == 0);
+        if(min == csize) break;
+
+        // find index entry with smallest key
+        ml.reset();
+        for(int i = min; i < csize; ++i) {
+          if(vm[i].values.length == 0) continue;
+          final int d = diff(vm[min].key, vm[i].key);
+          if(d < 0) continue;
+          if(d > 0) {
+            min = i;
+            ml.reset();
+          }
+          ml.add(i);
         }
-        ml.add(i);
-      }
 
-      // parse through all values, cache and sort id values
-      final int ms = ml.size();
-      for(int m = 0; m < ms; ++m) {
-        final ValueMerger t = vm[ml.get(m)];
-        final int vl = t.values.length;
-        for(int l = 4, v; l < vl; l += Num.length(v)) {
-          v = Num.get(t.values, l);
-          il.add(v);
+        // parse through all values, cache and sort id values
+        NumericIndex.add(nums, dates, vm[min].key, sz);
+        if(pool != null) ids[b] = new IntList();
+        final IntList il = ids[b++];
+        final int ms = ml.size();
+        for(int m = 0; m < ms; ++m) {
+          final ValueMerger t = vm[ml.get(m)];
+          final int vl = t.values.length;
+          for(int l = 4, v; l < vl; l += Num.length(v)) {
+            v = Num.get(t.values, l);
+            il.add(v);
+          }
+          t.next();
         }
-        t.next();
+        // write final structures to disk
+        if(b == ids.length) {
+          write(outL, outR, ids, b, pool, threads);
+          b = 0;
+        }
+        ++sz;
       }
-      // write final structure to disk
-      write(outL, outR, il);
-      ++sz;
+      write(outL, outR, ids, b, pool, threads);
+    } finally {
+      if(pool != null) pool.shutdown();
     }
 
     // close index files
@@ -172,11 +202,13 @@ public final class ValueBuilder extends IndexBuilder {
 
     final IntList il = new IntList();
     index.init();
-    while(index.more()) {
-      final byte[] values = index.values.get(index.next());
+    for(int k = 0; index.more(); k++) {
+      final int i = index.next();
+      final byte[] values = index.values.get(i);
       final int vs = Num.size(values);
 
       if(all) {
+        NumericIndex.add(nums, dates, index.keys.get(i), k);
         // cache and sort all values
         for(int ip = 4; ip < vs; ip += Num.length(values, ip)) {
           il.add(Num.get(values, ip));
@@ -201,6 +233,41 @@ public final class ValueBuilder extends IndexBuilder {
     }
   }
 
+  /**
+   * Writes the final value structures of several keys to disk.
+   * @param outL index values
+   * @param outR references
+   * @param ids id lists
+   * @param n number of id lists
+   * @param pool thread pool for sorting the id lists (may be {@code null})
+   * @param threads number of threads
+   * @throws IOException I/O exception
+   */
+  private static void write(final DataOutput outL, final DataOutput outR,
+      final IntList[] ids, final int n, final ExecutorService pool, final int threads)
+      throws IOException {
+
+    if(pool != null && n > 1) {
+      final ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+      for(int t = 0; t < threads; t++) {
+        final int s = n * t / threads, e = n * (t + 1) / threads;
+        futures.add(pool.submit(new Runnable() {
+          @Override
+          public void run() {
+            for(int i = s; i < e; i++) ids[i].sort();
+          }
+        }));
+      }
+      try {
+        for(final Future<?> f : futures) f.get();
+      } catch(final Exception ex) {
+        throw new BaseXException(ex);
+      }
+    }
+    // lists that have already been sorted will be processed in linear time
+    for(int i = 0; i < n; i++) write(outL, outR, ids[i]);
+  }
+
   /**
    * Writes the final value structure to disk.
    * @param outL index values
@@ -0,0 +1,463 @@
+package org.basex.io;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import org.basex.core.*;
+import org.basex.io.out.*;
+import org.basex.util.list.*;
+
+/**
+ * Creates and restores full and incremental backups of a database directory.
+ * Each backup contains a manifest, which stores the length and the checksums of
+ * all pages of the backed up files. An incremental backup only contains the pages
+ * that differ from the state recorded in its base backup. The pages of a file are
+ * concatenated to a single archive entry; as the stored pages can be derived from
+ * the manifests of a backup and its base, no additional index is needed.
+ * Full backups can also be extracted with standard ZIP tools.
+ *
+ * Files whose length and modification time have not changed since the base
+ * backup was created are not read again. An incremental backup can only be
+ * restored if all backups of its chain are available (see {@link #bases}).
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class Backup extends Progress {
+  /** Name of the manifest entry. */
+  private static final String MANIFEST = ".pages";
+  /** Page size. */
+  private static final int PAGE = IO.BLOCKSIZE;
+  /** Minimum age of unchanged files, compared to the base backup (ms). This
+   * margin covers file systems that store modification times in seconds. */
+  private static final long AGE = 2000;
+
+  /** Archive. */
+  private final IOFile archive;
+  /** Total number of bytes to be read. */
+  private long total = 1;
+  /** Number of read bytes. */
+  private long curr;
+
+  /**
+   * Constructor.
+   * @param file archive file
+   */
+  public Backup(final IOFile file) {
+    archive = file;
+  }
+
+  /**
+   * Creates a backup of the specified database directory.
+   * @param dir database directory
+   * @param base base backup; if {@code null}, or if it has been created by
+   *   a previous version, a full backup is created
+   * @param threads number of threads for compressing the files
+   * @throws IOException I/O exception
+   */
+  public void create(final IOFile dir, final IOFile base, final int threads)
+      throws IOException {
+
+    final Manifest old = base == null ? null : manifest(base);
+    final Manifest man = new Manifest(old == null ? "" : base.name(), dir.name(),
+        System.currentTimeMillis());
+    final ArrayList<String> files = new ArrayList<String>();
+    for(final String name : dir.descendants()) {
+      if(!Databases.FILES.matcher(name).matches()) continue;
+      files.add(name);
+      total += new File(dir.file(), name).length();
+    }
+
+    // use fast compression
+    final ZipOutput out = new ZipOutput(archive.file(), 1, threads);
+    try {
+      out.dir(man.db + '/');
+      for(final String name : files) {
+        final File file = new File(dir.file(), name);
+        final Pages pages = new Pages(file.length(), file.lastModified());
+        final Pages op = old == null ? null : old.files.get(name);
+        man.files.put(name, pages);
+
+        PageInput in;
+        if(op != null && op.length == pages.length && op.modified == pages.modified &&
+            pages.modified < old.time - AGE) {
+          // file has not been changed since the base backup: skip all pages
+          System.arraycopy(op.sums, 0, pages.sums, 0, op.sums.length);
+          in = new PageInput(file, null, new boolean[pages.sums.length]);
+          curr += pages.length;
+        } else if(op != null) {
+          in = new PageInput(file, pages, null);
+          // compute checksums of all pages, and only store the changed ones
+          try {
+            while(in.next());
+          } finally {
+            in.close();
+          }
+          in = new PageInput(file, null, changed(op, pages));
+        } else {
+          in = new PageInput(file, pages, null);
+        }
+        try {
+          out.add(man.db + '/' + name, in);
+        } finally {
+          in.close();
+        }
+      }
+      out.add(MANIFEST, new ByteArrayInputStream(man.toBytes()));
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Returns the names of all backups on which the specified backup is based,
+   * starting with the direct base.
+   * @param file backup
+   * @return names of base backups, or {@code null} if a base backup is missing
+   * @throws IOException I/O exception
+   */
+  public static StringList bases(final IOFile file) throws IOException {
+    final StringList sl = new StringList();
+    for(Manifest man = manifest(file); man != null && !man.base.isEmpty();) {
+      if(sl.contains(man.base)) throw new IOException("Cyclic backup chain: " + file);
+      final IOFile base = new IOFile(file.dir(), man.base);
+      if(!base.exists()) return null;
+      sl.add(man.base);
+      man = manifest(base);
+    }
+    return sl;
+  }
+
+  /**
+   * Restores the backup to the specified directory.
+   * If the backup is incremental, its base backups will be restored first.
+   * @param dbpath target directory
+   * @throws IOException I/O exception
+   */
+  public void restore(final IOFile dbpath) throws IOException {
+    final ZipFile zip = new ZipFile(archive.file());
+    try {
+      final Manifest man = manifest(zip);
+      if(man == null) {
+        // backup of a previous version: extract all files
+        unzip(zip, dbpath);
+        return;
+      }
+
+      Manifest old = null;
+      if(!man.base.isEmpty()) {
+        final IOFile base = new IOFile(archive.dir(), man.base);
+        if(!base.exists()) throw new FileNotFoundException(base.path());
+        progress(new Backup(base)).restore(dbpath);
+        old = manifest(base);
+      }
+
+      final IOFile dir = new IOFile(dbpath, man.db);
+      dir.md();
+      for(final Pages p : man.files.values()) total += p.length;
+      for(final Map.Entry<String, Pages> me : man.files.entrySet()) {
+        final String name = me.getKey();
+        final ZipEntry ze = zip.getEntry(man.db + '/' + name);
+        if(ze == null) throw new FileNotFoundException(name);
+        final Pages op = old == null ? null : old.files.get(name);
+        final DataInputStream in = new DataInputStream(zip.getInputStream(ze));
+        try {
+          write(in, new File(dir.file(), name), op, me.getValue());
+        } finally {
+          in.close();
+        }
+      }
+
+      // delete files that have not been backed up
+      for(final String name : dir.descendants()) {
+        if(Databases.FILES.matcher(name).matches() && !man.files.containsKey(name)) {
+          new IOFile(dir, name).delete();
+        }
+      }
+    } finally {
+      zip.close();
+    }
+  }
+
+  @Override
+  protected double prog() {
+    return (double) curr / total;
+  }
+
+  /**
+   * Writes the stored pages of a file.
+   * @param in input stream
+   * @param file target file
+   * @param old pages of the base backup (may be {@code null})
+   * @param pages pages of the backup
+   * @throws IOException I/O exception
+   */
+  private void write(final DataInputStream in, final File file, final Pages old,
+      final Pages pages) throws IOException {
+
+    final byte[] page = new byte[PAGE];
+    final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(pages.length);
+      final boolean[] changed = changed(old, pages);
+      final int ps = changed.length;
+      for(int p = 0; p < ps; p++) {
+        if(!changed[p]) continue;
+        checkStop();
+        final int l = pages.length(p);
+        in.readFully(page, 0, l);
+        raf.seek((long) p * PAGE);
+        raf.write(page, 0, l);
+        curr += l;
+      }
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Extracts all entries of an archive without manifest.
+   * @param zip archive
+   * @param dbpath target directory
+   * @throws IOException I/O exception
+   */
+  private static void unzip(final ZipFile zip, final IOFile dbpath) throws IOException {
+    final Enumeration<? extends ZipEntry> en = zip.entries();
+    while(en.hasMoreElements()) {
+      final ZipEntry ze = en.nextElement();
+      final IOFile trg = new IOFile(dbpath, ze.getName());
+      if(ze.isDirectory()) {
+        trg.md();
+      } else {
+        new IOFile(trg.dir()).md();
+        final InputStream in = zip.getInputStream(ze);
+        try {
+          trg.write(in);
+        } finally {
+          in.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the pages that have changed, compared to the base backup.
+   * @param old pages of the base backup (may be {@code null})
+   * @param pages current pages
+   * @return flags for changed pages
+   */
+  private static boolean[] changed(final Pages old, final Pages pages) {
+    final int ps = pages.sums.length, os = old == null ? 0 : old.sums.length;
+    final boolean[] changed = new boolean[ps];
+    for(int p = 0; p < ps; p++) {
+      changed[p] = p >= os || old.sums[p] != pages.sums[p] ||
+          old.length != pages.length && (p == ps - 1 || p == os - 1);
+    }
+    return changed;
+  }
+
+  /**
+   * Returns the manifest of the specified archive.
+   * @param file archive
+   * @return manifest, or {@code null} if the archive contains no manifest
+   * @throws IOException I/O exception
+   */
+  private static Manifest manifest(final IOFile file) throws IOException {
+    final ZipFile zip = new ZipFile(file.file());
+    try {
+      return manifest(zip);
+    } finally {
+      zip.close();
+    }
+  }
+
+  /**
+   * Returns the manifest of the specified archive.
+   * @param zip archive
+   * @return manifest, or {@code null} if the archive contains no manifest
+   * @throws IOException I/O exception
+   */
+  private static Manifest manifest(final ZipFile zip) throws IOException {
+    final ZipEntry ze = zip.getEntry(MANIFEST);
+    if(ze == null) return null;
+    final DataInputStream in = new DataInputStream(
+        new BufferedInputStream(zip.getInputStream(ze)));
+    try {
+      final Manifest man = new Manifest(in.readUTF(), in.readUTF(), in.readLong());
+      for(int f = in.readInt(); f > 0; f--) {
+        final String name = in.readUTF();
+        final Pages pages = new Pages(in.readLong(), in.readLong());
+        for(int p = 0; p < pages.sums.length; p++) pages.sums[p] = in.readLong();
+        man.files.put(name, pages);
+      }
+      return man;
+    } finally {
+      in.close();
+    }
+  }
+
+  /** Manifest of a backup. */
+  private static final class Manifest {
+    /** Name of the base backup (empty for full backups). */
+    final String base;
+    /** Name of the database directory. */
+    final String db;
+    /** Creation time. */
+    final long time;
+    /** Backed up files. */
+    final TreeMap<String, Pages> files = new TreeMap<String, Pages>();
+
+    /**
+     * Constructor.
+     * @param b name of the base backup
+     * @param d name of the database directory
+     * @param t creation time
+     */
+    Manifest(final String b, final String d, final long t) {
+      base = b;
+      db = d;
+      time = t;
+    }
+
+    /**
+     * Serializes the manifest.
+     * @return bytes
+     * @throws IOException I/O exception
+     */
+    byte[] toBytes() throws IOException {
+      final ByteArrayOutputStream bo = new ByteArrayOutputStream();
+      final DataOutputStream out = new DataOutputStream(bo);
+      out.writeUTF(base);
+      out.writeUTF(db);
+      out.writeLong(time);
+      out.writeInt(files.size());
+      for(final Map.Entry<String, Pages> me : files.entrySet()) {
+        out.writeUTF(me.getKey());
+        final Pages pages = me.getValue();
+        out.writeLong(pages.length);
+        out.writeLong(pages.modified);
+        for(final long sum : pages.sums) out.writeLong(sum);
+      }
+      out.close();
+      return bo.toByteArray();
+    }
+  }
+
+  /** Length and page checksums of a file. */
+  private static final class Pages {
+    /** File length. */
+    final long length;
+    /** Modification time of the file. */
+    final long modified;
+    /** Page checksums (CRC32 in the upper, Adler32 in the lower 32 bits). */
+    final long[] sums;
+
+    /**
+     * Constructor.
+     * @param l file length
+     * @param m modification time
+     */
+    Pages(final long l, final long m) {
+      length = l;
+      modified = m;
+      sums = new long[(int) ((l + PAGE - 1) / PAGE)];
+    }
+
+    /**
+     * Returns the length of the specified page.
+     * @param p page
+     * @return length
+     */
+    int length(final int p) {
+      return (int) Math.min(PAGE, length - (long) p * PAGE);
+    }
+  }
+
+  /** Returns the contents of all or some pages of a file. */
+  private final class PageInput extends InputStream {
+    /** Input file. */
+    private final RandomAccessFile file;
+    /** Pages whose checksums are computed (may be {@code null}). */
+    private final Pages pages;
+    /** Pages to be returned ({@code null} for all pages). */
+    private final boolean[] filter;
+    /** Page buffer. */
+    private final byte[] page = new byte[PAGE];
+    /** Checksums. */
+    private final CRC32 crc = new CRC32();
+    /** Checksums. */
+    private final Adler32 adler = new Adler32();
+    /** File length. */
+    private final long length;
+    /** Number of pages. */
+    private final int size;
+    /** Next page. */
+    private int next;
+    /** Current position in the page buffer. */
+    private int pos;
+    /** Number of bytes in the page buffer. */
+    private int len;
+
+    /**
+     * Constructor.
+     * @param f file
+     * @param p pages whose checksums will be computed (may be {@code null})
+     * @param fl pages to be returned ({@code null} for all pages)
+     * @throws IOException I/O exception
+     */
+    PageInput(final File f, final Pages p, final boolean[] fl) throws IOException {
+      file = new RandomAccessFile(f, "r");
+      pages = p;
+      filter = fl;
+      length = file.length();
+      size = (int) ((length + PAGE - 1) / PAGE);
+    }
+
+    @Override
+    public int read() throws IOException {
+      return pos < len || next() ? page[pos++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(final byte[] b, final int o, final int l) throws IOException {
+      if(pos == len && !next()) return -1;
+      final int r = Math.min(l, len - pos);
+      System.arraycopy(page, pos, b, o, r);
+      pos += r;
+      return r;
+    }
+
+    /**
+     * Reads the next page.
+     * @return {@code true} if a page was read
+     * @throws IOException I/O exception
+     */
+    boolean next() throws IOException {
+      checkStop();
+      while(next < size && filter != null && !filter[next]) next++;
+      if(next == size) return false;
+
+      final long off = (long) next * PAGE;
+      if(file.getFilePointer() != off) file.seek(off);
+      len = (int) Math.min(PAGE, length - off);
+      file.readFully(page, 0, len);
+      pos = 0;
+      if(pages != null) {
+        crc.reset();
+        crc.update(page, 0, len);
+        adler.reset();
+        adler.update(page, 0, len);
+        pages.sums[next] = crc.getValue() << 32 | adler.getValue();
+        curr += len;
+      }
+      next++;
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      file.close();
+    }
+  }
+}
@@ -72,6 +72,8 @@ public abstract class IO {
   public static final long OFFNUM = 0x8000000000L;
   /** Offset for compressing texts (see bit layout in {@link Data} class). */
   public static final long OFFCOMP = 0x4000000000L;
+  /** Offset for texts in compressed blocks (see bit layout in {@link Data} class). */
+  public static final long OFFBLOCK = OFFNUM | OFFCOMP;
 
   /** File path. The path uses forward slashes, no matter which OS is used. */
   String path;
@@ -56,6 +56,11 @@ public final class NewlineInput extends TextInput {
     return '\n';
   }
 
+  @Override
+  public int read(final TokenBuilder tb, final boolean[] accept) {
+    return next == -2 ? super.read(tb, accept) : 0;
+  }
+
   /**
    * Reads and returns a single line.
    * @return line, or {@code null}
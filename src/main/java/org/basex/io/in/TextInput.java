@@ -119,6 +119,29 @@ public class TextInput extends BufferInput {
     return ch;
   }
 
+  /**
+   * Copies a run of buffered ASCII characters to the specified token builder,
+   * bypassing the decoder. The run ends before the first character that is not
+   * accepted, or if no more bytes are buffered. Nothing is copied if the input
+   * is not UTF-8 encoded.
+   * @param tb token builder
+   * @param accept accepted ASCII characters
+   * @return number of copied characters
+   */
+  public int read(final TokenBuilder tb, final boolean[] accept) {
+    if(!(decoder instanceof TextDecoder.UTF8)) return 0;
+    final byte[] buf = buffer;
+    final int s = bpos, e = bsize;
+    int p = s;
+    // bytes of non-ASCII characters are negative
+    for(byte b; p < e && (b = buf[p]) >= 0 && accept[b];) p++;
+    if(p != s) {
+      tb.add(buf, s, p);
+      bpos = p;
+    }
+    return p - s;
+  }
+
   @Override
   public byte[] content() throws IOException {
     final TokenBuilder tb = new TokenBuilder(Math.max(ElementList.CAP, (int) length));
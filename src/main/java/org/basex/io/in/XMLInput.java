@@ -74,6 +74,24 @@ public class XMLInput extends InputStream {
     return ch;
   }
 
+  /**
+   * Copies a run of ASCII characters to the specified token builder. Nothing is
+   * copied if characters have been pushed back, or if entities are being read
+   * (see {@link TextInput#read(TokenBuilder, boolean[])}).
+   * Line breaks must not be accepted.
+   * @param tb token builder
+   * @param accept accepted ASCII characters
+   */
+  public void read(final TokenBuilder tb, final boolean[] accept) {
+    if(pp != 0 || ip != 0) return;
+    final int n = inputs[0].read(tb, accept);
+    // remember most recent characters
+    for(int t = tb.size(), i = Math.max(t - n, t - last.length); i < t; i++) {
+      last[lp++] = tb.get(i);
+      lp &= 0x0F;
+    }
+  }
+
   /**
    * Inserts some bytes in the input stream.
    * @param val values to insert
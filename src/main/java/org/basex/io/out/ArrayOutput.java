@@ -37,6 +37,15 @@ public final class ArrayOutput extends PrintOutput {
     size = s + 1;
   }
 
+  @Override
+  public void write(final byte[] b, final int o, final int l) {
+    final int s = (int) size, n = (int) Math.min(l, max - s);
+    if(n <= 0) return;
+    if(s + n > buf.length) buf = Arrays.copyOf(buf, Math.max(s + n, s << 1));
+    System.arraycopy(b, o, buf, s, n);
+    size = s + n;
+  }
+
   /**
    * Returns the output as byte array.
    * @return byte array
@@ -0,0 +1,208 @@
+package org.basex.io.out;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import org.basex.io.*;
+import org.basex.util.*;
+import org.basex.util.hash.*;
+import org.basex.util.list.*;
+
+/**
+ * This class writes tokens to a file in compressed blocks. Each block contains
+ * up to {@link #ENTRIES} tokens, which are compressed with a dictionary that
+ * is trained from the first tokens. The file has the following format:
+ *
+ * <ul>
+ * <li> dictionary ({@link Num}-compressed length, followed by the bytes)</li>
+ * <li> blocks: {@link Num}-compressed length of the uncompressed block, shifted
+ *   left by one bit, followed by the compressed block (length and bytes).
+ *   If the lowest bit is set, the block is stored uncompressed, as compression
+ *   would save less than an eighth of its size.</li>
+ * <li> 5-byte offsets of all blocks, followed by the 4-byte number of
+ *   blocks</li>
+ * </ul>
+ *
+ * An uncompressed block consists of the tokens, each preceded by its
+ * {@link Num}-compressed length. A token is referenced by the number of
+ * its block, shifted left by 8 bits, and its position in the block.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class BlockOutput {
+  /** Maximum number of tokens per block. */
+  public static final int ENTRIES = 1 << 8;
+  /** Maximum size of an uncompressed block (may be exceeded by single tokens). */
+  public static final int BLOCKSIZE = 1 << 11;
+  /** Maximum size of the dictionary (size of the deflate window). */
+  private static final int DICTSIZE = 1 << 13;
+  /** Number of bytes that are sampled for training the dictionary. */
+  private static final int SAMPLE = 1 << 18;
+  /** Maximum length of tokens that are added to the dictionary. */
+  private static final int MAXLEN = 1 << 7;
+
+  /** Output stream. */
+  private final DataOutput out;
+  /** Compressor. */
+  private final Deflater deflater = new Deflater();
+  /** Current block. */
+  private final ByteList block = new ByteList();
+  /** Number of tokens in the current block. */
+  private int entries;
+  /** Offsets of the written blocks. */
+  private long[] offsets = new long[ElementList.CAP];
+  /** Number of finished blocks. */
+  private int blocks;
+  /** Blocks that have been sampled for training the dictionary
+   * ({@code null} if the dictionary has been written). */
+  private ArrayList<byte[]> sample = new ArrayList<byte[]>();
+  /** Number of sampled bytes. */
+  private int sampled;
+  /** Dictionary. */
+  private byte[] dict;
+
+  /**
+   * Constructor.
+   * @param file file to be written
+   * @param bufs size of the internal buffer
+   * @throws IOException I/O exception
+   */
+  public BlockOutput(final IOFile file, final int bufs) throws IOException {
+    out = new DataOutput(file, bufs);
+  }
+
+  /**
+   * Writes the specified token and returns its reference.
+   * @param token token to be written
+   * @return reference
+   * @throws IOException I/O exception
+   */
+  public long write(final byte[] token) throws IOException {
+    if(entries == ENTRIES || entries != 0 && block.size() + token.length > BLOCKSIZE) {
+      finish();
+    }
+    final long ref = (long) blocks << 8 | entries++;
+    block.add(Num.num(token.length)).add(token);
+    return ref;
+  }
+
+  /**
+   * Writes all remaining data and closes the file.
+   * @throws IOException I/O exception
+   */
+  public void close() throws IOException {
+    if(entries != 0) finish();
+    if(sample != null) train();
+    for(int b = 0; b < blocks; b++) out.write5(offsets[b]);
+    out.write4(blocks);
+    out.close();
+    deflater.end();
+  }
+
+  /**
+   * Finishes the current block.
+   * @throws IOException I/O exception
+   */
+  private void finish() throws IOException {
+    final byte[] raw = block.toArray();
+    block.reset();
+    entries = 0;
+    if(blocks == offsets.length) offsets = Arrays.copyOf(offsets, Array.newSize(blocks));
+    blocks++;
+    if(sample == null) {
+      write(raw, blocks - 1);
+    } else {
+      sample.add(raw);
+      sampled += raw.length;
+      if(sampled >= SAMPLE) train();
+    }
+  }
+
+  /**
+   * Trains the dictionary and writes the sampled blocks.
+   * @throws IOException I/O exception
+   */
+  private void train() throws IOException {
+    dict = dictionary(sample);
+    out.writeToken(dict);
+    for(int b = 0; b < sample.size(); b++) write(sample.get(b), b);
+    sample = null;
+  }
+
+  /**
+   * Compresses and writes a block.
+   * @param raw uncompressed block
+   * @param b block number
+   * @throws IOException I/O exception
+   */
+  private void write(final byte[] raw, final int b) throws IOException {
+    offsets[b] = out.size();
+    deflater.reset();
+    if(dict.length != 0) deflater.setDictionary(dict);
+    deflater.setInput(raw);
+    deflater.finish();
+    final ByteList bl = new ByteList(raw.length >>> 1);
+    final byte[] buffer = new byte[IO.BLOCKSIZE];
+    while(!deflater.finished()) bl.add(buffer, 0, deflater.deflate(buffer));
+    // store block uncompressed if compression saves little space
+    final boolean store = bl.size() >= raw.length - (raw.length >>> 3);
+    out.writeNum(raw.length << 1 | (store ? 1 : 0));
+    out.writeToken(store ? raw : bl.toArray());
+  }
+
+  /**
+   * Creates a dictionary from the sampled blocks. All tokens and words are
+   * counted, and the ones that save most space are assembled.
+   * Tokens with the biggest savings are placed last, as they will be found
+   * with the smallest distances.
+   * @param raw uncompressed blocks
+   * @return dictionary
+   */
+  private static byte[] dictionary(final ArrayList<byte[]> raw) {
+    final TokenIntMap counts = new TokenIntMap();
+    for(final byte[] b : raw) {
+      for(int p = 0; p < b.length;) {
+        final int l = Num.get(b, p);
+        p += Num.length(b, p);
+        // count tokens and words
+        if(l <= MAXLEN) count(counts, Arrays.copyOfRange(b, p, p + l));
+        for(int s = p, e = p + l, i = s; i <= e; i++) {
+          if(i < e && !Token.ws(b[i])) continue;
+          if(i - s > 2 && i - s < l) count(counts, Arrays.copyOfRange(b, s, i));
+          s = i + 1;
+        }
+        p += l;
+      }
+    }
+
+    // collect tokens that occur more than once, sorted by their savings
+    final TokenList tokens = new TokenList();
+    final IntList savings = new IntList();
+    for(final byte[] t : counts) {
+      final int c = counts.value(t);
+      if(c < 2) continue;
+      tokens.add(t);
+      savings.add((c - 1) * t.length);
+    }
+    final int[] order = Array.createOrder(savings.toArray(), false);
+    int n = 0;
+    for(int size = 0; n < order.length; n++) {
+      size += tokens.get(order[n]).length;
+      if(size > DICTSIZE) break;
+    }
+    final ByteList dict = new ByteList();
+    while(--n >= 0) dict.add(tokens.get(order[n]));
+    return dict.toArray();
+  }
+
+  /**
+   * Increases the counter of the specified token.
+   * @param counts counters
+   * @param token token
+   */
+  private static void count(final TokenIntMap counts, final byte[] token) {
+    counts.add(token, Math.max(0, counts.value(token)) + 1);
+  }
+}
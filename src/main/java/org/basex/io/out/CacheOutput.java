@@ -0,0 +1,60 @@
+package org.basex.io.out;
+
+import java.io.*;
+
+/**
+ * This class passes on all bytes to another output stream. The bytes are
+ * additionally cached as long as their number does not exceed a maximum.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class CacheOutput extends PrintOutput {
+  /** Output stream. */
+  private final PrintOutput out;
+  /** Maximum number of cached bytes. */
+  private final long limit;
+  /** Cached bytes ({@code null} if the maximum was exceeded). */
+  private ArrayOutput cache = new ArrayOutput();
+
+  /**
+   * Constructor.
+   * @param o output stream
+   * @param l maximum number of cached bytes
+   */
+  public CacheOutput(final PrintOutput o, final long l) {
+    out = o;
+    limit = l;
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    out.write(b);
+    if(cache != null) {
+      if(cache.size() == limit) cache = null;
+      else cache.write(b);
+    }
+  }
+
+  @Override
+  public void write(final byte[] b, final int o, final int l) throws IOException {
+    out.write(b, o, l);
+    if(cache != null) {
+      if(cache.size() + l > limit) cache = null;
+      else cache.write(b, o, l);
+    }
+  }
+
+  /**
+   * Returns the cached bytes.
+   * @return bytes, or {@code null} if the maximum was exceeded
+   */
+  public byte[] toArray() {
+    return cache == null ? null : cache.toArray();
+  }
+
+  @Override
+  public boolean finished() {
+    return out.finished();
+  }
+}
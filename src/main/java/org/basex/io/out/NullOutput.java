@@ -9,4 +9,7 @@ package org.basex.io.out;
 public final class NullOutput extends PrintOutput {
   @Override
   public void write(final int b) { }
+
+  @Override
+  public void write(final byte[] b, final int o, final int l) { }
 }
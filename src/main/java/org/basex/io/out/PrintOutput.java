@@ -62,6 +62,13 @@ public class PrintOutput extends OutputStream {
     if(size++ < max) os.write(b);
   }
 
+  @Override
+  public void write(final byte[] b, final int o, final int l) throws IOException {
+    final long n = Math.min(l, max - size);
+    if(n > 0) os.write(b, o, (int) n);
+    size += l;
+  }
+
   /**
    * Writes a character as UTF8.
    * @param ch character to be printed
@@ -0,0 +1,456 @@
+package org.basex.io.out;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+import org.basex.core.*;
+import org.basex.util.*;
+
+/**
+ * This class writes ZIP archives, which can be read by {@link ZipFile} and
+ * {@link ZipInputStream}. If more than one thread is specified, the contents
+ * of an entry are split into chunks, which are compressed in parallel and
+ * concatenated to a single deflate stream. The last 32 KB of the preceding
+ * chunk are used as dictionary. As the chunks must be aligned via a sync flush,
+ * which is only available since Java 7, entries are compressed sequentially if
+ * an older runtime is used. ZIP64 extensions are written if sizes,
+ * offsets or the number of entries exceed the limits of the ZIP format.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class ZipOutput {
+  /** Size of the chunks that are compressed in parallel. */
+  private static final int CHUNK = 1 << 20;
+  /** Size of the deflate window. */
+  private static final int WINDOW = 1 << 15;
+  /** Maximum value of 16-bit fields. */
+  private static final int MAX16 = 0xFFFF;
+  /** Maximum value of 32-bit fields. */
+  private static final long MAX32 = 0xFFFFFFFFL;
+  /** Flush mode for byte-aligned blocks (value of {@code Deflater.SYNC_FLUSH}). */
+  private static final int SYNC_FLUSH = 2;
+  /** Deflate method with flush mode ({@code null} before Java 7). */
+  private static final Method DEFLATE = Reflect.method(Deflater.class, "deflate",
+      byte[].class, int.class, int.class, int.class);
+
+  /** Output stream. */
+  private final OutputStream out;
+  /** Written entries. */
+  private final ArrayList<Entry> entries = new ArrayList<Entry>();
+  /** Compression level. */
+  private final int level;
+  /** Number of threads. */
+  private final int threads;
+  /** Thread pool ({@code null} if entries are compressed sequentially). */
+  private final ExecutorService pool;
+  /** DOS timestamp of the entries. */
+  private final long time;
+  /** Number of written bytes. */
+  private long written;
+
+  /**
+   * Constructor.
+   * @param file archive file
+   * @param lvl compression level
+   * @param thr number of threads (ignored before Java 7)
+   * @throws IOException I/O exception
+   */
+  public ZipOutput(final File file, final int lvl, final int thr) throws IOException {
+    out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+    level = lvl;
+    threads = DEFLATE == null ? 1 : Math.max(1, thr);
+    pool = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+    time = dosTime(System.currentTimeMillis());
+  }
+
+  /**
+   * Adds a directory entry.
+   * @param name name of the directory (must end with a slash)
+   * @throws IOException I/O exception
+   */
+  public void dir(final String name) throws IOException {
+    final Entry e = header(name, false);
+    e.size = 0;
+    e.csize = 0;
+  }
+
+  /**
+   * Adds an entry with the contents of the specified input stream.
+   * The stream will not be closed.
+   * @param name name of the entry
+   * @param in input stream
+   * @throws IOException I/O exception
+   */
+  public void add(final String name, final InputStream in) throws IOException {
+    final Entry e = header(name, true);
+    final long start = written;
+    final CRC32 crc = new CRC32();
+    if(pool == null) {
+      e.size = deflate(in, crc);
+    } else {
+      e.size = deflateParallel(in, crc);
+    }
+    e.crc = crc.getValue();
+    e.csize = written - start;
+
+    // data descriptor
+    final boolean zip64 = e.size >= MAX32 || e.csize >= MAX32;
+    write4(0x08074b50);
+    write4(e.crc);
+    if(zip64) {
+      write8(e.csize);
+      write8(e.size);
+    } else {
+      write4(e.csize);
+      write4(e.size);
+    }
+  }
+
+  /**
+   * Writes the central directory and closes the archive.
+   * @throws IOException I/O exception
+   */
+  public void close() throws IOException {
+    try {
+      final long cd = written;
+      for(final Entry e : entries) central(e);
+      final long cds = written - cd;
+      final int es = entries.size();
+
+      if(es >= MAX16 || cd >= MAX32 || cds >= MAX32) {
+        // ZIP64 end of central directory record and locator
+        final long end = written;
+        write4(0x06064b50);
+        write8(44);
+        write2(45);
+        write2(45);
+        write4(0);
+        write4(0);
+        write8(es);
+        write8(es);
+        write8(cds);
+        write8(cd);
+        write4(0x07064b50);
+        write4(0);
+        write8(end);
+        write4(1);
+      }
+      // end of central directory record
+      write4(0x06054b50);
+      write2(0);
+      write2(0);
+      write2(Math.min(es, MAX16));
+      write2(Math.min(es, MAX16));
+      write4(Math.min(cds, MAX32));
+      write4(Math.min(cd, MAX32));
+      write2(0);
+    } finally {
+      if(pool != null) pool.shutdownNow();
+      out.close();
+    }
+  }
+
+  // PRIVATE METHODS ==========================================================
+
+  /**
+   * Compresses the input with a single deflater.
+   * @param in input stream
+   * @param crc checksum
+   * @return number of read bytes
+   * @throws IOException I/O exception
+   */
+  private long deflate(final InputStream in, final CRC32 crc) throws IOException {
+    final Deflater def = new Deflater(level, true);
+    try {
+      final byte[] buf = new byte[1 << 16], cmp = new byte[1 << 16];
+      long size = 0;
+      for(int n; (n = in.read(buf)) != -1;) {
+        crc.update(buf, 0, n);
+        size += n;
+        def.setInput(buf, 0, n);
+        while(!def.needsInput()) write(cmp, def.deflate(cmp));
+      }
+      def.finish();
+      while(!def.finished()) write(cmp, def.deflate(cmp));
+      return size;
+    } finally {
+      def.end();
+    }
+  }
+
+  /**
+   * Compresses chunks of the input in parallel.
+   * @param in input stream
+   * @param crc checksum
+   * @return number of read bytes
+   * @throws IOException I/O exception
+   */
+  private long deflateParallel(final InputStream in, final CRC32 crc)
+      throws IOException {
+
+    final ArrayDeque<Future<byte[]>> queue = new ArrayDeque<Future<byte[]>>();
+    long size = 0;
+    byte[] dict = null, chunk = read(in);
+    while(true) {
+      // a chunk that has not been completely filled is the last one
+      final byte[] next = chunk.length < CHUNK ? new byte[0] : read(in);
+      final boolean last = next.length == 0;
+      crc.update(chunk);
+      size += chunk.length;
+
+      if(queue.size() == threads << 1) write(queue.poll());
+      queue.add(pool.submit(new Chunk(chunk, dict, last)));
+      if(last) break;
+      dict = chunk;
+      chunk = next;
+    }
+    while(!queue.isEmpty()) write(queue.poll());
+    return size;
+  }
+
+  /**
+   * Reads the next chunk.
+   * @param in input stream
+   * @return chunk (may be smaller than the chunk size if the end of the input
+   *   has been reached)
+   * @throws IOException I/O exception
+   */
+  private static byte[] read(final InputStream in) throws IOException {
+    final byte[] chunk = new byte[CHUNK];
+    int l = 0;
+    for(int n; l < CHUNK && (n = in.read(chunk, l, CHUNK - l)) != -1;) l += n;
+    return l == CHUNK ? chunk : Arrays.copyOf(chunk, l);
+  }
+
+  /**
+   * Writes the result of a compression task.
+   * @param task task
+   * @throws IOException I/O exception
+   */
+  private void write(final Future<byte[]> task) throws IOException {
+    final byte[] b;
+    try {
+      b = task.get();
+    } catch(final InterruptedException ex) {
+      throw new BaseXException(ex);
+    } catch(final ExecutionException ex) {
+      final Throwable th = ex.getCause();
+      if(th instanceof RuntimeException) throw (RuntimeException) th;
+      if(th instanceof Error) throw (Error) th;
+      throw new BaseXException(ex);
+    }
+    write(b, b.length);
+  }
+
+  /**
+   * Writes a local file header and registers the entry.
+   * @param name name of the entry
+   * @param deflate deflated entry with data descriptor
+   * @return entry
+   * @throws IOException I/O exception
+   */
+  private Entry header(final String name, final boolean deflate) throws IOException {
+    final Entry e = new Entry(Token.token(name), written, deflate);
+    entries.add(e);
+    write4(0x04034b50);
+    write2(20);
+    write2(e.flags());
+    write2(e.method());
+    write4(time);
+    write4(0);
+    write4(0);
+    write4(0);
+    write2(e.name.length);
+    write2(0);
+    write(e.name, e.name.length);
+    return e;
+  }
+
+  /**
+   * Writes a central directory header.
+   * @param e entry
+   * @throws IOException I/O exception
+   */
+  private void central(final Entry e) throws IOException {
+    final boolean zsize = e.size >= MAX32, zcsize = e.csize >= MAX32;
+    final boolean zoff = e.offset >= MAX32;
+    final int extra = (zsize ? 8 : 0) + (zcsize ? 8 : 0) + (zoff ? 8 : 0);
+
+    write4(0x02014b50);
+    write2(45);
+    write2(extra == 0 ? 20 : 45);
+    write2(e.flags());
+    write2(e.method());
+    write4(time);
+    write4(e.crc);
+    write4(Math.min(e.csize, MAX32));
+    write4(Math.min(e.size, MAX32));
+    write2(e.name.length);
+    write2(extra == 0 ? 0 : extra + 4);
+    write2(0);
+    write2(0);
+    write2(0);
+    write4(0);
+    write4(Math.min(e.offset, MAX32));
+    write(e.name, e.name.length);
+    if(extra != 0) {
+      write2(1);
+      write2(extra);
+      if(zsize) write8(e.size);
+      if(zcsize) write8(e.csize);
+      if(zoff) write8(e.offset);
+    }
+  }
+
+  /**
+   * Writes bytes.
+   * @param b bytes
+   * @param l number of bytes to be written
+   * @throws IOException I/O exception
+   */
+  private void write(final byte[] b, final int l) throws IOException {
+    out.write(b, 0, l);
+    written += l;
+  }
+
+  /**
+   * Writes a 16-bit value in little-endian order.
+   * @param v value
+   * @throws IOException I/O exception
+   */
+  private void write2(final int v) throws IOException {
+    out.write(v);
+    out.write(v >>> 8);
+    written += 2;
+  }
+
+  /**
+   * Writes a 32-bit value in little-endian order.
+   * @param v value
+   * @throws IOException I/O exception
+   */
+  private void write4(final long v) throws IOException {
+    write2((int) v & MAX16);
+    write2((int) (v >>> 16) & MAX16);
+  }
+
+  /**
+   * Writes a 64-bit value in little-endian order.
+   * @param v value
+   * @throws IOException I/O exception
+   */
+  private void write8(final long v) throws IOException {
+    write4(v & MAX32);
+    write4(v >>> 32);
+  }
+
+  /**
+   * Converts a timestamp to the DOS format (date in the upper, time in the lower
+   * 16 bits).
+   * @param ms milliseconds since the epoch
+   * @return DOS timestamp
+   */
+  private static long dosTime(final long ms) {
+    final Calendar c = Calendar.getInstance();
+    c.setTimeInMillis(ms);
+    final int y = c.get(Calendar.YEAR);
+    if(y < 1980) return 1 << 21 | 1 << 16;
+    return (long) (y - 1980) << 25 | (c.get(Calendar.MONTH) + 1) << 21 |
+        c.get(Calendar.DAY_OF_MONTH) << 16 | c.get(Calendar.HOUR_OF_DAY) << 11 |
+        c.get(Calendar.MINUTE) << 5 | c.get(Calendar.SECOND) >> 1;
+  }
+
+  /** Archive entry. */
+  private static final class Entry {
+    /** Name (UTF-8). */
+    final byte[] name;
+    /** Offset of the local header. */
+    final long offset;
+    /** Deflated entry with data descriptor. */
+    final boolean deflate;
+    /** Checksum. */
+    long crc;
+    /** Uncompressed size. */
+    long size;
+    /** Compressed size. */
+    long csize;
+
+    /**
+     * Constructor.
+     * @param n name
+     * @param o offset of the local header
+     * @param d deflated entry
+     */
+    Entry(final byte[] n, final long o, final boolean d) {
+      name = n;
+      offset = o;
+      deflate = d;
+    }
+
+    /**
+     * Returns the general purpose flags (UTF-8 names, data descriptor).
+     * @return flags
+     */
+    int flags() {
+      return deflate ? 0x0808 : 0x0800;
+    }
+
+    /**
+     * Returns the compression method.
+     * @return method
+     */
+    int method() {
+      return deflate ? ZipEntry.DEFLATED : ZipEntry.STORED;
+    }
+  }
+
+  /** Compression task for a single chunk. */
+  private final class Chunk implements Callable<byte[]> {
+    /** Chunk. */
+    private final byte[] chunk;
+    /** Preceding chunk ({@code null} for the first chunk). */
+    private final byte[] dict;
+    /** Last chunk. */
+    private final boolean last;
+
+    /**
+     * Constructor.
+     * @param c chunk
+     * @param d preceding chunk
+     * @param l last chunk
+     */
+    Chunk(final byte[] c, final byte[] d, final boolean l) {
+      chunk = c;
+      dict = d;
+      last = l;
+    }
+
+    @Override
+    public byte[] call() {
+      final Deflater def = new Deflater(level, true);
+      try {
+        if(dict != null) def.setDictionary(dict, dict.length - WINDOW, WINDOW);
+        def.setInput(chunk);
+        final ByteArrayOutputStream bo = new ByteArrayOutputStream(chunk.length >>> 1);
+        final byte[] buf = new byte[1 << 16];
+        if(last) {
+          def.finish();
+          while(!def.finished()) bo.write(buf, 0, def.deflate(buf));
+        } else {
+          // non-final blocks are aligned to bytes via a sync flush
+          for(int n = buf.length; n == buf.length;) {
+            n = (Integer) Reflect.invoke(DEFLATE, def, buf, 0, buf.length, SYNC_FLUSH);
+            bo.write(buf, 0, n);
+          }
+        }
+        return bo.toByteArray();
+      } finally {
+        def.end();
+      }
+    }
+  }
+}
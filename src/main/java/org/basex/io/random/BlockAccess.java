@@ -0,0 +1,165 @@
+package org.basex.io.random;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import org.basex.io.*;
+import org.basex.io.out.*;
+import org.basex.util.*;
+import org.basex.util.list.*;
+
+/**
+ * This class provides random read access to tokens that have been written by
+ * the {@link BlockOutput} class. Recently decompressed blocks are cached,
+ * so that subsequent accesses to neighboring tokens are cheap. Blocks that
+ * have been stored uncompressed are read without decompression.
+ *
+ * The cache is direct-mapped: each block is assigned to a fixed slot, and it
+ * replaces the previous block of the same slot. If the cache is big enough,
+ * each block gets its own slot, and all blocks are only decompressed once.
+ * As cached blocks are immutable, the cache can be accessed by concurrent
+ * readers without locking.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class BlockAccess {
+  /** Decompressors. */
+  private static final ThreadLocal<Inflater> INFLATER = new ThreadLocal<Inflater>() {
+    @Override
+    protected Inflater initialValue() {
+      return new Inflater();
+    }
+  };
+
+  /** File access. */
+  private final DataAccess da;
+  /** Dictionary. */
+  private final byte[] dict;
+  /** Offsets of the blocks. */
+  private final long[] offsets;
+  /** Cached blocks. */
+  private final Block[] cache;
+  /** Number of cache hits. */
+  private long hits;
+  /** Number of cache misses. */
+  private long misses;
+  /** Number of evicted blocks. */
+  private long evictions;
+
+  /**
+   * Constructor.
+   * @param f file to be read
+   * @param buffers number of buffers
+   * @param mm memory mapping
+   * @param size size of the cache for decompressed blocks (bytes)
+   * @throws IOException I/O exception
+   */
+  public BlockAccess(final IOFile f, final int buffers, final boolean mm,
+      final long size) throws IOException {
+    da = new DataAccess(f, buffers, mm);
+    dict = da.readToken(0);
+    final long len = da.length();
+    final int s = da.read4(len - 4);
+    offsets = new long[s];
+    for(int b = 0; b < s; b++) offsets[b] = da.read5(len - 4 - (s - b) * 5L);
+    cache = new Block[(int) Math.max(1, Math.min(s, size / BlockOutput.BLOCKSIZE))];
+  }
+
+  /**
+   * Returns the token with the specified reference.
+   * @param ref reference
+   * @return token
+   */
+  public byte[] read(final long ref) {
+    final int b = (int) (ref >>> 8);
+    final int c = b % cache.length;
+    Block block = cache[c];
+    if(block != null && block.id == b) {
+      hits++;
+    } else {
+      misses++;
+      if(block != null) evictions++;
+      block = new Block(b);
+      cache[c] = block;
+    }
+    final byte[] data = block.data;
+    final int p = block.starts[(int) ref & 0xFF];
+    final int s = p + Num.length(data, p);
+    return Arrays.copyOfRange(data, s, s + Num.get(data, p));
+  }
+
+  /**
+   * Adds cache statistics to the specified list
+   * (number of cached blocks, hits, misses, evictions).
+   * @param tl token list
+   */
+  public void info(final TokenList tl) {
+    tl.add(cache.length);
+    tl.add(hits);
+    tl.add(misses);
+    tl.add(evictions);
+  }
+
+  /**
+   * Closes the file.
+   */
+  public void close() {
+    da.close();
+  }
+
+  /** Decompressed block. */
+  private final class Block {
+    /** Block number. */
+    final int id;
+    /** Uncompressed data. */
+    final byte[] data;
+    /** Offsets of the tokens. */
+    final int[] starts;
+
+    /**
+     * Constructor, decompressing the specified block.
+     * @param b block number
+     */
+    Block(final int b) {
+      id = b;
+      final long o = offsets[b];
+      final int l = da.readNum(o);
+      final byte[] comp = da.readToken(o + Num.length(l));
+      if((l & 1) == 0) {
+        data = new byte[l >>> 1];
+        inflate(comp);
+      } else {
+        data = comp;
+      }
+
+      final int[] st = new int[BlockOutput.ENTRIES];
+      int n = 0;
+      for(int p = 0; p < data.length; p += Num.length(data, p) + Num.get(data, p)) {
+        st[n++] = p;
+      }
+      starts = Arrays.copyOf(st, n);
+    }
+
+    /**
+     * Decompresses the specified bytes.
+     * @param comp compressed bytes
+     */
+    private void inflate(final byte[] comp) {
+      final Inflater inflater = INFLATER.get();
+      inflater.reset();
+      inflater.setInput(comp);
+      try {
+        for(int l = 0; l < data.length;) {
+          final int n = inflater.inflate(data, l, data.length - l);
+          if(inflater.needsDictionary()) inflater.setDictionary(dict);
+          else if(n == 0 && inflater.finished()) throw Util.notexpected("Block " + id);
+          l += n;
+        }
+      } catch(final DataFormatException ex) {
+        throw Util.notexpected(ex);
+      }
+    }
+  }
+}
@@ -1,24 +1,105 @@
 package org.basex.io.random;
 
+import org.basex.util.list.*;
+
 /**
- * This class provides a simple, clock-based buffer management.
+ * This class provides a scan-resistant buffer management, based on the
+ * 2Q algorithm (T. Johnson, D. Shasha, VLDB 1994):
+ *
+ * <ul>
+ * <li>Pages that are requested for the first time are placed in a FIFO queue.</li>
+ * <li>Pages that are evicted from this queue are remembered in a ghost queue,
+ *   which only stores page positions.</li>
+ * <li>Pages that are requested again while being referenced by the ghost queue
+ *   are placed in an LRU queue, which contains the frequently accessed pages.</li>
+ * </ul>
+ *
+ * As a result, a single sequential scan will not displace pages that are
+ * accessed repeatedly. Buffered and ghost pages are found via a chained hash table.
  *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
 final class Buffers {
-  /** Number of buffers (must be 1 << n). */
-  private static final int BUFFERS = 1 << 4;
+  /** Default number of buffers. */
+  static final int DEFAULT = 1 << 4;
+  /** Entry is not assigned to a queue. */
+  private static final byte NONE = 0;
+  /** Entry is stored in the FIFO queue. */
+  private static final byte FIFO = 1;
+  /** Entry is stored in the LRU queue. */
+  private static final byte LRU = 2;
+
   /** Buffers. */
-  private final Buffer[] buf = new Buffer[BUFFERS];
+  private final Buffer[] buf;
   /** Current buffer offset. */
   private int off;
+  /** Number of assigned buffers. */
+  private int fill;
+
+  /** Page positions of all entries (buffers, followed by ghost entries). */
+  private final long[] keys;
+  /** Next entries in the hash chains. */
+  private final int[] next;
+  /** Hash buckets. */
+  private final int[] bucket;
+
+  /** Queue of each buffer. */
+  private final byte[] queue;
+  /** Previous buffers in the queues. */
+  private final int[] qprev;
+  /** Next buffers in the queues. */
+  private final int[] qnext;
+  /** Head and tail of the FIFO queue (most recent entry: head). */
+  private int fhead = -1, ftail = -1;
+  /** Head and tail of the LRU queue (most recent entry: head). */
+  private int lhead = -1, ltail = -1;
+  /** Number of entries in the FIFO queue. */
+  private int fsize;
+  /** Maximum number of entries in the FIFO queue. */
+  private final int fmax;
+
+  /** Valid ghost entries. */
+  private final boolean[] ghost;
+  /** Next ghost entry to be overwritten. */
+  private int gpos;
+
+  /** Number of buffer hits. */
+  private long hits;
+  /** Number of buffer misses. */
+  private long misses;
+  /** Number of evicted buffers. */
+  private long evictions;
 
   /**
-   * Constructor.
+   * Constructor, using the default number of buffers.
    */
   Buffers() {
-    for(int b = 0; b < BUFFERS; ++b) buf[b] = new Buffer();
+    this(DEFAULT);
+  }
+
+  /**
+   * Constructor.
+   * @param size number of buffers
+   */
+  Buffers(final int size) {
+    final int s = Math.max(1, size);
+    final int g = Math.max(1, s >>> 1);
+    buf = new Buffer[s];
+    for(int b = 0; b < s; ++b) buf[b] = new Buffer();
+    fmax = Math.max(1, s >>> 2);
+
+    keys = new long[s + g];
+    next = new int[s + g];
+    int c = 1;
+    while(c < s + g << 1) c <<= 1;
+    bucket = new int[c];
+    for(int b = 0; b < c; ++b) bucket[b] = -1;
+
+    queue = new byte[s];
+    qprev = new int[s];
+    qnext = new int[s];
+    ghost = new boolean[g];
   }
 
   /**
@@ -38,16 +119,177 @@ final class Buffers {
   }
 
   /**
-   * Chooses a buffer and sets the offset.
+   * Chooses a buffer and sets the offset. If the requested page is not buffered,
+   * a buffer will be chosen for replacement, and {@code true} is returned. In this
+   * case, the caller is responsible for writing the old contents of the buffer
+   * (if dirty) and assigning the new page position.
    * @param p buffer pointer
    * @return true if cursor has changed
    */
   boolean cursor(final long p) {
-    final int o = off;
-    do {
-      if(buf[off].pos == p) return false;
-    } while((off = off + 1 & BUFFERS - 1) != o);
-    off = o + 1 & BUFFERS - 1;
+    // skip lookup if current buffer is requested again
+    if(buf[off].pos == p) {
+      ++hits;
+      return false;
+    }
+
+    final int e = find(p);
+    if(e != -1 && e < buf.length) {
+      ++hits;
+      // move frequently accessed entries to the head of the LRU queue
+      if(queue[e] == LRU) {
+        unlink(e);
+        link(e, LRU);
+      }
+      off = e;
+      return false;
+    }
+
+    ++misses;
+    // ghost entry found: promote page to LRU queue
+    final boolean hot = e != -1;
+    if(hot) {
+      remove(e);
+      ghost[e - buf.length] = false;
+    }
+    final int b = reclaim();
+    keys[b] = p;
+    add(b);
+    link(b, hot ? LRU : FIFO);
+    off = b;
     return true;
   }
+
+  /**
+   * Adds buffer statistics to the specified list.
+   * @param tl token list
+   */
+  void info(final TokenList tl) {
+    tl.add(buf.length);
+    tl.add(hits);
+    tl.add(misses);
+    tl.add(evictions);
+  }
+
+  // PRIVATE METHODS ==========================================================
+
+  /**
+   * Returns an unused buffer, or evicts an existing one.
+   * @return buffer offset
+   */
+  private int reclaim() {
+    if(fill < buf.length) return fill++;
+
+    ++evictions;
+    final int b;
+    if(fsize > fmax || lhead == -1) {
+      // evict oldest entry of FIFO queue and remember its position
+      b = ftail;
+      unlink(b);
+      remove(b);
+      final int g = buf.length + gpos;
+      if(ghost[gpos]) remove(g);
+      keys[g] = keys[b];
+      add(g);
+      ghost[gpos] = true;
+      gpos = (gpos + 1) % ghost.length;
+    } else {
+      // evict least recently used entry of LRU queue
+      b = ltail;
+      unlink(b);
+      remove(b);
+    }
+    return b;
+  }
+
+  /**
+   * Returns the entry for the specified page position.
+   * @param p page position
+   * @return entry offset, or {@code -1}
+   */
+  private int find(final long p) {
+    for(int e = bucket[hash(p)]; e != -1; e = next[e]) {
+      if(keys[e] == p) return e;
+    }
+    return -1;
+  }
+
+  /**
+   * Adds an entry to the hash table.
+   * @param e entry offset
+   */
+  private void add(final int e) {
+    final int h = hash(keys[e]);
+    next[e] = bucket[h];
+    bucket[h] = e;
+  }
+
+  /**
+   * Removes an entry from the hash table.
+   * @param e entry offset
+   */
+  private void remove(final int e) {
+    final int h = hash(keys[e]);
+    int c = bucket[h];
+    if(c == e) {
+      bucket[h] = next[e];
+      return;
+    }
+    while(next[c] != e) c = next[c];
+    next[c] = next[e];
+  }
+
+  /**
+   * Returns the hash bucket for the specified page position.
+   * @param p page position
+   * @return bucket
+   */
+  private int hash(final long p) {
+    final int h = (int) (p ^ p >>> 32) * 0x9E3779B9;
+    return (h ^ h >>> 16) & bucket.length - 1;
+  }
+
+  /**
+   * Inserts a buffer at the head of the specified queue.
+   * @param b buffer offset
+   * @param q queue
+   */
+  private void link(final int b, final byte q) {
+    queue[b] = q;
+    qprev[b] = -1;
+    if(q == FIFO) {
+      qnext[b] = fhead;
+      if(fhead != -1) qprev[fhead] = b;
+      else ftail = b;
+      fhead = b;
+      ++fsize;
+    } else {
+      qnext[b] = lhead;
+      if(lhead != -1) qprev[lhead] = b;
+      else ltail = b;
+      lhead = b;
+    }
+  }
+
+  /**
+   * Removes a buffer from its queue.
+   * @param b buffer offset
+   */
+  private void unlink(final int b) {
+    final int p = qprev[b];
+    final int n = qnext[b];
+    if(queue[b] == FIFO) {
+      if(p != -1) qnext[p] = n;
+      else fhead = n;
+      if(n != -1) qprev[n] = p;
+      else ftail = p;
+      --fsize;
+    } else {
+      if(p != -1) qnext[p] = n;
+      else lhead = n;
+      if(n != -1) qprev[n] = p;
+      else ltail = p;
+    }
+    queue[b] = NONE;
+  }
 }
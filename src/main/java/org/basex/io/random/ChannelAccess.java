@@ -0,0 +1,153 @@
+package org.basex.io.random;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.concurrent.*;
+
+import org.basex.io.*;
+import org.basex.util.*;
+
+/**
+ * This class provides concurrent read access to a file. Blocks are read via
+ * positional channel operations and cached in buffers, so that readers neither
+ * block each other nor change the state of the file access. The buffers are
+ * taken from a pool for each read operation: the pool never holds more buffer
+ * sets than threads have read the file at the same time, and it is released
+ * together with this instance.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+final class ChannelAccess extends ReadAccess {
+  /** File channel. */
+  private final FileChannel fc;
+  /** Buffers that are currently not used by any reader. */
+  private final ConcurrentLinkedQueue<Buffers> pool =
+      new ConcurrentLinkedQueue<Buffers>();
+
+  /**
+   * Constructor.
+   * @param f file channel
+   */
+  ChannelAccess(final FileChannel f) {
+    fc = f;
+  }
+
+  @Override
+  boolean preferred() {
+    return false;
+  }
+
+  @Override
+  int read1(final long p) {
+    final Buffers bm = take();
+    try {
+      return read1(bm, p);
+    } finally {
+      pool.offer(bm);
+    }
+  }
+
+  @Override
+  int read2(final long p) {
+    final Buffers bm = take();
+    try {
+      return (read1(bm, p) << 8) + read1(bm, p + 1);
+    } finally {
+      pool.offer(bm);
+    }
+  }
+
+  @Override
+  int read4(final long p) {
+    final Buffers bm = take();
+    try {
+      return (read1(bm, p) << 24) + (read1(bm, p + 1) << 16) +
+          (read1(bm, p + 2) << 8) + read1(bm, p + 3);
+    } finally {
+      pool.offer(bm);
+    }
+  }
+
+  @Override
+  long read5(final long p) {
+    final Buffers bm = take();
+    try {
+      return ((long) read1(bm, p) << 32) + ((long) read1(bm, p + 1) << 24) +
+          (read1(bm, p + 2) << 16) + (read1(bm, p + 3) << 8) + read1(bm, p + 4);
+    } finally {
+      pool.offer(bm);
+    }
+  }
+
+  @Override
+  byte[] readBytes(final long p, final int l) {
+    final byte[] b = new byte[l];
+    final int o = (int) (p & IO.BLOCKSIZE - 1);
+    if(o + l <= IO.BLOCKSIZE) {
+      final Buffers bm = take();
+      try {
+        System.arraycopy(block(bm, p - o).data, o, b, 0, l);
+      } finally {
+        pool.offer(bm);
+      }
+    } else {
+      read(ByteBuffer.wrap(b), p);
+    }
+    return b;
+  }
+
+  /**
+   * Takes a set of buffers from the pool, or creates a new one.
+   * @return buffers
+   */
+  private Buffers take() {
+    final Buffers bm = pool.poll();
+    return bm != null ? bm : new Buffers();
+  }
+
+  /**
+   * Reads a byte value from the specified position.
+   * @param bm buffers
+   * @param p position
+   * @return unsigned byte value
+   */
+  private int read1(final Buffers bm, final long p) {
+    final int o = (int) (p & IO.BLOCKSIZE - 1);
+    return block(bm, p - o).data[o] & 0xFF;
+  }
+
+  /**
+   * Returns the buffer of the specified block.
+   * @param bm buffers
+   * @param p block position
+   * @return buffer
+   */
+  private Buffer block(final Buffers bm, final long p) {
+    final Buffer bf;
+    if(bm.cursor(p)) {
+      bf = bm.current();
+      bf.pos = p;
+      read(ByteBuffer.wrap(bf.data), p);
+    } else {
+      bf = bm.current();
+    }
+    return bf;
+  }
+
+  /**
+   * Fills the specified buffer with bytes from the specified position.
+   * @param bb byte buffer
+   * @param p position
+   */
+  private void read(final ByteBuffer bb, final long p) {
+    try {
+      while(bb.hasRemaining()) {
+        if(fc.read(bb, p + bb.position()) == -1) break;
+      }
+    } catch(final IOException ex) {
+      Util.stack(ex);
+    }
+  }
+}
@@ -1,21 +1,42 @@
 package org.basex.io.random;
 
 import java.io.*;
+import java.util.concurrent.locks.*;
 
+import org.basex.core.*;
 import org.basex.io.*;
 import org.basex.util.*;
+import org.basex.util.list.*;
 
 /**
  * This class allows positional read and write access to a database file.
  *
+ * If the file access has been created for concurrent reads, positional read
+ * operations will be performed on a stateless view of the file, without locking
+ * and without changing the cursor, if memory mapping is enabled or if the
+ * buffers are currently locked by another thread. The view is dropped as soon as
+ * data is written, and it is restored when the file is flushed.
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
 public final class DataAccess {
   /** Buffer manager. */
-  private final Buffers bm = new Buffers();
+  private final Buffers bm;
   /** Reference to the data input stream. */
   private final RandomAccessFile file;
+  /** Name of the file. */
+  private final String name;
+  /** Journal (can be {@code null}). */
+  private Journal journal;
+  /** Lock for buffered access. */
+  private final ReentrantLock mutex = new ReentrantLock();
+  /** Concurrent read access. */
+  private final boolean concurrent;
+  /** Memory mapping flag. */
+  private final boolean mmap;
+  /** Stateless file view (can be {@code null}). */
+  private volatile ReadAccess view;
   /** File length. */
   private long len;
   /** Changed flag. */
@@ -29,35 +50,117 @@ public final class DataAccess {
    * @throws IOException I/O Exception
    */
   public DataAccess(final IOFile f) throws IOException {
+    this(f, Buffers.DEFAULT);
+  }
+
+  /**
+   * Constructor, initializing the file reader.
+   * @param f the file to be read
+   * @param buffers number of buffers
+   * @throws IOException I/O Exception
+   */
+  public DataAccess(final IOFile f, final int buffers) throws IOException {
+    this(f, buffers, false, false);
+  }
+
+  /**
+   * Constructor, initializing the file reader for concurrent reads.
+   * Positional read operations will not change the cursor.
+   * @param f the file to be read
+   * @param buffers number of buffers
+   * @param mm memory mapping (ignored on Windows, as mapped files cannot be truncated)
+   * @throws IOException I/O Exception
+   */
+  public DataAccess(final IOFile f, final int buffers, final boolean mm)
+      throws IOException {
+    this(f, buffers, true, mm);
+  }
+
+  /**
+   * Constructor, initializing the file reader.
+   * @param f the file to be read
+   * @param buffers number of buffers
+   * @param cr concurrent reads
+   * @param mm memory mapping
+   * @throws IOException I/O Exception
+   */
+  private DataAccess(final IOFile f, final int buffers, final boolean cr,
+      final boolean mm) throws IOException {
+    bm = new Buffers(buffers);
     file = new RandomAccessFile(f.file(), "rw");
+    name = f.name();
     len = file.length();
+    concurrent = cr;
+    mmap = mm && !Prop.WIN;
     cursor(0);
+    view();
   }
 
   /**
    * Flushes the buffered data.
    */
-  public synchronized void flush() {
+  public void flush() {
+    mutex.lock();
     try {
+      if(journal != null) {
+        // journal all pages that will be overwritten or truncated
+        for(final Buffer b : bm.all()) if(b.dirty) journal.save(name, file, b.pos);
+        if(changed) {
+          final long fl = file.length();
+          for(long p = len & -IO.BLOCKSIZE; p < fl; p += IO.BLOCKSIZE) {
+            journal.save(name, file, p);
+          }
+        }
+        journal.sync();
+      }
       for(final Buffer b : bm.all()) if(b.dirty) writeBlock(b);
       if(changed) {
         file.setLength(len);
         changed = false;
       }
+      view();
     } catch(final IOException ex) {
       Util.stack(ex);
+    } finally {
+      mutex.unlock();
     }
   }
 
   /**
    * Closes the data access.
    */
-  public synchronized void close() {
-    flush();
+  public void close() {
+    mutex.lock();
     try {
+      flush();
+      view = null;
       file.close();
     } catch(final IOException ex) {
       Util.stack(ex);
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  /**
+   * Assigns a journal, which will be informed before pages are overwritten.
+   * @param j journal
+   */
+  public void journal(final Journal j) {
+    journal = j;
+  }
+
+  /**
+   * Adds buffer statistics to the specified list
+   * (number of buffers, hits, misses, evictions).
+   * @param tl token list
+   */
+  public void info(final TokenList tl) {
+    mutex.lock();
+    try {
+      bm.info(tl);
+    } finally {
+      mutex.unlock();
     }
   }
 
@@ -73,9 +176,15 @@ public final class DataAccess {
    * Sets the file length.
    * @param l file length
    */
-  synchronized void length(final long l) {
-    changed |= l != len;
-    len = l;
+  public void length(final long l) {
+    mutex.lock();
+    try {
+      invalidate();
+      changed |= l != len;
+      len = l;
+    } finally {
+      mutex.unlock();
+    }
   }
 
   /**
@@ -99,17 +208,28 @@ public final class DataAccess {
    * @param p position
    * @return integer value
    */
-  public synchronized byte read1(final long p) {
-    cursor(p);
-    return read1();
+  public byte read1(final long p) {
+    final ReadAccess ra = reader();
+    if(ra != null) return (byte) ra.read1(p);
+    try {
+      cursor(p);
+      return read1();
+    } finally {
+      mutex.unlock();
+    }
   }
 
   /**
    * Reads a byte value.
    * @return integer value
    */
-  public synchronized byte read1() {
-    return (byte) read();
+  public byte read1() {
+    mutex.lock();
+    try {
+      return (byte) read();
+    } finally {
+      mutex.unlock();
+    }
   }
 
   /**
@@ -117,17 +237,28 @@ public final class DataAccess {
    * @param p position
    * @return integer value
    */
-  public synchronized int read4(final long p) {
-    cursor(p);
-    return read4();
+  public int read4(final long p) {
+    final ReadAccess ra = reader();
+    if(ra != null) return ra.read4(p);
+    try {
+      cursor(p);
+      return read4();
+    } finally {
+      mutex.unlock();
+    }
   }
 
   /**
    * Reads an integer value.
    * @return integer value
    */
-  public synchronized int read4() {
-    return (read() << 24) + (read() << 16) + (read() << 8) + read();
+  public int read4() {
+    mutex.lock();
+    try {
+      return (read() << 24) + (read() << 16) + (read() << 8) + read();
+    } finally {
+      mutex.unlock();
+    }
   }
 
   /**
@@ -135,18 +266,29 @@ public final class DataAccess {
    * @param p position
    * @return long value
    */
-  public synchronized long read5(final long p) {
-    cursor(p);
-    return read5();
+  public long read5(final long p) {
+    final ReadAccess ra = reader();
+    if(ra != null) return ra.read5(p);
+    try {
+      cursor(p);
+      return read5();
+    } finally {
+      mutex.unlock();
+    }
   }
 
   /**
    * Reads a 5-byte value.
    * @return long value
    */
-  public synchronized long read5() {
-    return ((long) read() << 32) + ((long) read() << 24) +
-      (read() << 16) + (read() << 8) + read();
+  public long read5() {
+    mutex.lock();
+    try {
+      return ((long) read() << 32) + ((long) read() << 24) +
+        (read() << 16) + (read() << 8) + read();
+    } finally {
+      mutex.unlock();
+    }
   }
 
   /**
@@ -154,9 +296,15 @@ public final class DataAccess {
    * @param p text position
    * @return read num
    */
-  public synchronized int readNum(final long p) {
-    cursor(p);
-    return readNum();
+  public int readNum(final long p) {
+    final ReadAccess ra = reader();
+    if(ra != null) return ra.readNum(p);
+    try {
+      cursor(p);
+      return readNum();
+    } finally {
+      mutex.unlock();
+    }
   }
 
   /**
@@ -164,18 +312,29 @@ public final class DataAccess {
    * @param p text position
    * @return text as byte array
    */
-  public synchronized byte[] readToken(final long p) {
-    cursor(p);
-    return readToken();
+  public byte[] readToken(final long p) {
+    final ReadAccess ra = reader();
+    if(ra != null) return ra.readToken(p);
+    try {
+      cursor(p);
+      return readToken();
+    } finally {
+      mutex.unlock();
+    }
   }
 
   /**
    * Reads the next token from disk.
    * @return text as byte array
    */
-  public synchronized byte[] readToken() {
-    final int l = readNum();
-    return readBytes(l);
+  public byte[] readToken() {
+    mutex.lock();
+    try {
+      final int l = readNum();
+      return readBytes(l);
+    } finally {
+      mutex.unlock();
+    }
   }
 
   /**
@@ -184,9 +343,15 @@ public final class DataAccess {
    * @param l length
    * @return byte array
    */
-  public synchronized byte[] readBytes(final long p, final int l) {
-    cursor(p);
-    return readBytes(l);
+  public byte[] readBytes(final long p, final int l) {
+    final ReadAccess ra = reader();
+    if(ra != null) return ra.readBytes(p, l);
+    try {
+      cursor(p);
+      return readBytes(l);
+    } finally {
+      mutex.unlock();
+    }
   }
 
   /**
@@ -194,23 +359,28 @@ public final class DataAccess {
    * @param n length
    * @return byte array
    */
-  public synchronized byte[] readBytes(final int n) {
-    int l = n;
-    int ll = IO.BLOCKSIZE - off;
-    final byte[] b = new byte[l];
-
-    System.arraycopy(buffer(false).data, off, b, 0, Math.min(l, ll));
-    if(l > ll) {
-      l -= ll;
-      while(l > IO.BLOCKSIZE) {
-        System.arraycopy(buffer(true).data, 0, b, ll, IO.BLOCKSIZE);
-        ll += IO.BLOCKSIZE;
-        l -= IO.BLOCKSIZE;
+  public byte[] readBytes(final int n) {
+    mutex.lock();
+    try {
+      int l = n;
+      int ll = IO.BLOCKSIZE - off;
+      final byte[] b = new byte[l];
+
+      System.arraycopy(buffer(false).data, off, b, 0, Math.min(l, ll));
+      if(l > ll) {
+        l -= ll;
+        while(l > IO.BLOCKSIZE) {
+          System.arraycopy(buffer(true).data, 0, b, ll, IO.BLOCKSIZE);
+          ll += IO.BLOCKSIZE;
+          l -= IO.BLOCKSIZE;
+        }
+        System.arraycopy(buffer(true).data, 0, b, ll, l);
       }
-      System.arraycopy(buffer(true).data, 0, b, ll, l);
+      off += l;
+      return b;
+    } finally {
+      mutex.unlock();
     }
-    off += l;
-    return b;
   }
 
   /**
@@ -238,17 +408,22 @@ public final class DataAccess {
    * Reads the next compressed number and returns it as integer.
    * @return next integer
    */
-  public synchronized int readNum() {
-    final int v = read();
-    switch(v & 0xC0) {
-    case 0:
-      return v;
-    case 0x40:
-      return (v - 0x40 << 8) + read();
-    case 0x80:
-      return (v - 0x80 << 24) + (read() << 16) + (read() << 8) + read();
-    default:
-      return (read() << 24) + (read() << 16) + (read() << 8) + read();
+  public int readNum() {
+    mutex.lock();
+    try {
+      final int v = read();
+      switch(v & 0xC0) {
+      case 0:
+        return v;
+      case 0x40:
+        return (v - 0x40 << 8) + read();
+      case 0x80:
+        return (v - 0x80 << 24) + (read() << 16) + (read() << 8) + read();
+      default:
+        return (read() << 24) + (read() << 16) + (read() << 8) + read();
+      }
+    } finally {
+      mutex.unlock();
     }
   }
 
@@ -336,6 +511,7 @@ public final class DataAccess {
    * @param length token length
    */
   public void writeToken(final byte[] buf, final int offset, final int length) {
+    invalidate();
     writeNum(length);
 
     final int last = offset + length;
@@ -373,55 +549,68 @@ public final class DataAccess {
   }
 
   /**
-   * Returns the offset to a free slot for writing an entry with the
-   * specified length. Fills the original space with 0xFF to facilitate
-   * future write operations.
-   * @param pos original offset
-   * @param size size of new text entry
-   * @return new offset to store text
+   * Releases the space of an entry. If the entry is placed last, the file
+   * length is reset; otherwise, the space is filled with 0xFF.
+   * @param pos offset of the entry
+   * @param size size of the entry
+   * @return {@code true} if the file length was reset
    */
-  public long free(final long pos, final int size) {
-    // old text size (available space)
-    int os = readNum(pos) + (int) (cursor() - pos);
-
-    // extend available space by subsequent zero-bytes
-    cursor(pos + os);
-    for(; pos + os < len && os < size && read() == 0xFF; os++);
-
-    long o = pos;
-    if(pos + os == len) {
-      // entry is placed last: reset file length (discard last entry)
+  public boolean free(final long pos, final int size) {
+    if(pos + size == len) {
       length(pos);
-    } else {
-      int t = size;
-      if(os < size) {
-        // gap is too small for new entry...
-        // reset cursor to overwrite entry with zero-bytes
-        cursor(pos);
-        t = 0;
-        // place new entry after last entry
-        o = len;
-      } else {
-        // gap is large enough: set cursor to overwrite remaining bytes
-        cursor(pos + size);
-      }
-      // fill gap with 0xFF for future updates
-      while(t++ < os) write(0xFF);
+      return true;
     }
-    return o;
+    cursor(pos);
+    for(int s = 0; s < size; s++) write(0xFF);
+    return false;
   }
 
   // PRIVATE METHODS ==========================================================
 
+  /**
+   * Creates a stateless view for concurrent reads.
+   * @throws IOException I/O exception
+   */
+  private void view() throws IOException {
+    if(!concurrent || view != null) return;
+    view = mmap ? new Segments(file.getChannel(), len) :
+      new ChannelAccess(file.getChannel());
+  }
+
+  /**
+   * Drops the stateless view, as the file contents are about to be changed.
+   */
+  private void invalidate() {
+    if(view != null) view = null;
+  }
+
+  /**
+   * Returns a stateless view if memory mapping is enabled, or if the buffers are
+   * locked by another thread. Otherwise, locks the buffers and returns {@code null}.
+   * @return view or {@code null}
+   */
+  private ReadAccess reader() {
+    final ReadAccess ra = view;
+    if(ra != null && (ra.preferred() || !mutex.tryLock())) return ra;
+    if(ra == null) mutex.lock();
+    return null;
+  }
+
   /**
    * Writes the specified block to disk.
    * @param bf buffer to write
    * @throws IOException I/O exception
    */
   private void writeBlock(final Buffer bf) throws IOException {
+    if(journal != null) {
+      journal.save(name, file, bf.pos);
+      journal.sync();
+    }
     file.seek(bf.pos);
     file.write(bf.data);
     bf.dirty = false;
+    // the last block may exceed the file length
+    if(bf.pos + IO.BLOCKSIZE > len) changed = true;
   }
 
   /**
@@ -438,6 +627,7 @@ public final class DataAccess {
    * @param b byte to be written
    */
   private void write(final int b) {
+    invalidate();
     final Buffer bf = buffer(off == IO.BLOCKSIZE);
     bf.dirty = true;
     bf.data[off++] = (byte) b;
@@ -0,0 +1,392 @@
+package org.basex.io.random;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import org.basex.io.*;
+import org.basex.util.*;
+import org.basex.util.hash.*;
+import org.basex.util.list.*;
+
+/**
+ * This class journals the original contents of database files before they are
+ * overwritten for the first time after a checkpoint. If the database has not
+ * been properly closed, its files can be rolled back to the state of the last
+ * checkpoint (see {@link #rollback(IOFile)}).
+ *
+ * The journal starts with the {@link #MAGIC} bytes, which are followed by
+ * records. Each record consists of a type, the name of a database file, the
+ * type-specific data and a CRC32 checksum:
+ * <ul>
+ * <li> {@link #FILE}: original length of the file ({@code -1} if the file
+ *   did not exist)</li>
+ * <li> {@link #PAGE}: offset, length and original bytes of a page</li>
+ * <li> {@link #NOTE}: no data; the name is returned by the rollback</li>
+ * </ul>
+ *
+ * The journal is synchronized before the original pages are overwritten.
+ * A checkpoint is reached by synchronizing all changed database files, after
+ * which the journal is deleted.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class Journal {
+  /** Magic bytes. */
+  private static final byte[] MAGIC = Token.token("BXJ1");
+  /** Record type: file. */
+  private static final int FILE = 0;
+  /** Record type: page. */
+  private static final int PAGE = 1;
+  /** Record type: note. */
+  private static final int NOTE = 2;
+
+  /** Journal file. */
+  private final IOFile file;
+  /** Journaled files, and the offsets of their journaled pages. */
+  private TokenObjMap<Pages> files = new TokenObjMap<Pages>();
+  /** Pending records. */
+  private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+  /** Output stream ({@code null} if the journal is inactive). */
+  private RandomAccessFile out;
+
+  /**
+   * Constructor.
+   * @param f journal file
+   */
+  public Journal(final IOFile f) {
+    file = f;
+  }
+
+  /**
+   * Starts journaling, if this has not been done yet. An existing journal file
+   * is truncated, so the database must already be locked for updates.
+   * @return success flag
+   */
+  public synchronized boolean start() {
+    if(out != null) return true;
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(file.file(), "rw");
+      raf.setLength(0);
+      raf.write(MAGIC);
+      raf.getChannel().force(false);
+      out = raf;
+      return true;
+    } catch(final IOException ex) {
+      Util.debug(ex);
+      if(raf != null) {
+        try {
+          raf.close();
+        } catch(final IOException e) {
+          Util.debug(e);
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Checks if journaling is active.
+   * @return result of check
+   */
+  public synchronized boolean active() {
+    return out != null;
+  }
+
+  /**
+   * Journals the original contents of the page at the specified offset, if
+   * it has not been journaled yet. Does nothing if journaling is inactive.
+   * {@link #sync()} must be called before the page is overwritten.
+   * @param name name of the database file
+   * @param raf file access
+   * @param pos offset of the page
+   * @throws IOException I/O exception
+   */
+  public synchronized void save(final String name, final RandomAccessFile raf,
+      final long pos) throws IOException {
+
+    if(out == null) return;
+    final Pages pages = pages(name, raf.length());
+    if(pos >= pages.length || pages.offsets.add((int) (pos / IO.BLOCKSIZE)) < 0) return;
+
+    final byte[] b = new byte[(int) Math.min(IO.BLOCKSIZE, pages.length - pos)];
+    raf.seek(pos);
+    raf.readFully(b);
+    page(name, pos, b);
+  }
+
+  /**
+   * Journals the complete original contents of the specified file, if it has
+   * not been journaled yet, and synchronizes the journal. Does nothing if
+   * journaling is inactive. This method is called before a file is rewritten.
+   * @param f database file
+   * @throws IOException I/O exception
+   */
+  public synchronized void save(final IOFile f) throws IOException {
+    if(out == null) return;
+    final String name = f.name();
+    if(files.get(Token.token(name)) != null) return;
+
+    final Pages pages = pages(name, f.exists() ? f.length() : -1);
+    if(pages.length > 0) {
+      final byte[] cont = f.read();
+      for(int p = 0; p < cont.length; p += IO.BLOCKSIZE) {
+        pages.offsets.add(p / IO.BLOCKSIZE);
+        page(name, p, Arrays.copyOfRange(cont, p, Math.min(cont.length,
+            p + IO.BLOCKSIZE)));
+      }
+    }
+    sync();
+  }
+
+  /**
+   * Adds a note to the journal and synchronizes it.
+   * Does nothing if journaling is inactive.
+   * @param note note
+   * @throws IOException I/O exception
+   */
+  public synchronized void note(final String note) throws IOException {
+    if(out == null) return;
+    add(record(NOTE, note));
+    sync();
+  }
+
+  /**
+   * Writes all pending records to the journal and synchronizes it.
+   * @throws IOException I/O exception
+   */
+  public synchronized void sync() throws IOException {
+    if(out == null || pending.size() == 0) return;
+    out.seek(out.length());
+    out.write(pending.toByteArray());
+    out.getChannel().force(false);
+    pending.reset();
+  }
+
+  /**
+   * Reaches a checkpoint: synchronizes all journaled database files and
+   * deletes the journal. Does nothing if journaling is inactive.
+   * @throws IOException I/O exception
+   */
+  public synchronized void finish() throws IOException {
+    if(out == null) return;
+    for(final byte[] name : files) {
+      final File f = new File(file.dir(), Token.string(name));
+      if(!f.exists()) continue;
+      final RandomAccessFile raf = new RandomAccessFile(f, "rw");
+      try {
+        raf.getChannel().force(true);
+      } finally {
+        raf.close();
+      }
+    }
+    out.close();
+    out = null;
+    files = new TokenObjMap<Pages>();
+    pending.reset();
+    file.delete();
+  }
+
+  /**
+   * Rolls back the database files to the state of the last checkpoint and
+   * deletes the journal.
+   * @param jf journal file
+   * @return journaled notes, or {@code null} if the journal is invalid
+   * @throws IOException I/O exception
+   */
+  public static StringList rollback(final IOFile jf) throws IOException {
+    final ArrayList<Record> records = new ArrayList<Record>();
+    final DataInputStream in = new DataInputStream(new BufferedInputStream(
+        new FileInputStream(jf.file())));
+    try {
+      final byte[] magic = new byte[MAGIC.length];
+      if(in.read(magic) != magic.length || !Token.eq(magic, MAGIC)) return null;
+      // read records until the end of the file, or the first incomplete record
+      for(Record r; (r = Record.read(in)) != null;) records.add(r);
+    } catch(final EOFException ex) {
+      // incomplete record: the original page has not been overwritten yet
+    } finally {
+      in.close();
+    }
+
+    // restore pages
+    final String dir = jf.dir();
+    for(final Record r : records) {
+      if(r.type != PAGE) continue;
+      final RandomAccessFile raf = new RandomAccessFile(new File(dir, r.name), "rw");
+      try {
+        raf.seek(r.offset);
+        raf.write(r.data);
+      } finally {
+        raf.close();
+      }
+    }
+    // restore original file lengths, and return notes
+    final StringList notes = new StringList();
+    for(final Record r : records) {
+      if(r.type == NOTE) {
+        notes.add(r.name);
+      } else if(r.type == FILE) {
+        final File f = new File(dir, r.name);
+        if(r.offset == -1) {
+          f.delete();
+        } else {
+          final RandomAccessFile raf = new RandomAccessFile(f, "rw");
+          try {
+            raf.setLength(r.offset);
+            raf.getChannel().force(true);
+          } finally {
+            raf.close();
+          }
+        }
+      }
+    }
+    jf.delete();
+    return notes;
+  }
+
+  // PRIVATE METHODS ==========================================================
+
+  /**
+   * Returns the journaled pages of a file. If the file has not been journaled
+   * yet, a record with its original length is added.
+   * @param name name of the file
+   * @param len original length of the file
+   * @return pages
+   * @throws IOException I/O exception
+   */
+  private Pages pages(final String name, final long len) throws IOException {
+    final byte[] key = Token.token(name);
+    Pages pages = files.get(key);
+    if(pages == null) {
+      pages = new Pages(len);
+      files.add(key, pages);
+      final ByteArrayOutputStream rec = record(FILE, name);
+      new DataOutputStream(rec).writeLong(len);
+      add(rec);
+    }
+    return pages;
+  }
+
+  /**
+   * Adds a page record.
+   * @param name name of the file
+   * @param pos offset of the page
+   * @param b original bytes
+   * @throws IOException I/O exception
+   */
+  private void page(final String name, final long pos, final byte[] b)
+      throws IOException {
+    final ByteArrayOutputStream rec = record(PAGE, name);
+    final DataOutputStream dos = new DataOutputStream(rec);
+    dos.writeLong(pos);
+    dos.writeInt(b.length);
+    dos.write(b);
+    add(rec);
+  }
+
+  /**
+   * Creates a new record.
+   * @param type record type
+   * @param name name of the file, or note
+   * @return record
+   * @throws IOException I/O exception
+   */
+  private static ByteArrayOutputStream record(final int type, final String name)
+      throws IOException {
+    final ByteArrayOutputStream rec = new ByteArrayOutputStream();
+    final DataOutputStream dos = new DataOutputStream(rec);
+    dos.write(type);
+    dos.writeUTF(name);
+    return rec;
+  }
+
+  /**
+   * Adds a record and its checksum to the pending records.
+   * @param rec record
+   * @throws IOException I/O exception
+   */
+  private void add(final ByteArrayOutputStream rec) throws IOException {
+    final byte[] b = rec.toByteArray();
+    final CRC32 crc = new CRC32();
+    crc.update(b);
+    pending.write(b);
+    new DataOutputStream(pending).writeInt((int) crc.getValue());
+  }
+
+  /** Journaled pages of a file. */
+  private static final class Pages {
+    /** Original length of the file. */
+    final long length;
+    /** Journaled pages. */
+    final IntSet offsets = new IntSet();
+
+    /**
+     * Constructor.
+     * @param len original length of the file
+     */
+    Pages(final long len) {
+      length = len;
+    }
+  }
+
+  /** Journal record. */
+  private static final class Record {
+    /** Record type. */
+    final int type;
+    /** File name or note. */
+    final String name;
+    /** File length or page offset. */
+    final long offset;
+    /** Page data. */
+    final byte[] data;
+
+    /**
+     * Constructor.
+     * @param t record type
+     * @param n file name or note
+     * @param o file length or page offset
+     * @param d page data
+     */
+    private Record(final int t, final String n, final long o, final byte[] d) {
+      type = t;
+      name = n;
+      offset = o;
+      data = d;
+    }
+
+    /**
+     * Reads the next record.
+     * @param in input stream
+     * @return record, or {@code null} if the end of the journal has been
+     *   reached, or if the record is invalid
+     * @throws IOException I/O exception
+     */
+    static Record read(final DataInputStream in) throws IOException {
+      final int type = in.read();
+      if(type == -1) return null;
+      final String name = in.readUTF();
+      final ByteArrayOutputStream rec = record(type, name);
+      final DataOutputStream dos = new DataOutputStream(rec);
+      long off = 0;
+      byte[] data = null;
+      if(type == FILE || type == PAGE) {
+        off = in.readLong();
+        dos.writeLong(off);
+      }
+      if(type == PAGE) {
+        data = new byte[in.readInt()];
+        in.readFully(data);
+        dos.writeInt(data.length);
+        dos.write(data);
+      }
+      if(type > NOTE) return null;
+
+      final CRC32 crc = new CRC32();
+      crc.update(rec.toByteArray());
+      return in.readInt() == (int) crc.getValue() ? new Record(type, name, off, data) : null;
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package org.basex.io.random;
+
+/**
+ * This class provides stateless read access to a file, which can be
+ * shared by concurrent readers. It is only valid as long as the underlying
+ * file is not changed.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+abstract class ReadAccess {
+  /**
+   * Indicates if this instance should be preferred to buffered access.
+   * @return result of check
+   */
+  abstract boolean preferred();
+
+  /**
+   * Reads a byte value from the specified position.
+   * @param p position
+   * @return unsigned byte value
+   */
+  abstract int read1(final long p);
+
+  /**
+   * Reads a number of bytes from the specified position.
+   * @param p position
+   * @param l number of bytes
+   * @return bytes
+   */
+  abstract byte[] readBytes(final long p, final int l);
+
+  /**
+   * Reads a short value from the specified position.
+   * @param p position
+   * @return integer value
+   */
+  int read2(final long p) {
+    return (read1(p) << 8) + read1(p + 1);
+  }
+
+  /**
+   * Reads an integer value from the specified position.
+   * @param p position
+   * @return integer value
+   */
+  int read4(final long p) {
+    return (read1(p) << 24) + (read1(p + 1) << 16) + (read1(p + 2) << 8) + read1(p + 3);
+  }
+
+  /**
+   * Reads a 5-byte value from the specified position.
+   * @param p position
+   * @return long value
+   */
+  long read5(final long p) {
+    return ((long) read1(p) << 32) + ((long) read1(p + 1) << 24) +
+      (read1(p + 2) << 16) + (read1(p + 3) << 8) + read1(p + 4);
+  }
+
+  /**
+   * Reads a compressed number from the specified position.
+   * @param p position
+   * @return number
+   */
+  final int readNum(final long p) {
+    final int v = read1(p);
+    switch(v & 0xC0) {
+    case 0:
+      return v;
+    case 0x40:
+      return (v - 0x40 << 8) + read1(p + 1);
+    case 0x80:
+      return (v - 0x80 << 24) + (read1(p + 1) << 16) + (read1(p + 2) << 8) +
+          read1(p + 3);
+    default:
+      return (read1(p + 1) << 24) + (read1(p + 2) << 16) + (read1(p + 3) << 8) +
+          read1(p + 4);
+    }
+  }
+
+  /**
+   * Reads a token, prefixed by its compressed length, from the specified position.
+   * @param p position
+   * @return token
+   */
+  final byte[] readToken(final long p) {
+    final int l = readNum(p);
+    final int v = read1(p) >>> 6;
+    return readBytes(p + (v == 0 ? 1 : v == 1 ? 2 : v == 2 ? 4 : 5), l);
+  }
+}
@@ -0,0 +1,92 @@
+package org.basex.io.random;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * This class provides read-only access to a file that has been mapped
+ * into memory in segments.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+final class Segments extends ReadAccess {
+  /** Segment size (must be a multiple of the block size). */
+  private static final int POWER = 30;
+  /** Segment mask. */
+  private static final int MASK = (1 << POWER) - 1;
+  /** Mapped segments. */
+  private final ByteBuffer[] segs;
+
+  /**
+   * Constructor.
+   * @param fc file channel
+   * @param len number of bytes to be mapped
+   * @throws IOException I/O exception
+   */
+  Segments(final FileChannel fc, final long len) throws IOException {
+    final int s = (int) (len + MASK >>> POWER);
+    segs = new ByteBuffer[s];
+    for(int i = 0; i < s; i++) {
+      final long p = (long) i << POWER;
+      segs[i] = fc.map(MapMode.READ_ONLY, p, Math.min(len - p, 1L << POWER));
+    }
+  }
+
+  @Override
+  boolean preferred() {
+    return true;
+  }
+
+  @Override
+  int read1(final long p) {
+    return segs[(int) (p >>> POWER)].get((int) (p & MASK)) & 0xFF;
+  }
+
+  @Override
+  int read2(final long p) {
+    final int o = (int) (p & MASK);
+    if(o > MASK - 1) return super.read2(p);
+    final ByteBuffer bb = segs[(int) (p >>> POWER)];
+    return ((bb.get(o) & 0xFF) << 8) + (bb.get(o + 1) & 0xFF);
+  }
+
+  @Override
+  int read4(final long p) {
+    final int o = (int) (p & MASK);
+    if(o > MASK - 3) return super.read4(p);
+    final ByteBuffer bb = segs[(int) (p >>> POWER)];
+    return ((bb.get(o) & 0xFF) << 24) + ((bb.get(o + 1) & 0xFF) << 16) +
+      ((bb.get(o + 2) & 0xFF) << 8) + (bb.get(o + 3) & 0xFF);
+  }
+
+  @Override
+  long read5(final long p) {
+    final int o = (int) (p & MASK);
+    if(o > MASK - 4) return super.read5(p);
+    final ByteBuffer bb = segs[(int) (p >>> POWER)];
+    return ((long) (bb.get(o) & 0xFF) << 32) + ((long) (bb.get(o + 1) & 0xFF) << 24) +
+      ((bb.get(o + 2) & 0xFF) << 16) + ((bb.get(o + 3) & 0xFF) << 8) +
+      (bb.get(o + 4) & 0xFF);
+  }
+
+  @Override
+  byte[] readBytes(final long p, final int l) {
+    final byte[] b = new byte[l];
+    long pos = p;
+    int o = 0;
+    while(o < l) {
+      // duplicate buffer to keep the shared instance stateless
+      final ByteBuffer bb = segs[(int) (pos >>> POWER)].duplicate();
+      final int s = (int) (pos & MASK);
+      final int n = Math.min(l - o, bb.capacity() - s);
+      bb.position(s);
+      bb.get(b, o, n);
+      o += n;
+      pos += n;
+    }
+    return b;
+  }
+}
@@ -4,6 +4,7 @@ import java.io.*;
 
 import org.basex.data.*;
 import org.basex.io.*;
+import org.basex.util.list.*;
 
 /**
  * This abstract class defines the methods for accessing the
@@ -45,6 +46,15 @@ public abstract class TableAccess {
    */
   public abstract boolean lock(final boolean excl);
 
+  /**
+   * Adds buffer statistics to the specified list
+   * (number of buffers, hits, misses, evictions).
+   * Does nothing if the table is not buffered.
+   * @param tl token list
+   */
+  @SuppressWarnings("unused")
+  public void info(final TokenList tl) { }
+
   /**
    * Reads a byte value and returns it as an integer value.
    * @param p pre value
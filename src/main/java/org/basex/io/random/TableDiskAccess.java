@@ -5,6 +5,7 @@ import static org.basex.data.DataText.*;
 import java.io.*;
 import java.nio.channels.*;
 import java.util.*;
+import java.util.concurrent.locks.*;
 
 import org.basex.core.*;
 import org.basex.data.*;
@@ -12,11 +13,25 @@ import org.basex.io.*;
 import org.basex.io.in.DataInput;
 import org.basex.io.out.DataOutput;
 import org.basex.util.*;
+import org.basex.util.list.*;
 
 /**
  * This class stores the table on disk and reads it block-wise.
  *
- * NOTE: this class is not thread-safe.
+ * If the table is not locked for updates, read operations will be performed
+ * on a stateless view of the table file if memory mapping is enabled, or if the
+ * buffers are currently locked by another thread. This way, concurrent readers
+ * will not be serialized.
+ *
+ * If entries are inserted or deleted, the firstPre values of all subsequent
+ * pages are shifted. The shifts are recorded in a binary indexed tree, so that
+ * an update costs logarithmic time in the number of pages. The shifts are
+ * applied to the directory if pages are added or removed, if another page is
+ * looked up, or if the directory is written to disk. As a result, repeated
+ * updates of the same page are cheap, and the binary search for a page never
+ * consults the tree.
+ *
+ * NOTE: write operations are not thread-safe.
  *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
@@ -24,16 +39,32 @@ import org.basex.util.*;
  */
 public final class TableDiskAccess extends TableAccess {
   /** Buffer manager. */
-  private final Buffers bm = new Buffers();
+  private final Buffers bm;
   /** File storing all blocks. */
   private final RandomAccessFile file;
+  /** Name of the file. */
+  private final String name;
   /** Bitmap storing free (=0) and occupied (=1) pages. */
   private final BitArray freePages;
   /** File lock. */
   private FileLock fl;
-
-  /** FirstPre values (sorted ascending; length: {@link #blocks}). */
+  /** Memory mapping flag. */
+  private final boolean mmap;
+  /** Stateless table view (can be {@code null}). */
+  private volatile ReadAccess view;
+  /** Lock for buffered access. */
+  private final ReentrantLock mutex = new ReentrantLock();
+  /** Journal (can be {@code null}). */
+  private Journal journal;
+
+  /** FirstPre values (sorted ascending; length: {@link #blocks}).
+   * Pending shifts need to be added (see {@link #fpre(int)}). */
   private int[] fpres;
+  /** Pending shifts of the firstPre values, stored as binary indexed tree
+   * (can be {@code null}). */
+  private int[] shifts;
+  /** Indicates if shifts are pending. */
+  private boolean shifted;
   /** Page index (length: {@link #blocks}). */
   private int[] pages;
   /** Page index. */
@@ -57,6 +88,8 @@ public final class TableDiskAccess extends TableAccess {
    */
   public TableDiskAccess(final MetaData md, final boolean lock) throws IOException {
     super(md);
+    bm = new Buffers(md.prop.num(Prop.BUFFERS));
+    mmap = md.prop.is(Prop.MMAP) && !Prop.WIN;
 
     // read meta and index data
     final DataInput in = new DataInput(meta.dbfile(DATATBL + 'i'));
@@ -78,10 +111,13 @@ public final class TableDiskAccess extends TableAccess {
     in.close();
 
     // initialize data file
-    file = new RandomAccessFile(meta.dbfile(DATATBL).file(), "rw");
+    final IOFile tf = meta.dbfile(DATATBL);
+    file = new RandomAccessFile(tf.file(), "rw");
+    name = tf.name();
     if(lock) exclusiveLock();
     else sharedLock();
     if(fl == null) throw new BaseXException(Text.DB_PINNED_X, md.name);
+    if(!lock) view();
   }
 
   /**
@@ -111,39 +147,61 @@ public final class TableDiskAccess extends TableAccess {
   }
 
   @Override
-  public synchronized void flush() throws IOException {
-    for(final Buffer b : bm.all()) if(b.dirty) writeBlock(b);
-    if(!dirty) return;
-
-    final DataOutput out = new DataOutput(meta.dbfile(DATATBL + 'i'));
-    out.writeNum(blocks);
-    out.writeNum(used);
-
-    // due to legacy issues, number of blocks is written several times
-    out.writeNum(blocks);
-    for(int a = 0; a < blocks; a++) out.writeNum(fpres[a]);
-    out.writeNum(blocks);
-    for(int a = 0; a < blocks; a++) out.writeNum(pages[a]);
-
-    out.writeLongs(freePages.toArray());
-    out.close();
-    dirty = false;
+  public void flush() throws IOException {
+    mutex.lock();
+    try {
+      if(journal != null) {
+        for(final Buffer b : bm.all()) if(b.dirty) save(b);
+        journal.sync();
+      }
+      for(final Buffer b : bm.all()) if(b.dirty) writeBlock(b);
+      if(!dirty) return;
+
+      applyShifts();
+      if(journal != null) journal.save(meta.dbfile(DATATBL + 'i'));
+      final DataOutput out = new DataOutput(meta.dbfile(DATATBL + 'i'));
+      out.writeNum(blocks);
+      out.writeNum(used);
+
+      // due to legacy issues, number of blocks is written several times
+      out.writeNum(blocks);
+      for(int a = 0; a < blocks; a++) out.writeNum(fpres[a]);
+      out.writeNum(blocks);
+      for(int a = 0; a < blocks; a++) out.writeNum(pages[a]);
+
+      out.writeLongs(freePages.toArray());
+      out.close();
+      dirty = false;
+    } finally {
+      mutex.unlock();
+    }
   }
 
   @Override
-  public synchronized void close() throws IOException {
-    flush();
-    file.close();
+  public void close() throws IOException {
+    mutex.lock();
+    try {
+      flush();
+      view = null;
+      file.close();
+    } finally {
+      mutex.unlock();
+    }
   }
 
   @Override
   public boolean lock(final boolean lock) {
     try {
       if(lock) {
+        // drop stateless view before the table is updated
+        view = null;
         if(exclusiveLock()) return true;
         if(sharedLock()) return false;
       } else {
-        if(sharedLock()) return true;
+        if(sharedLock()) {
+          view();
+          return true;
+        }
       }
     } catch(final IOException ex) {
       Util.stack(ex);
@@ -152,6 +210,14 @@ public final class TableDiskAccess extends TableAccess {
         " lock could not be acquired.");
   }
 
+  /**
+   * Assigns a journal, which will be informed before pages are overwritten.
+   * @param j journal
+   */
+  public void journal(final Journal j) {
+    journal = j;
+  }
+
   /**
    * Acquires an exclusive lock on the file.
    * @return success flag
@@ -185,37 +251,72 @@ public final class TableDiskAccess extends TableAccess {
   }
 
   @Override
-  public synchronized int read1(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return b[o] & 0xFF;
+  public void info(final TokenList tl) {
+    mutex.lock();
+    try {
+      bm.info(tl);
+    } finally {
+      mutex.unlock();
+    }
   }
 
   @Override
-  public synchronized int read2(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return ((b[o] & 0xFF) << 8) + (b[o + 1] & 0xFF);
+  public int read1(final int pre, final int off) {
+    final ReadAccess ra = reader();
+    if(ra != null) return ra.read1(offset(pre, off));
+    try {
+      final int o = off + cursor(pre);
+      final byte[] b = bm.current().data;
+      return b[o] & 0xFF;
+    } finally {
+      mutex.unlock();
+    }
   }
 
   @Override
-  public synchronized int read4(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return ((b[o] & 0xFF) << 24) + ((b[o + 1] & 0xFF) << 16) +
-      ((b[o + 2] & 0xFF) << 8) + (b[o + 3] & 0xFF);
+  public int read2(final int pre, final int off) {
+    final ReadAccess ra = reader();
+    if(ra != null) return ra.read2(offset(pre, off));
+    try {
+      final int o = off + cursor(pre);
+      final byte[] b = bm.current().data;
+      return ((b[o] & 0xFF) << 8) + (b[o + 1] & 0xFF);
+    } finally {
+      mutex.unlock();
+    }
   }
 
   @Override
-  public synchronized long read5(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return ((long) (b[o] & 0xFF) << 32) + ((long) (b[o + 1] & 0xFF) << 24) +
-      ((b[o + 2] & 0xFF) << 16) + ((b[o + 3] & 0xFF) << 8) + (b[o + 4] & 0xFF);
+  public int read4(final int pre, final int off) {
+    final ReadAccess ra = reader();
+    if(ra != null) return ra.read4(offset(pre, off));
+    try {
+      final int o = off + cursor(pre);
+      final byte[] b = bm.current().data;
+      return ((b[o] & 0xFF) << 24) + ((b[o + 1] & 0xFF) << 16) +
+        ((b[o + 2] & 0xFF) << 8) + (b[o + 3] & 0xFF);
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  @Override
+  public long read5(final int pre, final int off) {
+    final ReadAccess ra = reader();
+    if(ra != null) return ra.read5(offset(pre, off));
+    try {
+      final int o = off + cursor(pre);
+      final byte[] b = bm.current().data;
+      return ((long) (b[o] & 0xFF) << 32) + ((long) (b[o + 1] & 0xFF) << 24) +
+        ((b[o + 2] & 0xFF) << 16) + ((b[o + 3] & 0xFF) << 8) + (b[o + 4] & 0xFF);
+    } finally {
+      mutex.unlock();
+    }
   }
 
   @Override
   public void write1(final int pre, final int off, final int v) {
+    invalidate();
     final int o = off + cursor(pre);
     final Buffer bf = bm.current();
     final byte[] b = bf.data;
@@ -225,6 +326,7 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   public void write2(final int pre, final int off, final int v) {
+    invalidate();
     final int o = off + cursor(pre);
     final Buffer bf = bm.current();
     final byte[] b = bf.data;
@@ -235,6 +337,7 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   public void write4(final int pre, final int off, final int v) {
+    invalidate();
     final int o = off + cursor(pre);
     final Buffer bf = bm.current();
     final byte[] b = bf.data;
@@ -247,6 +350,7 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   public void write5(final int pre, final int off, final long v) {
+    invalidate();
     final int o = off + cursor(pre);
     final Buffer bf = bm.current();
     final byte[] b = bf.data;
@@ -260,6 +364,7 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   protected void copy(final byte[] entries, final int pre, final int last) {
+    invalidate();
     for(int o = 0, i = pre; i < last; ++i, o += IO.NODESIZE) {
       final int off = cursor(i);
       final Buffer bf = bm.current();
@@ -272,6 +377,7 @@ public final class TableDiskAccess extends TableAccess {
   public void delete(final int pre, final int nr) {
     if(nr == 0) return;
     dirty = true;
+    invalidate();
 
     // get first block
     cursor(pre);
@@ -291,6 +397,7 @@ public final class TableDiskAccess extends TableAccess {
         // mark the block as empty
         freePages.clear(pages[page]);
 
+        applyShifts();
         Array.move(fpres, page + 1, -1, used - page - 1);
         Array.move(pages, page + 1, -1, used - page - 1);
 
@@ -330,6 +437,7 @@ public final class TableDiskAccess extends TableAccess {
 
     // now remove them from the index
     if(unused > 0) {
+      applyShifts();
       Array.move(fpres, page, -unused, used - page);
       Array.move(pages, page, -unused, used - page);
       used -= unused;
@@ -337,7 +445,7 @@ public final class TableDiskAccess extends TableAccess {
     }
 
     // update index entry for this block
-    fpres[page] = pre;
+    fpre(page, pre);
     fpre = pre;
     updatePre(nr);
   }
@@ -347,6 +455,7 @@ public final class TableDiskAccess extends TableAccess {
     final int nnew = entries.length;
     if(nnew == 0) return;
     dirty = true;
+    invalidate();
 
     // number of records to be inserted
     final int nr = nnew >>> IO.NODEPOWER;
@@ -379,7 +488,7 @@ public final class TableDiskAccess extends TableAccess {
       bf.dirty = true;
 
       // increment first pre-values of blocks after the last modified block
-      for(int i = page + 1; i < used; ++i) fpres[i] += nr;
+      shift(page + 1, nr);
       // update cached variables (fpre is not changed)
       npre += nr;
       meta.size += nr;
@@ -432,11 +541,13 @@ public final class TableDiskAccess extends TableAccess {
 
     // number of expected blocks: existing blocks + needed block - empty blocks
     final int exp = blocks + needed - (blocks - used);
+    applyShifts();
     if(exp > fpres.length) {
       // resize directory arrays if existing ones are too small
       final int ns = Math.max(fpres.length << 1, exp);
       fpres = Arrays.copyOf(fpres, ns);
       pages = Arrays.copyOf(pages, ns);
+      shifts = null;
     }
 
     // make place for the blocks where the new entries will be written
@@ -452,18 +563,71 @@ public final class TableDiskAccess extends TableAccess {
     }
 
     // increment all fpre values after the last modified block
-    for(int i = page + 1; i < used; ++i) fpres[i] += nr;
+    shift(page + 1, nr);
 
     meta.size += nr;
 
     // update cached variables
-    fpre = fpres[page];
-    npre = page + 1 < used && fpres[page + 1] < meta.size ?
-        fpres[page + 1] : meta.size;
+    fpre = fpre(page);
+    npre = page + 1 < used && fpre(page + 1) < meta.size ? fpre(page + 1) : meta.size;
   }
 
   // PRIVATE METHODS ==========================================================
 
+  /**
+   * Creates a stateless view for concurrent reads if no buffered changes exist.
+   * @throws IOException I/O exception
+   */
+  private void view() throws IOException {
+    mutex.lock();
+    try {
+      if(view != null) return;
+      for(final Buffer b : bm.all()) if(b.dirty) return;
+      view = mmap ? new Segments(file.getChannel(), file.length()) :
+        new ChannelAccess(file.getChannel());
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  /**
+   * Drops the stateless view, as the table is about to be changed.
+   */
+  private void invalidate() {
+    if(view != null) view = null;
+  }
+
+  /**
+   * Returns a stateless view if memory mapping is enabled, or if the buffers are
+   * locked by another thread. Otherwise, locks the buffers and returns {@code null}.
+   * @return view or {@code null}
+   */
+  private ReadAccess reader() {
+    final ReadAccess ra = view;
+    if(ra != null && (ra.preferred() || !mutex.tryLock())) return ra;
+    if(ra == null) mutex.lock();
+    return null;
+  }
+
+  /**
+   * Returns the file offset of the entry for the specified pre value.
+   * This method does not change the state of the instance.
+   * @param pre pre value
+   * @param off offset of the value in the entry
+   * @return file offset
+   */
+  private long offset(final int pre, final int off) {
+    // find last block with a first pre value that is smaller than or equal to pre
+    int l = 0;
+    int h = used - 1;
+    while(l < h) {
+      final int m = l + h + 1 >>> 1;
+      if(fpre(m) <= pre) l = m;
+      else h = m - 1;
+    }
+    return (long) pages[l] * IO.BLOCKSIZE + (pre - fpre(l) << IO.NODEPOWER) + off;
+  }
+
   /**
    * Searches for the block containing the entry for the specified pre value.
    * Reads the block and returns its offset inside the block.
@@ -474,6 +638,8 @@ public final class TableDiskAccess extends TableAccess {
     int fp = fpre;
     int np = npre;
     if(pre < fp || pre >= np) {
+      // apply pending shifts once instead of consulting them in each probe
+      applyShifts();
       final int last = used - 1;
       int l = 0;
       int h = last;
@@ -503,8 +669,8 @@ public final class TableDiskAccess extends TableAccess {
    */
   private void setPage(final int p) {
     page = p;
-    fpre = fpres[p];
-    npre = p + 1 >= used ? meta.size : fpres[p + 1];
+    fpre = fpre(p);
+    npre = p + 1 >= used ? meta.size : fpre(p + 1);
   }
 
   /**
@@ -555,21 +721,77 @@ public final class TableDiskAccess extends TableAccess {
    * @throws IOException I/O exception
    */
   private void writeBlock(final Buffer bf) throws IOException {
+    if(journal != null) {
+      save(bf);
+      journal.sync();
+    }
     file.seek(bf.pos * IO.BLOCKSIZE);
     file.write(bf.data);
     bf.dirty = false;
   }
 
+  /**
+   * Journals the original contents of the specified block.
+   * @param bf buffer
+   * @throws IOException I/O exception
+   */
+  private void save(final Buffer bf) throws IOException {
+    journal.save(name, file, bf.pos * IO.BLOCKSIZE);
+  }
+
   /**
    * Updates the firstPre index entries.
    * @param nr number of entries to move
    */
   private void updatePre(final int nr) {
     // update index entries for all following blocks and reduce counter
-    for(int i = page + 1; i < used; ++i) fpres[i] -= nr;
+    shift(page + 1, -nr);
     meta.size -= nr;
-    npre = page + 1 < used && fpres[page + 1] < meta.size ? fpres[page + 1] :
-      meta.size;
+    npre = page + 1 < used && fpre(page + 1) < meta.size ? fpre(page + 1) : meta.size;
+  }
+
+  /**
+   * Returns the firstPre value of the specified page.
+   * @param p page index
+   * @return firstPre value
+   */
+  private int fpre(final int p) {
+    int f = fpres[p];
+    if(shifted) {
+      for(int i = p + 1; i > 0; i -= i & -i) f += shifts[i];
+    }
+    return f;
+  }
+
+  /**
+   * Assigns a firstPre value to the specified page.
+   * @param p page index
+   * @param v firstPre value
+   */
+  private void fpre(final int p, final int v) {
+    fpres[p] += v - fpre(p);
+  }
+
+  /**
+   * Shifts the firstPre values of the specified page and all following pages.
+   * @param p index of the first page
+   * @param nr number of entries to be added or removed
+   */
+  private void shift(final int p, final int nr) {
+    if(p >= used) return;
+    if(shifts == null) shifts = new int[fpres.length + 1];
+    for(int i = p + 1; i < shifts.length; i += i & -i) shifts[i] += nr;
+    shifted = true;
+  }
+
+  /**
+   * Applies all pending shifts to the firstPre values.
+   */
+  private void applyShifts() {
+    if(!shifted) return;
+    for(int p = 0; p < used; p++) fpres[p] = fpre(p);
+    Arrays.fill(shifts, 0);
+    shifted = false;
   }
 
   /**
@@ -608,6 +830,6 @@ public final class TableDiskAccess extends TableAccess {
    * @return occupied space in number of records
    */
   private int occSpace(final int i) {
-    return (i + 1 < used ? fpres[i + 1] : meta.size) - fpres[i];
+    return (i + 1 < used ? fpre(i + 1) : meta.size) - fpre(i);
   }
 }
@@ -5,6 +5,7 @@ import java.util.*;
 
 import org.basex.data.*;
 import org.basex.io.*;
+import org.basex.util.*;
 import org.basex.util.list.*;
 
 /**
@@ -114,6 +115,16 @@ public final class TableMemAccess extends TableAccess {
     set(pre, entries);
   }
 
+  /**
+   * Releases the memory that has been reserved for entries to be added.
+   */
+  public void trim() {
+    final int s = meta.size;
+    if(s == buf1.length) return;
+    buf1 = Arrays.copyOf(buf1, s);
+    buf2 = Arrays.copyOf(buf2, s);
+  }
+
   // PRIVATE METHODS ==========================================================
 
   /**
@@ -124,8 +135,8 @@ public final class TableMemAccess extends TableAccess {
   private void move(final int op, final int np) {
     dirty = true;
     final int l = meta.size - op;
-    while(l + np >= buf1.length) {
-      final int s = buf1.length << 1;
+    if(l + np >= buf1.length) {
+      final int s = Math.max(l + np + 1, Array.newSize(buf1.length));
       buf1 = Arrays.copyOf(buf1, s);
       buf2 = Arrays.copyOf(buf2, s);
     }
@@ -14,6 +14,8 @@ import org.basex.io.*;
 import org.basex.io.out.*;
 import org.basex.query.*;
 import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
+import org.basex.query.value.type.*;
 import org.basex.util.*;
 import org.basex.util.ft.*;
 import org.basex.util.hash.*;
@@ -57,7 +59,9 @@ public abstract class OutputSerializer extends Serializer {
   /** New line. */
   final byte[] nl;
   /** Output stream. */
-  final PrintOutput out;
+  PrintOutput out;
+  /** Serialization parameters used for caching documents ({@code null} if disabled). */
+  private final String params;
 
   /** UTF8 flag. */
   private final boolean utf8;
@@ -123,6 +127,7 @@ public abstract class OutputSerializer extends Serializer {
     content = p.yes(S_INCLUDE_CONTENT_TYPE);
     undecl  = p.yes(S_UNDECLARE_PREFIXES);
     indent  = p.yes(S_INDENT) && format;
+    params  = this instanceof XMLSerializer ? p.toString() : null;
 
     if(!maps.isEmpty()) SERMAP.thrwSerial(maps);
 
@@ -188,6 +193,35 @@ public abstract class OutputSerializer extends Serializer {
     }
   }
 
+  @Override
+  public void serialize(final ANode node) throws IOException {
+    final SerialCache cache = cache(node);
+    if(cache == null) {
+      super.serialize(node);
+      return;
+    }
+
+    final DBNode dn = (DBNode) node;
+    final byte[] cached = cache.get(dn.pre, params);
+    if(cached != null) {
+      // write unchanged document
+      out.write(cached, 0, cached.length);
+      sep = sep(dn);
+    } else {
+      // serialize document and cache the result
+      final PrintOutput po = out;
+      final CacheOutput co = new CacheOutput(po, cache.max());
+      out = co;
+      try {
+        super.serialize(node);
+      } finally {
+        out = po;
+      }
+      final byte[] bytes = co.toArray();
+      if(bytes != null && !po.finished()) cache.add(dn.pre, params, bytes);
+    }
+  }
+
   @Override
   public final void reset() {
     sep = false;
@@ -356,6 +390,35 @@ public abstract class OutputSerializer extends Serializer {
     sep = true;
   }
 
+  /**
+   * Returns the cache for serialized documents if the specified node is a
+   * database document, and if its serialization is independent of the
+   * current state of the serializer.
+   * @param node node to be serialized
+   * @return cache, or {@code null} if the document cannot be cached
+   */
+  private SerialCache cache(final ANode node) {
+    if(params == null || level != 0 || opening || item || docsys != null ||
+        node.type != NodeType.DOC || !(node instanceof DBNode) ||
+        node instanceof FTPosNode) return null;
+    final SerialCache cache = ((DBNode) node).data.serial;
+    return cache.max() == 0 ? null : cache;
+  }
+
+  /**
+   * Returns the separator flag after the serialization of the specified
+   * document, which is {@code false} if the last child is a text node.
+   * @param node document node
+   * @return separator flag
+   */
+  private static boolean sep(final DBNode node) {
+    final Data data = node.data;
+    final int s = node.pre + data.size(node.pre, Data.DOC);
+    int k = -1;
+    for(int p = node.pre + 1; p < s; p += data.size(p, k)) k = data.kind(p);
+    return k != -1 && k != Data.TEXT;
+  }
+
   /**
    * Encodes the specified character before printing it.
    * @param ch character to be encoded and printed
@@ -38,7 +38,7 @@ public abstract class Serializer {
   /** Namespace stack. */
   private final IntList nsl = new IntList();
   /** Indicates if an element has not been completely opened yet. */
-  private boolean opening;
+  boolean opening;
 
   /**
    * Returns an XML serializer.
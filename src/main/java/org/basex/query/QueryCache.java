@@ -0,0 +1,254 @@
+package org.basex.query;
+
+import java.util.*;
+
+import org.basex.core.*;
+import org.basex.core.Context;
+import org.basex.data.*;
+import org.basex.query.expr.*;
+import org.basex.query.expr.Expr.Use;
+import org.basex.query.util.*;
+import org.basex.util.list.*;
+
+/**
+ * This class caches compiled read-only queries. A query is looked up by its
+ * query string, the user, the opened database, the query-related options and
+ * the names and types of the bound variables. The bound values are not part of
+ * the key: they are assigned again before each evaluation, and compiled queries
+ * that are cached will not inline them (see {@link QueryContext#cached}).
+ *
+ * A cached query will be checked out while it is evaluated, so it can only be
+ * used by one process at a time. Entries are stored in the order of their last
+ * access; the least recently used entry is closed if the maximum number of
+ * entries is exceeded. If a process updates databases, all entries that access
+ * these databases will be closed (see {@link Context#register}).
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class QueryCache {
+  /** Maximum number of entries ({@code 0}: cache is disabled). */
+  private final int max;
+  /** Cached queries. */
+  private final LinkedHashMap<String, Entry> queries;
+  /** Version of the cached entries. */
+  private long version;
+  /** Number of cache hits. */
+  private long hits;
+  /** Number of cache misses. */
+  private long misses;
+
+  /**
+   * Constructor.
+   * @param m maximum number of entries
+   */
+  public QueryCache(final int m) {
+    max = Math.max(0, m);
+    queries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(
+          final Map.Entry<String, QueryCache.Entry> eldest) {
+        if(size() <= max) return false;
+        eldest.getValue().qp.close();
+        return true;
+      }
+    };
+  }
+
+  /**
+   * Returns the key for the specified query, or {@code null} if the query
+   * cannot be cached.
+   * @param query query string
+   * @param ctx database context
+   * @param params additional parameters that influence the compilation
+   *   ({@code null} references indicate that the query cannot be cached)
+   * @return key or {@code null}
+   */
+  public String key(final String query, final Context ctx, final String... params) {
+    if(max == 0) return null;
+    // queries on a subset of the current database will not be cached
+    final Data data = ctx.data();
+    if(data != null && !ctx.current().root) return null;
+
+    final StringBuilder sb = new StringBuilder(ctx.user.name);
+    sb.append('\0').append(ctx.user.perm).append('\0');
+    if(data != null) sb.append(data.meta.name);
+    for(final String p : ctx.prop) sb.append('\0').append(ctx.prop.get(p));
+    for(final String p : params) {
+      if(p == null) return null;
+      sb.append('\0').append(p);
+    }
+    return sb.append('\0').append(query).toString();
+  }
+
+  /**
+   * Checks out the compiled query for the specified key. The query will be
+   * evaluated in the specified database context.
+   * @param key key (may be {@code null})
+   * @param ctx database context
+   * @return query processor, or {@code null} if no entry was found
+   */
+  public synchronized QueryProcessor get(final String key, final Context ctx) {
+    if(key == null) return null;
+    Entry e = queries.remove(key);
+    // a query may have been stopped by a timeout after it has been cached
+    if(e != null && e.qp.stopped()) {
+      e.qp.close();
+      e = null;
+    }
+    if(e == null) {
+      ++misses;
+      return null;
+    }
+    ++hits;
+    e.qp.ctx.context = ctx;
+    return e.qp;
+  }
+
+  /**
+   * Returns the current version of the cache. If it has changed after a query
+   * has been checked out or compiled, the query must not be evaluated again.
+   * @return version
+   */
+  public synchronized long version() {
+    return version;
+  }
+
+  /**
+   * Caches an evaluated query if it can be evaluated again, and if no database
+   * has been updated since the specified version was requested.
+   * Otherwise, the query is closed.
+   * @param key key (may be {@code null})
+   * @param qp query processor
+   * @param ver version
+   * @return {@code true} if the query has been cached
+   */
+  public boolean put(final String key, final QueryProcessor qp, final long ver) {
+    final StringList dbs = key != null ? databases(qp) : null;
+    if(dbs != null) {
+      qp.ctx.reset();
+      synchronized(this) {
+        if(ver == version && !queries.containsKey(key)) {
+          queries.put(key, new Entry(qp, dbs));
+          return true;
+        }
+      }
+    }
+    qp.close();
+    return false;
+  }
+
+  /**
+   * Closes all entries that access the specified databases.
+   * @param dbs names of databases
+   */
+  public synchronized void invalidate(final StringList dbs) {
+    ++version;
+    final Iterator<Entry> it = queries.values().iterator();
+    while(it.hasNext()) {
+      final Entry e = it.next();
+      for(final String db : dbs) {
+        if(!e.dbs.contains(db)) continue;
+        e.qp.close();
+        it.remove();
+        break;
+      }
+    }
+  }
+
+  /**
+   * Closes all entries.
+   */
+  public synchronized void invalidate() {
+    ++version;
+    for(final Entry e : queries.values()) e.qp.close();
+    queries.clear();
+  }
+
+  /**
+   * Indicates if the cache is enabled.
+   * @return result of check
+   */
+  public boolean enabled() {
+    return max != 0;
+  }
+
+  /**
+   * Returns the number of entries.
+   * @return number of entries
+   */
+  public synchronized int size() {
+    return queries.size();
+  }
+
+  /**
+   * Returns the number of cache hits.
+   * @return number of hits
+   */
+  public synchronized long hits() {
+    return hits;
+  }
+
+  /**
+   * Returns the hit rate in percent.
+   * @return hit rate
+   */
+  public synchronized int rate() {
+    final long total = hits + misses;
+    return total == 0 ? 0 : (int) (hits * 100 / total);
+  }
+
+  /**
+   * Returns the names of the databases that are accessed by the specified query,
+   * or {@code null} if the compiled query cannot be evaluated again.
+   * @param qp query processor
+   * @return names of databases, or {@code null}
+   */
+  private static StringList databases(final QueryProcessor qp) {
+    final QueryContext qc = qp.ctx;
+    // skip stopped and updating queries, imported modules and query options
+    if(qp.stopped() || qp.updating || !qc.cacheable || qc.modParsed.size() != 0 ||
+        !qc.dbOptions.isEmpty() || !qc.globalOpt.isEmpty() || qc.root == null ||
+        qc.context.prop.is(Prop.QUERYINFO)) return null;
+
+    // skip global variables that may have different values in the next evaluation
+    final VarStack gl = qc.vars.globals();
+    for(int v = 0; v < gl.size; v++) {
+      final Var var = gl.vars[v];
+      final Expr e = var.expr();
+      if(!var.external && e != null && (e.uses(Use.VAR) || e.uses(Use.NDT))) return null;
+    }
+
+    // skip queries that may access resources other than databases
+    final StringList sl = qc.db;
+    if(sl == null) return null;
+    final Data data = qc.context.data();
+    for(int d = 0; d < sl.size(); d++) {
+      final String db = sl.get(d);
+      if(db.isEmpty()) {
+        if(data != null) sl.set(d, data.meta.name);
+      } else if(!qc.context.mprop.dbexists(db)) {
+        return null;
+      }
+    }
+    return sl;
+  }
+
+  /** Cached query. */
+  private static final class Entry {
+    /** Compiled query. */
+    final QueryProcessor qp;
+    /** Names of the accessed databases. */
+    final StringList dbs;
+
+    /**
+     * Constructor.
+     * @param q compiled query
+     * @param d names of the accessed databases
+     */
+    Entry(final QueryProcessor q, final StringList d) {
+      qp = q;
+      dbs = d;
+    }
+  }
+}
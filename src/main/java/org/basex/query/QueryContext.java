@@ -7,6 +7,7 @@ import static org.basex.util.Token.*;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.*;
 import java.util.regex.*;
 
 import org.basex.core.*;
@@ -52,8 +53,8 @@ public final class QueryContext extends Progress {
 
   /** Query resources. */
   public final QueryResources resource = new QueryResources(this);
-  /** Database context. */
-  public final Context context;
+  /** Database context (will be replaced if a cached query is evaluated again). */
+  public Context context;
 
   /** Cached stop word files. */
   public HashMap<String, IO> stop;
@@ -129,6 +130,13 @@ public final class QueryContext extends Progress {
   ClientSessions sessions;
   /** Root expression of the query. */
   Expr root;
+  /** Indicates if the compiled query may be cached (see {@link QueryCache}). */
+  public boolean cacheable = true;
+  /** Indicates if the query will be cached after compilation. If set,
+   * values that are bound by the caller will not be inlined. */
+  public boolean cached;
+  /** Temporary files (will be deleted when the query is closed). */
+  public final ArrayList<SpillFile> spills = new ArrayList<SpillFile>();
 
   /** String container for query background information. */
   private final TokenBuilder info = new TokenBuilder();
@@ -140,6 +148,12 @@ public final class QueryContext extends Progress {
   private boolean firstEval = true;
   /** Closed flag. */
   private boolean closed;
+  /** Indicates if this context is used for a parallel evaluation. */
+  public final boolean forked;
+  /** Thread pool for parallel evaluations ({@code null} if not used yet). */
+  private ExecutorService pool;
+  /** Number of chunks that have been evaluated in parallel. */
+  public int chunks;
 
   /**
    * Constructor.
@@ -154,6 +168,57 @@ public final class QueryContext extends Progress {
     maxCalls = ctx.prop.num(Prop.TAILCALLS);
     modules = new ModuleLoader(ctx);
     sc.xquery3 = ctx.prop.is(Prop.XQUERY3);
+    forked = false;
+  }
+
+  /**
+   * Constructor for evaluating expressions of the specified query in a separate
+   * thread. The database context, the global variables and the focus are adopted,
+   * and the static context and the stack of local variables are copied.
+   * @param qc query context
+   */
+  public QueryContext(final QueryContext qc) {
+    context = qc.context;
+    nodes = qc.nodes;
+    inf = false;
+    maxCalls = qc.maxCalls;
+    modules = qc.modules;
+    forked = true;
+
+    sc = qc.sc.copy();
+    final VarStack gl = qc.vars.globals();
+    for(int v = 0; v < gl.size; v++) vars.globals().add(gl.vars[v]);
+    final VarStack lc = qc.vars.locals();
+    for(int v = 0; v < lc.size; v++) vars.add(lc.vars[v]);
+    value = qc.value;
+    pos = qc.pos;
+    size = qc.size;
+    date = qc.date;
+    dtm = qc.dtm;
+    time = qc.time;
+    zone = qc.zone;
+  }
+
+  /**
+   * Returns a thread pool for evaluating expressions in parallel.
+   * The pool will be shut down when the query is closed.
+   * @param threads number of threads
+   * @return thread pool
+   */
+  public ExecutorService pool(final int threads) {
+    if(pool == null) {
+      pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+          // daemon threads will not block the termination of the VM
+          final Thread t = new Thread(r);
+          t.setDaemon(true);
+          return t;
+        }
+      });
+      ANode.fork(true);
+    }
+    return pool;
   }
 
   /**
@@ -211,6 +276,12 @@ public final class QueryContext extends Progress {
       value = SeqType.get(sc.initType, Occ.ONE).promote(value, this, null);
     }
 
+    // remember databases before references to them may be optimized away
+    if(cached && root != null) {
+      db = new StringList();
+      if(!root.databases(db)) db = null;
+    }
+
     // dynamic compilation
     analyze();
 
@@ -414,6 +485,21 @@ public final class QueryContext extends Progress {
     updating = up;
   }
 
+  /**
+   * Prepares the compiled query for another evaluation (see {@link QueryCache}).
+   */
+  void reset() {
+    // the current time is determined once per evaluation
+    date = null;
+    dtm = null;
+    time = null;
+    zone = null;
+    tailCalls = 0;
+    chunks = 0;
+    for(final SpillFile sf : spills) sf.delete();
+    spills.clear();
+  }
+
   /**
    * Closes the query context.
    */
@@ -434,6 +520,13 @@ public final class QueryContext extends Progress {
     if(sessions != null) sessions.close();
     // close dynamically loaded JAR files
     modules.close();
+    // stop parallel evaluations
+    if(pool != null) {
+      pool.shutdownNow();
+      ANode.fork(false);
+    }
+    // delete temporary files
+    for(final SpillFile sf : spills) sf.delete();
   }
 
   @Override
@@ -573,10 +666,13 @@ public final class QueryContext extends Progress {
     final Var gl = vars.globals().get(qnm);
     if(gl == null) {
       // assign new variable
-      vars.updateGlobal(Var.create(this, null, qnm, null, null).bind(val, this));
+      final Var v = Var.create(this, null, qnm, null, null).bind(val, this);
+      v.external = true;
+      vars.updateGlobal(v);
     } else {
       // reset declaration state and bind new expression
       gl.declared = false;
+      gl.external = true;
       gl.bind(gl.type == null ? val :
         gl.type.type.cast(val.item(this, null), this, null), this);
     }
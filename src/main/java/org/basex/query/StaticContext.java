@@ -17,7 +17,7 @@ import org.basex.util.hash.*;
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
-public final class StaticContext {
+public final class StaticContext implements Cloneable {
   /** Decimal formats. */
   public final TokenObjMap<DecFormatter> decFormats = new TokenObjMap<DecFormatter>();
 
@@ -68,6 +68,21 @@ public final class StaticContext {
     }
   }
 
+  /**
+   * Returns a copy of the static context, which can be modified without
+   * affecting this context. Decimal formats and static namespaces are shared.
+   * @return copy
+   */
+  public StaticContext copy() {
+    try {
+      final StaticContext sc = (StaticContext) clone();
+      sc.ns = ns.copy();
+      return sc;
+    } catch(final CloneNotSupportedException ex) {
+      throw Util.notexpected(ex);
+    }
+  }
+
   /**
    * Returns an IO representation of the static base URI, or {@code null}.
    * @return IO reference
@@ -68,6 +68,11 @@ public final class Arith extends Arr {
     return '\'' + calc.name + "' expression";
   }
 
+  @Override
+  public boolean parallel() {
+    return allParallel(expr);
+  }
+
   @Override
   public String toString() {
     return toString(' ' + calc.name + ' ');
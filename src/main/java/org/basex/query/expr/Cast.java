@@ -56,6 +56,11 @@ public final class Cast extends Single {
     addPlan(plan, planElem(TYP, type), expr);
   }
 
+  @Override
+  public boolean parallel() {
+    return expr.parallel();
+  }
+
   @Override
   public String toString() {
     return expr + " " + CAST + ' ' + AS + ' ' + type;
@@ -51,6 +51,11 @@ public final class Castable extends Single {
     addPlan(plan, planElem(TYP, seq), expr);
   }
 
+  @Override
+  public boolean parallel() {
+    return expr.parallel();
+  }
+
   @Override
   public String toString() {
     return expr + " " + CASTABLE + ' ' + AS + ' ' + seq;
@@ -79,4 +79,9 @@ public abstract class Cmp extends Arr {
 
     return this;
   }
+
+  @Override
+  public boolean parallel() {
+    return allParallel(expr);
+  }
 }
@@ -1,12 +1,14 @@
 package org.basex.query.expr;
 
 import static org.basex.query.QueryText.*;
+import static org.basex.query.util.Err.*;
 
 import org.basex.index.*;
 import org.basex.index.name.*;
 import org.basex.index.query.*;
 import org.basex.index.stats.*;
 import org.basex.query.*;
+import org.basex.query.expr.CmpV.OpV;
 import org.basex.query.iter.*;
 import org.basex.query.path.*;
 import org.basex.query.path.Test.Mode;
@@ -18,7 +20,8 @@ import org.basex.query.value.type.*;
 import org.basex.util.*;
 
 /**
- * Numeric range expression.
+ * Numeric range expression. Ranges of dates and dateTimes without timezone
+ * are represented by their exact keys (see {@link ADate#key()}).
  *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
@@ -36,6 +39,16 @@ public final class CmpR extends Single {
   private NumericRange rt;
   /** Flag for atomic evaluation. */
   private final boolean atomic;
+  /** Date type ({@code null} for numeric ranges). */
+  private final Type date;
+  /** Minimum date ({@code null} if no minimum is given). */
+  private final Item mnd;
+  /** Maximum date ({@code null} if no maximum is given). */
+  private final Item mxd;
+  /** Key of the minimum date. */
+  private final long kmin;
+  /** Key of the maximum date. */
+  private final long kmax;
 
   /**
    * Constructor.
@@ -48,12 +61,35 @@ public final class CmpR extends Single {
    */
   private CmpR(final Expr e, final double mn, final boolean in, final double mx,
       final boolean ix, final InputInfo ii) {
+    this(e, mn, in, mx, ix, null, null, null, ii);
+  }
+
+  /**
+   * Constructor.
+   * @param e (compiled) expression
+   * @param mn minimum value
+   * @param in include minimum value
+   * @param mx maximum value
+   * @param ix include maximum value
+   * @param dt date type ({@code null} for numeric ranges)
+   * @param dmn minimum date
+   * @param dmx maximum date
+   * @param ii input info
+   */
+  private CmpR(final Expr e, final double mn, final boolean in, final double mx,
+      final boolean ix, final Type dt, final Item dmn, final Item dmx,
+      final InputInfo ii) {
 
     super(ii, e);
     min = mn;
     mni = in;
     max = mx;
     mxi = ix;
+    date = dt;
+    mnd = dmn;
+    mxd = dmx;
+    kmin = dmn == null ? Long.MIN_VALUE : ((ADate) dmn).key();
+    kmax = dmx == null ? Long.MAX_VALUE : ((ADate) dmx).key();
     type = SeqType.BLN;
     atomic = e.type().zeroOrOne();
   }
@@ -64,6 +100,7 @@ public final class CmpR extends Single {
    * @return new or original expression
    */
   static Expr get(final CmpG ex) {
+    if(ex.expr[1] instanceof ADate) return get(ex, (ADate) ex.expr[1]);
     if(!(ex.expr[1] instanceof ANum)) return ex;
     final double d = ((ANum) ex.expr[1]).dbl();
     final Expr e = ex.expr[0];
@@ -76,23 +113,56 @@ public final class CmpR extends Single {
     }
   }
 
+  /**
+   * Tries to convert the specified expression into a date range expression.
+   * Only dates and dateTimes without timezone are considered.
+   * @param ex expression to be converted
+   * @param dt date
+   * @return new or original expression
+   */
+  private static Expr get(final CmpG ex, final ADate dt) {
+    final Type t = dt.type;
+    if(t != AtomType.DAT && t != AtomType.DTM || dt.key() == Long.MIN_VALUE) return ex;
+    final double mn = Double.NEGATIVE_INFINITY, mx = Double.POSITIVE_INFINITY;
+    final Expr e = ex.expr[0];
+    switch(ex.op.op) {
+      case GE: return new CmpR(e, mn, true, mx, true, t, dt, null, ex.info);
+      case GT: return new CmpR(e, mn, false, mx, true, t, dt, null, ex.info);
+      case LE: return new CmpR(e, mn, true, mx, true, t, null, dt, ex.info);
+      case LT: return new CmpR(e, mn, true, mx, false, t, null, dt, ex.info);
+      default: return ex;
+    }
+  }
+
   @Override
   public Bln item(final QueryContext ctx, final InputInfo ii) throws QueryException {
     // atomic evaluation of arguments (faster)
     if(atomic) {
       final Item it = expr.item(ctx, info);
-      if(it == null) return Bln.FALSE;
-      final double d = it.dbl(info);
-      return Bln.get((mni ? d >= min : d > min) && (mxi ? d <= max : d < max));
+      return Bln.get(it != null && eval(it));
     }
 
     // iterative evaluation
     final Iter ir = ctx.iter(expr);
-    for(Item it; (it = ir.next()) != null;) {
+    for(Item it; (it = ir.next()) != null;) if(eval(it)) return Bln.TRUE;
+    return Bln.FALSE;
+  }
+
+  /**
+   * Checks if the specified item is in the range.
+   * @param it item
+   * @return result of check
+   * @throws QueryException query exception
+   */
+  private boolean eval(final Item it) throws QueryException {
+    if(date == null) {
       final double d = it.dbl(info);
-      if((mni ? d >= min : d > min) && (mxi ? d <= max : d < max)) return Bln.TRUE;
+      return (mni ? d >= min : d > min) && (mxi ? d <= max : d < max);
     }
-    return Bln.FALSE;
+    // compare dates in the same way as general comparisons
+    if(it.type != date && !it.type.isUntyped()) throw XPTYPECMP.thrw(info, it.type, date);
+    return (mnd == null || (mni ? OpV.GE : OpV.GT).eval(info, it, mnd)) &&
+        (mxd == null || (mxi ? OpV.LE : OpV.LT).eval(info, it, mxd));
   }
 
   /**
@@ -102,7 +172,8 @@ public final class CmpR extends Single {
    */
   Expr intersect(final CmpR c) {
     // skip intersection if expressions to be compared are different
-    if(!c.expr.sameAs(expr)) return null;
+    if(!c.expr.sameAs(expr) || date != c.date) return null;
+    if(date != null) return intersectDates(c);
 
     // find common minimum and maximum value
     final double mn = Math.max(min, c.min);
@@ -118,6 +189,26 @@ public final class CmpR extends Single {
     return new CmpR(c.expr, mn, mni && c.mni, mx, mxi && c.mxi, info);
   }
 
+  /**
+   * Creates an intersection of the existing and the specified date ranges.
+   * @param c range comparison
+   * @return resulting expression
+   */
+  private Expr intersectDates(final CmpR c) {
+    // find common minimum and maximum date
+    final Item dmn = kmin >= c.kmin ? mnd : c.mnd, dmx = kmax <= c.kmax ? mxd : c.mxd;
+    final long mn = Math.max(kmin, c.kmin), mx = Math.min(kmax, c.kmax);
+
+    // remove comparisons that will never yield results
+    if(mn > mx) return Bln.FALSE;
+    if(mn == mx) {
+      // return simplified comparison for exact hit, or false if value is not included
+      return mni && mxi ? new CmpG(expr, dmn, CmpG.OpG.EQ, info) : Bln.FALSE;
+    }
+
+    return new CmpR(c.expr, min, mni && c.mni, max, mxi && c.mxi, date, dmn, dmx, info);
+  }
+
   @Override
   public boolean indexAccessible(final IndexContext ic) {
     // accept only location path, string and equality expressions
@@ -128,16 +219,28 @@ public final class CmpR extends Single {
     // check which index applies
     final boolean text = s.test.type == NodeType.TXT && ic.data.meta.textindex;
     final boolean attr = s.test.type == NodeType.ATT && ic.data.meta.attrindex;
-    if(!text && !attr || !mni || !mxi) return false;
+    if(!text && !attr) return false;
 
     final Stats key = key(ic, text);
     if(key == null) return false;
 
+    // index ranges are inclusive: choose adjacent values for exclusive limits
+    final IndexType it = text ? IndexType.TEXT : IndexType.ATTRIBUTE;
+    final int costs = Math.max(1, ic.data.meta.size / 5);
+    if(date != null) {
+      // estimate costs for range access; all dates out of range: no results
+      final long mn = mni ? kmin : kmin + 1, mx = mxi ? kmax : kmax - 1;
+      rt = new NumericRange(it, Math.max(mn, key.dmin), Math.min(mx, key.dmax));
+      ic.costs(rt.dmin > rt.dmax ? 0 : costs);
+      // use index if costs are zero, or if a minimum and maximum date is given
+      return ic.costs() == 0 || mnd != null && mxd != null;
+    }
+
     // estimate costs for range access; all values out of range: no results
-    rt = new NumericRange(text ? IndexType.TEXT : IndexType.ATTRIBUTE,
-        Math.max(min, key.min), Math.min(max, key.max));
-    ic.costs(rt.min > rt.max || rt.max < key.min || rt.min > key.max ? 0 :
-      Math.max(1, ic.data.meta.size / 5));
+    final double mn = mni ? min : Math.nextUp(min);
+    final double mx = mxi ? max : Math.nextAfter(max, Double.NEGATIVE_INFINITY);
+    rt = new NumericRange(it, Math.max(mn, key.min), Math.min(mx, key.max));
+    ic.costs(rt.min > rt.max || rt.max < key.min || rt.min > key.max ? 0 : costs);
 
     // use index if costs are zero, or if min/max is not infinite
     return ic.costs() == 0 || min != Double.NEGATIVE_INFINITY &&
@@ -175,21 +278,37 @@ public final class CmpR extends Single {
 
     final Names names = text ? ic.data.tagindex : ic.data.atnindex;
     final Stats key = names.stat(names.id(((NameTest) step.test).ln));
-    return key == null || key.type == StatsType.INTEGER ||
-        key.type == StatsType.DOUBLE ? key : null;
+    if(key == null) return null;
+    if(date == null) {
+      return key.type == StatsType.INTEGER || key.type == StatsType.DOUBLE ? key : null;
+    }
+
+    // dates: all values must be dates or dateTimes of the requested type
+    return key.date == (date == AtomType.DAT ? StatsType.DATE : StatsType.DATETIME) ?
+        key : null;
   }
 
   @Override
   public void plan(final FElem plan) {
-    addPlan(plan, planElem(MIN, min, MAX, max), expr);
+    addPlan(plan, date == null ? planElem(MIN, min, MAX, max) :
+      planElem(MIN, mnd == null ? "" : mnd, MAX, mxd == null ? "" : mxd), expr);
+  }
+
+  @Override
+  public boolean parallel() {
+    return expr.parallel();
   }
 
   @Override
   public String toString() {
     final StringBuilder sb = new StringBuilder();
-    if(min != Double.NEGATIVE_INFINITY) sb.append(min).append(mni ? " <= " : " < ");
+    if(date == null ? min != Double.NEGATIVE_INFINITY : mnd != null) {
+      sb.append(date == null ? min : mnd).append(mni ? " <= " : " < ");
+    }
     sb.append(expr);
-    if(max != Double.POSITIVE_INFINITY) sb.append(mxi ? " <= " : " < ").append(max);
+    if(date == null ? max != Double.POSITIVE_INFINITY : mxd != null) {
+      sb.append(mxi ? " <= " : " < ").append(date == null ? max : mxd);
+    }
     return sb.toString();
   }
 }
@@ -160,6 +160,11 @@ public final class CmpSR extends Single {
       MAX, max != null ? max : ""), expr);
   }
 
+  @Override
+  public boolean parallel() {
+    return expr.parallel();
+  }
+
   @Override
   public String toString() {
     final TokenBuilder tb = new TokenBuilder();
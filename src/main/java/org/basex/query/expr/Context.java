@@ -58,6 +58,11 @@ public final class Context extends Simple {
     return u == Use.CTX;
   }
 
+  @Override
+  public boolean parallel() {
+    return true;
+  }
+
   @Override
   public boolean removable(final Var v) {
     return false;
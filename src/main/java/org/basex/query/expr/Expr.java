@@ -246,6 +246,19 @@ public abstract class Expr extends ExprInfo {
     return type().zeroOrOne();
   }
 
+  /**
+   * Checks if this expression can be evaluated by several threads at the same time.
+   * This is the case if the evaluation neither changes the state of the expression
+   * nor any state of the query context that is shared by all threads
+   * (see {@link org.basex.core.Prop#FLWORTHREADS}). By default, {@code false} is
+   * returned, and expressions need to be explicitly enabled. Node constructors are
+   * always evaluated sequentially, as the ids of new nodes define their document order.
+   * @return result of check
+   */
+  public boolean parallel() {
+    return false;
+  }
+
   /**
    * Checks if an expression can be rewritten to an index access.
    * If this method is implemented, {@link #indexEquivalent} must be
@@ -192,4 +192,9 @@ public class Filter extends Preds {
   public final String toString() {
     return "(" + root + ')' + super.toString();
   }
+
+  @Override
+  public boolean parallel() {
+    return root.parallel() && super.parallel();
+  }
 }
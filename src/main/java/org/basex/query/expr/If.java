@@ -109,6 +109,11 @@ public final class If extends Arr {
     return cond.uses(u) || super.uses(u);
   }
 
+  @Override
+  public boolean parallel() {
+    return cond.parallel() && allParallel(expr);
+  }
+
   @Override
   public int count(final Var v) {
     return cond.count(v) + super.count(v);
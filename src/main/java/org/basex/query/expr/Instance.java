@@ -46,6 +46,11 @@ public final class Instance extends Single {
     addPlan(plan, planElem(TYP, seq), expr);
   }
 
+  @Override
+  public boolean parallel() {
+    return expr.parallel();
+  }
+
   @Override
   public String toString() {
     return Util.info("% instance of %", expr, seq);
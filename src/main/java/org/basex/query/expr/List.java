@@ -102,6 +102,11 @@ public final class List extends Arr {
     return true;
   }
 
+  @Override
+  public boolean parallel() {
+    return allParallel(expr);
+  }
+
   @Override
   public String toString() {
     return new TokenBuilder(PAR1).addSep(expr, SEP).add(PAR2).toString();
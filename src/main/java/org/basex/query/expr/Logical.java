@@ -59,4 +59,9 @@ public abstract class Logical extends Arr {
     }
     if(expr.length != tmp.size()) expr = tmp.toArray(new Expr[tmp.size()]);
   }
+
+  @Override
+  public boolean parallel() {
+    return allParallel(expr);
+  }
 }
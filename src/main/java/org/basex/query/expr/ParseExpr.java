@@ -163,6 +163,16 @@ public abstract class ParseExpr extends Expr {
     if(expr != null) for(final Expr e : expr) checkNoUp(e);
   }
 
+  /**
+   * Checks if all specified expressions can be evaluated in parallel.
+   * @param expr expressions (may contain {@code null} references)
+   * @return result of check
+   */
+  protected static boolean allParallel(final Expr... expr) {
+    for(final Expr e : expr) if(e != null && !e.parallel()) return false;
+    return true;
+  }
+
   /**
    * Ensures that all specified expressions are either updating or vacuous.
    * Otherwise, throws an exception.
@@ -143,6 +143,11 @@ public abstract class Preds extends ParseExpr {
     return false;
   }
 
+  @Override
+  public boolean parallel() {
+    return allParallel(preds);
+  }
+
   @Override
   public int count(final Var v) {
     int c = 0;
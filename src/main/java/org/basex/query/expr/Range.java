@@ -68,6 +68,11 @@ public final class Range extends Arr {
     return new long[] { checkItr(a), checkItr(b) };
   }
 
+  @Override
+  public boolean parallel() {
+    return allParallel(expr);
+  }
+
   @Override
   public String toString() {
     return PAR1 + toString(' ' + TO + ' ') + PAR2;
@@ -64,6 +64,11 @@ public final class Root extends Simple {
     return u == Use.CTX;
   }
 
+  @Override
+  public boolean parallel() {
+    return true;
+  }
+
   @Override
   public boolean databases(final StringList db) {
     // [JE] XQuery: should only be added if placed outside a predicate
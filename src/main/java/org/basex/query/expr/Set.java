@@ -107,4 +107,9 @@ abstract class Set extends Arr {
     return PAR1 + toString(' ' +
         Util.name(this).toUpperCase(Locale.ENGLISH) + ' ') + PAR2;
   }
+
+  @Override
+  public boolean parallel() {
+    return allParallel(expr);
+  }
 }
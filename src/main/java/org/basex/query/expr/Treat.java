@@ -102,6 +102,11 @@ public final class Treat extends Single {
     addPlan(plan, planElem(TYP, type), expr);
   }
 
+  @Override
+  public boolean parallel() {
+    return expr.parallel();
+  }
+
   @Override
   public String toString() {
     return expr + " " + TREAT + ' ' + AS + ' ' + type;
@@ -65,6 +65,11 @@ public final class Unary extends Single {
     addPlan(plan, planElem(VAL, minus), expr);
   }
 
+  @Override
+  public boolean parallel() {
+    return expr.parallel();
+  }
+
   @Override
   public String toString() {
     return (minus ? "-" : "") + expr;
@@ -45,6 +45,8 @@ public final class VarRef extends ParseExpr {
     // return if variable expression has not yet been assigned
     Expr e = var.expr();
     if(e == null) return this;
+    // bound values will change if the compiled query is cached
+    if(var.external && ctx.cached) return this;
 
     /* Choose expressions to be pre-evaluated.
      * If a variable is pre-evaluated, it may not be available for further
@@ -65,20 +67,17 @@ public final class VarRef extends ParseExpr {
 
   @Override
   public Item item(final QueryContext ctx, final InputInfo ii) throws QueryException {
-    var = ctx.vars.get(var);
-    return var.item(ctx, ii);
+    return ctx.vars.get(var).item(ctx, ii);
   }
 
   @Override
   public Iter iter(final QueryContext ctx) throws QueryException {
-    var = ctx.vars.get(var);
-    return ctx.iter(var);
+    return ctx.iter(ctx.vars.get(var));
   }
 
   @Override
   public Value value(final QueryContext ctx) throws QueryException {
-    var = ctx.vars.get(var);
-    return ctx.value(var);
+    return ctx.value(ctx.vars.get(var));
   }
 
   @Override
@@ -87,6 +86,11 @@ public final class VarRef extends ParseExpr {
       var.expr() != null && var.expr().uses(u);
   }
 
+  @Override
+  public boolean parallel() {
+    return true;
+  }
+
   @Override
   public int count(final Var v) {
     return var.is(v) ? 1 : 0;
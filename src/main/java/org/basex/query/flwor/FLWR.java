@@ -2,6 +2,10 @@ package org.basex.query.flwor;
 
 import static org.basex.query.QueryText.*;
 
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.basex.core.*;
 import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.iter.*;
@@ -16,6 +20,11 @@ import org.basex.util.*;
  * @author Christian Gruen
  */
 public final class FLWR extends GFLWOR {
+  /** Maximum number of items that are evaluated by a single thread at a time. */
+  private static final int MAXCHUNK = 1 << 12;
+  /** Indicates if iterations can be evaluated in parallel ({@code null} if unknown). */
+  private Boolean split;
+
   /**
    * Constructor.
    * @param f variable inputs
@@ -44,7 +53,10 @@ public final class FLWR extends GFLWOR {
   }
 
   @Override
-  public Iter iter(final QueryContext ctx) {
+  public Iter iter(final QueryContext ctx) throws QueryException {
+    final int threads = ctx.context.prop.num(Prop.FLWORTHREADS);
+    if(threads > 1 && !ctx.forked && splittable()) return iter(ctx, threads);
+
     return new Iter() {
       private Iter[] iter;
       private Iter rtrn;
@@ -96,6 +108,163 @@ public final class FLWR extends GFLWOR {
     };
   }
 
+  /**
+   * Checks if the iterations of the first clause can be evaluated in parallel.
+   * This is the case if the first clause is a for clause, and if all remaining
+   * clauses and expressions can be evaluated in parallel.
+   * @return result of check
+   */
+  private boolean splittable() {
+    if(split == null) {
+      boolean s = fl[0] instanceof For && allParallel(where, ret);
+      for(int f = 1; s && f < fl.length; f++) s = fl[f].parallel();
+      split = s;
+    }
+    return split;
+  }
+
+  /**
+   * Returns an iterator, which distributes the iterations of the first for clause
+   * to the specified number of threads. The items of the bound sequence are
+   * partitioned into chunks, which grow with the number of iterations.
+   * As the results of the chunks are returned in their original order,
+   * the result is identical to a sequential evaluation.
+   * @param ctx query context
+   * @param threads number of threads
+   * @return iterator
+   * @throws QueryException query exception
+   */
+  private Iter iter(final QueryContext ctx, final int threads) throws QueryException {
+    final For f = (For) fl[0];
+    final FLWR rest = fl.length == 1 ? null :
+      new FLWR(Arrays.copyOfRange(fl, 1, fl.length), where, ret, info);
+
+    // evaluate lazily bound variables before they are accessed by several threads
+    for(final VarStack vs : new VarStack[] { ctx.vars.globals(), ctx.vars.locals() }) {
+      for(int v = 0; v < vs.size; v++) {
+        final Var var = vs.vars[v];
+        if(var.expr() != null && count(var) != 0) var.value(ctx);
+      }
+    }
+    final ExecutorService pool = ctx.pool(threads);
+
+    return new Iter() {
+      /** Pending chunks. */
+      private final LinkedList<Future<ValueBuilder>> chunks =
+          new LinkedList<Future<ValueBuilder>>();
+      /** Input iterator ({@code null} if all items have been distributed). */
+      private Iter input = ctx.iter(f.expr);
+      /** Results of the current chunk. */
+      private ValueBuilder results;
+      /** Size of the next chunk. */
+      private int size = 1;
+      /** Number of distributed items. */
+      private long count;
+
+      @Override
+      public Item next() throws QueryException {
+        try {
+          while(true) {
+            if(results != null) {
+              final Item it = results.next();
+              if(it != null) return it;
+              results = null;
+            }
+            while(input != null && chunks.size() < threads << 1) submit();
+            if(chunks.isEmpty()) return null;
+            results = result(chunks.removeFirst());
+          }
+        } catch(final QueryException ex) {
+          cancel();
+          throw ex;
+        } catch(final RuntimeException ex) {
+          cancel();
+          throw ex;
+        }
+      }
+
+      /**
+       * Submits the next chunk of items.
+       * @throws QueryException query exception
+       */
+      private void submit() throws QueryException {
+        final ValueBuilder items = new ValueBuilder();
+        for(Item it; items.size() < size && (it = input.next()) != null;) items.add(it);
+        if(items.size() < size) input = null;
+        if(items.size() == 0) return;
+
+        final long first = count + 1;
+        count += items.size();
+        size = Math.min(size << 1, MAXCHUNK);
+        ctx.chunks++;
+        chunks.add(pool.submit(new Callable<ValueBuilder>() {
+          @Override
+          public ValueBuilder call() throws QueryException {
+            final QueryContext qc = new QueryContext(ctx);
+            final Var v = f.var.copy();
+            final Var p = f.pos != null ? f.pos.copy() : null;
+            final Var s = f.score != null ? f.score.copy() : null;
+            qc.vars.add(v);
+            if(p != null) qc.vars.add(p);
+            if(s != null) qc.vars.add(s);
+
+            final ValueBuilder vb = new ValueBuilder();
+            final long is = items.size();
+            for(int i = 0; i < is; i++) {
+              ctx.checkStop();
+              final Item it = items.get(i);
+              v.bind(it, qc);
+              if(p != null) p.bind(Int.get(first + i), qc);
+              if(s != null) s.bind(Dbl.get(it.score()), qc);
+              if(rest != null) {
+                vb.add(qc.value(rest));
+              } else if(where == null || where.ebv(qc, info).bool(info)) {
+                vb.add(qc.value(ret));
+              }
+            }
+            return vb;
+          }
+        }));
+      }
+
+      /**
+       * Cancels all pending chunks.
+       */
+      private void cancel() {
+        for(final Future<ValueBuilder> c : chunks) c.cancel(true);
+        chunks.clear();
+        input = null;
+      }
+    };
+  }
+
+  /**
+   * Waits for the results of a chunk.
+   * @param chunk chunk
+   * @return results
+   * @throws QueryException query exception
+   */
+  private static ValueBuilder result(final Future<ValueBuilder> chunk)
+      throws QueryException {
+
+    try {
+      return chunk.get();
+    } catch(final InterruptedException ex) {
+      throw new ProgressException();
+    } catch(final ExecutionException ex) {
+      final Throwable th = ex.getCause();
+      if(th instanceof QueryException) throw (QueryException) th;
+      if(th instanceof RuntimeException) throw (RuntimeException) th;
+      if(th instanceof Error) throw (Error) th;
+      throw Util.notexpected(th);
+    }
+  }
+
+  @Override
+  public boolean parallel() {
+    return allParallel(fl) && allParallel(where, ret);
+  }
+
   @Override
   public Expr markTailCalls() {
     for(final ForLet f : fl) if(f instanceof For) return this;
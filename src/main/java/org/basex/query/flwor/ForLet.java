@@ -97,4 +97,9 @@ public abstract class ForLet extends Single {
    * @return variables
    */
   public abstract Var[] vars();
+
+  @Override
+  public boolean parallel() {
+    return expr.parallel();
+  }
 }
@@ -2,15 +2,12 @@ package org.basex.query.flwor;
 
 import static org.basex.query.QueryText.*;
 
-import java.util.*;
-
 import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.func.*;
 import org.basex.query.iter.*;
 import org.basex.query.path.*;
 import org.basex.query.util.*;
-import org.basex.query.value.item.*;
 import org.basex.query.value.node.*;
 import org.basex.query.value.seq.*;
 import org.basex.query.value.type.*;
@@ -289,21 +286,16 @@ public class GFLWOR extends ParseExpr {
     for(int f = 0; f < fl.length; ++f) iter[f] = ctx.iter(fl[f]);
 
     // evaluate pre grouping tuples
-    ArrayList<Item[]> keys = null;
-    ValueList vals = null;
-    if(order != null) {
-      keys = new ArrayList<Item[]>();
-      vals = new ValueList();
-    }
-    if(group != null) group.init(order);
-    iter(ctx, iter, 0, keys, vals);
+    final Order.Tuples tuples = order != null ? order.tuples(ctx) : null;
+    if(group != null) group.init(order, ctx);
+    iter(ctx, iter, 0, tuples);
     ctx.vars.size(vs);
 
     for(final ForLet f : fl) ctx.vars.add(f.var);
 
     // order != null, otherwise it would have been handled in group
     final Iter ir = group != null ?
-        group.gp.ret(ctx, ret, keys, vals) : ctx.iter(order.set(keys, vals));
+        group.gp.ret(ctx, ret, tuples) : ctx.iter(order.set(tuples));
     ctx.vars.size(vs);
     return ir;
   }
@@ -313,23 +305,22 @@ public class GFLWOR extends ParseExpr {
    * @param ctx query context
    * @param it iterator
    * @param p variable position
-   * @param ks sort keys
-   * @param vs values to sort
+   * @param tuples tuples to sort
    * @throws QueryException query exception
    */
   private void iter(final QueryContext ctx, final Iter[] it, final int p,
-      final ArrayList<Item[]> ks, final ValueList vs) throws QueryException {
+      final Order.Tuples tuples) throws QueryException {
 
     final boolean more = p + 1 != fl.length;
     while(it[p].next() != null) {
       if(more) {
-        iter(ctx, it, p + 1, ks, vs);
+        iter(ctx, it, p + 1, tuples);
       } else if(where == null || where.ebv(ctx, info).bool(info)) {
         if(group != null) {
           group.gp.add(ctx);
         } else if(order != null) {
           // order by will be handled in group by otherwise
-          order.add(ctx, ret, ks, vs);
+          order.add(ctx, ret, tuples);
         }
       }
     }
@@ -2,6 +2,7 @@ package org.basex.query.flwor;
 
 import static org.basex.query.QueryText.*;
 
+import org.basex.core.*;
 import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.iter.*;
@@ -40,9 +41,11 @@ public final class Group extends ParseExpr {
   /**
    * Initializes the grouping partition.
    * @param ob order by specifier
+   * @param ctx query context
    */
-  void init(final Order ob) {
-    gp = new GroupPartition(groupby, nongroup, ob, info);
+  void init(final Order ob, final QueryContext ctx) {
+    gp = new GroupPartition(groupby, nongroup, ob,
+        ctx.context.prop.num(Prop.MAXTUPLES), info);
   }
 
   @Override
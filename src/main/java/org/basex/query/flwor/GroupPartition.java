@@ -9,7 +9,6 @@ import org.basex.query.expr.*;
 import org.basex.query.iter.*;
 import org.basex.query.util.*;
 import org.basex.query.value.*;
-import org.basex.query.value.item.*;
 import org.basex.util.*;
 import org.basex.util.hash.*;
 import org.basex.util.list.*;
@@ -17,10 +16,30 @@ import org.basex.util.list.*;
 /**
  * Stores the grouping for a group by clause.
  *
+ * If the maximum number of tuples in main memory is reached, all groups are
+ * written to hash partitions on disk (see {@link SpillFile}). The partitions are
+ * grouped one by one, and a partition that again exceeds the limit is split up by
+ * the next bits of the hash values. The following values are kept in main memory,
+ * even if the limit is exceeded:
+ * <ul>
+ * <li>the values of a single group, which cannot be split up,</li>
+ * <li>the values of groups with identical hash values, and</li>
+ * <li>items that are only referenced by the spill files, such as constructed
+ *   nodes or items with scores.</li>
+ * </ul>
+ * The limit refers to the number of tuples, not to their size.
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Michael Seiferle
  */
 final class GroupPartition {
+  /** Number of hash bits that are used to choose a partition on disk. */
+  private static final int BITS = 4;
+  /** Number of partitions on disk. */
+  private static final int PARTS = 1 << BITS;
+  /** Maximum number of partitioning levels. */
+  private static final int LEVELS = Integer.SIZE / BITS;
+
   /** Input information. */
   private final InputInfo info;
   /** Order by specifier. */
@@ -30,13 +49,19 @@ final class GroupPartition {
   private final GroupSpec[] gv;
   /** Non-grouping variables. */
   private final Var[][] ngv;
+  /** Maximum number of tuples in main memory ({@code 0}: no limit). */
+  private final int limit;
 
   /** Group partitioning. */
   private final ArrayList<GroupNode> part = new ArrayList<GroupNode>();
   /** Resulting sequence for non-grouping variables. */
   private final ArrayList<ValueBuilder[]> items;
   /** HashValue, position (with overflow bucket). */
-  private final IntMap<IntList> hashes = new IntMap<IntList>();
+  private IntMap<IntList> hashes = new IntMap<IntList>();
+  /** Hash partitions on disk ({@code null} if all groups are kept in main memory). */
+  private SpillFile[] spills;
+  /** Number of tuples that have been added since the last spill. */
+  private int count;
 
   /**
    * Sets up an empty partitioning.
@@ -44,13 +69,15 @@ final class GroupPartition {
    * @param groupby grouping variables
    * @param ng non-grouping variables
    * @param ob order by specifier
+   * @param max maximum number of tuples in main memory
    * @param ii input info
    */
   GroupPartition(final GroupSpec[] groupby, final Var[][] ng, final Order ob,
-      final InputInfo ii) {
+      final int max, final InputInfo ii) {
     gv = groupby;
     ngv = ng;
     order = ob;
+    limit = max;
     items = ngv[0].length != 0 ? new ArrayList<ValueBuilder[]>() : null;
     info = ii;
   }
@@ -63,7 +90,9 @@ final class GroupPartition {
    * potential matches and checks them for equivalence.
    * The GroupNode candidate is ignored if it exists otherwise added to the
    * partitioning scheme.
-   * @param ctx QueryContext
+   * If the maximum number of tuples in main memory is reached, all groups are
+   * written to hash partitions on disk.
+   * @param ctx query context
    * @throws QueryException exception
    */
   void add(final QueryContext ctx) throws QueryException  {
@@ -74,7 +103,22 @@ final class GroupPartition {
       if(val.size() > 1) XGRP.thrw(info);
       vals[i] = val;
     }
+    final int ngl = ngv[0].length;
+    final Value[] ngvals = new Value[ngl];
+    for(int i = 0; i < ngl; ++i) ngvals[i] = ctx.value(ctx.vars.get(ngv[0][i]));
+
+    add(vals, ngvals);
+    if(++count == limit) spills = spill(ctx, spills, 0);
+  }
 
+  /**
+   * Adds the values of the grouping and non-grouping variables to the
+   * partitioning scheme.
+   * @param vals values of the grouping variables
+   * @param ngvals values of the non-grouping variables
+   * @throws QueryException exception
+   */
+  private void add(final Value[] vals, final Value[] ngvals) throws QueryException {
     final GroupNode gn = new GroupNode(info, vals);
     final int h = gn.hash();
     final IntList ps = hashes.get(h);
@@ -100,7 +144,7 @@ final class GroupPartition {
       pos.add(p);
     }
 
-    final int ngl = ngv[0].length;
+    final int ngl = ngvals.length;
 
     // no non-grouping variables exist
     if(ngl == 0) return;
@@ -111,27 +155,124 @@ final class GroupPartition {
 
     for(int i = 0; i < ngl; ++i) {
       ValueBuilder vb = sq[i];
-      final Value result = ctx.value(ctx.vars.get(ngv[0][i]));
       if(vb == null) {
         vb = new ValueBuilder();
         sq[i] = vb;
       }
-      vb.add(result);
+      vb.add(ngvals[i]);
     }
   }
 
   /**
-   * Returns grouped variables.
+   * Writes all groups to hash partitions on disk and clears the partitioning.
+   * @param ctx query context
+   * @param files partitions ({@code null} if they still need to be created)
+   * @param level partitioning level, which determines the hash bits to be used
+   * @return partitions
+   * @throws QueryException query exception
+   */
+  private SpillFile[] spill(final QueryContext ctx, final SpillFile[] files,
+      final int level) throws QueryException {
+
+    final int gl = gv.length, ngl = ngv[0].length;
+    SpillFile[] sf = files;
+    if(sf == null) {
+      sf = new SpillFile[PARTS];
+      for(int s = 0; s < PARTS; s++) sf[s] = new SpillFile(ctx, gl + ngl, info);
+    }
+    final Value[] tuple = new Value[gl + ngl];
+    for(int p = 0; p < part.size(); ++p) {
+      final GroupNode gn = part.get(p);
+      System.arraycopy(gn.vals, 0, tuple, 0, gl);
+      if(items != null) {
+        final ValueBuilder[] sq = items.get(p);
+        for(int i = 0; i < ngl; ++i) tuple[gl + i] = sq[i].value();
+      }
+      sf[gn.hash() >>> level * BITS & PARTS - 1].write(tuple);
+    }
+    clear();
+    return sf;
+  }
+
+  /**
+   * Removes all groups from main memory.
+   */
+  private void clear() {
+    part.clear();
+    if(items != null) items.clear();
+    hashes = new IntMap<IntList>();
+    count = 0;
+  }
+
+  /**
+   * Returns grouped variables. If groups have been written to disk, the hash
+   * partitions are grouped and returned one by one.
    * @param ctx query context
    * @param ret return expression
-   * @param ks key list
-   * @param vs value list
+   * @param tuples tuples to sort
    * @return iterator on the result set
    * @throws QueryException query exception
    */
-  Iter ret(final QueryContext ctx, final Expr ret, final ArrayList<Item[]> ks,
-      final ValueList vs) throws QueryException {
+  Iter ret(final QueryContext ctx, final Expr ret, final Order.Tuples tuples)
+      throws QueryException {
+
     final ValueBuilder vb = new ValueBuilder();
+    if(spills == null) {
+      ret(ctx, ret, tuples, vb);
+    } else {
+      final SpillFile[] files = spill(ctx, spills, 0);
+      spills = null;
+      ret(ctx, ret, tuples, vb, files, 0);
+    }
+    return order != null ? ctx.iter(order.set(tuples)) : vb;
+  }
+
+  /**
+   * Groups the hash partitions on disk one by one and evaluates the return
+   * expression for the resulting groups. If a partition exceeds the maximum
+   * number of tuples in main memory, it is split up by the next hash bits.
+   * @param ctx query context
+   * @param ret return expression
+   * @param tuples tuples to sort
+   * @param vb value builder for the results
+   * @param files partitions
+   * @param level partitioning level of the partitions
+   * @throws QueryException query exception
+   */
+  private void ret(final QueryContext ctx, final Expr ret, final Order.Tuples tuples,
+      final ValueBuilder vb, final SpillFile[] files, final int level)
+      throws QueryException {
+
+    final int gl = gv.length, next = level + 1;
+    for(final SpillFile sf : files) {
+      SpillFile[] sub = null;
+      for(Value[] tuple; (tuple = sf.read()) != null;) {
+        add(Arrays.copyOf(tuple, gl), Arrays.copyOfRange(tuple, gl, tuple.length));
+        // a single group cannot be split up
+        if(++count >= limit && next < LEVELS && part.size() > 1) {
+          sub = spill(ctx, sub, next);
+        }
+      }
+      sf.delete();
+      if(sub == null) {
+        ret(ctx, ret, tuples, vb);
+        clear();
+      } else {
+        ret(ctx, ret, tuples, vb, spill(ctx, sub, next), next);
+      }
+    }
+  }
+
+  /**
+   * Evaluates the return expression for all groups in main memory.
+   * @param ctx query context
+   * @param ret return expression
+   * @param tuples tuples to sort
+   * @param vb value builder for the results
+   * @throws QueryException query exception
+   */
+  private void ret(final QueryContext ctx, final Expr ret, final Order.Tuples tuples,
+      final ValueBuilder vb) throws QueryException {
 
     for(int i = 0; i < part.size(); ++i) {
       final GroupNode gn = part.get(i);
@@ -145,9 +286,8 @@ final class GroupPartition {
         }
       }
       if(order != null) {
-        order.add(ctx, ret, ks, vs);
+        order.add(ctx, ret, tuples);
       } else vb.add(ctx.value(ret));
     }
-    return order != null ? ctx.iter(order.set(ks, vs)) : vb;
   }
 }
@@ -5,12 +5,15 @@ import static org.basex.util.Array.*;
 
 import java.util.*;
 
+import org.basex.core.*;
 import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.iter.*;
 import org.basex.query.util.*;
+import org.basex.query.value.*;
 import org.basex.query.value.item.*;
 import org.basex.query.value.node.*;
+import org.basex.query.value.seq.*;
 import org.basex.util.*;
 import org.basex.util.list.*;
 
@@ -24,10 +27,8 @@ public final class Order extends ParseExpr {
   /** Sort list. */
   final OrderBy[] ob;
 
-  /** Keys to sort by. */
-  private ArrayList<Item[]> keys;
-  /** Values to sort. */
-  private ValueList values;
+  /** Tuples to sort. */
+  private Tuples tuples;
 
  /**
    * Constructor.
@@ -51,36 +52,89 @@ public final class Order extends ParseExpr {
   }
 
   @Override
-  public Iter iter(final QueryContext ctx) {
-    return new OrderedIter(keys, values);
+  public Iter iter(final QueryContext ctx) throws QueryException {
+    final Tuples t = tuples;
+    if(t.runs.isEmpty()) return new OrderedIter(t.keys, t.values);
+    // write remaining tuples to disk and merge all sorted runs
+    if(!t.keys.isEmpty()) spill(ctx, t);
+    return new MergedIter(t.runs);
   }
 
   /**
-   * Sets the key and value lists for this Order instance.
-   * @param ks key list
-   * @param vs value list
+   * Returns a new container for the tuples to be sorted.
+   * @param ctx query context
+   * @return tuples
+   */
+  Tuples tuples(final QueryContext ctx) {
+    return new Tuples(ctx.context.prop.num(Prop.MAXTUPLES));
+  }
+
+  /**
+   * Sets the tuples for this Order instance.
+   * @param t tuples
    * @return reference to this object for convenience
    */
-  Order set(final ArrayList<Item[]> ks, final ValueList vs) {
-    keys = ks;
-    values = vs;
+  Order set(final Tuples t) {
+    tuples = t;
     return this;
   }
 
   /**
-   * Adds the items to be sorted.
+   * Adds the items to be sorted. If the maximum number of tuples in main memory
+   * is reached, the tuples are sorted and written to disk.
    * @param ctx query context
    * @param e value to add
-   * @param ks key list
-   * @param vs value list
+   * @param t tuples
    * @throws QueryException query exception
    */
-  void add(final QueryContext ctx, final Expr e, final ArrayList<Item[]> ks,
-      final ValueList vs) throws QueryException {
+  void add(final QueryContext ctx, final Expr e, final Tuples t)
+      throws QueryException {
+    // the global tuple counter keeps stable sort keys unique across all runs
     final Item[] k = new Item[ob.length];
-    for(int o = k.length; o-- > 0;) k[o] = ob[o].key(ctx, ks.size());
-    ks.add(k);
-    vs.add(ctx.value(e));
+    for(int o = k.length; o-- > 0;) k[o] = ob[o].key(ctx, t.count);
+    t.count++;
+    t.keys.add(k);
+    t.values.add(ctx.value(e));
+    if(t.keys.size() == t.limit) spill(ctx, t);
+  }
+
+  /**
+   * Sorts the tuples in main memory and writes them to disk as a new run.
+   * @param ctx query context
+   * @param t tuples
+   * @throws QueryException query exception
+   */
+  private void spill(final QueryContext ctx, final Tuples t) throws QueryException {
+    final int kl = ob.length;
+    final SpillFile run = new SpillFile(ctx, kl + 1, info);
+    final Value[] tuple = new Value[kl + 1];
+    for(final int o : new OrderedIter(t.keys, t.values).order()) {
+      final Item[] k = t.keys.get(o);
+      for(int i = 0; i < kl; i++) tuple[i] = k[i] == null ? Empty.SEQ : k[i];
+      tuple[kl] = t.values.get(o);
+      run.write(tuple);
+    }
+    t.runs.add(run);
+    t.keys.clear();
+    t.values = new ValueList();
+  }
+
+  /**
+   * Returns the difference of two entries.
+   * @param sa sort keys of first item
+   * @param sb sort keys of second item
+   * @return result
+   * @throws QueryException query exception
+   */
+  int diff(final Item[] sa, final Item[] sb) throws QueryException {
+    for(int k = 0; k < ob.length; ++k) {
+      final OrderBy or = ob[k];
+      final Item m = sa[k], n = sb[k];
+      final int c = m == null ? n == null ? 0 : or.lst ? -1 : 1 :
+        n == null ? or.lst ? 1 : -1 : m.diff(info, n);
+      if(c != 0) return or.desc ? -c : c;
+    }
+    return 0;
   }
 
   @Override
@@ -158,11 +212,8 @@ public final class Order extends ParseExpr {
     @Override
     public Item next() throws QueryException {
       if(order == null) {
-        // enumerate sort array and sort entries
-        end = vl.size();
-        order = new int[end];
-        for(int i = 0; i < end; ++i) order[i] = i;
-        sort(order, 0, end);
+        order = order();
+        end = order.length;
       }
 
       while(true) {
@@ -177,6 +228,19 @@ public final class Order extends ParseExpr {
       }
     }
 
+    /**
+     * Enumerates and sorts the entries.
+     * @return order array
+     * @throws QueryException query exception
+     */
+    int[] order() throws QueryException {
+      final int e = vl.size();
+      final int[] o = new int[e];
+      for(int i = 0; i < e; ++i) o[i] = i;
+      sort(o, 0, e);
+      return o;
+    }
+
     /**
      * Recursively sorts the specified items.
      * The algorithm is derived from {@link Arrays#sort(int[])}.
@@ -210,13 +274,13 @@ public final class Order extends ParseExpr {
       int a = s, b = a, c = s + e - 1, d = c;
       while(true) {
         while(b <= c) {
-          final int h = d(kl.get(o[b]), im);
+          final int h = diff(kl.get(o[b]), im);
           if(h > 0) break;
           if(h == 0) swap(o, a++, b);
           ++b;
         }
         while(c >= b) {
-          final int h = d(kl.get(o[c]), im);
+          final int h = diff(kl.get(o[c]), im);
           if(h < 0) break;
           if(h == 0) swap(o, c, d--);
           --c;
@@ -236,24 +300,6 @@ public final class Order extends ParseExpr {
       if((k = d - c) > 1) sort(o, n - k, k);
     }
 
-    /**
-     * Returns the difference of two entries (part of QuickSort).
-     * @param sa sort keys of first item
-     * @param sb sort keys of second item
-     * @return result
-     * @throws QueryException query exception
-     */
-    private int d(final Item[] sa, final Item[] sb) throws QueryException {
-      for(int k = 0; k < ob.length; ++k) {
-        final OrderBy or = ob[k];
-        final Item m = sa[k], n = sb[k];
-        final int c = m == null ? n == null ? 0 : or.lst ? -1 : 1 :
-          n == null ? or.lst ? 1 : -1 : m.diff(info, n);
-        if(c != 0) return or.desc ? -c : c;
-      }
-      return 0;
-    }
-
     /**
      * Returns the difference of two entries (part of QuickSort).
      * @param o order array
@@ -263,7 +309,7 @@ public final class Order extends ParseExpr {
      * @throws QueryException query exception
      */
     private int d(final int[] o, final int a, final int b) throws QueryException {
-      return d(kl.get(o[a]), kl.get(o[b]));
+      return diff(kl.get(o[a]), kl.get(o[b]));
     }
 
     /**
@@ -278,8 +324,114 @@ public final class Order extends ParseExpr {
     private int m(final int[] o, final int a, final int b, final int c)
         throws QueryException {
       final Item[] ka = kl.get(o[a]), kb = kl.get(o[b]), kc = kl.get(o[c]);
-      return d(ka, kb) < 0 ? d(kb, kc) < 0 ? b : d(ka, kc) < 0 ? c : a :
-          d(kb, kc) > 0 ? b : d(ka, kc) > 0 ? c : a;
+      return diff(ka, kb) < 0 ? diff(kb, kc) < 0 ? b : diff(ka, kc) < 0 ? c : a :
+          diff(kb, kc) > 0 ? b : diff(ka, kc) > 0 ? c : a;
+    }
+  }
+
+  /**
+   * An iterator that merges sorted runs.
+   */
+  private final class MergedIter extends Iter {
+    /** Sorted runs. */
+    private final ArrayList<SpillFile> runs;
+    /** Current values of the runs. */
+    private final Value[] vals;
+    /** Heap with the current sort keys of the runs. */
+    private final MinHeap<Item[], Integer> heap;
+    /** Iterator. */
+    private Iter ir;
+
+    /**
+     * Constructor.
+     * @param r sorted runs
+     * @throws QueryException query exception
+     */
+    MergedIter(final ArrayList<SpillFile> r) throws QueryException {
+      runs = r;
+      vals = new Value[r.size()];
+      heap = new MinHeap<Item[], Integer>(r.size(), new Comparator<Item[]>() {
+        @Override
+        public int compare(final Item[] ka, final Item[] kb) {
+          try {
+            return diff(ka, kb);
+          } catch(final QueryException ex) {
+            throw new QueryError(ex);
+          }
+        }
+      });
+      for(int i = 0; i < vals.length; i++) read(i);
+    }
+
+    @Override
+    public Item next() throws QueryException {
+      while(true) {
+        if(ir != null) {
+          final Item i = ir.next();
+          if(i != null) return i;
+          ir = null;
+        } else {
+          if(heap.isEmpty()) return null;
+          final int r;
+          try {
+            r = heap.removeMin();
+          } catch(final QueryError err) {
+            throw err.wrapped();
+          }
+          ir = vals[r].iter();
+          read(r);
+        }
+      }
+    }
+
+    /**
+     * Reads the next tuple of the specified run. The run is deleted if all
+     * tuples have been read.
+     * @param r index of the run
+     * @throws QueryException query exception
+     */
+    private void read(final int r) throws QueryException {
+      final SpillFile run = runs.get(r);
+      final Value[] tuple = run.read();
+      if(tuple == null) {
+        run.delete();
+        vals[r] = null;
+        return;
+      }
+      final int kl = ob.length;
+      final Item[] k = new Item[kl];
+      for(int i = 0; i < kl; i++) k[i] = tuple[i].isItem() ? (Item) tuple[i] : null;
+      vals[r] = tuple[kl];
+      try {
+        heap.insert(k, r);
+      } catch(final QueryError err) {
+        throw err.wrapped();
+      }
+    }
+  }
+
+  /**
+   * Tuples to be sorted. Sorted runs will be written to disk if the number of
+   * tuples exceeds the specified limit.
+   */
+  static final class Tuples {
+    /** Sort keys. */
+    final ArrayList<Item[]> keys = new ArrayList<Item[]>();
+    /** Sorted runs. */
+    final ArrayList<SpillFile> runs = new ArrayList<SpillFile>();
+    /** Maximum number of tuples in main memory ({@code 0}: no limit). */
+    final int limit;
+    /** Values to sort. */
+    ValueList values = new ValueList();
+    /** Number of added tuples. */
+    int count;
+
+    /**
+     * Constructor.
+     * @param l maximum number of tuples in main memory
+     */
+    Tuples(final int l) {
+      limit = l;
     }
   }
 }
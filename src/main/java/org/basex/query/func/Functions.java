@@ -157,6 +157,7 @@ public final class Functions extends TokenSet {
           break;
         }
       }
+      if(!cacheable(fun)) ctx.cacheable = false;
       return new TypedFunc(fun, fun.sig.type(args.length));
     }
 
@@ -166,7 +167,10 @@ public final class Functions extends TokenSet {
 
     // Java function (only allowed with administrator permissions)
     final JavaMapping jf = JavaMapping.get(name, args, ctx, ii);
-    if(jf != null) return TypedFunc.java(jf);
+    if(jf != null) {
+      ctx.cacheable = false;
+      return TypedFunc.java(jf);
+    }
 
     // add user-defined function that has not been declared yet
     if(!dyn && FuncType.find(name) == null) return ctx.funcs.add(name, args, ii, ctx);
@@ -175,6 +179,31 @@ public final class Functions extends TokenSet {
     return null;
   }
 
+  /**
+   * Checks if a compiled query with the specified function can be evaluated
+   * again (see {@link QueryCache}). This is not the case if the function may be
+   * pre-evaluated with resources other than databases, or if it keeps
+   * connections in the query context.
+   * @param fun function
+   * @return result of check
+   */
+  private static boolean cacheable(final StandardFunc fun) {
+    switch(fun.sig) {
+      case DOC: case COLLECTION: case PARSE_XML: case SERIALIZE:
+      case _DB_OPEN: case _DB_OPEN_PRE: case _DB_OPEN_ID: case _DB_TEXT:
+      case _DB_ATTRIBUTE: case _DB_FULLTEXT: case _DB_TEXT_RANGE:
+      case _DB_ATTRIBUTE_RANGE: case _DB_NODE_PRE: case _DB_NODE_ID:
+        return true;
+      default:
+        return !(fun instanceof FNGen || fun instanceof FNDb ||
+          fun instanceof FNFile || fun instanceof FNZip ||
+          fun instanceof FNInfo || fun instanceof FNCrypto ||
+          fun instanceof FNValidate || fun instanceof FNXslt ||
+          fun instanceof FNRepo || fun instanceof FNProc ||
+          fun instanceof FNClient || fun instanceof FNSql);
+    }
+  }
+
   /**
    * Throws an error if one of the pre-defined functions is similar to the
    * specified function name.
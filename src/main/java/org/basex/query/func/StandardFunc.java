@@ -25,6 +25,12 @@ import org.basex.util.*;
  * @author Christian Gruen
  */
 public abstract class StandardFunc extends Arr {
+  /** Function classes that are free of side effects (see {@link #parallel()}). */
+  private static final HashSet<Class<? extends StandardFunc>> PURE =
+    new HashSet<Class<? extends StandardFunc>>(Arrays.asList(FNAcc.class,
+      FNAggr.class, FNNode.class, FNNum.class, FNQName.class, FNSeq.class,
+      FNSimple.class, FNStr.class));
+
   /** Function signature. */
   Function sig;
 
@@ -83,6 +89,11 @@ public abstract class StandardFunc extends Arr {
     return !uses(Use.UPD) && type == SeqType.EMP;
   }
 
+  @Override
+  public final boolean parallel() {
+    return PURE.contains(getClass()) && allParallel(expr);
+  }
+
   @Override
   public final String description() {
     return sig.toString();
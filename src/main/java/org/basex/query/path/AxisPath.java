@@ -276,23 +276,27 @@ public class AxisPath extends Path {
        */
       if(!cache || citer == null || lvalue != r && !(r instanceof ANode &&
           lvalue instanceof ANode && ((ANode) lvalue).is((ANode) r))) {
-        lvalue = r;
-        citer = new NodeSeqBuilder().check();
+        // fields are only assigned if results are cached (see parallel())
+        final NodeSeqBuilder nc = new NodeSeqBuilder().check();
         if(r != null) {
           final Iter ir = ctx.iter(r);
           for(Item it; (it = ir.next()) != null;) {
             ctx.value = it;
-            iter(0, citer, ctx);
+            iter(0, nc, ctx);
           }
         } else {
           ctx.value = null;
-          iter(0, citer, ctx);
+          iter(0, nc, ctx);
         }
-        citer.sort();
+        nc.sort();
+        if(!cache) return nc;
+        lvalue = r;
+        citer = nc;
       } else {
         citer.reset();
       }
       return citer;
+
     } finally {
       ctx.value = cv;
       ctx.size = cs;
@@ -438,4 +442,9 @@ public class AxisPath extends Path {
     }
     return true;
   }
+
+  @Override
+  public boolean parallel() {
+    return !cache && super.parallel();
+  }
 }
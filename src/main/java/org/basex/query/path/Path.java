@@ -415,4 +415,9 @@ public abstract class Path extends ParseExpr {
     }
     return sb.toString();
   }
+
+  @Override
+  public boolean parallel() {
+    return allParallel(root) && allParallel(steps);
+  }
 }
@@ -62,6 +62,7 @@ public final class DataBuilder {
     int pre = 1;
     final int ns = nl.size();
     for(int n = 0; n < ns; n++) pre = addNode(nl.get(n), pre, 0, null);
+    data.trim();
   }
 
   /**
@@ -15,10 +15,39 @@ import org.basex.util.*;
  */
 public final class NSContext {
   /** Static namespaces, containing prefixes and URIs. */
-  private final Atts ns = new Atts();
+  private final Atts ns;
   /** Dynamically added namespaces. */
   private Atts stack;
 
+  /**
+   * Constructor.
+   */
+  public NSContext() {
+    this(new Atts());
+  }
+
+  /**
+   * Constructor.
+   * @param n static namespaces
+   */
+  private NSContext(final Atts n) {
+    ns = n;
+  }
+
+  /**
+   * Returns a copy of this context. The static namespaces are shared,
+   * and the dynamically added namespaces are copied.
+   * @return copy
+   */
+  public NSContext copy() {
+    final NSContext nc = new NSContext(ns);
+    if(stack != null) {
+      final Atts s = nc.stack();
+      for(int i = 0; i < stack.size(); i++) s.add(stack.name(i), stack.string(i));
+    }
+    return nc;
+  }
+
   /**
    * Validates and adds the specified namespace at parsing time.
    * @param pref namespace prefix
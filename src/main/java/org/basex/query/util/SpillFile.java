@@ -0,0 +1,270 @@
+package org.basex.query.util;
+
+import static org.basex.query.util.Err.*;
+
+import java.io.*;
+import java.math.*;
+import java.util.*;
+
+import org.basex.data.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.query.*;
+import org.basex.query.iter.*;
+import org.basex.query.value.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
+import org.basex.query.value.seq.*;
+import org.basex.query.value.type.*;
+import org.basex.util.*;
+
+/**
+ * This class writes tuples of values to a temporary file if they exceed the number
+ * of tuples that may be kept in main memory
+ * (see {@link org.basex.core.Prop#MAXTUPLES}).
+ * Database nodes and the most common atomic items are serialized. All other items
+ * are only referenced, as their identity or additional properties would otherwise
+ * get lost. The file is deleted after all tuples have been read, or when the query
+ * is closed.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class SpillFile {
+  /** Item type: referenced item. */
+  private static final int REF = 0;
+  /** Item type: database node. */
+  private static final int NODE = 1;
+  /** Item type: string. */
+  private static final int STR = 2;
+  /** Item type: untyped atomic value. */
+  private static final int ATM = 3;
+  /** Item type: integer. */
+  private static final int ITR = 4;
+  /** Item type: double. */
+  private static final int DBL = 5;
+  /** Item type: float. */
+  private static final int FLT = 6;
+  /** Item type: boolean. */
+  private static final int BLN = 7;
+  /** Item type: decimal. */
+  private static final int DEC = 8;
+  /** Atomic types. */
+  private static final AtomType[] TYPES = AtomType.values();
+
+  /** Temporary file. */
+  private final IOFile file;
+  /** Number of values per tuple. */
+  private final int width;
+  /** Input info. */
+  private final InputInfo info;
+  /** Referenced items. */
+  private final ArrayList<Item> refs = new ArrayList<Item>();
+  /** Referenced databases. */
+  private final ArrayList<Data> data = new ArrayList<Data>();
+  /** Output stream ({@code null} if the file is read or has been deleted). */
+  private DataOutput out;
+  /** Input stream ({@code null} if the file has not been read yet). */
+  private DataInput in;
+  /** Number of written tuples. */
+  private int size;
+  /** Number of read tuples. */
+  private int read;
+
+  /**
+   * Constructor.
+   * @param ctx query context
+   * @param w number of values per tuple
+   * @param ii input info
+   * @throws QueryException query exception
+   */
+  public SpillFile(final QueryContext ctx, final int w, final InputInfo ii)
+      throws QueryException {
+
+    width = w;
+    info = ii;
+    try {
+      file = new IOFile(File.createTempFile("spill", IO.BASEXSUFFIX));
+      out = new DataOutput(file);
+    } catch(final IOException ex) {
+      throw IOERR.thrw(ii, ex);
+    }
+    ctx.spills.add(this);
+  }
+
+  /**
+   * Writes a tuple.
+   * @param tuple values of the tuple
+   * @throws QueryException query exception
+   */
+  public void write(final Value... tuple) throws QueryException {
+    try {
+      for(final Value v : tuple) {
+        out.writeNum((int) v.size());
+        for(final Item it : v) write(it);
+      }
+      size++;
+    } catch(final IOException ex) {
+      throw IOERR.thrw(info, ex);
+    }
+  }
+
+  /**
+   * Returns the number of written tuples.
+   * @return number of tuples
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Reads the next tuple. The first call finishes the writing of tuples.
+   * @return values of the tuple, or {@code null} if all tuples have been read
+   * @throws QueryException query exception
+   */
+  public Value[] read() throws QueryException {
+    if(read == size) return null;
+    try {
+      if(in == null) {
+        out.close();
+        out = null;
+        in = new DataInput(file);
+      }
+      final Value[] tuple = new Value[width];
+      for(int t = 0; t < width; t++) {
+        final int s = in.readNum();
+        if(s == 0) {
+          tuple[t] = Empty.SEQ;
+        } else if(s == 1) {
+          tuple[t] = item();
+        } else {
+          final ValueBuilder vb = new ValueBuilder(s);
+          for(int i = 0; i < s; i++) vb.add(item());
+          tuple[t] = vb.value();
+        }
+      }
+      read++;
+      return tuple;
+    } catch(final IOException ex) {
+      throw IOERR.thrw(info, ex);
+    }
+  }
+
+  /**
+   * Closes and deletes the file.
+   */
+  public void delete() {
+    try {
+      if(out != null) out.close();
+      if(in != null) in.close();
+    } catch(final IOException ex) {
+      Util.debug(ex);
+    }
+    out = null;
+    in = null;
+    refs.clear();
+    file.delete();
+  }
+
+  /**
+   * Writes a single item.
+   * @param it item
+   * @throws IOException I/O exception
+   * @throws QueryException query exception
+   */
+  private void write(final Item it) throws IOException, QueryException {
+    final Class<?> c = it.getClass();
+    // items with scores are only referenced
+    if(it.score == null) {
+      if(c == DBNode.class) {
+        final DBNode n = (DBNode) it;
+        int d = data.indexOf(n.data);
+        if(d == -1) {
+          d = data.size();
+          data.add(n.data);
+        }
+        out.write1(NODE);
+        out.writeNum(d);
+        out.writeNum(n.pre);
+        return;
+      }
+      if(c == Str.class) {
+        out.write1(STR);
+        out.write1(((AtomType) it.type).ordinal());
+        out.writeToken(it.string(info));
+        return;
+      }
+      if(c == Atm.class) {
+        out.write1(ATM);
+        out.writeToken(it.string(info));
+        return;
+      }
+      if(c == Int.class) {
+        out.write1(ITR);
+        out.write1(((AtomType) it.type).ordinal());
+        out.write8(it.itr(info));
+        return;
+      }
+      if(c == Dbl.class) {
+        out.write1(DBL);
+        out.write8(Double.doubleToRawLongBits(it.dbl(info)));
+        return;
+      }
+      if(c == Flt.class) {
+        out.write1(FLT);
+        out.write8(Float.floatToRawIntBits((float) it.dbl(info)));
+        return;
+      }
+      if(c == Bln.class) {
+        out.write1(BLN);
+        out.writeBool(it.bool(info));
+        return;
+      }
+      if(c == Dec.class) {
+        out.write1(DEC);
+        out.write1(((AtomType) it.type).ordinal());
+        out.writeToken(Token.token(it.dec(info).toString()));
+        return;
+      }
+    }
+    out.write1(REF);
+    out.writeNum(refs.size());
+    refs.add(it);
+  }
+
+  /**
+   * Reads a single item.
+   * @return item
+   * @throws IOException I/O exception
+   */
+  private Item item() throws IOException {
+    final int type = in.read();
+    switch(type) {
+      case NODE:
+        final Data d = data.get(in.readNum());
+        return new DBNode(d, in.readNum());
+      case STR:
+        final AtomType st = TYPES[in.read()];
+        return new Str(in.readToken(), st);
+      case ATM:
+        return new Atm(in.readToken());
+      case ITR:
+        final AtomType it = TYPES[in.read()];
+        return Int.get(in.read8(), it);
+      case DBL:
+        return Dbl.get(Double.longBitsToDouble(in.read8()));
+      case FLT:
+        return Flt.get(Float.intBitsToFloat((int) in.read8()));
+      case BLN:
+        return Bln.get(in.readBool());
+      case DEC:
+        final AtomType dt = TYPES[in.read()];
+        return new Dec(new BigDecimal(Token.string(in.readToken())), dt);
+      case REF:
+        return refs.get(in.readNum());
+      default:
+        throw new IOException("Unknown item type: " + type);
+    }
+  }
+}
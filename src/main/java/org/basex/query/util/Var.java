@@ -33,6 +33,8 @@ public final class Var extends ParseExpr {
   public boolean declared;
   /** Cast flag (default: {@code true}). */
   public boolean cast = true;
+  /** Indicates if the value has been bound by the caller of the query. */
+  public boolean external;
 
   /** Static context. */
   private final StaticContext sc;
@@ -199,6 +201,7 @@ public final class Var extends ParseExpr {
     v.type = type;
     v.ret = ret;
     v.cast = cast;
+    v.external = external;
     return v;
   }
 
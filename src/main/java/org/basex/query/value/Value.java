@@ -112,6 +112,11 @@ public abstract class Value extends Expr implements Iterable<Item> {
     return false;
   }
 
+  @Override
+  public boolean parallel() {
+    return true;
+  }
+
   @Override
   public int count(final Var v) {
     return 0;
@@ -195,6 +195,49 @@ public abstract class ADate extends Item {
     return bd.add(BigDecimal.valueOf(h * 3600 + m * 60 - z * 60 + s));
   }
 
+  /**
+   * Returns an exact key for comparing dates and dateTimes without timezone:
+   * the number of microseconds since AD. The keys of such values can be
+   * compared without considering the implicit timezone.
+   * @return key, or {@link Long#MIN_VALUE} if the date has a timezone, if its
+   *   year is not in the range 1-9999, or if its seconds have more than six
+   *   fractional digits
+   */
+  public final long key() {
+    final int y = xc.getYear();
+    if(xc.getTimezone() != UNDEF || y < 1 || y > 9999) return Long.MIN_VALUE;
+    final int h = xc.getHour() == UNDEF ? 0 : xc.getHour();
+    final int m = xc.getMinute() == UNDEF ? 0 : xc.getMinute();
+    final int s = xc.getSecond() == UNDEF ? 0 : xc.getSecond();
+    long us = 0;
+    final BigDecimal bd = xc.getFractionalSecond();
+    if(bd != null && bd.signum() != 0) {
+      final BigDecimal f = bd.movePointRight(6);
+      if(f.stripTrailingZeros().scale() > 0) return Long.MIN_VALUE;
+      us = f.longValue();
+    }
+    return (days() * 86400 + h * 3600 + m * 60 + s) * 1000000 + us;
+  }
+
+  /**
+   * Returns the key of the specified date or dateTime without timezone
+   * (see {@link #key()}). Values of the form {@code YYYY-MM-DD} are parsed as
+   * dates, all others as dateTimes.
+   * @param value value
+   * @return key, or {@link Long#MIN_VALUE} if the value has no key
+   */
+  public static long key(final byte[] value) {
+    // skip values that do not start with a date
+    final int vl = value.length;
+    if(vl < 10 || value[4] != '-' || value[7] != '-' || !Token.digit(value[0]))
+      return Long.MIN_VALUE;
+    try {
+      return (vl == 10 ? new Dat(value, null) : new Dtm(value, null)).key();
+    } catch(final QueryException ex) {
+      return Long.MIN_VALUE;
+    }
+  }
+
   /**
    * Returns the number of days since AD.
    * @return days
@@ -24,8 +24,10 @@ public abstract class ANode extends Item {
   // - move to query context to reduce chance of overflow
   // - move to FNode to reduce memory usage of DBNode instances
   private static int sid;
+  /** Number of queries that are evaluated by several threads (see {@link #fork}). */
+  private static volatile int forks;
   /** Unique node id. */
-  public final int id = ++sid;
+  public final int id = forks == 0 ? ++sid : nextId();
 
   /** Cached string value. */
   byte[] val;
@@ -40,6 +42,27 @@ public abstract class ANode extends Item {
     super(t);
   }
 
+  /**
+   * Registers the start or end of a query that is evaluated by several threads.
+   * While such a query is running, node ids are assigned in a synchronized manner.
+   * @param start start or end of the evaluation
+   */
+  public static synchronized void fork(final boolean start) {
+    forks += start ? 1 : -1;
+  }
+
+  /**
+   * Returns a new node id. Called if nodes may be created by several threads.
+   * Node constructors are never evaluated in parallel
+   * (see {@link org.basex.query.expr.Expr#parallel}), so the order of these ids
+   * only matters for database nodes, which are primarily ordered by their
+   * database and pre value.
+   * @return node id
+   */
+  private static synchronized int nextId() {
+    return ++sid;
+  }
+
   @Override
   public final boolean bool(final InputInfo ii) {
     return true;
@@ -0,0 +1,192 @@
+package org.basex.server;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+import org.basex.core.*;
+import org.basex.io.*;
+import org.basex.io.in.*;
+import org.basex.util.*;
+
+/**
+ * This class reads bytes from a non-blocking socket channel. The bytes are
+ * buffered until a client request has been completely received, so no thread
+ * needs to wait for the remaining bytes of a request.
+ *
+ * A request consists of a number of strings, each terminated by a {@code 0}
+ * byte, and an optional stream, which is terminated by a {@code 0} byte and in
+ * which {@code 0xFF} is used as escape character (see {@link DecodingInput}).
+ * If a request with a stream exceeds the specified limit, the received bytes
+ * are written to a temporary file, which is deleted after the request has been
+ * processed (see {@link MainProp#UPLOADBUFFER}).
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+final class ChannelInput {
+  /** Socket channel. */
+  private final SocketChannel channel;
+  /** Maximum number of bytes of a request that are buffered in main memory. */
+  private final int limit;
+  /** Buffered bytes. */
+  private byte[] buffer = new byte[IO.BLOCKSIZE];
+  /** Number of buffered bytes. */
+  private int size;
+  /** Number of scanned bytes of the current request. */
+  private int pos;
+  /** Number of scanned strings of the current request. */
+  private int strings;
+  /** Indicates if the last scanned byte of a stream was an escape character. */
+  private boolean escaped;
+  /** First byte of the current request, if it is written to a temporary file. */
+  private int head;
+  /** Temporary file of the current or last request ({@code null} if not used). */
+  private IOFile temp;
+  /** Output stream of the temporary file ({@code null} if the file is not written). */
+  private OutputStream tout;
+
+  /**
+   * Constructor.
+   * @param ch socket channel
+   * @param l maximum number of bytes of a request that are buffered in main memory
+   */
+  ChannelInput(final SocketChannel ch, final int l) {
+    channel = ch;
+    limit = Math.max(IO.BLOCKSIZE, l);
+  }
+
+  /**
+   * Reads the bytes that are currently available. At most as many bytes as
+   * specified by the limit are read at a time; the remaining bytes will be read
+   * after the buffered requests have been processed.
+   * @return {@code false} if the end of the stream has been reached
+   */
+  boolean read() {
+    final long max = (long) size + limit;
+    try {
+      while(size < max) {
+        if(size == buffer.length) buffer = Arrays.copyOf(buffer, Array.newSize(size));
+        final int r = channel.read(ByteBuffer.wrap(buffer, size, buffer.length - size));
+        if(r == -1) return false;
+        if(r == 0) return true;
+        size += r;
+      }
+      return true;
+    } catch(final IOException ex) {
+      // channel has been closed
+      Util.debug(ex);
+      return false;
+    }
+  }
+
+  /**
+   * Returns the first buffered byte.
+   * @return byte, or {@code -1} if no bytes are buffered
+   */
+  int first() {
+    return tout != null ? head : size == 0 ? -1 : buffer[0] & 0xFF;
+  }
+
+  /**
+   * Returns the next request and removes it from the buffer.
+   * The arguments must not change until the request has been returned.
+   * If the request has been written to a temporary file, {@link #release} must
+   * be called after it has been processed.
+   * @param off offset of the first string
+   * @param str number of strings
+   * @param stream indicates if the strings are followed by a stream
+   * @return request, or {@code null} if it has not been completely received
+   * @throws IOException I/O exception
+   */
+  synchronized BufferInput request(final int off, final int str, final boolean stream)
+      throws IOException {
+
+    if(pos < off && tout == null) pos = off;
+    if(str == 0 && !stream) return take();
+    while(pos < size) {
+      final byte b = buffer[pos++];
+      if(strings < str) {
+        // string: wait for terminating byte
+        if(b == 0 && ++strings == str && !stream) return take();
+      } else if(escaped) {
+        escaped = false;
+      } else if(b == -1) {
+        escaped = true;
+      } else if(b == 0) {
+        return take();
+      }
+    }
+    // write large streams to a temporary file
+    if(stream && strings == str && pos >= limit) spill();
+    return null;
+  }
+
+  /**
+   * Deletes the temporary file of the last request.
+   */
+  synchronized void release() {
+    if(temp != null && tout == null) {
+      temp.delete();
+      temp = null;
+    }
+  }
+
+  /**
+   * Deletes a temporary file that may still be written.
+   */
+  synchronized void close() {
+    if(tout != null) {
+      try {
+        tout.close();
+      } catch(final IOException ex) {
+        Util.debug(ex);
+      }
+      tout = null;
+    }
+    release();
+  }
+
+  /**
+   * Writes the scanned bytes of the current request to a temporary file.
+   * @throws IOException I/O exception
+   */
+  private void spill() throws IOException {
+    if(tout == null) {
+      head = buffer[0] & 0xFF;
+      temp = new IOFile(File.createTempFile("upload", IO.BASEXSUFFIX));
+      tout = new BufferedOutputStream(new FileOutputStream(temp.file()));
+    }
+    tout.write(buffer, 0, pos);
+    size -= pos;
+    System.arraycopy(buffer, pos, buffer, 0, size);
+    pos = 0;
+  }
+
+  /**
+   * Removes the scanned request from the buffer and returns it.
+   * @return request
+   * @throws IOException I/O exception
+   */
+  private BufferInput take() throws IOException {
+    final BufferInput request;
+    if(tout != null) {
+      tout.write(buffer, 0, pos);
+      tout.close();
+      tout = null;
+      request = new BufferInput(temp);
+    } else {
+      request = new ArrayInput(Arrays.copyOf(buffer, pos));
+    }
+    size -= pos;
+    // shrink buffer after large requests
+    final byte[] buf = buffer.length > IO.BLOCKSIZE && size <= IO.BLOCKSIZE ?
+        new byte[IO.BLOCKSIZE] : buffer;
+    System.arraycopy(buffer, pos, buf, 0, size);
+    buffer = buf;
+    pos = 0;
+    strings = 0;
+    return request;
+  }
+}
@@ -0,0 +1,73 @@
+package org.basex.server;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ * This class writes bytes to a non-blocking socket channel. If the socket
+ * buffer is full, the calling thread waits until the channel gets writable again.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+final class ChannelOutput extends OutputStream {
+  /** Maximum time to wait for a channel (ms). */
+  private static final int WAIT = 1000;
+  /** Selectors of the current threads, used for waiting. */
+  private static final ThreadLocal<Selector> SELECTORS = new ThreadLocal<Selector>();
+
+  /** Socket channel. */
+  private final SocketChannel channel;
+
+  /**
+   * Constructor.
+   * @param ch socket channel
+   */
+  ChannelOutput(final SocketChannel ch) {
+    channel = ch;
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    write(new byte[] { (byte) b }, 0, 1);
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    final ByteBuffer bb = ByteBuffer.wrap(b, off, len);
+    while(bb.hasRemaining()) {
+      if(channel.write(bb) == 0) await();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Blocks the current thread until the channel gets writable again.
+   * A selector is created for each thread that needs to wait.
+   * @throws IOException I/O exception
+   */
+  private void await() throws IOException {
+    Selector sel = SELECTORS.get();
+    if(sel == null) {
+      sel = Selector.open();
+      SELECTORS.set(sel);
+    }
+    final SelectionKey key = channel.register(sel, SelectionKey.OP_WRITE);
+    try {
+      // regularly check if the channel has been closed by another thread
+      while(sel.select(WAIT) == 0) {
+        if(!channel.isOpen()) throw new ClosedChannelException();
+      }
+      sel.selectedKeys().clear();
+    } finally {
+      // deregister channel from the thread selector
+      key.cancel();
+      sel.selectNow();
+    }
+  }
+}
@@ -5,7 +5,10 @@ import static org.basex.util.Token.*;
 
 import java.io.*;
 import java.net.*;
+import java.nio.channels.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import org.basex.*;
 import org.basex.core.*;
@@ -19,22 +22,33 @@ import org.basex.util.list.*;
 
 /**
  * Server-side client session in the client-server architecture.
+ * Sessions are not bound to threads: the server passes a session to one of its
+ * worker threads whenever new client input has arrived (see {@link #handle}).
+ * Requests will only be processed if they have been completely received.
  *
  * @author BaseX Team 2005-12, BSD License
  * @author Andreas Weiler
  * @author Christian Gruen
  */
-public final class ClientListener extends Thread {
-  /** Timer for authentication time out. */
-  public final Timer auth = new Timer();
+public final class ClientListener {
+  /** Session id counter. */
+  private static final AtomicLong IDS = new AtomicLong();
+
+  /** Task for authentication time out. */
+  public final TimerTask auth = new TimerTask() {
+    @Override
+    public void run() {
+      quitAuth();
+    }
+  };
   /** Timestamp of last interaction. */
   public long last;
   /** Log reference. */
   final Log log;
 
   /** Active queries. */
-  private final HashMap<String, QueryListener> queries =
-    new HashMap<String, QueryListener>();
+  private final ConcurrentHashMap<String, QueryListener> queries =
+    new ConcurrentHashMap<String, QueryListener>();
   /** Performance measurement. */
   private final Performance perf = new Performance();
   /** Database context. */
@@ -43,6 +57,8 @@ public final class ClientListener extends Thread {
   private final BaseXServer server;
   /** Socket reference. */
   private final Socket socket;
+  /** Session id. */
+  private final long sid = IDS.incrementAndGet();
 
   /** Socket for events. */
   private Socket esocket;
@@ -50,121 +66,207 @@ public final class ClientListener extends Thread {
   private PrintOutput eout;
   /** Flag for active events. */
   private boolean events;
-  /** Input stream. */
+  /** Indicates if the name of an event to be watched is expected. */
+  private boolean watching;
+  /** Channel input. */
+  private final ChannelInput input;
+  /** Input of the current request. */
   private BufferInput in;
   /** Output stream. */
-  private PrintOutput out;
+  private final PrintOutput out;
+  /** Timestamp, sent to the client for authentication. */
+  private String ts;
   /** Current command. */
-  private Command command;
+  private volatile Command command;
   /** Query id counter. */
   private int id;
-  /** Indicates if the server thread is running. */
+  /** Indicates if the session is running. */
   private boolean running;
 
   /**
    * Constructor.
-   * @param s socket
+   * @param ch non-blocking socket channel
    * @param c database context
    * @param l log reference
    * @param srv server reference
    */
-  public ClientListener(final Socket s, final Context c, final Log l,
+  public ClientListener(final SocketChannel ch, final Context c, final Log l,
       final BaseXServer srv) {
 
     context = new Context(c, this);
-    socket = s;
+    socket = ch.socket();
+    input = new ChannelInput(ch, c.mprop.num(MainProp.UPLOADBUFFER) << 10);
+    out = PrintOutput.get(new ChannelOutput(ch));
     log = l;
     server = srv;
     last = System.currentTimeMillis();
   }
 
-  @Override
-  public void run() {
-    if(!authenticate()) return;
+  /**
+   * Handles the client input that is currently available. This method is called
+   * by a worker thread of the server whenever new input has arrived; the first
+   * call initializes the authentication. All requests that have been completely
+   * received are processed; incomplete requests remain buffered until the
+   * session is handled again.
+   * @return {@code true} if the session waits for further input
+   */
+  public boolean handle() {
+    if(ts == null) return challenge();
+    boolean more = input.read();
+    try {
+      for(BufferInput req; (req = next()) != null;) {
+        in = req;
+        try {
+          if(running) request();
+          else if(!authenticate()) return false;
+        } finally {
+          in.close();
+          input.release();
+        }
+        if(!running) return false;
+      }
+    } catch(final IOException ex) {
+      // temporary file could not be written
+      log.write(this, ERROR_C + ex.getMessage());
+      more = false;
+    }
+    if(more) return true;
+
+    // end of stream: exit session
+    if(running) {
+      quit();
+    } else {
+      input.close();
+      server.remove(this);
+      try {
+        socket.close();
+      } catch(final IOException ex) {
+        Util.debug(ex);
+      }
+    }
+    return false;
+  }
 
+  /**
+   * Returns the next request if it has been completely received.
+   * @return request, or {@code null}
+   * @throws IOException I/O exception
+   */
+  private BufferInput next() throws IOException {
+    // authentication: {USER}0{PASSWORD}0
+    if(!running) return input.request(0, 2, false);
+    // name of an event: {NAME}0
+    if(watching) return input.request(0, 1, false);
+    final int b = input.first();
+    if(b == -1) return null;
+    switch(ServerCmd.get(b)) {
+      case COMMAND:
+        return input.request(0, 1, false);
+      case WATCH:
+        // the event name will be sent after the events have been initialized
+        return input.request(1, events ? 1 : 0, false);
+      case CREATE: case ADD: case REPLACE: case STORE:
+        return input.request(1, 1, true);
+      case BIND:
+        return input.request(1, 4, false);
+      case CONTEXT:
+        return input.request(1, 3, false);
+      case FETCH:
+        return input.request(1, 2, false);
+      default:
+        return input.request(1, 1, false);
+    }
+  }
+
+  /**
+   * Processes a single client request.
+   */
+  private void request() {
     ServerCmd sc = null;
     String cmd = null;
+    command = null;
     try {
-      while(running) {
-        command = null;
-        try {
-          final int b = in.read();
-          if(b == -1) {
-            // end of stream: exit session
-            quit();
-            break;
-          }
-
-          last = System.currentTimeMillis();
-          perf.time();
-          sc = ServerCmd.get(b);
-          cmd = null;
-          if(sc == ServerCmd.CREATE) {
-            create();
-          } else if(sc == ServerCmd.ADD) {
-            add();
-          } else if(sc == ServerCmd.WATCH) {
-            watch();
-          } else if(sc == ServerCmd.UNWATCH) {
-            unwatch();
-          } else if(sc == ServerCmd.REPLACE) {
-            replace();
-          } else if(sc == ServerCmd.STORE) {
-            store();
-          } else if(sc != ServerCmd.COMMAND) {
-            query(sc);
-          } else {
-            // database command
-            cmd = new ByteList().add(b).add(in.readBytes()).toString();
-          }
-        } catch(final IOException ex) {
-          // this exception may be thrown if a session is stopped
+      try {
+        if(watching) {
+          watching = false;
+          watch(in.readString());
+          return;
+        }
+        final int b = in.read();
+        if(b == -1) {
+          // end of stream: exit session
           quit();
-          break;
+          return;
         }
-        if(sc != ServerCmd.COMMAND) continue;
 
-        // parse input and create command instance
-        try {
-          command = new CommandParser(cmd, context).parseSingle();
-        } catch(final QueryException ex) {
-          // log invalid command
-          final String msg = ex.getMessage();
-          log.write(this, cmd, ERROR_C + msg);
-          // send 0 to mark end of potential result
-          out.write(0);
-          // send {INFO}0
-          out.writeString(msg);
-          // send 1 to mark error
-          send(false);
-          continue;
+        last = System.currentTimeMillis();
+        perf.time();
+        sc = ServerCmd.get(b);
+        if(sc == ServerCmd.CREATE) {
+          create();
+        } else if(sc == ServerCmd.ADD) {
+          add();
+        } else if(sc == ServerCmd.WATCH) {
+          watch();
+        } else if(sc == ServerCmd.UNWATCH) {
+          unwatch();
+        } else if(sc == ServerCmd.REPLACE) {
+          replace();
+        } else if(sc == ServerCmd.STORE) {
+          store();
+        } else if(sc != ServerCmd.COMMAND) {
+          query(sc);
+        } else {
+          // database command
+          cmd = new ByteList().add(b).add(in.readBytes()).toString();
         }
+      } catch(final IOException ex) {
+        // this exception may be thrown if a session is stopped
+        quit();
+        return;
+      }
+      if(sc != ServerCmd.COMMAND) return;
+
+      // parse input and create command instance
+      try {
+        command = new CommandParser(cmd, context).parseSingle();
+      } catch(final QueryException ex) {
+        // log invalid command
+        final String msg = ex.getMessage();
+        log.write(this, cmd, ERROR_C + msg);
+        // send 0 to mark end of potential result
+        out.write(0);
+        // send {INFO}0
+        out.writeString(msg);
+        // send 1 to mark error
+        send(false);
+        return;
+      }
 
-        log.write(this, command.toString().replace('\r', ' ').replace('\n', ' '));
-
-        // execute command and send {RESULT}
-        boolean ok = true;
-        String info;
-        try {
-          // run command
-          command.execute(context, new EncodingOutput(out));
-          info = command.info();
-        } catch(final BaseXException ex) {
-          ok = false;
-          info = ex.getMessage();
-          if(info.startsWith(INTERRUPTED)) info = TIMEOUT_EXCEEDED;
-        }
+      log.write(this, command.toString().replace('\r', ' ').replace('\n', ' '));
+
+      // execute command and send {RESULT}
+      boolean ok = true;
+      String info;
+      try {
+        // run command
+        command.execute(context, new EncodingOutput(out));
+        info = command.info();
+      } catch(final BaseXException ex) {
+        ok = false;
+        info = ex.getMessage();
+        if(info.startsWith(INTERRUPTED)) info = TIMEOUT_EXCEEDED;
+      }
 
-        // send 0 to mark end of result
-        out.write(0);
-        // send info
-        info(info, ok);
+      // send 0 to mark end of result
+      out.write(0);
+      // send info
+      info(info, ok);
 
-        // stop console
-        if(command instanceof Exit) {
-          command = null;
-          quit();
-        }
+      // stop console
+      if(command instanceof Exit) {
+        command = null;
+        quit();
       }
     } catch(final IOException ex) {
       log.write(this, sc == ServerCmd.COMMAND ? cmd : sc, ERROR_C + ex.getMessage());
@@ -176,21 +278,33 @@ public final class ClientListener extends Thread {
   }
 
   /**
-   * Initializes a session via cram-md5.
+   * Sends a timestamp to the client, which is needed for authentication.
    * @return success flag
    */
-  private boolean authenticate() {
+  private boolean challenge() {
+    ts = Long.toString(System.nanoTime());
     try {
-      final String ts = Long.toString(System.nanoTime());
-      final byte[] address = socket.getInetAddress().getAddress();
-
       // send {TIMESTAMP}0
-      out = PrintOutput.get(socket.getOutputStream());
       out.print(ts);
       send(true);
+      return true;
+    } catch(final IOException ex) {
+      // connection was closed by the client
+      server.remove(this);
+      quitAuth();
+      return false;
+    }
+  }
+
+  /**
+   * Initializes a session via cram-md5.
+   * @return success flag
+   */
+  private boolean authenticate() {
+    try {
+      final byte[] address = socket.getInetAddress().getAddress();
 
       // evaluate login data
-      in = new BufferInput(socket.getInputStream());
       // receive {USER}0{PASSWORD}0
       final String us = in.readString();
       final String pw = in.readString();
@@ -248,6 +362,10 @@ public final class ClientListener extends Thread {
       do Performance.sleep(50); while(command != null);
     }
     context.delete(this);
+    // close open queries
+    for(final QueryListener qp : queries.values()) qp.close();
+    // delete temporary files of incomplete uploads
+    input.close();
 
     try {
       new Close().run(context);
@@ -263,6 +381,14 @@ public final class ClientListener extends Thread {
     }
   }
 
+  /**
+   * Returns the id of this session.
+   * @return session id
+   */
+  public long getId() {
+    return sid;
+  }
+
   /**
    * Returns the context of this session.
    * @return user reference
@@ -406,8 +532,19 @@ public final class ClientListener extends Thread {
       out.writeString(Long.toString(getId()));
       out.flush();
       events = true;
+      // the name will be sent after the client has registered its event socket
+      watching = true;
+      return;
     }
-    final String name = in.readString();
+    watch(in.readString());
+  }
+
+  /**
+   * Watches the specified event.
+   * @param name name of event
+   * @throws IOException I/O exception
+   */
+  private void watch(final String name) throws IOException {
     final Sessions s = context.events.get(name);
     final boolean ok = s != null && !s.contains(this);
     final String message;
@@ -458,7 +595,7 @@ public final class ClientListener extends Thread {
       final QueryListener qp;
       if(sc == ServerCmd.QUERY) {
         final String query = arg;
-        qp = new QueryListener(query, context);
+        qp = new QueryListener(query, context, server);
         arg = Integer.toString(id++);
         queries.put(arg, qp);
         // send {ID}0
@@ -489,6 +626,8 @@ public final class ClientListener extends Thread {
           qp.execute(false, out, true, false);
         } else if(sc == ServerCmd.FULL) {
           qp.execute(true, out, true, true);
+        } else if(sc == ServerCmd.FETCH) {
+          qp.fetch(Integer.parseInt(in.readString()), out);
         } else if(sc == ServerCmd.INFO) {
           out.print(qp.info());
         } else if(sc == ServerCmd.OPTIONS) {
@@ -497,6 +636,7 @@ public final class ClientListener extends Thread {
           out.print(Boolean.toString(qp.updating()));
         } else if(sc == ServerCmd.CLOSE) {
           queries.remove(arg);
+          qp.close();
         } else if(sc == ServerCmd.NEXT) {
           throw new Exception("Protocol for query iteration is out-of-date.");
         }
@@ -513,7 +653,8 @@ public final class ClientListener extends Thread {
       // log exception (static or runtime)
       err = ex.getMessage();
       log.write(this, sc + "(" + arg + ')', ERROR_C + err);
-      queries.remove(arg);
+      final QueryListener qp = queries.remove(arg);
+      if(qp != null) qp.close();
     }
     if(err != null) {
       // send 0 as end marker, 1 as error flag, and {MSG}0
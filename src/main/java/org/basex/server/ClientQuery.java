@@ -71,8 +71,14 @@ public class ClientQuery extends Query {
 
   @Override
   protected void cache() throws IOException {
-    cs.sout.write(ServerCmd.ITER.code);
-    cs.send(id);
+    if(fetch > 0) {
+      cs.sout.write(ServerCmd.FETCH.code);
+      cs.send(id);
+      cs.send(Integer.toString(fetch));
+    } else {
+      cs.sout.write(ServerCmd.ITER.code);
+      cs.send(id);
+    }
     cs.sout.flush();
     final BufferInput bi = new BufferInput(cs.sin);
     cache(bi);
@@ -26,7 +26,7 @@ public class LocalQuery extends Query {
    * @param o output stream to write query output
    */
   protected LocalQuery(final String q, final Context ctx, final OutputStream o) {
-    ql = new QueryListener(q, ctx);
+    ql = new QueryListener(q, ctx, null);
     out = o;
   }
 
@@ -43,7 +43,8 @@ public class LocalQuery extends Query {
   @Override
   protected void cache() throws IOException {
     final ArrayOutput ao = new ArrayOutput();
-    ql.execute(true, ao, true, false);
+    if(fetch > 0) ql.fetch(fetch, ao);
+    else ql.execute(true, ao, true, false);
     cache(new ArrayInput(ao.toArray()));
   }
 
@@ -71,5 +72,6 @@ public class LocalQuery extends Query {
 
   @Override
   public void close() {
+    ql.close();
   }
 }
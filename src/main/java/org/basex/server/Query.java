@@ -26,6 +26,10 @@ public abstract class Query {
   protected ByteList types;
   /** Cache pointer. */
   protected int pos;
+  /** Number of items to be fetched per request ({@code 0}: all items). */
+  protected int fetch;
+  /** Indicates if more items may be fetched. */
+  protected boolean pending;
 
   /**
    * Binds a value to an external variable.
@@ -70,7 +74,7 @@ public abstract class Query {
    * @throws IOException I/O exception
    */
   public boolean more() throws IOException {
-    if(cache == null) cache();
+    if(cache == null || pos == cache.size() && pending) cache();
     if(pos < cache.size()) return true;
     cache = null;
     types = null;
@@ -78,7 +82,18 @@ public abstract class Query {
   }
 
   /**
-   * Caches the query result.
+   * Sets the number of items that will be retrieved per request (similar to the
+   * fetch size of JDBC). If a positive number is specified, the query iterator
+   * will be kept open, and results will be retrieved in batches. Otherwise,
+   * all results will be retrieved at once (default).
+   * @param n number of items
+   */
+  public final void setFetchSize(final int n) {
+    fetch = Math.max(0, n);
+  }
+
+  /**
+   * Caches the query result, or the next batch of results.
    * @throws IOException I/O exception
    */
   protected abstract void cache() throws IOException;
@@ -116,6 +131,7 @@ public abstract class Query {
   protected void cache(final InputStream is) throws IOException {
     cache = new TokenList();
     types = new ByteList();
+    pos = 0;
     final ByteList bl = new ByteList();
     for(int t; (t = is.read()) > 0;) {
       final DecodingInput di = new DecodingInput(is);
@@ -124,6 +140,7 @@ public abstract class Query {
       types.add(t);
       bl.reset();
     }
+    pending = fetch > 0 && cache.size() == fetch;
   }
 
   /**
@@ -4,7 +4,9 @@ import static org.basex.core.Text.*;
 import static org.basex.io.serial.SerializerProp.*;
 
 import java.io.*;
+import java.util.*;
 
+import org.basex.*;
 import org.basex.core.*;
 import org.basex.io.out.*;
 import org.basex.io.serial.*;
@@ -21,12 +23,18 @@ import org.basex.util.*;
  * @author Christian Gruen
  */
 final class QueryListener extends Progress {
+  /** Size of the parts in which wrapped results are passed on by a cursor. */
+  private static final int PART = 1 << 16;
   /** Performance. */
   private final Performance perf = new Performance();
-  /** Query processor. */
-  private final QueryProcessor qp;
+  /** Query string. */
+  private final String query;
   /** Database context. */
   private final Context ctx;
+  /** Server reference ({@code null} for local queries). */
+  private final BaseXServer server;
+  /** Query processor. */
+  private QueryProcessor qp;
 
   /** Query info. */
   private String info = "";
@@ -34,15 +42,29 @@ final class QueryListener extends Progress {
   private SerializerProp options;
   /** Closed flag. */
   private boolean closed;
+  /** Cursor for fetching results in batches ({@code null} if not started). */
+  private Cursor cursor;
+  /** Bound variables (name, value, type), which are assigned to cached queries. */
+  private final ArrayList<Object[]> bound = new ArrayList<Object[]>();
+  /** Names and types of the bound variables
+   * ({@code null} if the query cannot be cached). */
+  private StringBuilder bindings = new StringBuilder();
+  /** Key of the query in the query cache ({@code null} if it cannot be cached). */
+  private String key;
+  /** Version of the query cache when the query processor was created. */
+  private long version;
 
   /**
    * Constructor.
    * @param qu query string
    * @param c database context
+   * @param srv server reference ({@code null} for local queries)
    */
-  QueryListener(final String qu, final Context c) {
-    qp = new QueryProcessor(qu, c);
+  QueryListener(final String qu, final Context c, final BaseXServer srv) {
+    query = qu;
     ctx = c;
+    server = srv;
+    qp = new QueryProcessor(qu, c);
   }
 
   /**
@@ -54,6 +76,7 @@ final class QueryListener extends Progress {
    */
   void bind(final String n, final Object v, final String t) throws IOException {
     check();
+    binding(n, v, t);
     try {
       qp.bind(n, v, t);
     } catch(final QueryException ex) {
@@ -69,6 +92,8 @@ final class QueryListener extends Progress {
    */
   void context(final Object v, final String t) throws IOException {
     check();
+    // queries with a bound context item will not be cached
+    bindings = null;
     try {
       qp.context(v, t);
     } catch(final QueryException ex) {
@@ -116,12 +141,20 @@ final class QueryListener extends Progress {
       final boolean full) throws IOException {
 
     check();
+    boolean cached = false;
     try {
       // parses the query
       init();
       try {
         // registers the process
         ctx.register(qp);
+        // databases may have been updated after the query has been checked out
+        if(qp.ctx.cached && version != ctx.queries.version()) {
+          ctx.unregister(qp);
+          qp.close();
+          qp = processor();
+          ctx.register(qp);
+        }
 
         // create serializer
         final Iter ir = qp.iter();
@@ -151,14 +184,9 @@ final class QueryListener extends Progress {
         }
         ser.close();
         if(iter && wrap) out.write(0);
-
-        // generate query info
-        final int up = qp.updates();
-        final TokenBuilder tb = new TokenBuilder();
-        tb.addExt(HITS_X_CC + "% %" + NL, c, c == 1 ? ITEM : ITEMS);
-        tb.addExt(UPDATED_CC + "% %" + NL, up, up == 1 ? ITEM : ITEMS);
-        tb.addExt(TOTAL_TIME_CC + '%', perf);
-        info = tb.toString();
+        info(c, qp.updates());
+        // cache the compiled query
+        cached = ctx.queries.put(key, qp, version);
 
       } catch(final QueryException ex) {
         throw new BaseXException(ex);
@@ -170,24 +198,144 @@ final class QueryListener extends Progress {
       }
     } finally {
       // close processor and stop monitoring
-      qp.close();
+      if(!cached) qp.close();
       closed = true;
     }
   }
 
   /**
-   * Initializes the query.
+   * Writes the next items of the query result to the specified output stream.
+   * The output format is the same as for iterative evaluation. The results are
+   * computed by a worker thread of the server, which keeps the query iterator
+   * (and the database locks) until all items have been fetched, the query is
+   * closed, or no more items have been requested for
+   * {@link MainProp#CURSORTIMEOUT} seconds.
+   * If less than the requested number of items are returned, the query
+   * has been fully evaluated. If the results are wrapped, they are returned as
+   * a single item, which is passed on in parts and not buffered as a whole.
+   * @param n maximum number of items to be returned
+   * @param out output stream
+   * @throws IOException I/O Exception
+   */
+  void fetch(final int n, final OutputStream out) throws IOException {
+    if(cursor == null) {
+      check();
+      init();
+      final Cursor cr = new Cursor();
+      if(server == null) {
+        final Thread th = new Thread(cr);
+        th.setDaemon(true);
+        th.start();
+      } else if(!server.cursor(cr)) {
+        throw new BaseXException("Too many open cursors.");
+      }
+      cursor = cr;
+      closed = true;
+    }
+    out.write(cursor.next(Math.max(1, n)));
+    while(cursor.partial()) out.write(cursor.next(1));
+  }
+
+  /**
+   * Closes the query. If results are being fetched, the query evaluation will be
+   * stopped and all resources will be released.
+   */
+  void close() {
+    if(cursor != null) cursor.close();
+    else if(!closed) qp.close();
+  }
+
+  /**
+   * Generates the query info.
+   * @param c number of items
+   * @param up number of updates
+   */
+  private void info(final long c, final int up) {
+    final TokenBuilder tb = new TokenBuilder();
+    tb.addExt(HITS_X_CC + "% %" + NL, c, c == 1 ? ITEM : ITEMS);
+    tb.addExt(UPDATED_CC + "% %" + NL, up, up == 1 ? ITEM : ITEMS);
+    tb.addExt(TOTAL_TIME_CC + '%', perf);
+    info = tb.toString();
+  }
+
+  /**
+   * Remembers a bound variable, which will be assigned again if the query
+   * is taken from the query cache.
+   * @param n name of variable
+   * @param v value to be bound
+   * @param t type
+   */
+  private void binding(final String n, final Object v, final String t) {
+    if(bindings == null) return;
+    if(v instanceof String) {
+      bindings.append(n).append('\0').append(t).append('\0');
+      bound.add(new Object[] { n, v, t });
+    } else {
+      bindings = null;
+    }
+  }
+
+  /**
+   * Initializes the query. If available, a compiled query is taken from the
+   * query cache, and the bound variables are assigned to it.
    * @throws IOException I/O Exception
    */
   private void init() throws IOException {
     if(options != null) return;
+    check();
+    final QueryCache qc = ctx.queries;
+    key = qc.key(query, ctx, bindings == null ? null : bindings.toString());
+    version = qc.version();
+    final QueryProcessor cached = qc.get(key, ctx);
+    if(cached != null) {
+      qp.close();
+      qp = cached;
+      assign(qp);
+    } else {
+      qp.ctx.cached = key != null;
+      parse(qp);
+    }
+    options = qp.ctx.serParams(false);
+  }
+
+  /**
+   * Creates and parses a new query processor.
+   * @return query processor
+   * @throws IOException I/O Exception
+   */
+  private QueryProcessor processor() throws IOException {
+    final QueryProcessor proc = new QueryProcessor(query, ctx);
+    proc.ctx.cached = true;
+    version = ctx.queries.version();
+    assign(proc);
+    parse(proc);
+    return proc;
+  }
+
+  /**
+   * Assigns the bound variables to the specified query processor.
+   * @param proc query processor
+   * @throws IOException I/O Exception
+   */
+  private void assign(final QueryProcessor proc) throws IOException {
     try {
-      check();
-      qp.parse();
+      for(final Object[] b : bound) proc.bind((String) b[0], b[1], (String) b[2]);
+    } catch(final QueryException ex) {
+      throw new BaseXException(ex);
+    }
+  }
+
+  /**
+   * Parses the query of the specified query processor.
+   * @param proc query processor
+   * @throws IOException I/O Exception
+   */
+  private static void parse(final QueryProcessor proc) throws IOException {
+    try {
+      proc.parse();
     } catch(final QueryException ex) {
       throw new BaseXException(ex);
     }
-    options = qp.ctx.serParams(false);
   }
 
   /**
@@ -197,4 +345,192 @@ final class QueryListener extends Progress {
   private void check() throws IOException {
     if(closed) throw new BaseXException(ALREADY_EXECUTED);
   }
+
+  /**
+   * Query cursor: evaluates the query and returns serialized items in batches.
+   * The evaluation is paused until the next batch is requested. The cursor is
+   * closed if no batch has been requested for {@link MainProp#CURSORTIMEOUT}
+   * seconds.
+   */
+  private final class Cursor implements Runnable {
+    /** Number of requested items ({@code 0}: no request). */
+    private int requested;
+    /** Next batch ({@code null} if not available). */
+    private byte[] batch;
+    /** Indicates if the batch is only a part of the wrapped results. */
+    private boolean partial;
+    /** Error that occurred during evaluation. */
+    private Throwable error;
+    /** Indicates if all results have been computed. */
+    private boolean done;
+    /** Indicates if the cursor has been closed. */
+    private boolean stopped;
+    /** Indicates if the cursor has been closed after a timeout. */
+    private boolean expired;
+
+    @Override
+    public void run() {
+      final ArrayOutput ao = new ArrayOutput();
+      Throwable th = null;
+      try {
+        // evaluation will be started with the first request
+        int n = request();
+        if(n == 0) return;
+        ctx.register(qp);
+        try {
+          final Iter ir = qp.iter();
+          final boolean wrap = !options.get(S_WRAP_PREFIX).isEmpty();
+          final PrintOutput po = PrintOutput.get(new EncodingOutput(ao));
+          if(wrap) po.write(1);
+
+          final Serializer ser = Serializer.get(po, options);
+          int c = 0, b = 0;
+          for(Item it; (it = ir.next()) != null;) {
+            if(!wrap) {
+              po.write(it.typeId());
+              ser.reset();
+            }
+            ser.serialize(it);
+            if(!wrap) {
+              po.flush();
+              ao.write(0);
+              // batch is complete: pass it on and wait for the next request
+              if(++b == n) {
+                deliver(ao.toArray(), false);
+                ao.reset();
+                b = 0;
+                n = request();
+                if(n == 0) return;
+              }
+            } else {
+              // wrapped results: pass on the serialized bytes in parts
+              po.flush();
+              if(ao.size() >= PART) {
+                deliver(ao.toArray(), true);
+                ao.reset();
+                if(request() == 0) return;
+              }
+            }
+            c++;
+          }
+          ser.close();
+          po.flush();
+          if(wrap) ao.write(0);
+
+          info(c, qp.updates());
+        } finally {
+          // unregisters the process
+          ctx.unregister(qp);
+        }
+      } catch(final QueryException ex) {
+        th = new BaseXException(ex);
+      } catch(final ProgressException ex) {
+        th = new BaseXException(TIMEOUT_EXCEEDED);
+      } catch(final Throwable ex) {
+        th = ex;
+      } finally {
+        qp.close();
+        if(th == null && expired) th = new BaseXException(TIMEOUT_EXCEEDED);
+        finish(ao.toArray(), th);
+      }
+    }
+
+    /**
+     * Returns the next batch of items. Called by the client session.
+     * @param n number of requested items
+     * @return serialized items
+     * @throws IOException I/O Exception
+     */
+    synchronized byte[] next(final int n) throws IOException {
+      if(!done) {
+        requested = n;
+        notifyAll();
+        try {
+          while(batch == null && !done) wait();
+        } catch(final InterruptedException ex) {
+          throw new BaseXException(ex);
+        }
+      }
+      final byte[] b = batch;
+      batch = null;
+      if(b != null) return b;
+
+      final Throwable th = error;
+      if(th instanceof IOException) throw (IOException) th;
+      if(th instanceof RuntimeException) throw (RuntimeException) th;
+      if(th instanceof Error) throw (Error) th;
+      return new byte[0];
+    }
+
+    /**
+     * Indicates if the last returned batch is only a part of the wrapped results.
+     * @return result of check
+     */
+    synchronized boolean partial() {
+      return partial;
+    }
+
+    /**
+     * Stops the evaluation and releases the cursor.
+     */
+    synchronized void close() {
+      stopped = true;
+      qp.stop();
+      notifyAll();
+    }
+
+    /**
+     * Waits for the next request. The cursor will be closed if no request
+     * arrives within the specified time.
+     * @return number of requested items, or {@code 0} if the cursor was closed
+     */
+    private synchronized int request() {
+      final long to = ctx.mprop.num(MainProp.CURSORTIMEOUT) * 1000L;
+      final long end = System.currentTimeMillis() + to;
+      try {
+        while(requested == 0 && !stopped) {
+          if(to == 0) {
+            wait();
+          } else {
+            final long ms = end - System.currentTimeMillis();
+            if(ms <= 0) {
+              expired = true;
+              stopped = true;
+            } else {
+              wait(ms);
+            }
+          }
+        }
+      } catch(final InterruptedException ex) {
+        stopped = true;
+      }
+      final int n = requested;
+      requested = 0;
+      return stopped ? 0 : n;
+    }
+
+    /**
+     * Passes on a batch.
+     * @param b serialized items
+     * @param p indicates if the batch is only a part of the wrapped results
+     */
+    private synchronized void deliver(final byte[] b, final boolean p) {
+      batch = b;
+      partial = p;
+      notifyAll();
+    }
+
+    /**
+     * Passes on the last batch, or an error, and finalizes the cursor.
+     * @param b serialized items
+     * @param th error (may be {@code null})
+     */
+    private synchronized void finish(final byte[] b, final Throwable th) {
+      if(th == null) batch = b;
+      else error = th;
+      partial = false;
+      done = true;
+      notifyAll();
+    }
+  }
 }
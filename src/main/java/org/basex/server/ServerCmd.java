@@ -37,6 +37,8 @@ public enum ServerCmd {
   STORE(13),
   /** Code for binding a context item: {id}0{val}0{type}0. */
   CONTEXT(14),
+  /** Code for fetching the next results of an iterative query: {id}0{number}0. */
+  FETCH(15),
   /** Code for returning the update flag: {id}0. */
   UPDATING(30),
   /** Code for executing a query and returning all information relevant for XQJ: {id}0. */
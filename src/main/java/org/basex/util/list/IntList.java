@@ -214,6 +214,17 @@ public class IntList extends ElementList {
     sort(0, size, asc, num);
   }
 
+  /**
+   * Sorts the data in the order of the specified numeric array.
+   * Note that the input array will be resorted as well.
+   * The algorithm is derived from {@link Arrays#sort(int[])}.
+   * @param num token array to sort by
+   * @param asc ascending
+   */
+  public final void sort(final long[] num, final boolean asc) {
+    sort(0, size, asc, num);
+  }
+
   /**
    * Sorts the array.
    * @param s offset
@@ -403,6 +414,68 @@ public class IntList extends ElementList {
     if((k = d - c) > 1) sort(n - k, k, f, t);
   }
 
+  /**
+   * Sorts the array.
+   * @param s offset
+   * @param e length
+   * @param f ascending/descending sort
+   * @param t sort tokens
+   */
+  private void sort(final int s, final int e, final boolean f, final long[] t) {
+    if(e < 7) {
+      for(int i = s; i < e + s; ++i) {
+        for(int j = i; j > s; j--) {
+          final int h = t[j - 1] < t[j] ? -1 : t[j - 1] > t[j] ? 1 : 0;
+          if(f ? h < 0 : h > 0) break;
+          s(j, j - 1, t);
+        }
+      }
+      return;
+    }
+
+    int m = s + (e >> 1);
+    if(e > 7) {
+      int l = s;
+      int n = s + e - 1;
+      if(e > 40) {
+        final int k = e >>> 3;
+        l = m(l, l + k, l + (k << 1));
+        m = m(m - k, m, m + k);
+        n = m(n - (k << 1), n - k, n);
+      }
+      m = m(l, m, n);
+    }
+    final long v = t[m];
+
+    int a = s, b = a, c = s + e - 1, d = c;
+    while(true) {
+      while(b <= c) {
+        final int h = t[b] < v ? -1 : t[b] > v ? 1 : 0;
+        if(f ? h > 0 : h < 0) break;
+        if(h == 0) s(a++, b, t);
+        ++b;
+      }
+      while(c >= b) {
+        final int h = t[c] < v ? -1 : t[c] > v ? 1 : 0;
+        if(f ? h < 0 : h > 0) break;
+        if(h == 0) s(c, d--, t);
+        --c;
+      }
+      if(b > c) break;
+      s(b++, c--, t);
+    }
+
+    int k;
+    final int n = s + e;
+    k = Math.min(a - s, b - a);
+    s(s, b - k, k, t);
+    k = Math.min(d - c, n - d - 1);
+    s(b, n - k, k, t);
+
+    if((k = b - a) > 1) sort(s, k, f, t);
+    if((k = d - c) > 1) sort(n - k, k, f, t);
+  }
+
   /**
    * Compares two numeric tokens and returns an integer.
    * @param a first token
@@ -469,6 +542,21 @@ public class IntList extends ElementList {
     t[b] = c;
   }
 
+  /**
+   * Swaps two array elements.
+   * @param a first offset
+   * @param b second offset
+   * @param t sort tokens
+   */
+  private void s(final int a, final int b, final long[] t) {
+    final int l = list[a];
+    list[a] = list[b];
+    list[b] = l;
+    final long c = t[a];
+    t[a] = t[b];
+    t[b] = c;
+  }
+
   /**
    * Swaps x[a .. (a+n-1)] with x[b .. (b+n-1)].
    * @param a first offset
@@ -502,6 +590,17 @@ public class IntList extends ElementList {
     for(int i = 0; i < n; ++i) s(a + i, b + i, t);
   }
 
+  /**
+   * Swaps x[a .. (a+n-1)] with x[b .. (b+n-1)].
+   * @param a first offset
+   * @param b second offset
+   * @param n number of elements
+   * @param t sort tokens
+   */
+  private void s(final int a, final int b, final int n, final long[] t) {
+    for(int i = 0; i < n; ++i) s(a + i, b + i, t);
+  }
+
   /**
    * Returns the index of the median of the three indexed integers.
    * @param a first offset
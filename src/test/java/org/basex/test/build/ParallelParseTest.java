@@ -0,0 +1,130 @@
+package org.basex.test.build;
+
+import static org.junit.Assert.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.io.*;
+import org.basex.test.*;
+import org.junit.*;
+
+/**
+ * This class tests if databases that are created from files parsed in parallel
+ * are identical to sequentially created databases.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class ParallelParseTest extends SandboxTest {
+  /** Input directory. */
+  private static final String DIR = "src/test/resources/";
+  /** Number of generated files. */
+  private static final int FILES = 200;
+  /** Query for returning the database contents. */
+  private static final String QUERY =
+      "for $d in db:open('" + NAME + "') return (document-uri($d), $d)";
+
+  /**
+   * Resets the options.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void finish() throws BaseXException {
+    new Set(Prop.PARSETHREADS, 1).execute(context);
+    new Set(Prop.SKIPCORRUPT, false).execute(context);
+    new Set(Prop.CREATEFILTER, "*.xml").execute(context);
+    new DropDB(NAME).execute(context);
+  }
+
+  /**
+   * Creates databases from a directory with archives and namespaces.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void resources() throws BaseXException {
+    new Set(Prop.SKIPCORRUPT, true).execute(context);
+    compare(DIR);
+  }
+
+  /**
+   * Creates databases from a directory with many small files.
+   * @throws Exception exception
+   */
+  @Test
+  public void files() throws Exception {
+    final IOFile dir = new IOFile(sandbox(), "files");
+    for(int f = 0; f < FILES; f++) {
+      final IOFile sub = new IOFile(dir, String.valueOf(f % 10));
+      sub.md();
+      final String ns = f % 3 == 0 ? " xmlns='ns" + f % 7 + "'" : "";
+      new IOFile(sub, f + ".xml").write(("<?xml version='1.0'?>" +
+          "<x" + ns + " a='" + f + "'><!--c--><y>" + f + "</y> <?pi " + f + "?></x>").
+          getBytes());
+    }
+    compare(dir.path());
+    new Open(NAME).execute(context);
+    assertEquals(String.valueOf(FILES), new XQuery("count(/)").execute(context));
+  }
+
+  /**
+   * Creates databases from a directory with small and large files.
+   * @throws Exception exception
+   */
+  @Test
+  public void large() throws Exception {
+    final IOFile dir = new IOFile(sandbox(), "large");
+    dir.md();
+    final StringBuilder sb = new StringBuilder("<large>");
+    while(sb.length() < 1 << 21) sb.append("<x>").append(sb.length()).append("</x>");
+    final byte[] large = sb.append("</large>").toString().getBytes();
+    for(int f = 0; f < 10; f++) {
+      final String xml = f % 4 == 2 ? null : "<small>" + f + "</small>";
+      new IOFile(dir, f + ".xml").write(xml == null ? large : xml.getBytes());
+    }
+    compare(dir.path());
+  }
+
+  /**
+   * Checks that corrupt files are rejected or skipped.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void corrupt() throws BaseXException {
+    new Set(Prop.PARSETHREADS, 4).execute(context);
+    try {
+      new CreateDB(NAME, DIR).execute(context);
+      fail("Corrupt file was not rejected.");
+    } catch(final BaseXException ex) {
+      // expected
+    }
+    new Set(Prop.SKIPCORRUPT, true).execute(context);
+    final CreateDB cmd = new CreateDB(NAME, DIR);
+    cmd.execute(context);
+    assertTrue(cmd.info(), cmd.info().contains("corrupt.xml"));
+  }
+
+  /**
+   * Creates databases with a single and multiple threads and compares their contents.
+   * @param input input
+   * @throws BaseXException database exception
+   */
+  private static void compare(final String input) throws BaseXException {
+    new Set(Prop.PARSETHREADS, 1).execute(context);
+    new CreateDB(NAME, input).execute(context);
+    final String exp = new XQuery(QUERY).execute(context);
+    final String info = new InfoDB().execute(context);
+    new Set(Prop.PARSETHREADS, 4).execute(context);
+    new CreateDB(NAME, input).execute(context);
+    assertEquals(exp, new XQuery(QUERY).execute(context));
+    assertEquals(strip(info), strip(new InfoDB().execute(context)));
+  }
+
+  /**
+   * Removes the lines with time stamps and the creation time.
+   * @param info database info
+   * @return stripped info
+   */
+  private static String strip(final String info) {
+    return info.replaceAll("(?m)^.*(Time|Timestamp).*$", "");
+  }
+}
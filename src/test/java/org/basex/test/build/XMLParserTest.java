@@ -57,6 +57,35 @@ public final class XMLParserTest extends SandboxTest {
     if(sb.length() != 0) fail(sb.toString());
   }
 
+  /**
+   * Compares the results of the internal and the default parser for a document
+   * with long runs of ASCII characters, which are mixed with other input.
+   * @throws Exception exceptions
+   */
+  @Test
+  public void asciiRuns() throws Exception {
+    context.prop.set(Prop.MAINMEM, true);
+    context.prop.set(Prop.CHOP, false);
+    final StringBuilder sb = new StringBuilder("<x a='v&amp;w' b=\"'\">");
+    for(int i = 0; i < 500; i++) {
+      sb.append("<y-").append(i % 7).append(".z c='").append(i).append(" \u00e4 &lt;'>");
+      for(int j = 0; j < i; j++) sb.append(j % 10 == 0 ? "\r\n" : "text\t] ");
+      sb.append(i % 3 == 0 ? "&#x20ac;&gt;" : "\u00fc").append("<![CDATA[<]]>");
+      sb.append("</y-").append(i % 7).append(".z>");
+    }
+    final String doc = sb.append("</x>").toString();
+
+    final String[] results = new String[2];
+    for(int b = 0; b < 2; b++) {
+      context.prop.set(Prop.INTPARSE, b == 0);
+      new CreateDB(NAME, doc).execute(context);
+      results[b] = new XQuery(".").execute(context);
+    }
+    assertEquals(results[1], results[0]);
+    context.prop.set(Prop.MAINMEM, false);
+    context.prop.set(Prop.CHOP, true);
+  }
+
   /**
    * Tests the namespace stripping option (Option {@link Prop#STRIPNS}).
    * @throws Exception exceptions
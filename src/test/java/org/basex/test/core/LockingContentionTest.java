@@ -0,0 +1,111 @@
+package org.basex.test.core;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.basex.core.*;
+import org.basex.test.*;
+import org.basex.util.*;
+import org.basex.util.list.*;
+import org.junit.*;
+
+/**
+ * Contention benchmark for {@link DBLocking}: many short read and write
+ * transactions are run concurrently on a small number of databases.
+ * Checks that writers have exclusive access and prints the throughput.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Jens Erat
+ */
+public final class LockingContentionTest extends SandboxTest {
+  /** Number of client threads. */
+  private static final int CLIENTS = 64;
+  /** Number of transactions per client. */
+  private static final int TRANSACTIONS = 2000;
+  /** Number of databases. */
+  private static final int DATABASES = 8;
+  /** Maximum number of databases locked by a single transaction. */
+  private static final int MAXLOCKS = 3;
+  /** Percentage of updating transactions. */
+  private static final int WRITES = 10;
+
+  /**
+   * Runs concurrent transactions.
+   * @throws Exception exception
+   */
+  @Test
+  public void contention() throws Exception {
+    final DBLocking locks = new DBLocking(context.mprop);
+    // number of active readers (positive) or writer (-1) per database
+    final AtomicIntegerArray active = new AtomicIntegerArray(DATABASES);
+    final AtomicBoolean error = new AtomicBoolean();
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch stop = new CountDownLatch(CLIENTS);
+
+    for(int c = 0; c < CLIENTS; c++) {
+      final Random rnd = new Random(c);
+      new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            for(int t = 0; t < TRANSACTIONS; t++) {
+              final boolean write = rnd.nextInt(100) < WRITES;
+              final boolean[] dbs = new boolean[DATABASES];
+              final StringList sl = new StringList();
+              for(int l = rnd.nextInt(MAXLOCKS); l >= 0; l--) {
+                final int d = rnd.nextInt(DATABASES);
+                dbs[d] = true;
+                sl.add(NAME + d);
+              }
+              final Command cmd = new Cmd(write);
+              locks.acquire(cmd, sl);
+              // check and register access
+              for(int d = 0; d < DATABASES; d++) {
+                if(dbs[d] && (write ? !active.compareAndSet(d, 0, -1) :
+                  active.getAndIncrement(d) < 0)) error.set(true);
+              }
+              for(int d = 0; d < DATABASES; d++) {
+                if(!dbs[d]) continue;
+                if(write) active.set(d, 0);
+                else active.decrementAndGet(d);
+              }
+              locks.release(cmd);
+            }
+          } catch(final InterruptedException ex) {
+            error.set(true);
+          } finally {
+            stop.countDown();
+          }
+        }
+      }.start();
+    }
+
+    final Performance perf = new Performance();
+    start.countDown();
+    assertTrue("Transactions did not finish in time.", stop.await(60, TimeUnit.SECONDS));
+    final double time = perf.time() / 1000000000d;
+    assertFalse("Locks were not exclusive.", error.get());
+    Util.errln("% transactions/second", (long) (CLIENTS * TRANSACTIONS / time));
+  }
+
+  /** Dummy command. */
+  private static final class Cmd extends Command {
+    /**
+     * Constructor.
+     * @param w write flag
+     */
+    Cmd(final boolean w) {
+      super(Perm.NONE);
+      updating = w;
+    }
+
+    @Override
+    protected boolean run() {
+      return true;
+    }
+  }
+}
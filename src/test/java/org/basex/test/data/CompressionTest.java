@@ -0,0 +1,142 @@
+package org.basex.test.data;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.Random;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.data.*;
+import org.basex.io.*;
+import org.basex.io.out.*;
+import org.basex.io.random.*;
+import org.basex.test.*;
+import org.basex.util.*;
+import org.junit.*;
+
+/**
+ * This class tests databases with texts and attribute values that are stored
+ * in compressed blocks.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class CompressionTest extends SandboxTest {
+  /** Number of elements. */
+  private static final int SIZE = 20000;
+  /** Query for serializing all texts and attribute values. */
+  private static final String ALL = "string-join(//(text() | @*), '|')";
+  /** Test document. */
+  private static String doc;
+
+  /**
+   * Creates the test document.
+   */
+  @BeforeClass
+  public static void init() {
+    final String[] words = { "alpha", "beta", "gamma", "\u00e4\u00f6\u00fc", "\u03bb" };
+    final TokenBuilder tb = new TokenBuilder("<x>");
+    for(int i = 0; i < SIZE; i++) {
+      tb.add("<y a='").add(words[i % 5]).add(" value'>");
+      tb.add(words[i % 3]).add(" text ").add(words[i % 4]).add(" number ");
+      tb.addLong(i).add("</y>");
+    }
+    doc = tb.add("</x>").toString();
+  }
+
+  /**
+   * Resets the options and drops the databases.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void finish() throws BaseXException {
+    new Set(Prop.COMPRESSION, false).execute(context);
+    new Set(Prop.BLOCKCACHE, 8).execute(context);
+    new DropDB(NAME + "*").execute(context);
+  }
+
+  /**
+   * Compares the contents of a compressed and an uncompressed database.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void create() throws BaseXException {
+    new CreateDB(NAME + "0", doc).execute(context);
+    final String expected = new XQuery(ALL).execute(context);
+    final long size = context.data().meta.dbfile(DataText.DATATXT).length();
+
+    new Set(Prop.COMPRESSION, true).execute(context);
+    new CreateDB(NAME + "1", doc).execute(context);
+    assertEquals(expected, new XQuery(ALL).execute(context));
+    assertTrue(context.data().meta.dbfile(DataText.DATATXB).length() < size / 2);
+    assertEquals(String.valueOf(SIZE / 5),
+        new XQuery("count(//y[@a = 'beta value'])").execute(context));
+
+    // reopen database
+    new Close().execute(context);
+    new Open(NAME + "1").execute(context);
+    assertEquals(expected, new XQuery(ALL).execute(context));
+
+    // blocks are decompressed again if they do not fit into the cache
+    new Set(Prop.BLOCKCACHE, 0).execute(context);
+    new Close().execute(context);
+    new Open(NAME + "1").execute(context);
+    assertEquals(expected, new XQuery(ALL).execute(context));
+  }
+
+  /**
+   * Reads tokens from blocks that are stored uncompressed.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void stored() throws IOException {
+    final IOFile file = new IOFile(sandbox(), NAME + IO.BASEXSUFFIX);
+    final Random rnd = new Random(0);
+    final byte[][] tokens = new byte[SIZE][];
+    final long[] refs = new long[SIZE];
+    final BlockOutput out = new BlockOutput(file, IO.BLOCKSIZE);
+    for(int t = 0; t < SIZE; t++) {
+      // random bytes cannot be compressed
+      tokens[t] = new byte[rnd.nextInt(64)];
+      rnd.nextBytes(tokens[t]);
+      refs[t] = out.write(tokens[t]);
+    }
+    out.close();
+    assertTrue(file.length() > SIZE * 32);
+
+    final BlockAccess ba = new BlockAccess(file, 1, false, BlockOutput.BLOCKSIZE);
+    try {
+      for(int t = 0; t < SIZE; t++) assertArrayEquals(tokens[t], ba.read(refs[t]));
+    } finally {
+      ba.close();
+      file.delete();
+    }
+  }
+
+  /**
+   * Updates a compressed database.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void update() throws BaseXException {
+    new Set(Prop.COMPRESSION, true).execute(context);
+    new CreateDB(NAME, doc).execute(context);
+    new XQuery("replace value of node (//y)[1] with 'new'").execute(context);
+    new XQuery("replace value of node (//@a)[2] with 'new'").execute(context);
+    new XQuery("delete node (//y)[3]/text()").execute(context);
+    new XQuery("insert node <y a='new'>new</y> into /x").execute(context);
+    assertEquals("new|new|new|new", new XQuery(
+        "string-join(((//y)[1], (//@a)[2], (//y)[last()]/(@a, text())), '|')").
+        execute(context));
+    assertEquals("alpha text \u00e4\u00f6\u00fc number 3",
+        new XQuery("string((//y)[4])").execute(context));
+
+    // compression is retained by optimizations
+    new Set(Prop.COMPRESSION, false).execute(context);
+    final String expected = new XQuery(ALL).execute(context);
+    new OptimizeAll().execute(context);
+    assertTrue(context.data().meta.compress);
+    assertEquals(expected, new XQuery(ALL).execute(context));
+  }
+}
@@ -328,6 +328,29 @@ public final class DiskTableTest extends SandboxTest {
     assertEntrysEqual(nodes, 2 * nodes, size - nodes);
   }
 
+  /**
+   * Inserts and deletes entries at the beginning of the table, and compares
+   * the shifted entries with the original ones.
+   */
+  @Test
+  public void insertDeleteRepeated() {
+    final int runs = 4 * blocks;
+    for(int r = 0; r < runs; r++) tda.insert(1, getTestEntries(r % 3 + 1));
+    int ins = 0;
+    for(int r = 0; r < runs; r++) ins += r % 3 + 1;
+    assertEquals(size + ins, tdaSize());
+    assertEntrysEqual(0, 0, 1);
+    assertAreInserted(1, ins);
+    assertEntrysEqual(1, ins + 1, size - 1);
+
+    for(int d = ins; d > 0; d -= 2) tda.delete(1, Math.min(2, d));
+    assertEquals(size, tdaSize());
+    assertEntrysEqual(0, 0, size);
+    closeAndReload();
+    assertEquals(size, tdaSize());
+    assertEntrysEqual(0, 0, size);
+  }
+
   /**
    * Asserts that the chosen entries are inserted by a test case.
    * @param startNum first entry
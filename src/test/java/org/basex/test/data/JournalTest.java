@@ -0,0 +1,169 @@
+package org.basex.test.data;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.core.parse.Commands.*;
+import org.basex.data.*;
+import org.basex.io.*;
+import org.basex.test.*;
+import org.junit.*;
+
+/**
+ * This class tests the rollback of databases that have not been properly closed.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class JournalTest extends SandboxTest {
+  /** Name of the copied database. */
+  private static final String COPY = NAME + "Copy";
+  /** Number of elements. */
+  private static final int SIZE = 2000;
+  /** Query for checking the database contents. */
+  private static final String QUERY = "concat(string-join(//text(), ','), count(//@*))";
+
+  /**
+   * Initializes the test.
+   * @throws BaseXException database exception
+   */
+  @BeforeClass
+  public static void init() throws BaseXException {
+    // few buffers: modified pages will be written before the database is closed
+    run(new Set(Prop.BUFFERS, 2));
+    run(new Set(Prop.AUTOFLUSH, false));
+  }
+
+  /**
+   * Finishes the test.
+   * @throws BaseXException database exception
+   */
+  @AfterClass
+  public static void finish() throws BaseXException {
+    run(new DropDB(NAME));
+    run(new DropDB(COPY));
+    run(new Set(Prop.BUFFERS, 256));
+    run(new Set(Prop.AUTOFLUSH, true));
+  }
+
+  /**
+   * Copies a database that has been updated, and rolls back the copy.
+   * @throws Exception exception
+   */
+  @Test
+  public void rollback() throws Exception {
+    run(new CreateDB(NAME, "<x>" + elements() + "</x>"));
+    final String orig = run(new XQuery(QUERY));
+    run(new XQuery("for $a in //a return (replace value of node $a with 'new value', " +
+        "insert node attribute b { 'x' } into $a, insert node <c/> before $a)"));
+    run(new XQuery("delete node //c[position() mod 3 = 0]"));
+    final String updated = run(new XQuery(QUERY));
+    assertFalse(orig.equals(updated));
+    assertTrue(dbfile(NAME, DataText.DATAUPD).exists());
+
+    // copy the current state of the files, which equals a crashed database
+    copy();
+    run(new Open(COPY));
+    assertFalse(dbfile(COPY, DataText.DATAUPD).exists());
+    assertEquals(orig, run(new XQuery(QUERY)));
+
+    // the journal is removed when the database is closed
+    run(new Open(NAME));
+    assertEquals(updated, run(new XQuery(QUERY)));
+  }
+
+  /**
+   * Copies a database that has been flushed after an update.
+   * @throws Exception exception
+   */
+  @Test
+  public void flush() throws Exception {
+    run(new CreateDB(NAME, "<x>" + elements() + "</x>"));
+    run(new XQuery("delete node //a[position() mod 2 = 0]"));
+    run(new Flush());
+    assertFalse(dbfile(NAME, DataText.DATAUPD).exists());
+    final String updated = run(new XQuery(QUERY));
+    copy();
+    run(new Open(COPY));
+    assertEquals(updated, run(new XQuery(QUERY)));
+  }
+
+  /**
+   * Checks that a dropped index is not used after the database has been rolled back.
+   * @throws Exception exception
+   */
+  @Test
+  public void dropIndex() throws Exception {
+    run(new CreateDB(NAME, "<x>" + elements() + "</x>"));
+    run(new Flush());
+    run(new DropIndex(CmdIndex.TEXT));
+    copy();
+    run(new Open(COPY));
+    assertFalse(context.data().meta.textindex);
+    assertEquals(SIZE + "", run(new XQuery("count(//a[text() = 'value'])")));
+  }
+
+  /**
+   * Checks that a database with an invalid journal cannot be opened.
+   * @throws Exception exception
+   */
+  @Test
+  public void invalid() throws Exception {
+    run(new CreateDB(NAME, "<x/>"));
+    run(new Close());
+    dbfile(NAME, DataText.DATAUPD).write(new byte[0]);
+    try {
+      run(new Open(NAME));
+      fail("Database was opened.");
+    } catch(final BaseXException ex) {
+      // expected
+    }
+    dbfile(NAME, DataText.DATAUPD).delete();
+  }
+
+  /**
+   * Copies the files of the opened main database to the copied database.
+   * @throws IOException I/O exception
+   */
+  private static void copy() throws IOException {
+    run(new DropDB(COPY));
+    final IOFile trg = context.mprop.dbpath(COPY);
+    trg.md();
+    for(final IOFile f : context.mprop.dbpath(NAME).children()) {
+      f.copyTo(new IOFile(trg, f.name()));
+    }
+  }
+
+  /**
+   * Returns a database file.
+   * @param db name of database
+   * @param name file name
+   * @return file
+   */
+  private static IOFile dbfile(final String db, final String name) {
+    return new IOFile(context.mprop.dbpath(db), name + IO.BASEXSUFFIX);
+  }
+
+  /**
+   * Returns a string with elements.
+   * @return string
+   */
+  private static String elements() {
+    final StringBuilder sb = new StringBuilder();
+    for(int i = 0; i < SIZE; i++) sb.append("<a n='" + i + "'>value</a>");
+    return sb.toString();
+  }
+
+  /**
+   * Runs the specified command.
+   * @param cmd command to be run
+   * @return string result
+   * @throws BaseXException database exception
+   */
+  private static String run(final Command cmd) throws BaseXException {
+    return cmd.execute(context);
+  }
+}
@@ -0,0 +1,26 @@
+package org.basex.test.data;
+
+import org.basex.core.*;
+import org.junit.*;
+
+/**
+ * Test index updates when using disk storage with memory-mapped
+ * read access ({@link Prop#MMAP}).
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class MMapDataTest extends DiskDataTest {
+  @Override
+  @Before
+  public void setUp() throws BaseXException {
+    context.prop.set(Prop.MMAP, true);
+    super.setUp();
+  }
+
+  /** Resets the memory mapping flag. */
+  @After
+  public void reset() {
+    context.prop.set(Prop.MMAP, false);
+  }
+}
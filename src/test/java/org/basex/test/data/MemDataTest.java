@@ -108,6 +108,34 @@ public class MemDataTest extends SandboxTest {
     assertTrue("Node not deleted", r.isEmpty());
   }
 
+  /**
+   * Deletes and inserts nodes with the same text multiple times.
+   * Updatable index structures are used.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void deleteRepeated() throws IOException {
+    // close the database of the fixture (disk variants would keep it pinned)
+    new Close().execute(context);
+    context.prop.set(Prop.UPDINDEX, true);
+    try {
+      context.openDB(CreateDB.mainMem(new IOContent(XML), context));
+    } finally {
+      context.prop.set(Prop.UPDINDEX, false);
+    }
+    new XQuery("insert node (1 to 10) ! <d>test</d> into /a").execute(context);
+    new XQuery("delete node (//d[1], //d[5], //d[last()])").execute(context);
+    assertEquals("8", new XQuery("count(//*[text() = 'test'])").execute(context));
+    new XQuery("delete node //b").execute(context);
+    new XQuery("insert node <e>test</e> into /a").execute(context);
+    new XQuery("insert node <e>test</e> as first into /a").execute(context);
+    assertEquals("9", new XQuery("count(//*[text() = 'test'])").execute(context));
+    assertEquals("e", new XQuery("name((//*[text() = 'test'])[last()])").
+        execute(context));
+    new XQuery("delete node //*[text() = 'test']").execute(context);
+    assertEquals("0", new XQuery("count(//*[text() = 'test'])").execute(context));
+  }
+
   /**
    * Try to find non-existing node.
    * @throws BaseXException query exception
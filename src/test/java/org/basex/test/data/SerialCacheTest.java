@@ -0,0 +1,104 @@
+package org.basex.test.data;
+
+import static org.junit.Assert.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.test.*;
+import org.junit.*;
+
+/**
+ * This class tests if cached serializations of documents are identical to
+ * regularly serialized documents ({@link Prop#SERIALCACHE}).
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class SerialCacheTest extends SandboxTest {
+  /** Documents. */
+  private static final String[][] DOCS = {
+    { "a.xml", "<a><b x='1'>text</b><!--c--><?pi v?><c/></a>" },
+    { "b.xml", "<n:a xmlns:n='N' xmlns='D'><b>a &amp; b</b><n:c/></n:a>" },
+    { "c.xml", "<x>äöü\n<y/></x>" },
+  };
+  /** Queries. */
+  private static final String[] QUERIES = {
+    "db:open('" + NAME + "')",
+    "db:open('" + NAME + "', 'b.xml')",
+    "(db:open('" + NAME + "', 'c.xml'), 1, db:open('" + NAME + "', 'a.xml'))",
+    "(1, db:open('" + NAME + "', 'a.xml'))",
+    "(db:open('" + NAME + "', 'a.xml'), <z/>)",
+    "<x>{ db:open('" + NAME + "', 'b.xml') }</x>",
+    "db:open('" + NAME + "', 'a.xml')//b",
+  };
+  /** Serialization parameters. */
+  private static final String[] PARAMS = {
+    "", "indent=no", "omit-xml-declaration=no", "wrap-prefix=w,wrap-uri=W",
+    "method=html", "doctype-system=x.dtd", "encoding=UTF-16", "newline=\\r\\n"
+  };
+
+  /**
+   * Creates the test database.
+   * @throws BaseXException database exception
+   */
+  @Before
+  public void init() throws BaseXException {
+    new CreateDB(NAME).execute(context);
+    for(final String[] doc : DOCS) new Add(doc[0], doc[1]).execute(context);
+  }
+
+  /**
+   * Drops the database and resets the options.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void finish() throws BaseXException {
+    new Set(Prop.SERIALCACHE, 0).execute(context);
+    new Set(Prop.SERIALIZER, "").execute(context);
+    new DropDB(NAME).execute(context);
+  }
+
+  /**
+   * Compares cached with regular serializations.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void params() throws BaseXException {
+    for(final String params : PARAMS) {
+      new Set(Prop.SERIALIZER, params).execute(context);
+      compare();
+    }
+  }
+
+  /**
+   * Checks if cached documents are invalidated by updates.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void updates() throws BaseXException {
+    compare();
+    new XQuery("insert node <new/> into db:open('" + NAME + "', 'a.xml')/a").
+      execute(context);
+    compare();
+    new Replace("b.xml", "<b>text</b>").execute(context);
+    compare();
+    new Delete("a.xml").execute(context);
+    new Add("d.xml", "<d>text</d>").execute(context);
+    compare();
+  }
+
+  /**
+   * Evaluates all queries with and without cache, and compares the results.
+   * @throws BaseXException database exception
+   */
+  private static void compare() throws BaseXException {
+    for(final String query : QUERIES) {
+      new Set(Prop.SERIALCACHE, 0).execute(context);
+      final String exp = new XQuery(query).execute(context);
+      new Set(Prop.SERIALCACHE, 1).execute(context);
+      // the second evaluation returns the cached results
+      assertEquals(query, exp, new XQuery(query).execute(context));
+      assertEquals(query, exp, new XQuery(query).execute(context));
+    }
+  }
+}
@@ -97,6 +97,82 @@ public final class StoreTest extends SandboxTest {
     check(size);
   }
 
+  /**
+   * Reuses the space of deleted texts.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void reuse() throws BaseXException {
+    run(new CreateDB(NAME, "<X><A>abcdef</A><A>ghijkl</A></X>"));
+    final long size = context.data().meta.dbfile(DataText.DATATXT).length();
+
+    for(int i = 0; i < NQUERIES; i++) {
+      run(new XQuery("delete node (//A)[1]/text()"));
+      run(new XQuery("insert node 'mnopqr' into (//A)[1]"));
+    }
+    assertEquals("mnopqr", run(new XQuery("string((//A)[1])")));
+    run(new Close());
+    run(new Open(NAME));
+    check(size);
+  }
+
+  /**
+   * Merges adjacent free slots.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void merge() throws BaseXException {
+    run(new CreateDB(NAME, "<X><A>abcdef</A><A>ghijkl</A><A>mnopqr</A></X>"));
+    final long size = context.data().meta.dbfile(DataText.DATATXT).length();
+
+    run(new XQuery("delete node (//A)[position() < 3]/text()"));
+    // the new text only fits into the merged space of the deleted texts
+    run(new XQuery("insert node 'abcdefghijklm' into (//A)[1]"));
+    run(new Close());
+    run(new Open(NAME));
+    check(size);
+    assertEquals("abcdefghijklm", run(new XQuery("string((//A)[1])")));
+  }
+
+  /**
+   * Truncates free space at the end of the text store.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void truncate() throws BaseXException {
+    run(new CreateDB(NAME, "<X><A>abcdef</A><A>ghijkl</A><A>mnopqr</A></X>"));
+    final long size = context.data().meta.dbfile(DataText.DATATXT).length();
+
+    run(new XQuery("delete node (//A)[2]/text()"));
+    run(new XQuery("delete node (//A)[3]/text()"));
+    run(new Close());
+    run(new Open(NAME));
+    check(size - 14);
+  }
+
+  /**
+   * Compacts the text store.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void compact() throws BaseXException {
+    // size of a store without the texts to be deleted
+    run(new CreateDB(NAME, "<X><A/><A/><A>mnopqr</A></X>"));
+    final long size = context.data().meta.dbfile(DataText.DATATXT).length();
+
+    final String abc = "abcdefghijklmnopqrstuvwxyz";
+    run(new CreateDB(NAME, "<X><A>" + abc + "</A><A>" + abc + "</A><A>mnopqr</A></X>"));
+    // more than half of the store is freed
+    run(new XQuery("delete node (//A)[position() < 3]/text()"));
+    assertTrue(run(new InfoStorage()).contains("RECLAIMED"));
+    run(new Optimize());
+    assertEquals("mnopqr", run(new XQuery("string(//A[3])")));
+    run(new Close());
+    run(new Open(NAME));
+    check(size);
+    assertEquals("mnopqr", run(new XQuery("string(//A[3])")));
+  }
+
   /**
    * Tests the {@link Prop#UPDINDEX} and {@link Prop#AUTOFLUSH} flags in combination.
    * Reaction on a bug (incremental value index was not correctly closed)
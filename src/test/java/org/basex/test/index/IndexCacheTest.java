@@ -4,8 +4,10 @@ import static org.basex.util.Token.*;
 import static org.junit.Assert.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.basex.index.*;
+import org.basex.util.*;
 import org.junit.*;
 
 /**
@@ -77,6 +79,69 @@ public final class IndexCacheTest {
     assertNull(cache.get(key));
   }
 
+  /** Test that the number of entries is limited. */
+  @Test
+  public void testBounded() {
+    final int max = 1024;
+    cache = new IndexCache(max);
+    for(int i = 0; i < max * 8; ++i) cache.add(token("keyBounded" + i), i, i);
+    assertTrue("Too many entries: " + cache.size(), cache.size() <= max);
+    assertCacheEntry(token("keyBounded" + (max * 8 - 1)), max * 8 - 1, max * 8 - 1);
+  }
+
+  /** Test that frequently accessed entries are not evicted. */
+  @Test
+  public void testEviction() {
+    final int max = 1024;
+    cache = new IndexCache(max);
+    final byte[] key = token("keyEviction");
+    cache.add(key, 1, 2L);
+    for(int i = 0; i < max * 8; ++i) {
+      cache.add(token("keyEviction" + i), i, i);
+      assertCacheEntry(key, 1, 2L);
+    }
+  }
+
+  /**
+   * Concurrently looks up and adds entries and prints the throughput.
+   * @throws Exception exception
+   */
+  @Test
+  public void testThroughput() throws Exception {
+    final int keys = 1 << 17;
+    final int ops = 1 << 20;
+    final byte[][] tokens = new byte[keys][];
+    for(int i = 0; i < keys; ++i) tokens[i] = token("keyThroughput" + i);
+
+    for(final int threads : new int[] { 1, 4, 16 }) {
+      cache = new IndexCache();
+      final ExecutorService exec = Executors.newFixedThreadPool(threads);
+      final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      final Performance perf = new Performance();
+      for(int t = 0; t < threads; ++t) {
+        final Random rnd = new Random(t);
+        futures.add(exec.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            for(int o = 0; o < ops / threads; ++o) {
+              // skewed access: small keys are requested more often
+              final int i = (int) (Math.abs(rnd.nextGaussian()) * keys / 8) % keys;
+              final IndexEntry entry = cache.get(tokens[i]);
+              if(entry == null) cache.add(tokens[i], i, i);
+              else assertEquals(i, entry.size);
+            }
+            return null;
+          }
+        }));
+      }
+      for(final Future<Void> f : futures) f.get();
+      exec.shutdown();
+      final double time = perf.time() / 1000000000d;
+      Util.errln("% thread(s): % operations/second", threads, (long) (ops / time));
+      assertTrue(cache.size() <= IndexCache.MAX);
+    }
+  }
+
   /**
    * Test that new records can be continuously added without hitting
    * {@link OutOfMemoryError}.
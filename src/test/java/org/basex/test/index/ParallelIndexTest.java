@@ -0,0 +1,103 @@
+package org.basex.test.index;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.io.*;
+import org.basex.test.*;
+import org.basex.util.*;
+import org.junit.*;
+
+/**
+ * This class tests if indexes that are built in parallel are identical to
+ * sequentially built indexes.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class ParallelIndexTest extends SandboxTest {
+  /** Number of elements. */
+  private static final int SIZE = 20000;
+  /** Test document. */
+  private static String doc;
+
+  /**
+   * Creates the test document.
+   */
+  @BeforeClass
+  public static void init() {
+    final Random rnd = new Random(0);
+    final TokenBuilder tb = new TokenBuilder("<x>");
+    for(int i = 0; i < SIZE; i++) {
+      tb.add("<y a='").addLong(rnd.nextInt(SIZE / 10)).add("'>");
+      tb.add("text ").addLong(rnd.nextInt(SIZE)).add("</y>");
+    }
+    doc = tb.add("</x>").toString();
+  }
+
+  /**
+   * Resets the options.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void finish() throws BaseXException {
+    new Set(Prop.INDEXTHREADS, 1).execute(context);
+    new Set(Prop.FTINDEX, false).execute(context);
+    new DropDB(NAME + "*").execute(context);
+  }
+
+  /**
+   * Creates databases with sequentially and concurrently built indexes.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void create() throws IOException {
+    new Set(Prop.FTINDEX, true).execute(context);
+    new Set(Prop.INDEXTHREADS, 1).execute(context);
+    new CreateDB(NAME + '1', doc).execute(context);
+    new Set(Prop.INDEXTHREADS, 4).execute(context);
+    new CreateDB(NAME + '4', doc).execute(context);
+    new Close().execute(context);
+    compare();
+  }
+
+  /**
+   * Rebuilds databases with sequentially and concurrently built indexes.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void optimizeAll() throws IOException {
+    new Set(Prop.FTINDEX, true).execute(context);
+    for(final int threads : new int[] { 1, 4 }) {
+      new Set(Prop.INDEXTHREADS, 1).execute(context);
+      new CreateDB(NAME + threads, doc).execute(context);
+      new Set(Prop.INDEXTHREADS, threads).execute(context);
+      new OptimizeAll().execute(context);
+      new Close().execute(context);
+    }
+    compare();
+  }
+
+  /**
+   * Compares the index files of the two test databases.
+   * @throws IOException I/O exception
+   */
+  private static void compare() throws IOException {
+    final IOFile db1 = context.mprop.dbpath(NAME + '1');
+    final IOFile db4 = context.mprop.dbpath(NAME + '4');
+    int files = 0;
+    for(final IOFile f : db1.children()) {
+      final String n = f.name();
+      if(!n.matches("(txt|atv)[lr].*|ftx.*")) continue;
+      assertTrue("Index files differ: " + n,
+          Arrays.equals(f.read(), new IOFile(db4, n).read()));
+      files++;
+    }
+    assertTrue("Index files are missing.", files > 4);
+  }
+}
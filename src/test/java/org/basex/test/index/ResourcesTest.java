@@ -0,0 +1,169 @@
+package org.basex.test.index;
+
+import static org.basex.util.Token.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.Random;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.data.*;
+import org.basex.index.resource.*;
+import org.basex.io.*;
+import org.basex.test.*;
+import org.basex.util.list.*;
+import org.junit.*;
+
+/**
+ * This class tests if the ordered document paths are correctly updated.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class ResourcesTest extends SandboxTest {
+  /** Document paths. */
+  private static final String[] PATHS = {
+    "a.xml", "a/b.xml", "a/b/c.xml", "a-b.xml", "b/a.xml", "a/b.xml", "c.xml", "a/c.xml"
+  };
+  /** Queried paths. */
+  private static final String[] QUERIES = {
+    "a.xml", "a/b.xml", "a/b/c.xml", "a-b.xml", "b/a.xml", "c.xml", "a/c.xml",
+    "a", "a/", "a/b", "b", "b/", "c", "x.xml"
+  };
+  /** Number of updates. */
+  private static final int UPDATES = 300;
+
+  /**
+   * Drops the database and resets the options.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void finish() throws BaseXException {
+    new Set(Prop.MAINMEM, false).execute(context);
+    new DropDB(NAME).execute(context);
+  }
+
+  /**
+   * Performs updates on a disk-based database.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void disk() throws BaseXException {
+    update();
+    new Close().execute(context);
+    new Open(NAME).execute(context);
+    check();
+  }
+
+  /**
+   * Performs updates on a main-memory database.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void mainMem() throws BaseXException {
+    new Set(Prop.MAINMEM, true).execute(context);
+    update();
+  }
+
+  /**
+   * Inserts and replaces documents at arbitrary positions.
+   * @throws Exception exception
+   */
+  @Test
+  public void positions() throws Exception {
+    new CreateDB(NAME).execute(context);
+    final Data data = context.data();
+    final Random rnd = new Random(0);
+    for(int u = 0; u < UPDATES; u++) {
+      // create one or two documents
+      final MemData md = doc(PATHS[rnd.nextInt(PATHS.length)]);
+      if(rnd.nextBoolean()) md.insert(md.meta.size, -1, doc(PATHS[rnd.nextInt(PATHS.length)]));
+
+      final IntList docs = data.resources.docs();
+      final int ds = docs.size(), d = rnd.nextInt(ds + 1);
+      data.startUpdate();
+      if(d < ds && rnd.nextBoolean()) data.replace(docs.get(d), md);
+      // the first node of a database cannot be replaced via an insertion
+      else data.insert(d > 0 && d < ds ? docs.get(d) : data.meta.size, -1, md);
+      data.finishUpdate();
+      check();
+    }
+    new Close().execute(context);
+    new Open(NAME).execute(context);
+    check();
+  }
+
+  /**
+   * Creates a main-memory document.
+   * @param path path of the document
+   * @return document
+   * @throws IOException I/O exception
+   */
+  private static MemData doc(final String path) throws IOException {
+    final MemData md = CreateDB.mainMem(new IOContent("<x><y/></x>"), context);
+    md.update(0, Data.DOC, token(path));
+    return md;
+  }
+
+  /**
+   * Randomly adds, deletes, renames and replaces documents, and checks the
+   * results of all lookups after each update.
+   * @throws BaseXException database exception
+   */
+  private static void update() throws BaseXException {
+    new CreateDB(NAME).execute(context);
+    final Random rnd = new Random(0);
+    for(int u = 0; u < UPDATES; u++) {
+      final String path = PATHS[rnd.nextInt(PATHS.length)];
+      switch(rnd.nextInt(6)) {
+        case 0: case 1:
+          new Add(path, "<x><y/></x>").execute(context);
+          break;
+        case 2:
+          new Delete(path).execute(context);
+          break;
+        case 3:
+          new Rename(path, PATHS[rnd.nextInt(PATHS.length)]).execute(context);
+          break;
+        case 4:
+          new Replace(path, "<z/>").execute(context);
+          break;
+        default:
+          new XQuery("for $y in (db:open('" + NAME + "')//y)[1] " +
+              "return replace node $y with <y><a/><b/></y>").execute(context);
+      }
+      check();
+    }
+  }
+
+  /**
+   * Compares the results of all lookups with the expected results.
+   */
+  private static void check() {
+    final Data data = context.data();
+    final Resources res = data.resources;
+    final IntList docs = res.docs();
+    final int ds = docs.size();
+    for(final String query : QUERIES) {
+      final boolean dir = query.endsWith("/");
+      final IntList exp = new IntList();
+      int doc = -1;
+      boolean isDir = false;
+      for(int d = 0; d < ds; d++) {
+        final int pre = docs.get(d);
+        final String path = string(data.text(pre, true));
+        final boolean eq = path.equals(query);
+        if(eq && doc == -1) doc = pre;
+        final boolean sub = path.startsWith(dir ? query : query + '/');
+        if(sub) isDir = true;
+        if(!dir && eq || sub) exp.add(pre);
+      }
+      assertArrayEquals(query, exp.toArray(), res.docs(query).toArray());
+      if(!dir) {
+        assertEquals(query, doc, res.doc(query));
+        assertEquals(query, isDir, res.isDir(token('/' + query)));
+      }
+    }
+  }
+}
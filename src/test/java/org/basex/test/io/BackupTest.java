@@ -0,0 +1,158 @@
+package org.basex.test.io;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.io.*;
+import org.basex.test.*;
+import org.basex.util.list.*;
+import org.junit.*;
+
+/**
+ * This class tests the creation and restoration of full and incremental backups.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class BackupTest extends SandboxTest {
+  /** Query for returning the database contents. */
+  private static final String QUERY =
+      "for $d in db:open('" + NAME + "') return (document-uri($d), $d)";
+
+  /**
+   * Drops the database and its backups, and resets the options.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void finish() throws BaseXException {
+    new Set(Prop.INCBACKUP, false).execute(context);
+    new Set(Prop.BACKUPCHAIN, 8).execute(context);
+    new Set(Prop.BACKUPTHREADS, 1).execute(context);
+    new DropBackup(NAME).execute(context);
+    new DropDB(NAME).execute(context);
+  }
+
+  /**
+   * Creates and restores a chain of incremental backups.
+   * @throws Exception exception
+   */
+  @Test
+  public void incremental() throws Exception {
+    new Set(Prop.INCBACKUP, true).execute(context);
+    new CreateDB(NAME).execute(context);
+    for(int d = 0; d < 500; d++) add(d, 20);
+
+    final ArrayList<String> results = new ArrayList<String>();
+    results.add(backup());
+    new Add("new.xml", "<new/>").execute(context);
+    results.add(backup());
+    new Replace("0.xml", "<replaced/>").execute(context);
+    new Delete("1.xml").execute(context);
+    new Optimize().execute(context);
+    results.add(backup());
+
+    // incremental backups are smaller than the full backup
+    final StringList backups = Databases.backupPaths(NAME, context);
+    final long full = new IOFile(backups.get(2)).length();
+    assertTrue(new IOFile(backups.get(0)).length() < full);
+    assertTrue(new IOFile(backups.get(1)).length() < full);
+
+    new Add("dummy.xml", "<dummy/>").execute(context);
+    for(int b = 0; b < 3; b++) {
+      final String name = new IOFile(backups.get(2 - b)).name();
+      new Restore(name.replaceAll("\\.zip$", "")).execute(context);
+      new Open(NAME).execute(context);
+      assertEquals(results.get(b), new XQuery(QUERY).execute(context));
+    }
+  }
+
+  /**
+   * Limits the length of backup chains and keeps backups that are still needed.
+   * @throws Exception exception
+   */
+  @Test
+  public void chain() throws Exception {
+    new Set(Prop.INCBACKUP, true).execute(context);
+    new Set(Prop.BACKUPCHAIN, 1).execute(context);
+    new CreateDB(NAME).execute(context);
+    for(int d = 0; d < 50; d++) add(d, 20);
+    for(int b = 0; b < 3; b++) {
+      add(100 + b, 1);
+      backup();
+    }
+
+    // full backup, incremental backup, full backup
+    final StringList backups = Databases.backupPaths(NAME, context);
+    assertEquals(0, Backup.bases(new IOFile(backups.get(0))).size());
+    assertEquals(1, Backup.bases(new IOFile(backups.get(1))).size());
+    assertEquals(0, Backup.bases(new IOFile(backups.get(2))).size());
+
+    // the first full backup is needed by the incremental backup
+    final String full = new IOFile(backups.get(2)).name().replaceAll("\\.zip$", "");
+    final String inc = new IOFile(backups.get(1)).name().replaceAll("\\.zip$", "");
+    try {
+      new DropBackup(full).execute(context);
+      fail("Needed backup was dropped.");
+    } catch(final BaseXException ex) {
+      assertEquals(3, Databases.backupPaths(NAME, context).size());
+    }
+    new DropBackup(inc).execute(context);
+    new DropBackup(full).execute(context);
+    assertEquals(1, Databases.backupPaths(NAME, context).size());
+  }
+
+  /**
+   * Creates and restores a full backup that is compressed in parallel.
+   * @throws Exception exception
+   */
+  @Test
+  public void threads() throws Exception {
+    new Set(Prop.BACKUPTHREADS, 4).execute(context);
+    new CreateDB(NAME).execute(context);
+    for(int d = 0; d < 100; d++) add(d, 1000);
+    final String result = backup();
+
+    // the archive can be read by standard tools
+    new Close().execute(context);
+    final IOFile dir = new IOFile(sandbox(), "unzipped");
+    new Zip(new IOFile(Databases.backupPaths(NAME, context).get(0))).unzip(dir);
+    final IOFile db = context.mprop.dbpath(NAME);
+    for(final String file : db.descendants()) {
+      if(!Databases.FILES.matcher(file).matches()) continue;
+      assertArrayEquals(file, new IOFile(db, file).read(),
+          new IOFile(dir, NAME + '/' + file).read());
+    }
+
+    new DropDB(NAME).execute(context);
+    new Restore(NAME).execute(context);
+    new Open(NAME).execute(context);
+    assertEquals(result, new XQuery(QUERY).execute(context));
+  }
+
+  /**
+   * Adds a document.
+   * @param d document number
+   * @param e number of elements
+   * @throws BaseXException database exception
+   */
+  private static void add(final int d, final int e) throws BaseXException {
+    final StringBuilder sb = new StringBuilder("<doc>");
+    for(int i = 0; i < e; i++) sb.append("<e a='" + i + "'>text " + d * i + "</e>");
+    new Add(d + ".xml", sb.append("</doc>").toString()).execute(context);
+  }
+
+  /**
+   * Creates a backup and returns the current database contents.
+   * Waits before the backup is created in order to get distinct file names.
+   * @return database contents
+   * @throws Exception exception
+   */
+  private static String backup() throws Exception {
+    Thread.sleep(1100);
+    new CreateBackup(NAME).execute(context);
+    return new XQuery(QUERY).execute(context);
+  }
+}
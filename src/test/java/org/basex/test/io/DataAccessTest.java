@@ -342,6 +342,29 @@ public class DataAccessTest {
     assertContent(pos, CINT1_BIN);
   }
 
+  /**
+   * Writes and reads blocks with a small number of buffers, which will
+   * frequently be evicted.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public final void testBuffers() throws IOException {
+    final DataAccess small = new DataAccess(file, 3);
+    try {
+      final int blocks = 64;
+      for(int b = 0; b < blocks; ++b) small.write4((long) b * IO.BLOCKSIZE, b);
+      // repeated accesses to the first block, interleaved with a scan
+      for(int b = blocks - 1; b >= 0; --b) {
+        assertEquals(b, small.read4((long) b * IO.BLOCKSIZE));
+        assertEquals(0, small.read4(0));
+      }
+      small.flush();
+      assertContent((long) (blocks - 1) * IO.BLOCKSIZE, intToByteArray(blocks - 1));
+    } finally {
+      small.close();
+    }
+  }
+
   /** Test method for {@link DataAccess#free(long, int)}. */
   @Ignore
   @Test
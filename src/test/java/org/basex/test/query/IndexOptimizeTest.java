@@ -167,6 +167,112 @@ public final class IndexOptimizeTest extends SandboxTest {
         "//text()[. contains text { $x }] }; local:x('1')", "1");
   }
 
+  /**
+   * Checks numeric and date range queries.
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void rangeTest() throws Exception {
+    createRange();
+    new Open(NAME).execute(context);
+    assertTrue(context.data().meta.dbfile("txtn").exists());
+    checkRange();
+  }
+
+  /**
+   * Checks range queries on many distinct dateTimes that differ in microseconds.
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void dateRangeTest() throws Exception {
+    final StringBuilder sb = new StringBuilder("<xml>");
+    for(int i = 0; i < 1000; i++) {
+      sb.append(String.format("<t>2001-01-01T00:00:00.000%03d</t>", i));
+    }
+    new CreateDB(NAME, sb.append("</xml>").toString()).execute(context);
+    check("data(//t[text() > xs:dateTime('2001-01-01T00:00:00.000100') and " +
+        "text() <= xs:dateTime('2001-01-01T00:00:00.000102')])",
+        "2001-01-01T00:00:00.000101 2001-01-01T00:00:00.000102", RangeAccess.class);
+    check("count(//t[text() >= xs:dateTime('2001-01-01T00:00:00.000998') and " +
+        "text() < xs:dateTime('2002-01-01T00:00:00')])", "2", RangeAccess.class);
+    // no index access needed: all values are out of range
+    assertEquals("0", new XQuery("count(//t[text() > " +
+        "xs:dateTime('2001-01-01T00:00:00.000999') and " +
+        "text() < xs:dateTime('2002-01-01T00:00:00')])").execute(context));
+  }
+
+  /**
+   * Checks range queries on an updatable index.
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void rangeUpdTest() throws Exception {
+    new Set(Prop.UPDINDEX, true).execute(context);
+    try {
+      createRange();
+      new Open(NAME).execute(context);
+      // numeric values will be dropped if index keys are added or deleted
+      new XQuery("insert node <p>11</p> into /xml").execute(context);
+      assertFalse(context.data().meta.dbfile("txtn").exists());
+      new Optimize().execute(context);
+      check("data(//p[text() > 10 and text() < 20])", "15 12.5 11", RangeAccess.class);
+      new XQuery("delete node //p[. = '11']").execute(context);
+      new Optimize().execute(context);
+      checkRange();
+    } finally {
+      new Set(Prop.UPDINDEX, false).execute(context);
+    }
+  }
+
+  /**
+   * Checks if the results of an updatable index are returned in document order.
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void orderUpdTest() throws Exception {
+    new Set(Prop.UPDINDEX, true).execute(context);
+    try {
+      new CreateDB(NAME, "<xml><a n='1'>x</a><a n='2'>x</a></xml>").execute(context);
+      check("data(//a[text() = 'x']/@n)", "1 2");
+      check("data((//a[text() = 'x'])[1]/@n)", "1");
+      // new ids will be larger than the existing ids, but pre values will be smaller
+      new XQuery("insert node <a n='0'>x</a> as first into /xml").execute(context);
+      check("data(//a[text() = 'x']/@n)", "0 1 2");
+      check("data((//a[text() = 'x'])[1]/@n)", "0");
+      new Optimize().execute(context);
+      check("data(//a[text() = 'x']/@n)", "0 1 2");
+    } finally {
+      new Set(Prop.UPDINDEX, false).execute(context);
+    }
+  }
+
+  /**
+   * Runs range queries.
+   */
+  private static void checkRange() {
+    check("data(//p[text() > 10 and text() < 20])", "15 12.5", RangeAccess.class);
+    check("data(//p[text() >= 10 and text() <= 15])", "10 15 12.5", RangeAccess.class);
+    check("data(//p[text() >= 20 and text() < 100])", "20", RangeAccess.class);
+    check("data(//d[text() >= xs:date('2002-01-01') and text() < xs:date('2100-01-01')])",
+        "2002-06-01 2003-01-01", RangeAccess.class);
+    check("data(//d[text() > xs:date('2001-01-01') and text() < xs:date('2003-01-01')])",
+        "2002-06-01", RangeAccess.class);
+    check("data(//d[@t > xs:dateTime('2001-01-01T10:00:00') and " +
+        "@t <= xs:dateTime('2003-01-01T00:00:00')])", "2002-06-01 2003-01-01",
+        RangeAccess.class);
+  }
+
+  /**
+   * Creates a test database with numbers and dates.
+   * @throws Exception exception
+   */
+  private static void createRange() throws Exception {
+    new CreateDB(NAME, "<xml><p>5</p><p>10</p><p>15</p><p>20</p><p>12.5</p>" +
+        "<d t='2001-01-01T10:00:00'>2001-01-01</d><d t='2002-06-01T00:00:00'>" +
+        "2002-06-01</d><d t='2003-01-01T00:00:00'>2003-01-01</d></xml>").execute(context);
+    new Close().execute(context);
+  }
+
   /**
    * Creates a test database.
    * @throws Exception exception
@@ -203,6 +309,18 @@ public final class IndexOptimizeTest extends SandboxTest {
    * @param result expected query result
    */
   private static void check(final String query, final String result) {
+    check(query, result, ValueAccess.class, FTIndexAccess.class);
+  }
+
+  /**
+   * Checks if specified query was rewritten for index access, and checks the
+   * query result.
+   * @param query query to be tested
+   * @param result expected query result
+   * @param access expected index access expressions
+   */
+  private static void check(final String query, final String result,
+      final Class<?>... access) {
     // compile query
     String plan = null;
     final QueryProcessor qp = new QueryProcessor(query, context);
@@ -217,9 +335,11 @@ public final class IndexOptimizeTest extends SandboxTest {
       plan = qp.plan().serialize().toString();
 
       // check if index is used
-      ao = new QueryProcessor(plan + "/descendant-or-self::*" +
-          "[self::" + Util.name(ValueAccess.class) +
-          "|self::" + Util.name(FTIndexAccess.class) + "]",
+      final StringBuilder sb = new StringBuilder();
+      for(final Class<?> c : access) {
+        sb.append(sb.length() == 0 ? "" : "|").append("self::").append(Util.name(c));
+      }
+      ao = new QueryProcessor(plan + "/descendant-or-self::*[" + sb + ']',
           context).execute().serialize();
       assertTrue("No index used:\nQuery: " + query + "\nInfo: " + info +
           "\nPlan: " + plan, !ao.toString().isEmpty());
@@ -0,0 +1,149 @@
+package org.basex.test.query;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.server.*;
+import org.basex.test.*;
+import org.junit.*;
+
+/**
+ * This class tests the cache for compiled queries.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class QueryCacheTest extends SandboxTest {
+  /** Database context with enabled query cache. */
+  private static Context ctx;
+
+  /**
+   * Creates the database context.
+   * @throws BaseXException database exception
+   */
+  @BeforeClass
+  public static void start() throws BaseXException {
+    final HashMap<String, String> props = new HashMap<String, String>();
+    props.put(MainProp.QUERYCACHE[0].toString(), "16");
+    ctx = new Context(props);
+    initContext(ctx);
+    new CreateDB(NAME, "<a><x>1</x><x>2</x></a>").execute(ctx);
+  }
+
+  /**
+   * Drops the database and closes the context.
+   * @throws BaseXException database exception
+   */
+  @AfterClass
+  public static void stop() throws BaseXException {
+    new DropDB(NAME).execute(ctx);
+    ctx.close();
+  }
+
+  /**
+   * Repeated queries are answered from the cache.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void hit() throws BaseXException {
+    final long hits = ctx.queries.hits();
+    final String query = "sum(//x)";
+    assertEquals("3", new XQuery(query).execute(ctx));
+    assertEquals("3", new XQuery(query).execute(ctx));
+    assertEquals(hits + 1, ctx.queries.hits());
+    assertTrue(new Info().execute(ctx).contains(Text.HIT_RATE));
+  }
+
+  /**
+   * Updates invalidate the cached queries.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void update() throws BaseXException {
+    final String query = "count(//x)";
+    assertEquals("2", new XQuery(query).execute(ctx));
+    new XQuery("insert node <x>3</x> into /a").execute(ctx);
+    assertEquals("3", new XQuery(query).execute(ctx));
+    new XQuery("delete node /a/x[3]").execute(ctx);
+    assertEquals("2", new XQuery(query).execute(ctx));
+  }
+
+  /**
+   * Updates of other databases do not invalidate the cached queries.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void otherDatabase() throws BaseXException {
+    final String db = NAME + "2";
+    new CreateDB(db, "<b/>").execute(ctx);
+    new Open(NAME).execute(ctx);
+    try {
+      final String query = "count(//x)";
+      new XQuery(query).execute(ctx);
+      final int size = ctx.queries.size();
+      new XQuery("insert node <c/> into db:open('" + db + "')/b").execute(ctx);
+      assertEquals(size, ctx.queries.size());
+      final long hits = ctx.queries.hits();
+      assertEquals("2", new XQuery(query).execute(ctx));
+      assertEquals(hits + 1, ctx.queries.hits());
+    } finally {
+      new DropDB(db).execute(ctx);
+    }
+  }
+
+  /**
+   * Compiled queries are evaluated with the currently bound variables.
+   * @throws Exception exception
+   */
+  @Test
+  public void bind() throws Exception {
+    final long hits = ctx.queries.hits();
+    final LocalSession session = new LocalSession(ctx);
+    try {
+      for(int i = 0; i < 3; i++) {
+        final Query query = session.query(
+            "declare variable $v external; " +
+            "count(db:open('" + NAME + "')//x[. = $v])");
+        query.bind("v", String.valueOf(i));
+        assertEquals(i == 0 ? "0" : "1", query.execute());
+        query.close();
+      }
+    } finally {
+      session.close();
+    }
+    assertEquals(hits + 2, ctx.queries.hits());
+  }
+
+  /**
+   * Compiled non-deterministic queries are reused, but evaluated again.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void nondeterministic() throws BaseXException {
+    final long hits = ctx.queries.hits();
+    final String query = "random:uuid()";
+    final String res = new XQuery(query).execute(ctx);
+    assertFalse(res.equals(new XQuery(query).execute(ctx)));
+    assertEquals(hits + 1, ctx.queries.hits());
+  }
+
+  /**
+   * Queries that raise errors are not cached.
+   */
+  @Test
+  public void error() {
+    final long hits = ctx.queries.hits();
+    for(int i = 0; i < 2; i++) {
+      try {
+        new XQuery("doc('" + NAME + "-missing.xml')").execute(ctx);
+        fail("Error expected.");
+      } catch(final BaseXException ex) {
+        // error is expected for missing documents
+      }
+    }
+    assertEquals(hits, ctx.queries.hits());
+  }
+}
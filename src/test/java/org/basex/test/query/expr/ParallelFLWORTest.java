@@ -0,0 +1,126 @@
+package org.basex.test.query.expr;
+
+import static org.junit.Assert.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.query.*;
+import org.basex.query.util.*;
+import org.basex.test.query.*;
+import org.junit.*;
+
+/**
+ * This class tests the parallel evaluation of FLWOR expressions
+ * ({@link Prop#FLWORTHREADS}).
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class ParallelFLWORTest extends AdvancedQueryTest {
+  /** Queries. */
+  private static final String[] QUERIES = {
+    "for $i in 1 to 10000 return $i * 2",
+    "for $i at $p in reverse(1 to 5000) where $p mod 3 = 0 return ($p, $i)",
+    "for $i in 1 to 1000 let $j := $i * $i for $k in 1 to 3 return $j + $k",
+    "for $i in 1 to 1000 return <e a='{ $i }'>{ string($i) }<x/></e>",
+    "for $i in 1 to 1000 return <n:e xmlns:n='N'>{ $i }</n:e>",
+    "for $d in db:open('" + NAME + "') return count($d//e[@a > 10])",
+    "for $e in db:open('" + NAME + "')//e return string-join(($e/@a, $e), '-')",
+    "for $i in 1 to 100 return sum(for $j in 1 to $i return $j)",
+    "declare variable $v := 3; for $i in 1 to 1000 return $i mod $v",
+    "declare function local:f($i) { $i + 1 }; for $i in 1 to 1000 return local:f($i)",
+    "for $i in 1 to 1000 return if($i mod 2 = 0) then 'a' else ($i, $i)",
+  };
+
+  /**
+   * Creates the test database.
+   * @throws BaseXException database exception
+   */
+  @BeforeClass
+  public static void init() throws BaseXException {
+    new CreateDB(NAME).execute(context);
+    for(int d = 0; d < 20; d++) {
+      final StringBuilder sb = new StringBuilder("<doc>");
+      for(int e = 0; e < 100; e++) sb.append("<e a='" + e + "'>" + d * e + "</e>");
+      new Add(d + ".xml", sb.append("</doc>").toString()).execute(context);
+    }
+  }
+
+  /**
+   * Drops the database and resets the options.
+   * @throws BaseXException database exception
+   */
+  @AfterClass
+  public static void finish() throws BaseXException {
+    new Set(Prop.FLWORTHREADS, 1).execute(context);
+    new DropDB(NAME).execute(context);
+  }
+
+  /**
+   * Compares the results of sequential and parallel evaluations.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void results() throws BaseXException {
+    for(final String query : QUERIES) {
+      new Set(Prop.FLWORTHREADS, 1).execute(context);
+      final String exp = query(query);
+      new Set(Prop.FLWORTHREADS, 4).execute(context);
+      assertEquals(query, exp, query(query));
+    }
+  }
+
+  /**
+   * Enables parallel evaluation via a pragma.
+   * @throws Exception exception
+   */
+  @Test
+  public void pragma() throws Exception {
+    new Set(Prop.FLWORTHREADS, 1).execute(context);
+    final String query = "for $i in 1 to 5000 return $i * 2";
+    final String exp = query(query);
+    final QueryProcessor qp = new QueryProcessor(
+        "(# db:flworthreads 4 #) { " + query + " }", context);
+    try {
+      assertEquals(exp, qp.execute().toString().replaceAll("(\\r|\\n)+ *", ""));
+      assertTrue("No chunks were evaluated in parallel.", qp.ctx.chunks > 1);
+    } finally {
+      qp.close();
+    }
+    // the option is reset after the query
+    final QueryProcessor seq = new QueryProcessor(query, context);
+    try {
+      seq.execute();
+      assertEquals(0, seq.ctx.chunks);
+    } finally {
+      seq.close();
+    }
+  }
+
+  /**
+   * Evaluates node constructors sequentially.
+   * @throws Exception exception
+   */
+  @Test
+  public void constructors() throws Exception {
+    new Set(Prop.FLWORTHREADS, 4).execute(context);
+    final QueryProcessor qp = new QueryProcessor(
+        "for $i in 1 to 5000 return <x>{ $i }</x>", context);
+    try {
+      qp.execute();
+      assertEquals(0, qp.ctx.chunks);
+    } finally {
+      qp.close();
+    }
+  }
+
+  /**
+   * Raises an error in a parallel evaluation.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void error() throws BaseXException {
+    new Set(Prop.FLWORTHREADS, 4).execute(context);
+    error("for $i in 1 to 10000 return 1 idiv ($i - 5000)", Err.DIVZERO);
+  }
+}
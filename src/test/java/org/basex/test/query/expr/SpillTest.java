@@ -0,0 +1,134 @@
+package org.basex.test.query.expr;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.io.*;
+import org.basex.query.util.*;
+import org.basex.test.query.*;
+import org.junit.*;
+
+/**
+ * This class tests the evaluation of order by and group by clauses with tuples
+ * that are written to disk ({@link Prop#MAXTUPLES}).
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class SpillTest extends AdvancedQueryTest {
+  /** Maximum number of tuples in main memory. */
+  private static final int MAX = 7;
+  /** Queries. */
+  private static final String[] QUERIES = {
+    "for $i in 1 to 100 order by $i mod 7, $i descending return $i",
+    "for $i in 1 to 100 stable order by $i mod 3 return $i",
+    "for $i in 1 to 100 order by $i mod 3 descending return ($i, -$i)",
+    "for $i in 1 to 100 order by (if($i mod 5 = 0) then () else $i) " +
+      "empty greatest return $i",
+    "for $i in 1 to 100 order by (if($i mod 5 = 0) then () else -$i) " +
+      "empty least return $i",
+    "for $i in 1 to 100 order by (if($i mod 4 = 0) then xs:double('NaN') " +
+      "else $i * 1.5e0) descending return $i",
+    "for $i in 1 to 100 order by xs:float($i mod 9) return $i",
+    "for $i in 1 to 100 order by $i div 3 descending return $i",
+    "for $i in 1 to 100 order by string($i) return <a>{ $i }</a>",
+    "for $i in 1 to 100 order by $i mod 2 = 0 return xs:untypedAtomic($i)",
+    "for $e in db:open('" + NAME + "')//e order by $e/@a descending, $e return $e",
+    "for $e in db:open('" + NAME + "')//e order by number($e) return $e/@a",
+    "for $i in 1 to 100 let $k := $i mod 9 group by $k order by $k " +
+      "return <g k='{ $k }'>{ $i }</g>",
+    "for $i in 1 to 100 let $k := string($i mod 4) group by $k " +
+      "order by $k descending return $k",
+    "for $i in 1 to 100 let $k := (if($i mod 3 = 0) then () else $i mod 4) " +
+      "group by $k order by $k return count($i)",
+    "for $e in db:open('" + NAME + "')//e let $a := string($e/@a) group by $a " +
+      "order by number($a) return ($a, count($e), $e[1])",
+    "sum(for $i in 1 to 100 let $k := $i mod 9 group by $k return $k * count($i))",
+    "count(for $i in 1 to 100 let $k := $i mod 13 group by $k return $k)",
+    "for $i in 1 to 1000 let $k := $i mod 200 group by $k order by $k " +
+      "return sum($i)",
+    "for $i in 1 to 1000 let $k := (if($i mod 10 = 0) then $i else 0) group by $k " +
+      "order by $k return ($k, count($i))",
+  };
+
+  /**
+   * Creates the test database.
+   * @throws BaseXException database exception
+   */
+  @BeforeClass
+  public static void init() throws BaseXException {
+    new CreateDB(NAME).execute(context);
+    for(int d = 0; d < 5; d++) {
+      final StringBuilder sb = new StringBuilder("<doc>");
+      for(int e = 0; e < 20; e++) sb.append("<e a='" + e + "'>" + d * e + "</e>");
+      new Add(d + ".xml", sb.append("</doc>").toString()).execute(context);
+    }
+  }
+
+  /**
+   * Drops the database and resets the options.
+   * @throws BaseXException database exception
+   */
+  @AfterClass
+  public static void finish() throws BaseXException {
+    new Set(Prop.MAXTUPLES, 0).execute(context);
+    new DropDB(NAME).execute(context);
+  }
+
+  /**
+   * Compares the results of evaluations in main memory and on disk.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void results() throws BaseXException {
+    for(final String query : QUERIES) {
+      new Set(Prop.MAXTUPLES, 0).execute(context);
+      final String exp = query(query);
+      new Set(Prop.MAXTUPLES, MAX).execute(context);
+      assertEquals(query, exp, query(query));
+    }
+  }
+
+  /**
+   * Checks if all temporary files are deleted.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void delete() throws BaseXException {
+    final int files = files();
+    new Set(Prop.MAXTUPLES, MAX).execute(context);
+    query("for $i in 1 to 100 order by -$i return $i");
+    query("(for $i in 1 to 100 order by -$i return $i)[1]");
+    query("for $i in 1 to 100 let $k := $i mod 9 group by $k order by $k return $i");
+    query("for $i in 1 to 1000 let $k := $i mod 200 group by $k return $i");
+    assertEquals(files, files());
+  }
+
+  /**
+   * Raises an error while sorting tuples that are written to disk.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void error() throws BaseXException {
+    new Set(Prop.MAXTUPLES, MAX).execute(context);
+    error("for $i in 1 to 100 order by (if($i = 50) then xs:date('2000-01-01') " +
+        "else $i) return $i", Err.XPTYPECMP);
+  }
+
+  /**
+   * Returns the number of temporary files.
+   * @return number of files
+   */
+  private static int files() {
+    final File[] files = new File(System.getProperty("java.io.tmpdir")).listFiles();
+    int c = 0;
+    for(final File f : files) {
+      final String n = f.getName();
+      if(n.startsWith("spill") && n.endsWith(IO.BASEXSUFFIX)) c++;
+    }
+    return c;
+  }
+}
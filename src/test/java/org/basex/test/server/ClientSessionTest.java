@@ -5,6 +5,8 @@ import static org.junit.Assert.*;
 import java.io.*;
 
 import org.basex.*;
+import org.basex.core.*;
+import org.basex.server.*;
 import org.basex.util.*;
 import org.junit.*;
 
@@ -46,4 +48,53 @@ public class ClientSessionTest extends SessionTest {
       fail(Util.message(ex));
     }
   }
+
+  /** Closes an idle cursor and releases its locks.
+   * @throws IOException I/O exception */
+  @Test
+  public void queryFetchIdle() throws IOException {
+    server.context.mprop.set(MainProp.CURSORTIMEOUT, 1);
+    try {
+      session.execute("create db " + NAME + " <a><b/><b/><b/></a>");
+      final Query query = session.query("db:open('" + NAME + "')//b");
+      query.setFetchSize(1);
+      assertEqual("<b/>", query.next());
+      Performance.sleep(1500);
+      // updates must not be blocked by the expired cursor
+      session.execute("xquery insert node <b/> into db:open('" + NAME + "')/a");
+      try {
+        query.next();
+        fail("Cursor was not closed.");
+      } catch(final BaseXException ex) {
+        assertTrue(ex.getMessage().contains(Text.TIMEOUT_EXCEEDED));
+      }
+    } finally {
+      server.context.mprop.set(MainProp.CURSORTIMEOUT,
+          (Integer) MainProp.CURSORTIMEOUT[1]);
+    }
+  }
+
+  /** Adds documents that exceed the upload buffer and are written to temporary files.
+   * @throws IOException I/O exception */
+  @Test
+  public void addLarge() throws IOException {
+    server.context.mprop.set(MainProp.UPLOADBUFFER, 0);
+    try {
+      final Session cs = createClient();
+      try {
+        cs.execute("create db " + NAME);
+        final StringBuilder sb = new StringBuilder("<a>");
+        for(int i = 0; i < 10000; i++) sb.append("<b>" + i + "</b>");
+        final byte[] doc = Token.token(sb.append("</a>").toString());
+        for(int d = 0; d < 3; d++) cs.add(d + ".xml", new ByteArrayInputStream(doc));
+        assertEqual("30000", cs.query("count(db:open('" + NAME + "')//b)").execute());
+        cs.execute("drop db " + NAME);
+      } finally {
+        cs.close();
+      }
+    } finally {
+      server.context.mprop.set(MainProp.UPLOADBUFFER,
+          (Integer) MainProp.UPLOADBUFFER[1]);
+    }
+  }
 }
@@ -0,0 +1,119 @@
+package org.basex.test.server;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.net.*;
+
+import org.basex.*;
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.io.in.*;
+import org.basex.io.out.*;
+import org.basex.server.*;
+import org.basex.test.*;
+import org.basex.util.*;
+import org.junit.*;
+
+/**
+ * This class tests if the server can handle many concurrent connections
+ * without binding a thread to each session.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class ConnectionsTest extends SandboxTest {
+  /** Number of sessions. */
+  private static final int SESSIONS = 500;
+  /** Number of worker threads. */
+  private static final int WORKERS = 2;
+  /** Server reference. */
+  private static BaseXServer server;
+
+  /**
+   * Starts the server.
+   * @throws IOException exception
+   */
+  @BeforeClass
+  public static void start() throws IOException {
+    server = createServer("-cset " + MainProp.WORKERS[0] + ' ' + WORKERS);
+  }
+
+  /**
+   * Stops the server.
+   * @throws IOException exception
+   */
+  @AfterClass
+  public static void stop() throws IOException {
+    server.stop();
+  }
+
+  /**
+   * Opens many sessions and runs a query in each of them.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void idleSessions() throws IOException {
+    final int threads = Thread.activeCount();
+    final ClientSession[] sessions = new ClientSession[SESSIONS];
+    try {
+      for(int s = 0; s < SESSIONS; s++) sessions[s] = createClient();
+      assertTrue("Too many threads: " + Thread.activeCount(),
+          Thread.activeCount() - threads < SESSIONS / 2);
+      for(int s = 0; s < SESSIONS; s++) {
+        final String n = Integer.toString(s);
+        assertEquals(n, sessions[s].query(n).execute());
+      }
+    } finally {
+      for(final ClientSession cs : sessions) if(cs != null) cs.close();
+    }
+  }
+
+  /**
+   * Sends and receives data that exceeds the socket buffers.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void largeData() throws IOException {
+    final ClientSession cs = createClient();
+    try {
+      final TokenBuilder tb = new TokenBuilder("<x>");
+      for(int i = 0; i < 100000; i++) tb.add("<y>").addLong(i).add("</y>");
+      cs.create(NAME, new ByteArrayInputStream(tb.add("</x>").finish()));
+
+      final ArrayOutput ao = new ArrayOutput();
+      cs.setOutputStream(ao);
+      cs.execute(new XQuery("count(//y), string-join(//y, ' ')"));
+      assertTrue(ao.toString().startsWith("100000 0 1 2"));
+      cs.setOutputStream(null);
+      cs.execute(new DropDB(NAME));
+    } finally {
+      cs.close();
+    }
+  }
+
+  /**
+   * Sends incomplete requests, which must not block the worker threads.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void slowClients() throws IOException {
+    final Socket[] sockets = new Socket[WORKERS + 1];
+    try {
+      for(int s = 0; s < sockets.length; s++) {
+        sockets[s] = new Socket(Text.LOCALHOST, 9999);
+        // receive timestamp and send incomplete user name
+        new BufferInput(sockets[s].getInputStream()).readString();
+        sockets[s].getOutputStream().write(Token.token(Text.ADMIN));
+      }
+      final ClientSession cs = createClient();
+      try {
+        assertEquals("1", cs.query("1").execute());
+      } finally {
+        cs.close();
+      }
+    } finally {
+      for(final Socket s : sockets) if(s != null) s.close();
+    }
+  }
+}
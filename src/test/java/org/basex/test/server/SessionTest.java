@@ -403,6 +403,45 @@ public abstract class SessionTest extends SandboxTest {
     query.close();
   }
 
+  /** Runs a query and fetches the results in batches.
+   * @throws IOException I/O exception */
+  @Test
+  public void queryFetch() throws IOException {
+    for(final int n : new int[] { 1, 3, 5, 6, 100 }) {
+      final Query query = session.query("1 to 6");
+      query.setFetchSize(n);
+      int c = 0;
+      while(query.more()) assertEqual(++c, query.next());
+      assertEquals(6, c);
+      assertTrue(query.info().contains("6"));
+      query.close();
+    }
+  }
+
+  /** Closes a query before all results have been fetched.
+   * @throws IOException I/O exception */
+  @Test
+  public void queryFetchClose() throws IOException {
+    session.execute("create db " + NAME + " <a><b/><b/><b/></a>");
+    final Query query = session.query("db:open('" + NAME + "')//b");
+    query.setFetchSize(1);
+    assertEqual("<b/>", query.next());
+    query.close();
+    // updates must not be blocked by the closed query
+    session.execute("xquery insert node <b/> into db:open('" + NAME + "')/a");
+    assertEqual("4", session.execute("xquery count(db:open('" + NAME + "')//b)"));
+  }
+
+  /** Runs an erroneous query and fetches the results in batches.
+   * @throws IOException expected exception */
+  @Test(expected = BaseXException.class)
+  public void queryFetchError() throws IOException {
+    final Query query = session.query("(1,'a')[. eq 1]");
+    query.setFetchSize(1);
+    assertEqual("1", query.next());
+    query.next();
+  }
+
   /** Runs a query with additional serialization parameters.
    * @throws IOException I/O exception */
   @Test
@@ -424,6 +463,19 @@ public abstract class SessionTest extends SandboxTest {
         "  <db:result>2</db:result></db:results>", query.next());
   }
 
+  /** Fetches large wrapped results, which are passed on in parts.
+   * @throws IOException I/O exception */
+  @Test
+  public void querySerial3() throws IOException {
+    final String q = WRAPPER + "for $i in 1 to 20000 return <x>{ $i }</x>";
+    final Query query = session.query(q);
+    query.setFetchSize(10);
+    assertTrue("Result expected.", query.more());
+    final String result = query.next();
+    assertFalse("No result expected.", query.more());
+    assertEquals(session.query(q).execute(), result);
+  }
+
   /** Runs a query with an external variable declaration.
    * @throws IOException I/O exception */
   @Test